@@ -1,39 +1,43 @@
 package br.com.study.socketchat.client;
 
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
 import br.com.study.socketchat.commons.Message;
 import br.com.study.socketchat.commons.enums.MessageType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import java.net.ConnectException;
-import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Scanner;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Cliente de chat com interface de linha de comando (CLI)
- * Conecta ao servidor e permite envio de mensagens e arquivos
+ * Conecta ao servidor e permite envio de mensagens e arquivos.
+ * A conexão é mantida pelo {@link ChatClientEngine}, que reconecta e retoma a sessão sozinho.
  */
 @SpringBootApplication
-public class ChatClientApplication {
+public class ChatClientApplication implements ChatClientListener {
     private static final String SERVER_HOST = resolveServerHost();
     private static final int SERVER_PORT = resolveServerPort();
     private static final String DOWNLOADS_DIRECTORY = "client_downloads/";
 
-    private Socket socket;
-    private ObjectInputStream inputStream;
-    private ObjectOutputStream outputStream;
+    private ChatClientEngine engine;
     private String username;
-    private boolean isConnected = false;
-    private ExecutorService executor;
+    private volatile boolean isConnected = false;
     private Scanner scanner;
 
     public ChatClientApplication() {
-        this.executor = Executors.newSingleThreadExecutor();
         this.scanner = new Scanner(System.in);
         createDownloadsDirectory();
     }
@@ -96,26 +100,30 @@ public class ChatClientApplication {
             return;
         }
 
-        // Iniciar thread para receber mensagens
-        executor.execute(this::receiveMessages);
-
         // Loop principal da interface
         runInterface();
     }
 
-    private void receiveMessages() {
-        try {
-            while (isConnected) {
-                Message message = (Message) inputStream.readObject();
-                handleReceivedMessage(message);
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            if (isConnected) {
-                System.out.println("\n Conexão perdida com o servidor" + e.getMessage());
-                e.printStackTrace();
-                isConnected = false;
-            }
-        }
+    @Override
+    public void onMessage(Message message) {
+        handleReceivedMessage(message);
+    }
+
+    @Override
+    public void onConnectionLost(String reason) {
+        System.out.println("\nConexão perdida com o servidor (" + reason + "). Reconectando...");
+    }
+
+    @Override
+    public void onRejected(Message message, String reason) {
+        System.out.println("\nMensagem para " + message.getTo() + " não enviada: " + reason);
+        System.out.print(username + "> ");
+    }
+
+    @Override
+    public void onReconnected(int attempts) {
+        System.out.println("\nReconectado ao servidor após " + attempts + " tentativa(s).");
+        System.out.print(username + "> ");
     }
 
     private void printWelcome() {
@@ -130,17 +138,8 @@ public class ChatClientApplication {
         try {
             System.out.println("Conectando ao servidor " + SERVER_HOST + ":" + SERVER_PORT + "...");
 
-            socket = new Socket(SERVER_HOST, SERVER_PORT);
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
-
-            // Enviar tentativa de login
-            Message loginMessage = new Message(MessageType.LOGIN, username, "SERVER", username);
-            outputStream.writeObject(loginMessage);
-            outputStream.flush();
-
-            // Aguardar resposta do servidor
-            Message response = (Message) inputStream.readObject();
+            engine = new ChatClientEngine(SERVER_HOST, SERVER_PORT, username, this);
+            Message response = engine.connect();
 
             if (response.getType() == MessageType.LOGIN_SUCCESS) {
                 isConnected = true;
@@ -154,7 +153,7 @@ public class ChatClientApplication {
         } catch (ConnectException e) {
             System.out.println("Não foi possível conectar ao servidor. Verifique se o servidor está rodando.");
             return false;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.out.println("Erro ao conectar: " + e.getMessage());
             return false;
         }
@@ -195,6 +194,13 @@ public class ChatClientApplication {
                     System.out.println("ERR: Uso Indevido, correto: /msg <usuário> <mensagem>");
                 }
                 break;
+            case "/multi":
+                if (parts.length == 3) {
+                    sendMultiPrivateMessage(parts[1], parts[2]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /multi <usuário1,usuário2,...> <mensagem>");
+                }
+                break;
             case "/users":
                 listUsers();
                 break;
@@ -236,6 +242,62 @@ public class ChatClientApplication {
             case "/groups":
                 listGroups();
                 break;
+            case "/newchannel":
+                if (parts.length == 2) {
+                    sendChannelCommand(MessageType.CREATE_CHANNEL, parts[1]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /newchannel <canal>");
+                }
+                break;
+            case "/subscribe":
+                if (parts.length == 2) {
+                    sendChannelCommand(MessageType.SUBSCRIBE_CHANNEL, parts[1]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /subscribe <canal>");
+                }
+                break;
+            case "/unsubscribe":
+                if (parts.length == 2) {
+                    sendChannelCommand(MessageType.UNSUBSCRIBE_CHANNEL, parts[1]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /unsubscribe <canal>");
+                }
+                break;
+            case "/post":
+                if (parts.length == 3) {
+                    postToChannel(parts[1], parts[2]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /post <canal> <mensagem>");
+                }
+                break;
+            case "/channels":
+                listChannels();
+                break;
+            case "/search":
+                if (parts.length >= 2) {
+                    searchDirectory(input.substring(command.length()).strip());
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /search <texto>");
+                }
+                break;
+            case "/schedule":
+                String[] target = parts.length == 3 ? parts[2].split(" ", 2) : new String[0];
+                if (target.length == 2) {
+                    scheduleMessage(parts[1], target[0], target[1]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /schedule <quando> <destino> <mensagem>");
+                }
+                break;
+            case "/scheduled":
+                listScheduled();
+                break;
+            case "/unschedule":
+                if (parts.length == 2) {
+                    cancelScheduled(parts[1]);
+                } else {
+                    System.out.println("ERR: Uso Indevido, correto: /unschedule <id>");
+                }
+                break;
             default:
                 System.out.println("Comando não reconhecido. Digite /help para ver os comandos disponíveis.");
         }
@@ -305,6 +367,133 @@ public class ChatClientApplication {
         }
     }
 
+    private void sendMultiPrivateMessage(String recipients, String content) {
+        try {
+            Message message = new Message(MessageType.MULTI_PRIVATE_MESSAGE, username, null, content);
+            message.setRecipients(Arrays.stream(recipients.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .toList());
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao enviar mensagem: " + e.getMessage());
+        }
+    }
+
+    private void sendChannelCommand(MessageType type, String channelName) {
+        try {
+            Message message = new Message(type, username, null, stripChannelPrefix(channelName));
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao enviar comando de canal: " + e.getMessage());
+        }
+    }
+
+    private void postToChannel(String channelName, String content) {
+        try {
+            Message message = new Message(MessageType.CHANNEL_POST, username, stripChannelPrefix(channelName), content);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao publicar no canal: " + e.getMessage());
+        }
+    }
+
+    private void listChannels() {
+        try {
+            Message message = new Message(MessageType.REQUEST_CHANNELS_LIST, username, null, null);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao requisitar canais: " + e.getMessage());
+        }
+    }
+
+    private void searchDirectory(String query) {
+        try {
+            Message message = new Message(MessageType.SEARCH_DIRECTORY, username, null, query);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao buscar no diretório: " + e.getMessage());
+        }
+    }
+
+    private void scheduleMessage(String when, String destination, String content) {
+        LocalDateTime deliverAt;
+        try {
+            deliverAt = parseScheduleTime(when);
+        } catch (DateTimeParseException | IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            System.out.println("ERR: Horário inválido, use HH:mm, +30m / +2h / +1d ou yyyy-MM-ddTHH:mm");
+            return;
+        }
+        try {
+            Message message = new Message(MessageType.SCHEDULE_MESSAGE, username, destination, content);
+            message.setTimestamp(deliverAt);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao agendar mensagem: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converte o horário digitado (no fuso local) para o horário de envio em UTC, que é o
+     * que o servidor espera no timestamp: {@code HH:mm} é a próxima ocorrência daquela hora,
+     * {@code +N[s|m|h|d]} é relativo a agora e {@code yyyy-MM-ddTHH:mm} é uma data exata.
+     */
+    private LocalDateTime parseScheduleTime(String when) {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime deliverAt;
+        if (when.startsWith("+")) {
+            long amount = Long.parseLong(when.substring(1, when.length() - 1));
+            Duration delay;
+            switch (Character.toLowerCase(when.charAt(when.length() - 1))) {
+                case 's':
+                    delay = Duration.ofSeconds(amount);
+                    break;
+                case 'm':
+                    delay = Duration.ofMinutes(amount);
+                    break;
+                case 'h':
+                    delay = Duration.ofHours(amount);
+                    break;
+                case 'd':
+                    delay = Duration.ofDays(amount);
+                    break;
+                default:
+                    throw new IllegalArgumentException(when);
+            }
+            deliverAt = now.plus(delay);
+        } else if (when.contains("T")) {
+            deliverAt = LocalDateTime.parse(when).atZone(ZoneId.systemDefault());
+        } else {
+            deliverAt = now.with(LocalTime.parse(when)).withSecond(0).withNano(0);
+            if (!deliverAt.isAfter(now)) {
+                deliverAt = deliverAt.plusDays(1);
+            }
+        }
+        return deliverAt.withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    private void listScheduled() {
+        try {
+            Message message = new Message(MessageType.REQUEST_SCHEDULED_LIST, username, null, null);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao listar agendamentos: " + e.getMessage());
+        }
+    }
+
+    private void cancelScheduled(String id) {
+        try {
+            Message message = new Message(MessageType.CANCEL_SCHEDULED, username, null, id.startsWith("#") ? id.substring(1) : id);
+            sendGenericMessage(message);
+        } catch (IOException e) {
+            System.out.println("Erro ao cancelar agendamento: " + e.getMessage());
+        }
+    }
+
+    private String stripChannelPrefix(String channelName) {
+        return channelName.startsWith("#") ? channelName.substring(1) : channelName;
+    }
+
     private void sendFile(String destination, String filePath) {
         File file = new File(filePath);
         if (!file.exists() || !file.isFile()) {
@@ -339,6 +528,7 @@ public class ChatClientApplication {
         System.out.println("\nCOMANDOS DISPONÍVEIS:");
         System.out.println("---------------------------------------------------------------");
         System.out.println("/msg <usuário> <mensagem>     - Enviar mensagem privada");
+        System.out.println("/multi <u1,u2,...> <mensagem> - Enviar a mesma mensagem a vários usuários");
         System.out.println("/group <grupo> <mensagem>     - Enviar mensagem para grupo");
         System.out.println("/create <nome_grupo>          - Criar novo grupo");
         System.out.println("/join <nome_grupo>            - Entrar em um grupo");
@@ -346,6 +536,15 @@ public class ChatClientApplication {
         System.out.println("/file <destino> <arquivo>     - Enviar arquivo");
         System.out.println("/users                        - Listar usuários online");
         System.out.println("/groups                       - Listar grupos disponíveis");
+        System.out.println("/newchannel <canal>           - Criar canal de avisos (só você publica)");
+        System.out.println("/subscribe <canal>            - Inscrever-se em um canal");
+        System.out.println("/unsubscribe <canal>          - Cancelar inscrição em um canal");
+        System.out.println("/post <canal> <mensagem>      - Publicar em um canal seu");
+        System.out.println("/channels                     - Listar canais disponíveis");
+        System.out.println("/search <texto>               - Buscar usuários e grupos (@ só usuários, # só grupos)");
+        System.out.println("/schedule <quando> <destino> <mensagem> - Agendar envio (HH:mm, +30m, +2h, +1d ou yyyy-MM-ddTHH:mm)");
+        System.out.println("/scheduled                    - Listar seus envios agendados");
+        System.out.println("/unschedule <id>              - Cancelar um envio agendado");
         System.out.println("/help                         - Mostrar esta ajuda");
         System.out.println("/quit                         - Sair do chat");
         System.out.println("---------------------------------------------------------------");
@@ -358,12 +557,24 @@ public class ChatClientApplication {
             case GROUP_MESSAGE:
                 printReceivedMessage(message);
                 break;
+            case CHANNEL_POST:
+                System.out.print("[#" + message.getTo() + "] ");
+                printReceivedMessage(message);
+                break;
             case GROUP_CREATED:
             case GROUP_JOINED:
             case GROUP_LEFT:
             case GROUPS_LIST:
             case USERS_LIST:
             case FILE_RECEIVED:
+            case MULTI_DELIVERY_REPORT:
+            case CHANNEL_CREATED:
+            case CHANNEL_SUBSCRIBED:
+            case CHANNEL_UNSUBSCRIBED:
+            case CHANNELS_LIST:
+            case DIRECTORY_RESULTS:
+            case SCHEDULE_CONFIRMED:
+            case SCHEDULED_LIST:
                 printGenericMessage(message);
                 break;
             case FILE_MESSAGE:
@@ -373,9 +584,12 @@ public class ChatClientApplication {
             case GROUP_LEAVE_FAILED:
             case GROUP_JOIN_FAILED:
             case GROUP_CREATE_FAILED:
+            case CHANNEL_FAILED:
             case ERROR_MESSAGE:
                 printErrorMessage(message);
                 break;
+            case ACK:
+                return;
             default:
                 System.out.println("\n[SERVIDOR] " + message.getContent());
         }
@@ -397,8 +611,7 @@ public class ChatClientApplication {
     }
 
     public void sendGenericMessage(Message message) throws IOException {
-        outputStream.writeObject(message);
-        outputStream.flush();
+        engine.send(message);
     }
 
     private void handleIncomingFile(Message message) {
@@ -455,8 +668,7 @@ public class ChatClientApplication {
         try {
             if (isConnected) {
                 Message disconnectMessage = new Message(MessageType.DISCONNECT, username, "SERVER", "");
-                outputStream.writeObject(disconnectMessage);
-                outputStream.flush();
+                engine.send(disconnectMessage);
             }
         } catch (IOException e) {
             // Ignorar erros na desconexão
@@ -468,15 +680,9 @@ public class ChatClientApplication {
     private void cleanup() {
         isConnected = false;
 
-        try {
-            if (inputStream != null) inputStream.close();
-            if (outputStream != null) outputStream.close();
-            if (socket != null) socket.close();
-        } catch (IOException e) {
-            // Ignorar erros na limpeza
+        if (engine != null) {
+            engine.close();
         }
-
-        executor.shutdown();
         System.out.println("\nDesconectado do servidor. Até logo!");
         System.exit(0);
     }
@@ -0,0 +1,552 @@
+package br.com.study.socketchat.client.engine;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine de conexão do cliente.
+ * {@link #send(Message)} nunca espera pela rede: a mensagem recebe um número de
+ * sequência, entra na caixa de saída e é escrita em pipeline por uma thread própria,
+ * que agrupa os flushes. As mensagens só saem da caixa de saída quando o servidor
+ * as confirma (ACK cumulativo). Se a conexão cair, o engine reconecta com backoff
+ * exponencial, retoma a sessão com o token recebido no login e reenvia apenas o
+ * que o servidor ainda não processou.
+ * No sentido contrário, as mensagens de conteúdo do servidor chegam numeradas: o engine
+ * as confirma de forma cumulativa, descarta reentregas e informa no LOGIN de retomada
+ * a última sequência recebida.
+ * <p>
+ * Sob sobrecarga o servidor pode descartar uma mensagem (entrega no máximo uma vez): ela
+ * chega como {@code REJECTED} antes do ACK que a cobre, sai da caixa de saída e vai para
+ * {@link ChatClientListener#onRejected}.
+ * <p>
+ * O envio respeita os créditos concedidos pelo servidor (mensagens {@code CREDIT}): a
+ * thread de escrita só envia sequências até o limite concedido na conexão atual e, sem
+ * créditos, espera (continuando a enviar ACKs). {@link #send(Message)} continua sem
+ * bloquear; o tempo de espera fica em {@link #getCreditStallMillis()}.
+ */
+public class ChatClientEngine {
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final long CLOSE_DRAIN_MILLIS = 2_000;
+    private static final int WRITES_PER_STREAM_RESET = 1024;
+    private static final int ACK_BATCH_SIZE = 32;
+    private static final int RECENT_MESSAGE_IDS = 1024;
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final ChatClientListener listener;
+    private final ReconnectPolicy reconnectPolicy;
+
+    // Mensagens enviadas e ainda não confirmadas, em ordem de sequência
+    private final Deque<Message> outbox = new ArrayDeque<>();
+    private final BlockingDeque<Message> sendQueue = new LinkedBlockingDeque<>();
+    private long nextSequence;
+
+    // Controle de fluxo: maior sequência que a conexão atual pode enviar e tempo parado por falta de crédito
+    private final Object creditLock = new Object();
+    private volatile long creditLimit;
+    private volatile long lastWrittenSequence;
+    private volatile long stallStartNanos;
+    private long stalledNanos;
+
+    private volatile Connection connection;
+    private volatile boolean running;
+    private volatile String resumeToken;
+    private Thread writerThread;
+
+    // Lado de recebimento: última sequência entregue ao listener e ids recentes, para descartar reentregas
+    private volatile long lastReceivedSequence;
+    private int unacknowledgedReceived;
+    private final Set<Long> recentMessageIds = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT_MESSAGE_IDS;
+        }
+    });
+
+    public ChatClientEngine(String host, int port, String username, ChatClientListener listener) {
+        this(host, port, username, listener, ReconnectPolicy.defaultPolicy());
+    }
+
+    public ChatClientEngine(String host, int port, String username, ChatClientListener listener,
+                            ReconnectPolicy reconnectPolicy) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.listener = listener;
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Conecta e faz login. Retorna a resposta do servidor; o engine só passa a operar
+     * se ela for {@link MessageType#LOGIN_SUCCESS}.
+     */
+    public Message connect() throws IOException {
+        Connection newConnection = new Connection();
+        Message response;
+        try {
+            response = newConnection.login();
+        } catch (IOException e) {
+            newConnection.close();
+            throw e;
+        }
+        if (response.getType() != MessageType.LOGIN_SUCCESS) {
+            newConnection.close();
+            return response;
+        }
+        running = true;
+        onLoginSucceeded(newConnection, response);
+        writerThread = new Thread(this::writeLoop, "chat-client-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        return response;
+    }
+
+    /**
+     * Enfileira a mensagem para envio e retorna imediatamente.
+     */
+    public void send(Message message) throws IOException {
+        if (!running) {
+            throw new IOException("Conexão encerrada");
+        }
+        synchronized (outbox) {
+            message.setSequence(++nextSequence);
+            outbox.addLast(message);
+            sendQueue.addLast(message);
+        }
+    }
+
+    /**
+     * Tenta escrever o que ainda está na fila e encerra a conexão.
+     */
+    public void close() {
+        long deadline = System.currentTimeMillis() + CLOSE_DRAIN_MILLIS;
+        while (running && !sendQueue.isEmpty() && isConnected() && System.currentTimeMillis() < deadline) {
+            sleepQuietly(10);
+        }
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        Connection current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isConnected() {
+        Connection current = connection;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * Quantas mensagens ainda podem ser escritas com os créditos atuais.
+     */
+    public long getAvailableCredits() {
+        return Math.max(0, creditLimit - lastWrittenSequence);
+    }
+
+    /**
+     * Tempo total que a escrita passou esperando créditos do servidor (inclui a espera atual).
+     */
+    public long getCreditStallMillis() {
+        synchronized (creditLock) {
+            long stalled = stalledNanos;
+            long start = stallStartNanos;
+            if (start != 0) {
+                stalled += System.nanoTime() - start;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(stalled);
+        }
+    }
+
+    /**
+     * Se a escrita está parada agora por falta de créditos.
+     */
+    public boolean isCreditStalled() {
+        return stallStartNanos != 0;
+    }
+
+    /**
+     * Quantidade de mensagens enviadas que o servidor ainda não confirmou.
+     */
+    public int pendingCount() {
+        synchronized (outbox) {
+            return outbox.size();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            Connection current = connection;
+            if (current == null || !current.isOpen()) {
+                reconnect();
+                continue;
+            }
+            Message message;
+            try {
+                message = sendQueue.pollFirst(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (message == null) {
+                continue;
+            }
+            try {
+                if (message.getType() != MessageType.ACK && !awaitCredit(current, message.getSequence())) {
+                    // Conexão perdida ou engine encerrado: a mensagem continua na caixa de saída
+                    continue;
+                }
+                current.write(message, sendQueue.isEmpty());
+                if (message.getType() != MessageType.ACK) {
+                    lastWrittenSequence = message.getSequence();
+                }
+            } catch (IOException e) {
+                // A mensagem continua na caixa de saída e será reenviada após a reconexão
+                current.fail(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Espera até a sequência caber nos créditos da conexão. Enquanto espera, descarrega o que
+     * já foi escrito (o servidor precisa processá-lo para conceder mais) e envia os ACKs que
+     * chegarem à frente da fila. Retorna false se a conexão mudou ou o engine foi encerrado.
+     */
+    private boolean awaitCredit(Connection current, long sequence) throws IOException {
+        if (sequence <= creditLimit) {
+            return true;
+        }
+        current.flush();
+        synchronized (creditLock) {
+            stallStartNanos = System.nanoTime();
+        }
+        try {
+            while (sequence > creditLimit) {
+                if (!running || connection != current || !current.isOpen()) {
+                    return false;
+                }
+                Message head = sendQueue.peekFirst();
+                if (head != null && head.getType() == MessageType.ACK && sendQueue.remove(head)) {
+                    current.write(head, true);
+                    continue;
+                }
+                synchronized (creditLock) {
+                    if (sequence > creditLimit) {
+                        creditLock.wait(POLL_INTERVAL_MILLIS);
+                    }
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            synchronized (creditLock) {
+                stalledNanos += System.nanoTime() - stallStartNanos;
+                stallStartNanos = 0;
+            }
+        }
+    }
+
+    private void grantCredit(Connection source, long limit) {
+        synchronized (creditLock) {
+            // Créditos de uma conexão anterior não valem para a atual
+            if (connection == source && limit > creditLimit) {
+                creditLimit = limit;
+                creditLock.notifyAll();
+            }
+        }
+    }
+
+    private void reconnect() {
+        int attempt = 0;
+        while (running) {
+            sleepQuietly(reconnectPolicy.delayMillis(attempt++));
+            if (!running) {
+                return;
+            }
+            Connection newConnection = null;
+            try {
+                newConnection = new Connection();
+                Message response = newConnection.login();
+                if (response.getType() == MessageType.LOGIN_SUCCESS) {
+                    onLoginSucceeded(newConnection, response);
+                    listener.onReconnected(attempt);
+                    return;
+                }
+                newConnection.close();
+            } catch (IOException e) {
+                if (newConnection != null) {
+                    newConnection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Descarta o que o servidor já processou (numa sessão nova, renumera a caixa de saída)
+     * e recoloca o restante, em ordem, no início da fila de envio.
+     */
+    private void onLoginSucceeded(Connection newConnection, Message response) {
+        boolean freshSession = !response.getResumeToken().equals(resumeToken);
+        if (freshSession) {
+            // Sessão nova no servidor: a numeração do que recebemos recomeça
+            synchronized (recentMessageIds) {
+                lastReceivedSequence = 0;
+                unacknowledgedReceived = 0;
+                recentMessageIds.clear();
+            }
+        }
+        resumeToken = response.getResumeToken();
+        synchronized (outbox) {
+            if (freshSession) {
+                renumberOutbox(response.getSequence());
+            } else {
+                acknowledge(response.getSequence());
+            }
+            sendQueue.clear();
+            sendQueue.addAll(outbox);
+        }
+        // Créditos valem por conexão: até o primeiro CREDIT, nada além do que o servidor já processou
+        synchronized (creditLock) {
+            creditLimit = response.getSequence();
+            lastWrittenSequence = response.getSequence();
+        }
+        connection = newConnection;
+        Thread reader = new Thread(() -> readLoop(newConnection), "chat-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sessão nova (ex.: servidor reiniciado): ela não conhece a nossa numeração nem processou
+     * nada do que está na caixa de saída. Tudo é renumerado, em ordem, a partir da sequência
+     * informada por ela, para caber nos créditos que ela concede desde essa sequência.
+     */
+    private void renumberOutbox(long processed) {
+        long sequence = processed;
+        for (Message message : outbox) {
+            message.setSequence(++sequence);
+        }
+        nextSequence = sequence;
+    }
+
+    private void readLoop(Connection source) {
+        while (running && source.isOpen()) {
+            try {
+                Message message = source.read();
+                if (message.getType() == MessageType.ACK) {
+                    acknowledge(message.getSequence());
+                } else if (message.getType() == MessageType.REJECTED) {
+                    reject(message);
+                } else if (message.getType() == MessageType.CREDIT) {
+                    grantCredit(source, message.getSequence());
+                } else if (message.getSequence() > 0) {
+                    receiveSequenced(source, message);
+                } else {
+                    listener.onMessage(message);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                source.fail(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Mensagem numerada pelo servidor: entrega uma única vez e confirma em lote
+     * (a cada {@value #ACK_BATCH_SIZE} ou quando não há mais nada para ler).
+     */
+    private void receiveSequenced(Connection source, Message message) throws IOException {
+        boolean duplicate;
+        boolean acknowledgeNow;
+        synchronized (recentMessageIds) {
+            duplicate = message.getSequence() <= lastReceivedSequence
+                    || (message.getMessageId() > 0 && !recentMessageIds.add(message.getMessageId()));
+            lastReceivedSequence = Math.max(lastReceivedSequence, message.getSequence());
+            acknowledgeNow = duplicate || ++unacknowledgedReceived >= ACK_BATCH_SIZE || source.available() == 0;
+            if (acknowledgeNow) {
+                unacknowledgedReceived = 0;
+            }
+        }
+        if (!duplicate) {
+            listener.onMessage(message);
+        }
+        if (acknowledgeNow) {
+            Message ack = new Message(MessageType.ACK, username, "SERVER", null);
+            ack.setSequence(lastReceivedSequence);
+            // Fora da caixa de saída (um ACK perdido é substituído pela sequência informada no
+            // próximo LOGIN) e à frente da fila, para não esperar atrás de arquivos
+            sendQueue.addFirst(ack);
+            synchronized (creditLock) {
+                // A escrita pode estar esperando créditos: acorda para enviar o ACK
+                creditLock.notifyAll();
+            }
+        }
+    }
+
+    private void acknowledge(long sequence) {
+        synchronized (outbox) {
+            while (!outbox.isEmpty() && outbox.peekFirst().getSequence() <= sequence) {
+                outbox.pollFirst();
+            }
+        }
+        listener.onAcknowledged(sequence);
+    }
+
+    private void reject(Message rejection) {
+        Message rejected = null;
+        synchronized (outbox) {
+            Iterator<Message> pending = outbox.iterator();
+            while (pending.hasNext()) {
+                Message message = pending.next();
+                if (message.getSequence() == rejection.getSequence()) {
+                    pending.remove();
+                    rejected = message;
+                    break;
+                }
+            }
+        }
+        if (rejected != null) {
+            listener.onRejected(rejected, rejection.getContent());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Uma conexão TCP com o servidor; o engine troca de instância a cada reconexão.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final ObjectOutputStream out;
+        private final ObjectInputStream in;
+        private volatile boolean open = true;
+        private int writesSinceReset;
+        private StringBuilder bulkContent;
+
+        Connection() throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.flush();
+                in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        Message login() throws IOException {
+            Message loginMessage = new Message(MessageType.LOGIN, username, "SERVER", username);
+            loginMessage.setResumeToken(resumeToken);
+            loginMessage.setSequence(lastReceivedSequence);
+            write(loginMessage, true);
+            try {
+                return read();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Resposta de login inválida", e);
+            }
+        }
+
+        void write(Message message, boolean flush) throws IOException {
+            synchronized (out) {
+                out.writeObject(message);
+                if (++writesSinceReset >= WRITES_PER_STREAM_RESET) {
+                    // Libera a tabela de handles do stream, que referencia tudo que já foi escrito
+                    out.reset();
+                    writesSinceReset = 0;
+                }
+                if (flush) {
+                    out.flush();
+                }
+            }
+        }
+
+        /**
+         * Lê a próxima mensagem, remontando arquivos que o servidor envia em fatias
+         * (FILE_CHUNK seguidos da mensagem de arquivo com o último pedaço). Outras
+         * mensagens podem chegar entre as fatias.
+         */
+        Message read() throws IOException, ClassNotFoundException {
+            Message message = (Message) in.readObject();
+            while (message.getType() == MessageType.FILE_CHUNK) {
+                if (bulkContent == null) {
+                    bulkContent = new StringBuilder();
+                }
+                bulkContent.append(message.getContent());
+                message = (Message) in.readObject();
+            }
+            boolean file = message.getType() == MessageType.FILE_MESSAGE || message.getType() == MessageType.FILE_GROUP;
+            if (file && bulkContent != null) {
+                message.setContent(bulkContent.append(message.getContent()).toString());
+                bulkContent = null;
+            }
+            return message;
+        }
+
+        void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        int available() throws IOException {
+            return in.available();
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        void fail(String reason) {
+            if (open) {
+                close();
+                if (running) {
+                    listener.onConnectionLost(reason);
+                }
+            }
+        }
+
+        void close() {
+            open = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignorar erros ao fechar
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package br.com.study.socketchat.client.engine;
+
+import br.com.study.socketchat.commons.Message;
+
+/**
+ * Eventos do {@link ChatClientEngine}. Chamados pelas threads internas do engine.
+ */
+public interface ChatClientListener {
+
+    void onMessage(Message message);
+
+    void onConnectionLost(String reason);
+
+    void onReconnected(int attempts);
+
+    /**
+     * O servidor confirmou (ACK cumulativo) as mensagens enviadas até a sequência informada.
+     */
+    default void onAcknowledged(long sequence) {
+    }
+
+    /**
+     * O servidor descartou uma mensagem enviada (limite de envio ou sobrecarga). Ela já saiu
+     * da caixa de saída e não será reenviada; para tentar de novo, envie outra vez.
+     */
+    default void onRejected(Message message, String reason) {
+    }
+}
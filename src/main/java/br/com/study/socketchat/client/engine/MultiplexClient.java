@@ -0,0 +1,285 @@
+package br.com.study.socketchat.client.engine;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conexão multiplexada, para gateways e bots com muitas identidades: uma única conexão TCP
+ * carrega a sessão de cada identidade num stream ({@link #open(int, String)}), e cada frame é
+ * o número do stream seguido da mensagem. No servidor, cada stream é um usuário comum.
+ * <p>
+ * Como no {@link ChatClientEngine}, cada stream numera o que envia e confirma de forma
+ * cumulativa o que recebe, mas não há reconexão nem retomada: se a conexão cair,
+ * {@link MultiplexListener#onConnectionLost(String)} é chamado e o gateway abre outra e refaz
+ * os logins (o que o servidor entregou sem confirmação volta pela fila offline). Os créditos
+ * (CREDIT) chegam ao listener; respeitá-los fica a cargo de quem envia.
+ */
+public class MultiplexClient {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int ACK_BATCH_SIZE = 32;
+    private static final int WRITES_PER_STREAM_RESET = 1024;
+    private static final int CONNECTION_STREAM = 0;
+
+    private final String host;
+    private final int port;
+    private final MultiplexListener listener;
+    private final Map<Integer, StreamState> streams = new ConcurrentHashMap<>();
+    // Streams com mensagens recebidas ainda não confirmadas; só a thread de leitura usa
+    private final ArrayDeque<StreamState> unacknowledged = new ArrayDeque<>();
+
+    private Socket socket;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private volatile boolean open;
+    private int writesSinceReset;
+    private int maxStreams;
+
+    public MultiplexClient(String host, int port, MultiplexListener listener) {
+        this.host = host;
+        this.port = port;
+        this.listener = listener;
+    }
+
+    /**
+     * Conecta e pede o modo multiplexado. Falha se o servidor recusar.
+     */
+    public void connect() throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(new Message(MessageType.MULTIPLEX, null, "SERVER", null));
+            out.flush();
+            in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            Message response = (Message) in.readObject();
+            if (response.getType() != MessageType.MULTIPLEX_ACCEPTED) {
+                throw new IOException("Conexão multiplexada recusada: " + response.getContent());
+            }
+            maxStreams = Integer.parseInt(response.getContent());
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            socket.close();
+            throw e instanceof IOException io ? io : new IOException("Resposta inválida do servidor", e);
+        }
+        open = true;
+        Thread reader = new Thread(this::readLoop, "chat-multiplex-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Abre o stream com o LOGIN do usuário. A resposta (LOGIN_SUCCESS ou LOGIN_FAILED)
+     * completa o future; depois de um LOGIN_FAILED o número fica livre de novo.
+     */
+    public CompletableFuture<Message> open(int streamId, String username) throws IOException {
+        if (streamId <= CONNECTION_STREAM) {
+            throw new IllegalArgumentException("Número de stream inválido: " + streamId);
+        }
+        StreamState state = new StreamState(streamId, username);
+        if (streams.putIfAbsent(streamId, state) != null) {
+            throw new IllegalArgumentException("Stream já aberto: " + streamId);
+        }
+        try {
+            write(streamId, new Message(MessageType.LOGIN, username, "SERVER", username));
+        } catch (IOException e) {
+            streams.remove(streamId, state);
+            throw e;
+        }
+        return state.login;
+    }
+
+    /**
+     * Envia pelo stream, com a próxima sequência dele.
+     */
+    public void send(int streamId, Message message) throws IOException {
+        StreamState state = streams.get(streamId);
+        if (state == null) {
+            throw new IllegalArgumentException("Stream não aberto: " + streamId);
+        }
+        synchronized (out) {
+            message.setSequence(++state.nextSequence);
+            write(streamId, message);
+        }
+    }
+
+    /**
+     * Encerra a sessão do stream (DISCONNECT); a conexão e os demais streams continuam.
+     */
+    public void close(int streamId) throws IOException {
+        StreamState state = streams.remove(streamId);
+        if (state != null) {
+            write(streamId, new Message(MessageType.DISCONNECT, state.username, "SERVER", null));
+        }
+    }
+
+    /**
+     * Encerra todas as sessões e a conexão.
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+        try {
+            write(CONNECTION_STREAM, new Message(MessageType.DISCONNECT, null, "SERVER", null));
+        } catch (IOException e) {
+            // A conexão já caiu
+        }
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignorar erros ao fechar
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Limite de streams por conexão informado pelo servidor.
+     */
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    public int openStreams() {
+        return streams.size();
+    }
+
+    private void write(int streamId, Message message) throws IOException {
+        synchronized (out) {
+            out.writeInt(streamId);
+            out.writeObject(message);
+            if (++writesSinceReset >= WRITES_PER_STREAM_RESET) {
+                // Libera a tabela de handles do stream, que referencia tudo que já foi escrito
+                out.reset();
+                writesSinceReset = 0;
+            }
+            out.flush();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (open) {
+                int streamId = in.readInt();
+                Message message = (Message) in.readObject();
+                receive(streamId, message);
+                if (in.available() == 0) {
+                    acknowledgeAll();
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            if (open) {
+                open = false;
+                for (StreamState state : streams.values()) {
+                    state.login.completeExceptionally(e);
+                }
+                listener.onConnectionLost(e.getMessage());
+            }
+        }
+    }
+
+    private void receive(int streamId, Message message) throws IOException {
+        StreamState state = streams.get(streamId);
+        if (state == null) {
+            // Da própria conexão, ou resto de um stream já encerrado
+            if (streamId == CONNECTION_STREAM || message.getType() == MessageType.STREAM_CLOSED) {
+                listener.onMessage(streamId, message);
+            }
+            return;
+        }
+        switch (message.getType()) {
+            case FILE_CHUNK:
+                // Fatias de streams diferentes chegam intercaladas: cada stream remonta as suas
+                if (state.bulkContent == null) {
+                    state.bulkContent = new StringBuilder();
+                }
+                state.bulkContent.append(message.getContent());
+                return;
+            case FILE_MESSAGE:
+            case FILE_GROUP:
+                if (state.bulkContent != null) {
+                    message.setContent(state.bulkContent.append(message.getContent()).toString());
+                    state.bulkContent = null;
+                }
+                break;
+            case LOGIN_SUCCESS:
+                state.login.complete(message);
+                return;
+            case LOGIN_FAILED:
+                streams.remove(streamId, state);
+                state.login.complete(message);
+                return;
+            case STREAM_CLOSED:
+                streams.remove(streamId, state);
+                break;
+            default:
+                break;
+        }
+        MessageType type = message.getType();
+        if (message.getSequence() > 0 && type != MessageType.ACK && type != MessageType.CREDIT
+                && type != MessageType.REJECTED) {
+            state.lastReceivedSequence = Math.max(state.lastReceivedSequence, message.getSequence());
+            if (state.unacknowledged++ == 0) {
+                unacknowledged.addLast(state);
+            }
+        }
+        listener.onMessage(streamId, message);
+        if (state.unacknowledged >= ACK_BATCH_SIZE) {
+            acknowledge(state);
+        }
+    }
+
+    private void acknowledgeAll() throws IOException {
+        StreamState state;
+        while ((state = unacknowledged.pollFirst()) != null) {
+            acknowledge(state);
+        }
+    }
+
+    private void acknowledge(StreamState state) throws IOException {
+        if (state.unacknowledged == 0) {
+            return;
+        }
+        state.unacknowledged = 0;
+        if (streams.get(state.streamId) == state) {
+            Message ack = new Message(MessageType.ACK, state.username, "SERVER", null);
+            ack.setSequence(state.lastReceivedSequence);
+            write(state.streamId, ack);
+        }
+    }
+
+    /**
+     * Estado de um stream aberto.
+     */
+    private static final class StreamState {
+        private final int streamId;
+        private final String username;
+        private final CompletableFuture<Message> login = new CompletableFuture<>();
+        // Sob o lock de escrita
+        private long nextSequence;
+        // Só a thread de leitura
+        private long lastReceivedSequence;
+        private int unacknowledged;
+        private StringBuilder bulkContent;
+
+        StreamState(int streamId, String username) {
+            this.streamId = streamId;
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package br.com.study.socketchat.client.engine;
+
+import br.com.study.socketchat.commons.Message;
+
+/**
+ * Eventos do {@link MultiplexClient}. Chamados pela thread de leitura do cliente.
+ */
+public interface MultiplexListener {
+
+    /**
+     * Mensagem recebida num stream (inclusive ACK, CREDIT e STREAM_CLOSED); as do stream 0
+     * são da própria conexão.
+     */
+    void onMessage(int streamId, Message message);
+
+    void onConnectionLost(String reason);
+}
@@ -0,0 +1,33 @@
+package br.com.study.socketchat.client.engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff exponencial com jitter para reconexão. O jitter espalha as tentativas
+ * de muitos clientes depois de um restart do servidor.
+ */
+public class ReconnectPolicy {
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis) {
+        if (initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("Atrasos de reconexão inválidos");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static ReconnectPolicy defaultPolicy() {
+        return new ReconnectPolicy(250, 30_000);
+    }
+
+    /**
+     * Atraso antes da tentativa informada (0 = primeira): metade fixa, metade aleatória.
+     */
+    public long delayMillis(int attempt) {
+        long exponential = initialDelayMillis << Math.min(attempt, 20);
+        long capped = Math.min(maxDelayMillis, exponential);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+}
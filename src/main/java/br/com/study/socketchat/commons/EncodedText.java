@@ -0,0 +1,111 @@
+package br.com.study.socketchat.commons;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Texto mantido como fatia de bytes UTF-8, do jeito que chegou. O servidor repassa o
+ * conteúdo das mensagens nessa forma, sem decodificar nem copiar, e só quem precisa do
+ * texto paga a decodificação. Imutável: várias mensagens podem compartilhar a mesma fatia.
+ * <p>
+ * Formato: tamanho em bytes ({@code int}, -1 para nulo) seguido dos bytes; é o mesmo de
+ * {@code BinaryCodec.writeString}, então os dois leem o que o outro escreveu.
+ */
+public final class EncodedText {
+    private static final int NULL_LENGTH = -1;
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private EncodedText(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static EncodedText of(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        return new EncodedText(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Tamanho em bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    public String decode() {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fatia a partir de {@code from} com até {@code maxLength} bytes, sem copiar. O fim
+     * recua para não partir um caractere multibyte ao meio.
+     */
+    public EncodedText slice(int from, int maxLength) {
+        if (from < 0 || from > length || maxLength < 0) {
+            throw new IllegalArgumentException("Fatia inválida: início=" + from + ", tamanho=" + maxLength + " de " + length);
+        }
+        int end = (int) Math.min(length, (long) from + maxLength);
+        while (end > from && end < length && isContinuation(bytes[offset + end])) {
+            end--;
+        }
+        if (end == from && from < length) {
+            // Menos bytes que um caractere: leva o caractere inteiro
+            end = from + 1;
+            while (end < length && isContinuation(bytes[offset + end])) {
+                end++;
+            }
+        }
+        return new EncodedText(bytes, offset + from, end - from);
+    }
+
+    public static void write(DataOutput out, EncodedText text) throws IOException {
+        if (text == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(text.length);
+        out.write(text.bytes, text.offset, text.length);
+    }
+
+    public static EncodedText read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Tamanho de texto inválido: " + length);
+        }
+        byte[] read = new byte[length];
+        in.readFully(read);
+        return new EncodedText(read, 0, length);
+    }
+
+    public static EncodedText read(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] read = new byte[length];
+        in.get(read);
+        return new EncodedText(read, 0, length);
+    }
+
+    private static boolean isContinuation(byte value) {
+        return (value & 0xC0) == 0x80;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedText[" + length + " bytes]";
+    }
+}
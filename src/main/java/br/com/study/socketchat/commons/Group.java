@@ -1,61 +1,300 @@
 package br.com.study.socketchat.commons;
 
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import br.com.study.socketchat.commons.bitmap.UserIdResolver;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.Setter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * Grupo de conversa.
+ * Grupos pequenos guardam os membros em um conjunto de nomes; grupos grandes
+ * passam a usar um {@link RoaringBitmap} sobre os identificadores densos dos usuários
+ * (ver {@link #convertToBitmap(UserIdResolver)}). A representação atual fica em um único
+ * {@link Membership} imutável publicado por referência volátil: quem lê pega a referência
+ * uma vez e vê o conjunto ou o bitmap com o seu resolver, nunca uma mistura dos dois.
+ * Alterações no bitmap são feitas por cópia, então leituras e iterações nunca precisam de lock.
+ * <p>
+ * Serializado sempre com os nomes dos membros: os identificadores só valem no resolver do
+ * servidor que os atribuiu. Quem recebe o grupo o converte de novo se quiser o bitmap.
+ */
 @Data
 public class Group implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("creator", String.class),
+            new ObjectStreamField("createdAt", LocalDateTime.class),
+            new ObjectStreamField("members", Set.class)
+    };
 
     private String name;
     private String creator;
     private LocalDateTime createdAt;
-    private Set<String> members;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Membership membership;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Map<String, String> qualifiedSenders;
 
     public Group(String name, String creator) {
         this.name = name;
         this.creator = creator;
         this.createdAt = LocalDateTime.now();
-        this.members = ConcurrentHashMap.newKeySet(); // Thread-safe set
-        this.members.add(creator);
+        Set<String> members = ConcurrentHashMap.newKeySet(); // Thread-safe set
+        members.add(creator);
+        this.membership = Membership.ofNames(members);
     }
 
     public boolean isEmpty() {
-        return members.isEmpty();
+        return memberCount() == 0;
     }
 
     @Override
     public String toString() {
         return String.format("Grupo '%s' (%d membros) - Criado por %s",
-                name, members.size(), creator);
+                name, memberCount(), creator);
     }
 
     public boolean isGroupEmpty() {
-        return members.isEmpty();
+        return memberCount() == 0;
     }
 
-    public void addMember(String member) {
-        if (members.contains(member)) {
+    public synchronized void addMember(String member) {
+        if (hasMember(member)) {
             throw new IllegalArgumentException("Usuário já é membro do grupo");
         }
-        members.add(member);
+        Membership current = membership;
+        if (current.isBitmapBacked()) {
+            RoaringBitmap updated = current.bitmap().copy();
+            updated.add(current.resolver().idOf(member));
+            membership = Membership.ofBitmap(updated, current.resolver());
+        } else {
+            current.names.add(member);
+        }
+    }
+
+    /**
+     * Adiciona vários membros de uma vez (ignora quem já é membro), com uma única cópia do bitmap.
+     */
+    public synchronized void addMembers(Collection<String> newMembers) {
+        Membership current = membership;
+        if (current.isBitmapBacked()) {
+            RoaringBitmap updated = current.bitmap().copy();
+            for (String member : newMembers) {
+                updated.add(current.resolver().idOf(member));
+            }
+            updated.runOptimize();
+            membership = Membership.ofBitmap(updated, current.resolver());
+        } else {
+            current.names.addAll(newMembers);
+        }
     }
 
-    public void removeMember(String member) {
-        if (!members.contains(member)) {
+    public synchronized void removeMember(String member) {
+        if (!hasMember(member)) {
             throw new IllegalArgumentException("Usuário não é um membro");
         }
-        members.remove(member);
+        Membership current = membership;
+        if (current.isBitmapBacked()) {
+            RoaringBitmap updated = current.bitmap().copy();
+            updated.remove(current.resolver().findId(member));
+            membership = Membership.ofBitmap(updated, current.resolver());
+        } else {
+            current.names.remove(member);
+        }
+        if (qualifiedSenders != null) {
+            qualifiedSenders.remove(member);
+        }
+    }
+
+    /**
+     * Remetente qualificado pelo grupo ({@code membro@grupo}), calculado uma vez por membro.
+     */
+    public String qualifiedSender(String member) {
+        Map<String, String> cache = qualifiedSenders;
+        if (cache == null) {
+            synchronized (this) {
+                if (qualifiedSenders == null) {
+                    qualifiedSenders = new ConcurrentHashMap<>();
+                }
+                cache = qualifiedSenders;
+            }
+        }
+        String qualified = cache.get(member);
+        if (qualified == null) {
+            qualified = member + "@" + name;
+            cache.putIfAbsent(member, qualified);
+        }
+        return qualified;
+    }
+
+    /**
+     * Representação atual dos membros. Use a mesma instância para todas as leituras de uma
+     * operação (ex.: um fan-out) para não misturar representações durante uma conversão.
+     */
+    public Membership membership() {
+        return membership;
     }
 
     public boolean hasMember(String member) {
-        return members.contains(member);
+        return membership.contains(member);
     }
-}
 
+    public int memberCount() {
+        return membership.size();
+    }
+
+    public boolean isBitmapBacked() {
+        return membership.isBitmapBacked();
+    }
+
+    /**
+     * Percorre os membros; em grupos com bitmap a ordem é a dos identificadores.
+     */
+    public void forEachMember(Consumer<String> consumer) {
+        membership.forEach(consumer);
+    }
+
+    /**
+     * Cópia somente leitura dos membros. Em grupos grandes prefira {@link #forEachMember(Consumer)}.
+     */
+    public Set<String> getMembers() {
+        Membership current = membership;
+        if (!current.isBitmapBacked()) {
+            return Collections.unmodifiableSet(current.names);
+        }
+        Set<String> snapshot = new HashSet<>(current.size());
+        current.forEach(snapshot::add);
+        return Collections.unmodifiableSet(snapshot);
+    }
+
+    /**
+     * Passa a representar os membros em bitmap sobre os identificadores do resolver.
+     */
+    public synchronized void convertToBitmap(UserIdResolver userIdResolver) {
+        Membership current = membership;
+        if (current.isBitmapBacked()) {
+            return;
+        }
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (String member : current.names) {
+            bitmap.add(userIdResolver.idOf(member));
+        }
+        // Membros que se cadastraram em sequência têm ids contíguos
+        bitmap.runOptimize();
+        membership = Membership.ofBitmap(bitmap, userIdResolver);
+    }
+
+    /**
+     * Volta a representar os membros em um conjunto de nomes.
+     */
+    public synchronized void convertToHashSet() {
+        Membership current = membership;
+        if (!current.isBitmapBacked()) {
+            return;
+        }
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        current.forEach(set::add);
+        membership = Membership.ofNames(set);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("creator", creator);
+        fields.put("createdAt", createdAt);
+        fields.put("members", new HashSet<>(getMembers()));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.name = (String) fields.get("name", null);
+        this.creator = (String) fields.get("creator", null);
+        this.createdAt = (LocalDateTime) fields.get("createdAt", null);
+        Set<String> received = (Set<String>) fields.get("members", null);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        if (received != null) {
+            names.addAll(received);
+        }
+        this.membership = Membership.ofNames(names);
+    }
+
+    /**
+     * Membros em uma das duas representações: conjunto de nomes (alterado no lugar, é
+     * concorrente) ou bitmap com o resolver que o interpreta (nunca alterado, trocado por cópia).
+     */
+    public static final class Membership {
+        private final Set<String> names;
+        private final RoaringBitmap bitmap;
+        private final UserIdResolver resolver;
+
+        private Membership(Set<String> names, RoaringBitmap bitmap, UserIdResolver resolver) {
+            this.names = names;
+            this.bitmap = bitmap;
+            this.resolver = resolver;
+        }
+
+        static Membership ofNames(Set<String> names) {
+            return new Membership(names, null, null);
+        }
+
+        static Membership ofBitmap(RoaringBitmap bitmap, UserIdResolver resolver) {
+            return new Membership(null, bitmap, resolver);
+        }
+
+        public boolean isBitmapBacked() {
+            return bitmap != null;
+        }
+
+        /**
+         * Bitmap dos identificadores; {@code null} se os membros estão em conjunto de nomes.
+         * Não deve ser alterado.
+         */
+        public RoaringBitmap bitmap() {
+            return bitmap;
+        }
+
+        public UserIdResolver resolver() {
+            return resolver;
+        }
+
+        public boolean contains(String member) {
+            if (bitmap != null) {
+                int id = resolver.findId(member);
+                return id >= 0 && bitmap.contains(id);
+            }
+            return names.contains(member);
+        }
+
+        public int size() {
+            return bitmap != null ? bitmap.cardinality() : names.size();
+        }
+
+        public void forEach(Consumer<String> consumer) {
+            if (bitmap != null) {
+                bitmap.forEach(id -> consumer.accept(resolver.nameOf(id)));
+            } else {
+                names.forEach(consumer);
+            }
+        }
+    }
+}
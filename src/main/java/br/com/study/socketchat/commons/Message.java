@@ -3,31 +3,70 @@ package br.com.study.socketchat.commons;
 import br.com.study.socketchat.commons.enums.MessageType;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.List;
 
 /**
  * Classe que representa uma mensagem no sistema de chat
  * Implementa Serializable para permitir transmissão via socket
+ * <p>
+ * Na rede só o cabeçalho (tipo, remetente, destino e metadados de entrega) usa a
+ * serialização padrão; {@code content} e {@code fileName} seguem como bytes UTF-8 opacos
+ * ({@link EncodedText}). O servidor roteia pelo cabeçalho e repassa os bytes recebidos
+ * aos destinatários e à fila offline sem decodificá-los: o texto só é montado quando
+ * alguém chama {@link #getContent()} ou {@link #getFileName()}.
  */
 @Data
 @NoArgsConstructor
 public class Message implements Serializable {
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("type", MessageType.class),
+            new ObjectStreamField("from", String.class),
+            new ObjectStreamField("to", String.class),
+            new ObjectStreamField("timestamp", LocalDateTime.class),
+            new ObjectStreamField("sequence", long.class),
+            new ObjectStreamField("resumeToken", String.class),
+            new ObjectStreamField("messageId", long.class),
+            new ObjectStreamField("recipients", List.class)
+    };
+
     private MessageType type;
     private String from;
     private String to;
     private String content;
     private LocalDateTime timestamp;
     private String fileName;
+    // Número de sequência da mensagem no sentido em que trafega (ex.: cliente -> servidor); 0 = sem sequência
+    private long sequence;
+    // Token de retomada de sessão, trocado no LOGIN / LOGIN_SUCCESS
+    private String resumeToken;
+    // Identificador atribuído pelo servidor a mensagens de conteúdo; permite ao cliente descartar reentregas
+    private long messageId;
+    // Destinatários de uma MULTI_PRIVATE_MESSAGE; no relatório de entrega, os que falharam
+    private List<String> recipients;
+    // Carimbos de tempo por salto no servidor; não viaja pela rede
+    @ToString.Exclude
+    private transient MessageTrace trace;
+    // Forma codificada de content e fileName; qualquer uma das duas formas pode estar ausente
+    @ToString.Exclude
+    private transient EncodedText encodedContent;
+    @ToString.Exclude
+    private transient EncodedText encodedFileName;
 
     public Message(MessageType type, String from, String to, String content) {
         this.type = type;
         this.from = from;
         this.to = to;
         this.content = content;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = MessageClock.now();
     }
 
     public Message(MessageType type, String sender, String recipient, byte[] fileData, String fileName) {
@@ -36,11 +75,127 @@ public class Message implements Serializable {
         this.to = recipient;
         this.content = Base64.getEncoder().encodeToString(fileData);
         this.fileName = fileName;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = MessageClock.now();
+    }
+
+    /**
+     * Cópia rasa, usada para dar a cada destinatário sua própria sequência de entrega.
+     */
+    public Message copy() {
+        Message copy = new Message();
+        copy.type = type;
+        copy.from = from;
+        copy.to = to;
+        copy.content = content;
+        copy.timestamp = timestamp;
+        copy.fileName = fileName;
+        copy.sequence = sequence;
+        copy.resumeToken = resumeToken;
+        copy.messageId = messageId;
+        copy.recipients = recipients;
+        copy.trace = trace == null ? null : trace.branch();
+        copy.encodedContent = encodedContent;
+        copy.encodedFileName = encodedFileName;
+        return copy;
+    }
+
+    /**
+     * Usa o conteúdo de outra mensagem na forma em que estiver (codificada ou não), sem decodificar.
+     */
+    public void copyContentFrom(Message source) {
+        content = source.content;
+        encodedContent = source.encodedContent;
+    }
+
+    /**
+     * Usa como conteúdo uma fatia dos bytes do conteúdo de outra mensagem, sem copiá-los.
+     * Retorna quantos bytes foram usados (pode ser menos que {@code maxLength} para não
+     * partir um caractere).
+     */
+    public int copyContentRange(Message source, int from, int maxLength) {
+        EncodedText slice = source.getEncodedContent().slice(from, maxLength);
+        setEncodedContent(slice);
+        return slice.length();
+    }
+
+    public String getContent() {
+        if (content == null && encodedContent != null) {
+            content = encodedContent.decode();
+        }
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.encodedContent = null;
+    }
+
+    public String getFileName() {
+        if (fileName == null && encodedFileName != null) {
+            fileName = encodedFileName.decode();
+        }
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+        this.encodedFileName = null;
+    }
+
+    public EncodedText getEncodedContent() {
+        if (encodedContent == null && content != null) {
+            encodedContent = EncodedText.of(content);
+        }
+        return encodedContent;
+    }
+
+    public void setEncodedContent(EncodedText encodedContent) {
+        this.encodedContent = encodedContent;
+        this.content = null;
+    }
+
+    public EncodedText getEncodedFileName() {
+        if (encodedFileName == null && fileName != null) {
+            encodedFileName = EncodedText.of(fileName);
+        }
+        return encodedFileName;
+    }
+
+    public void setEncodedFileName(EncodedText encodedFileName) {
+        this.encodedFileName = encodedFileName;
+        this.fileName = null;
+    }
+
+    /**
+     * Tamanho do conteúdo em bytes UTF-8.
+     */
+    public int contentSize() {
+        EncodedText encoded = getEncodedContent();
+        return encoded == null ? 0 : encoded.length();
+    }
+
+    /**
+     * Bytes de conteúdo e nome de arquivo, usados na contabilidade de memória.
+     */
+    public long payloadSize() {
+        EncodedText name = getEncodedFileName();
+        return contentSize() + (name == null ? 0 : name.length());
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        EncodedText.write(out, getEncodedContent());
+        EncodedText.write(out, getEncodedFileName());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        encodedContent = EncodedText.read(in);
+        encodedFileName = EncodedText.read(in);
     }
 
     public byte[] getFileData() {
-        return Base64.getDecoder().decode(content);
+        return Base64.getDecoder().decode(getContent());
     }
 
 }
@@ -0,0 +1,28 @@
+package br.com.study.socketchat.commons;
+
+import java.time.LocalDateTime;
+
+/**
+ * Relógio com resolução de milissegundo para o timestamp das mensagens.
+ * Mantém o último {@link LocalDateTime} calculado e só cria outro quando o
+ * milissegundo muda, evitando uma alocação por mensagem sob carga.
+ */
+public final class MessageClock {
+    private static volatile Tick lastTick = new Tick(Long.MIN_VALUE, null);
+
+    private MessageClock() {
+    }
+
+    public static LocalDateTime now() {
+        long millis = System.currentTimeMillis();
+        Tick tick = lastTick;
+        if (tick.millis != millis) {
+            tick = new Tick(millis, LocalDateTime.now());
+            lastTick = tick;
+        }
+        return tick.time;
+    }
+
+    private record Tick(long millis, LocalDateTime time) {
+    }
+}
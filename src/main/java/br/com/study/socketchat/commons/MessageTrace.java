@@ -0,0 +1,88 @@
+package br.com.study.socketchat.commons;
+
+import java.util.Arrays;
+
+/**
+ * Carimbos de tempo monotônicos ({@link System#nanoTime()}) de uma mensagem em cada salto
+ * pelo servidor. Não é serializado: existe só dentro do processo que o criou. Cada cópia
+ * entregue a um destinatário ganha o seu ({@link #branch()}), com os saltos comuns já
+ * preenchidos, e completa os de saída.
+ */
+public final class MessageTrace {
+
+    public enum Hop {
+        /** Primeiro byte da mensagem lido do socket. */
+        READ,
+        /** Mensagem desserializada. */
+        DECODE,
+        /** Admitida e entregue ao roteamento. */
+        ROUTE,
+        /** Gravada na fila offline do destinatário. */
+        STORE,
+        /** Enfileirada na faixa de saída do destinatário. */
+        ENQUEUE,
+        /** Escrita no socket do destinatário. */
+        WRITE
+    }
+
+    private static final Hop[] HOPS = Hop.values();
+
+    private final long[] stamps;
+
+    public MessageTrace(long readNanos, long decodeNanos) {
+        this.stamps = new long[HOPS.length];
+        stamps[Hop.READ.ordinal()] = readNanos;
+        stamps[Hop.DECODE.ordinal()] = decodeNanos;
+    }
+
+    private MessageTrace(long[] stamps) {
+        this.stamps = stamps;
+    }
+
+    public void stamp(Hop hop, long nanos) {
+        stamps[hop.ordinal()] = nanos;
+    }
+
+    public boolean has(Hop hop) {
+        return stamps[hop.ordinal()] != 0;
+    }
+
+    /**
+     * Tempo entre dois saltos, ou -1 se algum deles não foi carimbado.
+     */
+    public long between(Hop from, Hop to) {
+        long start = stamps[from.ordinal()];
+        long end = stamps[to.ordinal()];
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    /**
+     * Cópia para uma entrega: mantém os saltos de entrada, sem os de saída.
+     */
+    public MessageTrace branch() {
+        long[] copy = Arrays.copyOf(stamps, stamps.length);
+        copy[Hop.STORE.ordinal()] = 0;
+        copy[Hop.ENQUEUE.ordinal()] = 0;
+        copy[Hop.WRITE.ordinal()] = 0;
+        return new MessageTrace(copy);
+    }
+
+    /**
+     * Saltos carimbados, em milissegundos desde a leitura (ex.: {@code READ+0.000 DECODE+0.120 ...}).
+     */
+    @Override
+    public String toString() {
+        long origin = stamps[Hop.READ.ordinal()];
+        StringBuilder text = new StringBuilder();
+        for (Hop hop : HOPS) {
+            long stamp = stamps[hop.ordinal()];
+            if (stamp != 0) {
+                if (!text.isEmpty()) {
+                    text.append(' ');
+                }
+                text.append(hop).append('+').append(String.format("%.3f", (stamp - origin) / 1e6));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,829 @@
+package br.com.study.socketchat.commons.bitmap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Bitmap comprimido no estilo "roaring" para conjuntos de inteiros não negativos.
+ * Os valores são particionados pelos 16 bits mais altos; cada partição usa um
+ * container em array ordenado (partições esparsas) ou em bitmap de 64 Kbits
+ * (partições densas), convertendo automaticamente entre os dois. {@link #runOptimize()}
+ * passa para sequências (início, comprimento) as partições em que isso ocupa menos,
+ * o caso de faixas contínuas de identificadores densos.
+ * Não é thread-safe: quem compartilha instâncias deve sincronizar ou copiar.
+ */
+public class RoaringBitmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new char[INITIAL_CAPACITY];
+        this.containers = new Container[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    private RoaringBitmap(int capacity) {
+        this.keys = new char[Math.max(capacity, INITIAL_CAPACITY)];
+        this.containers = new Container[Math.max(capacity, INITIAL_CAPACITY)];
+        this.size = 0;
+    }
+
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public boolean add(int value) {
+        checkValue(value);
+        char key = highBits(value);
+        int index = findKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add(lowBits(value));
+        return containers[index].cardinality() > before;
+    }
+
+    public boolean remove(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = findKey(highBits(value));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        Container updated = container.remove(lowBits(value));
+        if (updated.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = updated;
+        }
+        return updated.cardinality() < before;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = findKey(highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Percorre os valores em ordem crescente.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Percorre os valores em ordem crescente enquanto {@code action} retornar true.
+     * Retorna false se o percurso foi interrompido.
+     */
+    public boolean forEachWhile(IntPredicate action) {
+        for (int i = 0; i < size; i++) {
+            if (!containers[i].forEachWhile(keys[i] << 16, action)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Interseção (this ∩ other), sem alterar nenhum dos operandos.
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.min(size, other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] == other.keys[j]) {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+                i++;
+                j++;
+            } else if (keys[i] < other.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Diferença (this \ other), sem alterar nenhum dos operandos.
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = (j < other.size && other.keys[j] == keys[i])
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.appendContainer(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * União (this ∪ other), sem alterar nenhum dos operandos.
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= size || other.keys[j] < keys[i]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converte para sequências as partições em que elas ocupam menos que array ou bitmap.
+     * Operações de conjunto produzem containers em array ou bitmap; adições e remoções
+     * mantêm uma partição em sequências enquanto ela continuar sendo a menor forma.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap result = new RoaringBitmap(size);
+        for (int i = 0; i < size; i++) {
+            result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Estimativa do espaço ocupado pelos containers, em bytes.
+     */
+    public long sizeInBytes() {
+        long total = (long) keys.length * Character.BYTES;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].sizeInBytes();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "RoaringBitmap{cardinality=" + cardinality() + ", containers=" + size + "}";
+    }
+
+    /**
+     * Tipo do container da partição de {@code value} ("array", "bitmap" ou "run"), ou null.
+     */
+    String containerType(int value) {
+        int index = findKey(highBits(value));
+        if (index < 0) {
+            return null;
+        }
+        Container container = containers[index];
+        return container instanceof ArrayContainer ? "array" : container instanceof BitmapContainer ? "bitmap" : "run";
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Valor negativo não suportado: " + value);
+        }
+    }
+
+    private static char highBits(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    private int findKey(char key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char current = keys[middle];
+            if (current < key) {
+                low = middle + 1;
+            } else if (current > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int newCapacity = Math.max(capacity, keys.length * 2);
+            keys = Arrays.copyOf(keys, newCapacity);
+            containers = Arrays.copyOf(containers, newCapacity);
+        }
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private void appendContainer(char key, Container container) {
+        ensureCapacity(size + 1);
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    private abstract static class Container implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract boolean forEachWhile(int high, IntPredicate action);
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+
+        abstract BitmapContainer toBitmap();
+
+        /**
+         * Número de sequências de valores consecutivos.
+         */
+        abstract int runCount();
+
+        Container runOptimize() {
+            int runs = runCount();
+            return RunContainer.sizeOf(runs) < serializedSize(cardinality()) ? RunContainer.of(this, runs) : this;
+        }
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer array) {
+                return array.filter(other, true);
+            }
+            if (other instanceof ArrayContainer array) {
+                return array.filter(this, true);
+            }
+            return toBitmap().combine(other.toBitmap(), Operation.AND);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer array) {
+                return array.filter(other, false);
+            }
+            return toBitmap().combine(other.toBitmap(), Operation.AND_NOT);
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer left && other instanceof ArrayContainer right
+                    && left.cardinality + right.cardinality <= ArrayContainer.MAX_CARDINALITY) {
+                return left.merge(right);
+            }
+            return toBitmap().combine(other.toBitmap(), Operation.OR);
+        }
+    }
+
+    private enum Operation { AND, AND_NOT, OR }
+
+    /**
+     * Menor tamanho, em bytes, entre array e bitmap para a cardinalidade.
+     */
+    private static int serializedSize(int cardinality) {
+        return cardinality <= ArrayContainer.MAX_CARDINALITY
+                ? cardinality * Character.BYTES
+                : BitmapContainer.WORDS * Long.BYTES;
+    }
+
+    /**
+     * Partição esparsa: até 4096 valores em um array ordenado.
+     */
+    private static final class ArrayContainer extends Container {
+        private static final long serialVersionUID = 1L;
+        private static final int MAX_CARDINALITY = 4096;
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[INITIAL_CAPACITY], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= MAX_CARDINALITY) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_CARDINALITY, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        boolean forEachWhile(int high, IntPredicate action) {
+            for (int i = 0; i < cardinality; i++) {
+                if (!action.test(high | values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, INITIAL_CAPACITY)), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) values.length * Character.BYTES;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        int runCount() {
+            int runs = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        ArrayContainer filter(Container other, boolean keepPresent) {
+            char[] result = new char[Math.max(cardinality, INITIAL_CAPACITY)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i]) == keepPresent) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] result = new char[Math.max(cardinality + other.cardinality, INITIAL_CAPACITY)];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j >= other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i >= cardinality || other.values[j] < values[i]) {
+                    result[count++] = other.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+    }
+
+    /**
+     * Partição densa: 65536 bits fixos (8 KB).
+     */
+    private static final class BitmapContainer extends Container {
+        private static final long serialVersionUID = 1L;
+        private static final int WORDS = 1024;
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char value) {
+            int index = value >>> 6;
+            long mask = 1L << value;
+            if ((words[index] & mask) == 0) {
+                words[index] |= mask;
+                cardinality++;
+            }
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = value >>> 6;
+            long mask = 1L << value;
+            if ((words[index] & mask) != 0) {
+                words[index] &= ~mask;
+                cardinality--;
+            }
+            return cardinality <= ArrayContainer.MAX_CARDINALITY ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        boolean forEachWhile(int high, IntPredicate action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    if (!action.test(high | (i << 6) | Long.numberOfTrailingZeros(word))) {
+                        return false;
+                    }
+                    word &= word - 1;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) WORDS * Long.BYTES;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        @Override
+        int runCount() {
+            int runs = 0;
+            long previous = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                // Bits ligados cujo anterior (inclusive o último da palavra anterior) está desligado
+                runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+                previous = word;
+            }
+            return runs;
+        }
+
+        Container combine(BitmapContainer other, Operation operation) {
+            long[] result = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = switch (operation) {
+                    case AND -> words[i] & other.words[i];
+                    case AND_NOT -> words[i] & ~other.words[i];
+                    case OR -> words[i] | other.words[i];
+                };
+                count += Long.bitCount(result[i]);
+            }
+            BitmapContainer container = new BitmapContainer(result, count);
+            return count <= ArrayContainer.MAX_CARDINALITY ? container.toArrayContainer() : container;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(cardinality, INITIAL_CAPACITY)];
+            int[] position = {0};
+            forEach(0, value -> values[position[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+
+    /**
+     * Partição em sequências de valores consecutivos: pares (início, comprimento - 1)
+     * ordenados. Depois de cada alteração volta para array ou bitmap se ficar maior que eles.
+     */
+    private static final class RunContainer extends Container {
+        private static final long serialVersionUID = 1L;
+
+        private char[] runs;
+        private int runCount;
+        private int cardinality;
+
+        RunContainer(char[] runs, int runCount, int cardinality) {
+            this.runs = runs;
+            this.runCount = runCount;
+            this.cardinality = cardinality;
+        }
+
+        static int sizeOf(int runs) {
+            return runs * 2 * Character.BYTES;
+        }
+
+        static RunContainer of(Container container, int runCount) {
+            char[] runs = new char[Math.max(runCount, 1) * 2];
+            int[] count = {0};
+            int[] end = {-2};
+            container.forEach(0, value -> {
+                if (value == end[0] + 1) {
+                    runs[2 * count[0] - 1]++;
+                } else {
+                    runs[2 * count[0]] = (char) value;
+                    runs[2 * count[0] + 1] = 0;
+                    count[0]++;
+                }
+                end[0] = value;
+            });
+            return new RunContainer(runs, count[0], container.cardinality());
+        }
+
+        private int start(int run) {
+            return runs[2 * run];
+        }
+
+        private int end(int run) {
+            return runs[2 * run] + runs[2 * run + 1];
+        }
+
+        /**
+         * Índice da última sequência que começa em {@code value} ou antes; -1 se nenhuma.
+         */
+        private int floorRun(int value) {
+            int low = 0;
+            int high = runCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (start(middle) <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        @Override
+        Container add(char value) {
+            int run = floorRun(value);
+            if (run >= 0 && value <= end(run)) {
+                return this;
+            }
+            boolean extendsPrevious = run >= 0 && end(run) + 1 == value;
+            boolean extendsNext = run + 1 < runCount && start(run + 1) == value + 1;
+            if (extendsPrevious && extendsNext) {
+                runs[2 * run + 1] = (char) (end(run + 1) - start(run));
+                removeRun(run + 1);
+            } else if (extendsPrevious) {
+                runs[2 * run + 1]++;
+            } else if (extendsNext) {
+                runs[2 * (run + 1)] = value;
+                runs[2 * (run + 1) + 1]++;
+            } else {
+                insertRun(run + 1, value, 0);
+            }
+            cardinality++;
+            return toSmallest();
+        }
+
+        @Override
+        Container remove(char value) {
+            int run = floorRun(value);
+            if (run < 0 || value > end(run)) {
+                return this;
+            }
+            int start = start(run);
+            int end = end(run);
+            if (start == end) {
+                removeRun(run);
+            } else if (value == start) {
+                runs[2 * run] = (char) (start + 1);
+                runs[2 * run + 1]--;
+            } else if (value == end) {
+                runs[2 * run + 1]--;
+            } else {
+                runs[2 * run + 1] = (char) (value - 1 - start);
+                insertRun(run + 1, value + 1, end - value - 1);
+            }
+            cardinality--;
+            return toSmallest();
+        }
+
+        private void insertRun(int index, int start, int lengthMinusOne) {
+            if (2 * (runCount + 1) > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            System.arraycopy(runs, 2 * index, runs, 2 * index + 2, 2 * (runCount - index));
+            runs[2 * index] = (char) start;
+            runs[2 * index + 1] = (char) lengthMinusOne;
+            runCount++;
+        }
+
+        private void removeRun(int index) {
+            System.arraycopy(runs, 2 * index + 2, runs, 2 * index, 2 * (runCount - index - 1));
+            runCount--;
+        }
+
+        private Container toSmallest() {
+            if (sizeOf(runCount) <= serializedSize(cardinality)) {
+                return this;
+            }
+            BitmapContainer bitmap = toBitmap();
+            return cardinality <= ArrayContainer.MAX_CARDINALITY ? bitmap.toArrayContainer() : bitmap;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int run = floorRun(value);
+            return run >= 0 && value <= end(run);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run), end = end(run); value <= end; value++) {
+                    consumer.accept(high | value);
+                }
+            }
+        }
+
+        @Override
+        boolean forEachWhile(int high, IntPredicate action) {
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run), end = end(run); value <= end; value++) {
+                    if (!action.test(high | value)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, Math.max(runCount, 1) * 2), runCount, cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) runs.length * Character.BYTES;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            forEach(0, value -> bitmap.set((char) value));
+            return bitmap;
+        }
+
+        @Override
+        int runCount() {
+            return runCount;
+        }
+
+        @Override
+        Container runOptimize() {
+            return toSmallest();
+        }
+    }
+}
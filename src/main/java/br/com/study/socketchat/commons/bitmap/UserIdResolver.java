@@ -0,0 +1,20 @@
+package br.com.study.socketchat.commons.bitmap;
+
+/**
+ * Traduz nomes de usuário para identificadores inteiros densos (0, 1, 2, ...)
+ * usados pelas estruturas em bitmap, e vice-versa.
+ */
+public interface UserIdResolver {
+
+    /**
+     * Retorna o identificador do usuário, atribuindo um novo se ainda não existir.
+     */
+    int idOf(String username);
+
+    /**
+     * Retorna o identificador do usuário ou -1 se ele nunca recebeu um.
+     */
+    int findId(String username);
+
+    String nameOf(int id);
+}
@@ -9,10 +9,19 @@ public enum MessageType {
     LOGIN_SUCCESS,
     LOGIN_FAILED,
     DISCONNECT,
+    // Conexão multiplexada (gateways): o primeiro objeto da conexão é MULTIPLEX e, depois de
+    // MULTIPLEX_ACCEPTED, cada frame leva o número do stream antes da mensagem; cada stream faz
+    // seu próprio LOGIN. STREAM_CLOSED avisa que a sessão de um stream terminou
+    MULTIPLEX,
+    MULTIPLEX_ACCEPTED,
+    STREAM_CLOSED,
 
     // Mensagens de texto
     PRIVATE_MESSAGE,
     GROUP_MESSAGE,
+    // Um texto para vários destinatários (recipients); chega a cada um como PRIVATE_MESSAGE
+    MULTI_PRIVATE_MESSAGE,
+    MULTI_DELIVERY_REPORT,
 
     // Gerenciamento de grupos
     CREATE_GROUP,
@@ -25,20 +34,52 @@ public enum MessageType {
     GROUP_LEFT,
     GROUP_LEAVE_FAILED,
 
+    // Canais de avisos: só o dono publica, os inscritos recebem CHANNEL_POST (to = canal)
+    CREATE_CHANNEL,
+    CHANNEL_CREATED,
+    SUBSCRIBE_CHANNEL,
+    CHANNEL_SUBSCRIBED,
+    UNSUBSCRIBE_CHANNEL,
+    CHANNEL_UNSUBSCRIBED,
+    CHANNEL_POST,
+    CHANNEL_FAILED,
+
     // Arquivos
     FILE_MESSAGE,
     FILE_GROUP,
     FILE_RECEIVED,
+    // Fatia de um arquivo em transferência; o último pedaço chega como FILE_MESSAGE / FILE_GROUP
+    FILE_CHUNK,
 
     // Informações do servidor
     USERS_LIST,
     GROUPS_LIST,
     REQUEST_USERS_LIST,
     REQUEST_GROUPS_LIST,
+    CHANNELS_LIST,
+    REQUEST_CHANNELS_LIST,
+    // Busca no diretório (content = texto; @ só usuários, # só grupos) e a resposta, uma linha por resultado
+    SEARCH_DIRECTORY,
+    DIRECTORY_RESULTS,
+
+    // Mensagens agendadas: to = usuário ou #grupo, timestamp = horário de envio em UTC;
+    // o cancelamento leva o id no content
+    SCHEDULE_MESSAGE,
+    SCHEDULE_CONFIRMED,
+    CANCEL_SCHEDULED,
+    REQUEST_SCHEDULED_LIST,
+    SCHEDULED_LIST,
 
     // Sistema
     SERVER_MESSAGE,
     ERROR_MESSAGE,
-    HEARTBEAT
+    HEARTBEAT,
+    // Confirmação cumulativa (nos dois sentidos): sequence = maior número de sequência processado
+    ACK,
+    // Mensagem descartada pelo controle de admissão (servidor -> cliente): sequence = sequência
+    // descartada, content = motivo. Chega antes do ACK que a cobre; a mensagem não será processada
+    REJECTED,
+    // Créditos de envio (servidor -> cliente): sequence = maior sequência que o cliente pode enviar
+    CREDIT
 }
 
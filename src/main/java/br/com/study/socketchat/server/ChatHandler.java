@@ -2,44 +2,122 @@ package br.com.study.socketchat.server;
 
 import br.com.study.socketchat.commons.Group;
 import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.MessageTrace;
 import br.com.study.socketchat.commons.User;
 import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.admission.AdmissionController;
+import br.com.study.socketchat.server.admission.AdmissionDecision;
+import br.com.study.socketchat.server.admission.LoginPacer;
+import br.com.study.socketchat.server.capture.TrafficCapture;
+import br.com.study.socketchat.server.channel.BroadcastChannel;
+import br.com.study.socketchat.server.channel.service.ChannelService;
+import br.com.study.socketchat.server.directory.DirectoryEntry;
+import br.com.study.socketchat.server.directory.service.DirectoryService;
+import br.com.study.socketchat.server.flow.CreditController;
+import br.com.study.socketchat.server.flow.SessionCredits;
 import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.jfr.MessageDispatchEvent;
+import br.com.study.socketchat.server.memory.SessionMemory;
+import br.com.study.socketchat.server.memory.SessionMemoryMonitor;
+import br.com.study.socketchat.server.outbound.OutboundQueue;
+import br.com.study.socketchat.server.outbound.OutboundScheduler;
+import br.com.study.socketchat.server.outbound.OutboundStats;
+import br.com.study.socketchat.server.schedule.ScheduledMessage;
+import br.com.study.socketchat.server.schedule.service.ScheduleService;
 import br.com.study.socketchat.server.service.ChatService;
+import br.com.study.socketchat.server.session.ResumeState;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
 import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.trace.ArrivalStampingInputStream;
+import br.com.study.socketchat.server.trace.LatencyTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Component;
 
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handler para gerenciar a comunicação com um cliente específico
  * Cada cliente conectado tem sua própria thread com este handler
+ * (instanciado por {@link ChatHandlerFactory}). Numa conexão multiplexada, cada stream é
+ * uma sessão com o seu handler, sem thread nem streams próprios (ver {@link MultiplexedConnection})
  */
-@Component
-@Scope("prototype")
 public class ChatHandler implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ChatHandler.class);
     private static final String SERVER_USER = "SERVER";
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+    private static final int ACK_BATCH_SIZE = 32;
+    private static final long WRITER_DRAIN_MILLIS = 2_000;
+    private static final int LOGIN_TIMEOUT_MILLIS = 30_000;
 
     private Socket clientSocket;
     private final SessionManager sessionManager;
     private final ChatService chatService;
     private final GroupService groupService;
+    private final ChannelService channelService;
+    private final AdmissionController admissionController;
+    private final LoginPacer loginPacer;
+    private final OutboundStats outboundStats;
+    private final TrafficCapture trafficCapture;
+    private final LatencyTracer latencyTracer;
+    private final CreditController creditController;
+    private final DirectoryService directoryService;
+    private final ScheduleService scheduleService;
+    private final SessionMemoryMonitor sessionMemoryMonitor;
+    private int captureSession;
+    private ArrivalStampingInputStream arrivalStream;
     private ObjectInputStream inputStream;
     private ObjectOutputStream outputStream;
+    private OutboundQueue outbound;
+    // Escritor da conexão (numa conexão multiplexada, compartilhado pelos streams)
+    private OutboundScheduler connectionOutbound;
+    private SessionMemory memory;
+    // Só nas sessões de uma conexão multiplexada
+    private MultiplexedConnection connection;
+    private int streamId;
+    private boolean acknowledgementDeferred;
+    // Serializa entregas com o login, para que retransmissões e fila offline venham antes de mensagens novas
+    private final Object deliveryLock = new Object();
+    // Entre o login e a reposição agendada, entregas vão para a fila offline (ver deliver)
+    private boolean replayPending;
+    // Janela de retransmissão cheia: entregas vão para a fila offline até os ACKs a esvaziarem
+    private volatile boolean windowFull;
     private String username;
-    private boolean isConnected = true;
-
-    public ChatHandler(SessionManager sessionManager, ChatService chatService, GroupService groupService) {
+    private volatile boolean isConnected = true;
+    private ResumeState resumeState;
+    // Lido por quem entrega mensagens desta sessão a outras conexões
+    private volatile SessionCredits credits;
+    private int unacknowledgedInbound;
+    // Respostas de rejeição reaproveitadas: sob flood o mesmo objeto é reenviado (apenas um handle no stream)
+    private final Message[] rateLimitedReplies = new Message[MESSAGE_TYPES.length];
+    private final Message[] shedReplies = new Message[MESSAGE_TYPES.length];
+    private final Message[] noCreditReplies = new Message[MESSAGE_TYPES.length];
+
+    public ChatHandler(SessionManager sessionManager, ChatService chatService, GroupService groupService,
+                       ChannelService channelService, AdmissionController admissionController,
+                       LoginPacer loginPacer, OutboundStats outboundStats, TrafficCapture trafficCapture,
+                       LatencyTracer latencyTracer, CreditController creditController,
+                       DirectoryService directoryService, ScheduleService scheduleService,
+                       SessionMemoryMonitor sessionMemoryMonitor) {
         this.sessionManager = sessionManager;
         this.chatService = chatService;
         this.groupService = groupService;
+        this.channelService = channelService;
+        this.admissionController = admissionController;
+        this.loginPacer = loginPacer;
+        this.outboundStats = outboundStats;
+        this.trafficCapture = trafficCapture;
+        this.latencyTracer = latencyTracer;
+        this.creditController = creditController;
+        this.directoryService = directoryService;
+        this.scheduleService = scheduleService;
+        this.sessionMemoryMonitor = sessionMemoryMonitor;
     }
 
     public ChatHandler initialize(Socket clientSocket) {
@@ -48,28 +126,83 @@ public class ChatHandler implements Runnable {
         this.isConnected = true;
         this.inputStream = null;
         this.outputStream = null;
+        this.outbound = null;
+        this.replayPending = false;
+        this.windowFull = false;
+        this.credits = null;
+        this.captureSession = trafficCapture.openSession();
         return this;
     }
 
+    /**
+     * Sessão do stream {@code streamId} de uma conexão multiplexada, que lê as mensagens e as
+     * entrega a {@link #openStream(Message)} e {@link #receive(Message)}.
+     */
+    ChatHandler attachStream(MultiplexedConnection connection, int streamId, OutboundScheduler connectionOutbound) {
+        this.connection = connection;
+        this.streamId = streamId;
+        this.connectionOutbound = connectionOutbound;
+        this.outbound = connectionOutbound.openStream(streamId);
+        this.username = null;
+        this.isConnected = true;
+        this.replayPending = false;
+        this.windowFull = false;
+        this.credits = null;
+        this.captureSession = trafficCapture.openSession();
+        return this;
+    }
+
+    /**
+     * Novo handler com os mesmos serviços, para um stream de uma conexão multiplexada.
+     */
+    private ChatHandler newHandler() {
+        return new ChatHandler(sessionManager, chatService, groupService, channelService, admissionController,
+                loginPacer, outboundStats, trafficCapture, latencyTracer, creditController, directoryService,
+                scheduleService, sessionMemoryMonitor);
+    }
+
     @Override
     public void run() {
         if (clientSocket == null) {
             throw new IllegalStateException("ChatHandler needs to be initialized with a client socket");
         }
         try {
-            outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-            inputStream = new ObjectInputStream(clientSocket.getInputStream());
-
-            if (!authenticate()) {
+            outputStream = new ObjectOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+            outputStream.flush();
+            OutboundScheduler scheduler = new OutboundScheduler(outputStream, outboundStats, latencyTracer,
+                    sessionMemoryMonitor::getHandleTableLimitBytes, this::close);
+            scheduler.start(String.valueOf(clientSocket.getRemoteSocketAddress()));
+            outbound = scheduler;
+            connectionOutbound = scheduler;
+            // Conexões que não completam o login não seguram a thread indefinidamente
+            clientSocket.setSoTimeout(LOGIN_TIMEOUT_MILLIS);
+            arrivalStream = new ArrivalStampingInputStream(clientSocket.getInputStream());
+            inputStream = new ObjectInputStream(arrivalStream);
+
+            Message first = readFirstMessage();
+            if (first == null) {
+                return;
+            }
+            if (first.getType() == MessageType.MULTIPLEX) {
+                new MultiplexedConnection(clientSocket, inputStream, arrivalStream, scheduler, this::newHandler).run();
+                return;
+            }
+            if (!authenticate(first)) {
                 return;
             }
+            clientSocket.setSoTimeout(0);
 
             LOG.info("Cliente autenticado: {}", username);
 
             while (isConnected) {
                 try {
                     Message message = (Message) inputStream.readObject();
-                    handleMessage(message);
+                    long decoded = System.nanoTime();
+                    long arrival = arrivalStream.takeArrival();
+                    // Bytes já lidos junto com a mensagem anterior: a chegada fica sem medida própria
+                    message.setTrace(new MessageTrace(arrival == 0 ? decoded : arrival, decoded));
+                    trafficCapture.record(captureSession, message);
+                    processInbound(message);
                 } catch (SocketException e) {
                     LOG.info("Cliente desconectado: {}", username);
                     break;
@@ -88,16 +221,42 @@ public class ChatHandler implements Runnable {
         }
     }
 
-    private boolean authenticate() {
+    /**
+     * Primeira mensagem da conexão (LOGIN ou MULTIPLEX), ou null se ela não chegou a tempo.
+     */
+    private Message readFirstMessage() {
         try {
-            Message message = (Message) inputStream.readObject();
+            return (Message) inputStream.readObject();
+        } catch (SocketTimeoutException e) {
+            LOG.info("Conexão de {} sem login em {} ms, encerrando", clientSocket.getRemoteSocketAddress(), LOGIN_TIMEOUT_MILLIS);
+            return null;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean authenticate(Message message) {
+        try {
+            trafficCapture.record(captureSession, message);
             username = message.getFrom();
             if (message.getType() == MessageType.LOGIN) {
-                sessionManager.registerUser(message.getContent(), this);
-
-                Message sucess = new Message(MessageType.LOGIN_SUCCESS, SERVER_USER, username, "Login succeeded");
-                sendGenericMessage(sucess);
-                chatService.deliverOfflineMessages(username);
+                // Um stream não espera na fila: bloquearia a thread de leitura de todos os streams da conexão
+                boolean admitted = connection != null ? loginPacer.tryEnter() : loginPacer.enter();
+                if (!admitted) {
+                    sendGenericMessage(buildErrorMessage(MessageType.LOGIN_FAILED, "Servidor ocupado, tente novamente em instantes"));
+                    return false;
+                }
+                try {
+                    // Entregas concorrentes para este handler esperam o login e a retransmissão;
+                    // até a reposição agendada, as novas vão para a fila offline, preservando a ordem
+                    synchronized (deliveryLock) {
+                        replayPending = true;
+                        login(message);
+                    }
+                } finally {
+                    loginPacer.leave();
+                }
+                loginPacer.scheduleReplay(username, this::replayBacklog);
             } else {
                 sendGenericMessage(buildErrorMessage(MessageType.LOGIN_FAILED, "INVALID MESSAGE TYPE, FIRST MESSAGE TYPE SHOULD BE LOGIN"));
                 return false;
@@ -105,17 +264,241 @@ public class ChatHandler implements Runnable {
         } catch (IllegalArgumentException iae) {
             sendGenericMessage(buildErrorMessage(MessageType.LOGIN_FAILED, iae.getMessage()));
             return false;
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException(e);
         }
         return true;
     }
 
+    /**
+     * LOGIN que abre o stream desta sessão. Retorna false se o login falhou (o stream deve
+     * ser encerrado com {@link #endStream()}).
+     */
+    boolean openStream(Message login) {
+        if (!authenticate(login)) {
+            return false;
+        }
+        LOG.info("Cliente autenticado: {} (stream {})", username, streamId);
+        return true;
+    }
+
+    /**
+     * Próxima mensagem do stream desta sessão, lida pela conexão multiplexada.
+     */
+    void receive(Message message) throws IOException {
+        if (!isConnected) {
+            return;
+        }
+        trafficCapture.record(captureSession, message);
+        processInbound(message);
+    }
+
+    /**
+     * Envia a confirmação adiada pela conexão multiplexada até esvaziar a leitura.
+     */
+    void flushAcknowledgement() {
+        acknowledgementDeferred = false;
+        if (isConnected && unacknowledgedInbound > 0) {
+            sendAcknowledgement();
+        }
+    }
+
+    /**
+     * Encerra a sessão de um stream: devolve o que não foi confirmado e sai do SessionManager.
+     */
+    void endStream() {
+        isConnected = false;
+        cleanup();
+    }
+
+    /**
+     * Entrega a fila offline (incluindo o que chegou desde o login) e as publicações
+     * perdidas dos canais; executado pelo {@link LoginPacer} depois do login.
+     */
+    private void replayBacklog() {
+        synchronized (deliveryLock) {
+            replayPending = false;
+            if (!isConnected) {
+                // Conexão encerrada antes da reposição: tudo continua nas filas
+                return;
+            }
+            chatService.deliverOfflineMessages(username);
+            channelService.deliverPendingPosts(username, this);
+        }
+    }
+
+    private void login(Message message) {
+        ResumeState previous = sessionManager.findResumeState(username, message.getResumeToken());
+        List<Message> unsent = List.of();
+        if (previous != null) {
+            // Reconexão do mesmo cliente: assume a sessão e continua da última sequência processada.
+            // O lock do estado exclui o cleanup do handler anterior (ver cleanup)
+            synchronized (previous) {
+                ChatHandler stale = sessionManager.takeOverSession(username, this);
+                if (stale != null && stale != this) {
+                    unsent = stale.stop();
+                }
+                resumeState = previous;
+            }
+            LOG.info("Sessão retomada: {} (última sequência {})", username, previous.getLastInboundSequence());
+        } else {
+            sessionManager.registerUser(message.getContent(), this);
+            resumeState = sessionManager.newResumeState(username);
+        }
+
+        Message sucess = new Message(MessageType.LOGIN_SUCCESS, SERVER_USER, username, "Login succeeded");
+        sucess.setSequence(resumeState.getLastInboundSequence());
+        sucess.setResumeToken(resumeState.getToken());
+        sendGenericMessage(sucess);
+        // Primeira janela de créditos logo atrás do LOGIN_SUCCESS; até ela o cliente não envia
+        credits = creditController.open(username, resumeState.getLastInboundSequence(), this::sendGenericMessage);
+        outbound.setRetransmitBuffer(resumeState.getOutbound());
+        memory = sessionMemoryMonitor.open(username, streamId, outbound, connectionOutbound, resumeState.getOutbound(),
+                this::evict);
+
+        if (previous != null) {
+            // O LOGIN traz a última sequência que o cliente recebeu; o resto da janela é reenviado
+            // (com novas sequências), seguido do que a conexão anterior não chegou a escrever
+            RetransmitBuffer window = previous.getOutbound();
+            window.acknowledge(message.getSequence());
+            for (Message pending : window.drain()) {
+                outbound.enqueue(pending, true);
+            }
+            for (Message pending : unsent) {
+                outbound.enqueue(pending, true);
+            }
+        }
+    }
+
+    /**
+     * Processa uma mensagem recebida. Mensagens com sequência já processada (reenviadas
+     * pelo cliente após uma reconexão) são apenas confirmadas. Mensagens rejeitadas pela
+     * admissão ou enviadas acima dos créditos concedidos também entram no ACK cumulativo: sob
+     * sobrecarga a entrega é no máximo uma vez, e o remetente fica sabendo do descarte pelo
+     * {@code REJECTED} (ver {@link #reject}).
+     */
+    private void processInbound(Message message) throws IOException {
+        long sequence = message.getSequence();
+        if (message.getType() == MessageType.ACK) {
+            resumeState.getOutbound().acknowledge(sequence);
+            if (windowFull) {
+                resumeDelivery();
+            }
+            return;
+        }
+        if (sequence > 0 && sequence <= resumeState.getLastInboundSequence()) {
+            acknowledgeInbound(true);
+            return;
+        }
+        if (credits.exceeds(sequence)) {
+            // Acima dos créditos: descartada sem processar, para quem ignora o CREDIT não crescer a memória
+            creditController.recordViolation(username, sequence);
+            reject(message, noCreditReplies, "Sem créditos de envio para %s. Aguarde a liberação do servidor.");
+        } else if (admit(message)) {
+            latencyTracer.onRoute(message);
+            long dispatchStart = admissionController.onDispatchStart();
+            try {
+                handleMessage(message);
+            } finally {
+                admissionController.onDispatchEnd(dispatchStart);
+            }
+        }
+        if (sequence > 0) {
+            resumeState.setLastInboundSequence(sequence);
+            acknowledgeInbound(false);
+        }
+    }
+
+    /**
+     * Confirmação cumulativa das mensagens recebidas. Para não responder cada mensagem
+     * de um cliente que envia em pipeline, confirma quando não há mais nada a ler ou a cada lote.
+     * Cada confirmação também repõe os créditos de envio da sessão.
+     */
+    private void acknowledgeInbound(boolean force) throws IOException {
+        unacknowledgedInbound++;
+        if (force || unacknowledgedInbound >= ACK_BATCH_SIZE || !inputPending()) {
+            sendAcknowledgement();
+        } else if (connection != null && !acknowledgementDeferred) {
+            // O que falta ler pode ser de outros streams: confirma quando a leitura esvaziar
+            acknowledgementDeferred = true;
+            connection.deferAcknowledgement(this);
+        }
+    }
+
+    private void sendAcknowledgement() {
+        Message ack = new Message(MessageType.ACK, SERVER_USER, username, null);
+        ack.setSequence(resumeState.getLastInboundSequence());
+        sendGenericMessage(ack);
+        unacknowledgedInbound = 0;
+        credits.replenish(resumeState.getLastInboundSequence());
+    }
+
+    private boolean inputPending() throws IOException {
+        return connection != null ? connection.inputPending() : inputStream.available() > 0;
+    }
+
+    /**
+     * Aplica o controle de admissão; mensagens rejeitadas são informadas ao remetente sem serem processadas.
+     */
+    private boolean admit(Message message) {
+        AdmissionDecision decision = admissionController.admit(username, message.getType());
+        switch (decision) {
+            case RATE_LIMITED:
+                reject(message, rateLimitedReplies, "Limite de envio excedido para %s. Tente novamente em instantes.");
+                return false;
+            case SHED:
+                reject(message, shedReplies, "Servidor sobrecarregado, %s rejeitada. Tente novamente em instantes.");
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Mensagens numeradas recebem um {@code REJECTED} com a própria sequência, que o engine
+     * do cliente usa para tirá-las da caixa de saída e avisar quem enviou; o ACK que vem depois
+     * não as reenviaria. Sem sequência, vai a resposta de erro reaproveitada.
+     */
+    private void reject(Message message, Message[] cache, String template) {
+        Message reply = rejectionReply(cache, message.getType(), template);
+        if (message.getSequence() <= 0) {
+            sendGenericMessage(reply);
+            return;
+        }
+        Message rejected = new Message(MessageType.REJECTED, SERVER_USER, username, reply.getContent());
+        rejected.setSequence(message.getSequence());
+        sendGenericMessage(rejected);
+    }
+
+    private Message rejectionReply(Message[] cache, MessageType type, String template) {
+        Message reply = cache[type.ordinal()];
+        if (reply == null) {
+            reply = buildErrorMessage(MessageType.ERROR_MESSAGE, String.format(template, type));
+            cache[type.ordinal()] = reply;
+        }
+        return reply;
+    }
+
     private void handleMessage(Message message) {
+        if (!MessageDispatchEvent.enabled()) {
+            dispatch(message);
+            return;
+        }
+        MessageDispatchEvent event = new MessageDispatchEvent();
+        event.begin();
+        try {
+            dispatch(message);
+        } finally {
+            event.finish(message.getType(), username, message.getSequence());
+        }
+    }
+
+    private void dispatch(Message message) {
         switch (message.getType()) {
             case PRIVATE_MESSAGE:
                 sendPrivateMessage(message);
                 break;
+            case MULTI_PRIVATE_MESSAGE:
+                sendMultiPrivateMessage(message);
+                break;
             case REQUEST_USERS_LIST:
                 listUsers();
                 break;
@@ -138,6 +521,33 @@ public class ChatHandler implements Runnable {
             case REQUEST_GROUPS_LIST:
                 listGroups();
                 break;
+            case CREATE_CHANNEL:
+                createChannel(message);
+                break;
+            case SUBSCRIBE_CHANNEL:
+                subscribeChannel(message);
+                break;
+            case UNSUBSCRIBE_CHANNEL:
+                unsubscribeChannel(message);
+                break;
+            case CHANNEL_POST:
+                postToChannel(message);
+                break;
+            case REQUEST_CHANNELS_LIST:
+                listChannels();
+                break;
+            case SEARCH_DIRECTORY:
+                searchDirectory(message);
+                break;
+            case SCHEDULE_MESSAGE:
+                scheduleMessage(message);
+                break;
+            case CANCEL_SCHEDULED:
+                cancelScheduled(message);
+                break;
+            case REQUEST_SCHEDULED_LIST:
+                listScheduled();
+                break;
             case DISCONNECT:
                 isConnected = false;
                 break;
@@ -204,6 +614,127 @@ public class ChatHandler implements Runnable {
         }
     }
 
+    private void createChannel(Message message) {
+        try {
+            channelService.createChannel(message.getContent(), username);
+            String msg = "Channel " + message.getContent() + " created";
+            LOG.info(msg);
+            sendGenericMessage(new Message(MessageType.CHANNEL_CREATED, SERVER_USER, username, msg));
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.CHANNEL_FAILED, iae.getMessage()));
+        }
+    }
+
+    private void subscribeChannel(Message message) {
+        try {
+            channelService.subscribe(username, message.getContent());
+            String msg = "User " + username + " subscribed to channel " + message.getContent();
+            LOG.info(msg);
+            sendGenericMessage(new Message(MessageType.CHANNEL_SUBSCRIBED, SERVER_USER, username, msg));
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.CHANNEL_FAILED, iae.getMessage()));
+        }
+    }
+
+    private void unsubscribeChannel(Message message) {
+        try {
+            channelService.unsubscribe(username, message.getContent());
+            String msg = "User " + username + " unsubscribed from channel " + message.getContent();
+            LOG.info(msg);
+            sendGenericMessage(new Message(MessageType.CHANNEL_UNSUBSCRIBED, SERVER_USER, username, msg));
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.CHANNEL_FAILED, iae.getMessage()));
+        }
+    }
+
+    private void postToChannel(Message message) {
+        try {
+            channelService.post(message, this);
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.CHANNEL_FAILED, iae.getMessage()));
+        }
+    }
+
+    private void listChannels() {
+        List<BroadcastChannel> channels = channelService.findChannels();
+        if (channels.isEmpty()) {
+            sendGenericMessage(new Message(MessageType.CHANNELS_LIST, SERVER_USER, username, "No channels available"));
+            return;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("Available channels:\n");
+        for (BroadcastChannel channel : channels) {
+            stringBuilder.append('#').append(channel.getName())
+                    .append(" (owner: ").append(channel.getOwner())
+                    .append(", subscribers: ").append(channel.subscriberCount()).append(")\n");
+        }
+        sendGenericMessage(new Message(MessageType.CHANNELS_LIST, SERVER_USER, username, stringBuilder.toString()));
+    }
+
+    private void searchDirectory(Message message) {
+        List<DirectoryEntry> entries;
+        try {
+            entries = directoryService.search(message.getContent());
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.ERROR_MESSAGE, iae.getMessage()));
+            return;
+        }
+        if (entries.isEmpty()) {
+            sendGenericMessage(new Message(MessageType.DIRECTORY_RESULTS, SERVER_USER, username, "No matches found"));
+            return;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("Directory matches:\n");
+        for (DirectoryEntry entry : entries) {
+            if (entry.group()) {
+                stringBuilder.append('#').append(entry.name()).append("\n");
+            } else {
+                stringBuilder.append('@').append(entry.name()).append(entry.online() ? " (online)" : "").append("\n");
+            }
+        }
+        sendGenericMessage(new Message(MessageType.DIRECTORY_RESULTS, SERVER_USER, username, stringBuilder.toString()));
+    }
+
+    private void scheduleMessage(Message message) {
+        try {
+            ScheduledMessage scheduled = scheduleService.schedule(message);
+            sendGenericMessage(new Message(MessageType.SCHEDULE_CONFIRMED, SERVER_USER, username,
+                    "Message #" + scheduled.getId() + " to " + message.getTo()
+                            + " scheduled for " + scheduled.getMessage().getTimestamp().truncatedTo(ChronoUnit.SECONDS)
+                            + " UTC"));
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.ERROR_MESSAGE, iae.getMessage()));
+        }
+    }
+
+    private void cancelScheduled(Message message) {
+        try {
+            scheduleService.cancel(username, message.getContent());
+            sendGenericMessage(new Message(MessageType.SCHEDULE_CONFIRMED, SERVER_USER, username,
+                    "Scheduled message #" + message.getContent().strip() + " cancelled"));
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.ERROR_MESSAGE, iae.getMessage()));
+        }
+    }
+
+    private void listScheduled() {
+        List<ScheduledMessage> pending = scheduleService.findPending(username);
+        if (pending.isEmpty()) {
+            sendGenericMessage(new Message(MessageType.SCHEDULED_LIST, SERVER_USER, username, "No scheduled messages"));
+            return;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("Scheduled messages (UTC):\n");
+        for (ScheduledMessage entry : pending) {
+            Message scheduled = entry.getMessage();
+            stringBuilder.append('#').append(entry.getId()).append(' ')
+                    .append(scheduled.getTimestamp().truncatedTo(ChronoUnit.SECONDS)).append(" -> ")
+                    .append(scheduled.getType() == MessageType.GROUP_MESSAGE ? "#" : "").append(scheduled.getTo())
+                    .append(": ").append(scheduled.getContent()).append("\n");
+        }
+        sendGenericMessage(new Message(MessageType.SCHEDULED_LIST, SERVER_USER, username, stringBuilder.toString()));
+    }
+
     private void listUsers() {
         List<User> users = sessionManager.findUsers();
         StringBuilder stringBuilder = new StringBuilder();
@@ -223,6 +754,14 @@ public class ChatHandler implements Runnable {
 
     }
 
+    private void sendMultiPrivateMessage(Message message) {
+        try {
+            chatService.sendMultiPrivateMessage(message, this);
+        } catch (IllegalArgumentException iae) {
+            sendGenericMessage(buildErrorMessage(MessageType.ERROR_MESSAGE, iae.getMessage()));
+        }
+    }
+
     private void sendFile(Message message) {
         try {
             if (message.getType() == MessageType.FILE_GROUP) {
@@ -238,16 +777,15 @@ public class ChatHandler implements Runnable {
 
     private void cleanup() {
         try {
-            if (username != null) {
-                sessionManager.unregisterUser(username);
+            // Deixa o escritor terminar o que já está na fila (ex.: LOGIN_FAILED) antes de fechar
+            if (outbound != null) {
+                outbound.shutdown();
+                outbound.awaitTermination(WRITER_DRAIN_MILLIS, TimeUnit.MILLISECONDS);
             }
 
             if (inputStream != null) {
                 inputStream.close();
             }
-            if (outputStream != null) {
-                outputStream.close();
-            }
             if (clientSocket != null) {
                 clientSocket.close();
             }
@@ -255,18 +793,160 @@ public class ChatHandler implements Runnable {
         } catch (IOException e) {
             LOG.error("Erro durante limpeza", e);
         }
+
+        if (credits != null) {
+            creditController.close(credits);
+        }
+        if (memory != null) {
+            sessionMemoryMonitor.close(memory);
+        }
+
+        if (username != null && resumeState != null) {
+            List<Message> unacknowledged = null;
+            // Só quem encerra a sessão devolve a janela; se ela já foi retomada, a janela é da nova conexão
+            synchronized (resumeState) {
+                if (sessionManager.unregisterUser(username, this)) {
+                    unacknowledged = new ArrayList<>(resumeState.getOutbound().drain());
+                    outbound.awaitTermination(WRITER_DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+                    unacknowledged.addAll(outbound.drainReliable());
+                }
+            }
+            if (unacknowledged != null) {
+                admissionController.release(username);
+                chatService.requeueUnacknowledged(username, unacknowledged);
+            }
+        }
     }
 
     private Message buildErrorMessage(MessageType messageType, String error) {
         return new Message(messageType, "SERVER", username, error);
     }
 
-    public void sendGenericMessage(Message message) {
+    /**
+     * Encerra a conexão e o escritor deste handler (sessão assumida por uma reconexão do
+     * mesmo usuário). Retorna as mensagens confiáveis que o escritor não chegou a escrever.
+     */
+    private List<Message> stop() {
+        close();
+        outbound.shutdown();
+        if (!outbound.awaitTermination(WRITER_DRAIN_MILLIS, TimeUnit.MILLISECONDS)) {
+            LOG.warn("Escritor da conexão anterior de {} não terminou a tempo", username);
+        }
+        return outbound.drainReliable();
+    }
+
+    /**
+     * Encerra a conexão deste handler. Numa conexão multiplexada, só o stream desta sessão.
+     */
+    public void close() {
+        close("Session taken over by another connection");
+    }
+
+    /**
+     * Sessão acima do orçamento de memória (chamado pelo {@link SessionMemoryMonitor}): o
+     * encerramento devolve o que ela retinha para a fila offline, e novas entregas já vão para lá.
+     */
+    private void evict() {
+        close("Session closed: memory budget exceeded");
+        outbound.shutdown();
+    }
+
+    private void close(String reason) {
+        isConnected = false;
+        if (connection != null) {
+            sendGenericMessage(buildErrorMessage(MessageType.STREAM_CLOSED, reason));
+            connection.detach(streamId, this);
+            return;
+        }
         try {
-            outputStream.writeObject(message);
-            outputStream.flush();
+            clientSocket.close();
         } catch (IOException e) {
-            LOG.error("Erro ao enviar mensagem genérica para {}", username, e);
+            LOG.debug("Erro ao fechar conexão de {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Entrega de mensagem de conteúdo com confirmação: o cliente recebe uma cópia que ganha
+     * a próxima sequência da sessão ao ser escrita e fica na janela de retransmissão até o ACK.
+     * Retorna false se a conexão já está sendo encerrada, se a reposição da fila offline
+     * ainda não começou ou se a janela de retransmissão está cheia (a mensagem não foi aceita
+     * e vai para a fila offline, atrás do que já estava lá).
+     */
+    public boolean deliver(Message message) {
+        synchronized (deliveryLock) {
+            if (replayPending || windowFull) {
+                return false;
+            }
+            if (retransmitWindowFull(0)) {
+                // Cliente que não confirma não faz a janela crescer: o excedente espera na fila offline
+                windowFull = true;
+                LOG.debug("Janela de retransmissão de {} cheia, entregas seguem para a fila offline", username);
+                return false;
+            }
+            return outbound.enqueue(message.copy(), true);
+        }
+    }
+
+    /**
+     * Se a janela de retransmissão, somada às confiáveis que ainda vão entrar nela, passa de
+     * {@code limite - folga}.
+     */
+    private boolean retransmitWindowFull(int slack) {
+        // A fila antes da janela: uma mensagem escrita entre as duas leituras conta duas vezes, nunca nenhuma
+        int queued = outbound.pendingReliable();
+        RetransmitBuffer window = resumeState.getOutbound();
+        return queued + window.size() >= window.getMaxPending() - slack;
+    }
+
+    /**
+     * ACK depois da janela cheia: quando metade dela foi confirmada, retoma as entregas pela
+     * fila offline, como a reposição do login, para que o excedente venha antes das novas.
+     */
+    private void resumeDelivery() {
+        synchronized (deliveryLock) {
+            if (!windowFull || retransmitWindowFull(resumeState.getOutbound().getMaxPending() / 2)) {
+                return;
+            }
+            windowFull = false;
+            if (!isConnected) {
+                return;
+            }
+            chatService.deliverOfflineMessages(username);
+            channelService.deliverPendingPosts(username, this);
+        }
+    }
+
+    /**
+     * Entrega de uma mensagem enviada por outra sessão: além de {@link #deliver(Message)},
+     * informa ao controle de fluxo do remetente como está a fila deste destinatário.
+     */
+    public boolean deliver(Message message, ChatHandler sender) {
+        if (!deliver(message)) {
+            return false;
+        }
+        SessionCredits senderCredits = sender == null ? null : sender.credits;
+        if (senderCredits != null) {
+            senderCredits.observeRecipient(outbound);
+        }
+        return true;
+    }
+
+    /**
+     * Se as entregas estão retidas na fila offline: a reposição agendada no login ainda não
+     * começou ou a janela de retransmissão está cheia. Quem as libera entrega a fila inteira.
+     */
+    public boolean isDeliveryDeferred() {
+        synchronized (deliveryLock) {
+            return replayPending || windowFull;
+        }
+    }
+
+    /**
+     * Enfileira uma mensagem sem confirmação (respostas e avisos) na faixa do seu tipo.
+     */
+    public void sendGenericMessage(Message message) {
+        if (!outbound.enqueue(message, false)) {
+            LOG.debug("Conexão de {} encerrada, {} descartada", username, message.getType());
         }
     }
 
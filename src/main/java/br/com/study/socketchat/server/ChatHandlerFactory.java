@@ -1,20 +1,74 @@
 package br.com.study.socketchat.server;
 
-import org.springframework.beans.factory.ObjectProvider;
+import br.com.study.socketchat.server.admission.AdmissionController;
+import br.com.study.socketchat.server.admission.LoginPacer;
+import br.com.study.socketchat.server.capture.TrafficCapture;
+import br.com.study.socketchat.server.channel.service.ChannelService;
+import br.com.study.socketchat.server.directory.service.DirectoryService;
+import br.com.study.socketchat.server.flow.CreditController;
+import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.memory.SessionMemoryMonitor;
+import br.com.study.socketchat.server.outbound.OutboundStats;
+import br.com.study.socketchat.server.schedule.service.ScheduleService;
+import br.com.study.socketchat.server.service.ChatService;
+import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.trace.LatencyTracer;
 import org.springframework.stereotype.Component;
 
 import java.net.Socket;
 
+/**
+ * Cria um {@link ChatHandler} por conexão diretamente, sem consultar o contêiner.
+ */
 @Component
 public class ChatHandlerFactory {
 
-    private final ObjectProvider<ChatHandler> chatHandlerProvider;
+    private final SessionManager sessionManager;
+    private final ChatService chatService;
+    private final GroupService groupService;
+    private final ChannelService channelService;
+    private final AdmissionController admissionController;
+    private final LoginPacer loginPacer;
+    private final OutboundStats outboundStats;
+    private final TrafficCapture trafficCapture;
+    private final LatencyTracer latencyTracer;
+    private final CreditController creditController;
+    private final DirectoryService directoryService;
+    private final ScheduleService scheduleService;
+    private final SessionMemoryMonitor sessionMemoryMonitor;
 
-    public ChatHandlerFactory(ObjectProvider<ChatHandler> chatHandlerProvider) {
-        this.chatHandlerProvider = chatHandlerProvider;
+    public ChatHandlerFactory(SessionManager sessionManager,
+                              ChatService chatService,
+                              GroupService groupService,
+                              ChannelService channelService,
+                              AdmissionController admissionController,
+                              LoginPacer loginPacer,
+                              OutboundStats outboundStats,
+                              TrafficCapture trafficCapture,
+                              LatencyTracer latencyTracer,
+                              CreditController creditController,
+                              DirectoryService directoryService,
+                              ScheduleService scheduleService,
+                              SessionMemoryMonitor sessionMemoryMonitor) {
+        this.sessionManager = sessionManager;
+        this.chatService = chatService;
+        this.groupService = groupService;
+        this.channelService = channelService;
+        this.admissionController = admissionController;
+        this.loginPacer = loginPacer;
+        this.outboundStats = outboundStats;
+        this.trafficCapture = trafficCapture;
+        this.latencyTracer = latencyTracer;
+        this.creditController = creditController;
+        this.directoryService = directoryService;
+        this.scheduleService = scheduleService;
+        this.sessionMemoryMonitor = sessionMemoryMonitor;
     }
 
     public ChatHandler create(Socket socket) {
-        return chatHandlerProvider.getObject().initialize(socket);
+        return new ChatHandler(sessionManager, chatService, groupService, channelService, admissionController,
+                loginPacer, outboundStats, trafficCapture, latencyTracer, creditController, directoryService,
+                scheduleService, sessionMemoryMonitor)
+                .initialize(socket);
     }
 }
@@ -0,0 +1,203 @@
+package br.com.study.socketchat.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Laço de aceitação de conexões do servidor, independente de como os serviços foram montados
+ * (contexto Spring em {@link SocketServerChatApplication} ou direto em {@link EmbeddedChatServer}).
+ * <p>
+ * Várias threads aceitam conexões ao mesmo tempo. Onde o sistema oferece {@code SO_REUSEPORT}
+ * (Linux), cada uma tem seu próprio socket na mesma porta e o kernel distribui as conexões
+ * entre eles; nos demais, todas aceitam do mesmo socket. Antes, uma ligação exclusiva confirma
+ * que nenhum outro processo está na porta (se estiver, {@link #start()} falha). O backlog do
+ * socket é grande para absorver a rajada de reconexões depois de um restart; o ritmo dos
+ * logins fica a cargo do {@link br.com.study.socketchat.server.admission.LoginPacer}.
+ */
+public class ChatServer {
+    public static final int DEFAULT_PORT = 12345;
+    public static final String PORT_PROPERTY = "chat.port";
+    public static final int DEFAULT_ACCEPTORS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChatServer.class);
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    private final int port;
+    private final int acceptors;
+    private final ChatHandlerFactory chatHandlerFactory;
+    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private final List<ServerSocket> serverSockets = new CopyOnWriteArrayList<>();
+    private final CountDownLatch listening = new CountDownLatch(1);
+
+    private volatile boolean isRunning = false;
+
+    public ChatServer(int port, ChatHandlerFactory chatHandlerFactory) {
+        this(port, DEFAULT_ACCEPTORS, chatHandlerFactory);
+    }
+
+    public ChatServer(int port, int acceptors, ChatHandlerFactory chatHandlerFactory) {
+        if (acceptors <= 0) {
+            throw new IllegalArgumentException("Número de acceptors inválido: " + acceptors);
+        }
+        this.port = port;
+        this.acceptors = acceptors;
+        this.chatHandlerFactory = chatHandlerFactory;
+    }
+
+    /**
+     * Porta configurada com {@code -Dchat.port} (ex.: primário e standby na mesma máquina),
+     * ou {@link #DEFAULT_PORT}.
+     */
+    public static int configuredPort() {
+        return Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+    }
+
+    /**
+     * Aceita conexões até {@link #stop()} ser chamado. Bloqueia a thread atual.
+     *
+     * @throws IllegalStateException se a porta não pôde ser aberta (ex.: outro processo nela)
+     */
+    public void start() {
+        start(() -> {
+        });
+    }
+
+    /**
+     * Como {@link #start()}; {@code onListening} roda assim que os sockets estão abertos,
+     * antes de aceitar a primeira conexão.
+     */
+    public void start(Runnable onListening) {
+        boolean reusePort;
+        try {
+            reusePort = openSockets();
+        } catch (IOException e) {
+            LOG.error("Erro ao iniciar servidor na porta {}", port, e);
+            closeSockets();
+            listening.countDown();
+            throw new IllegalStateException("Não foi possível abrir a porta " + port, e);
+        }
+        isRunning = true;
+        listening.countDown();
+        LOG.info("Servidor iniciado na porta {} com {} acceptors{}", getLocalPort(), acceptors,
+                reusePort ? " (SO_REUSEPORT)" : "");
+        onListening.run();
+
+        List<Thread> threads = new ArrayList<>(acceptors);
+        for (int i = 0; i < acceptors; i++) {
+            ServerSocket serverSocket = serverSockets.get(reusePort ? i : 0);
+            Thread thread = new Thread(() -> acceptLoop(serverSocket), "acceptor-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Abre os sockets de escuta: um por acceptor com {@code SO_REUSEPORT}, ou um só compartilhado.
+     */
+    private boolean openSockets() throws IOException {
+        ServerSocket first = new ServerSocket();
+        serverSockets.add(first);
+        boolean reusePort = acceptors > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        if (!reusePort) {
+            first.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            return false;
+        }
+        int boundPort = probeExclusive(port);
+        first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        first.bind(new InetSocketAddress(boundPort), ACCEPT_BACKLOG);
+        for (int i = 1; i < acceptors; i++) {
+            ServerSocket serverSocket = new ServerSocket();
+            serverSockets.add(serverSocket);
+            serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            serverSocket.bind(new InetSocketAddress(boundPort), ACCEPT_BACKLOG);
+        }
+        return true;
+    }
+
+    /**
+     * Com {@code SO_REUSEPORT}, outro processo na mesma porta (ex.: uma instância antiga ou o
+     * standby promovido na mesma máquina) se ligaria sem erro e o kernel dividiria os clientes
+     * entre os dois. Uma ligação exclusiva antes detecta a porta ocupada; retorna a porta obtida.
+     */
+    private static int probeExclusive(int port) throws IOException {
+        try (ServerSocket probe = new ServerSocket()) {
+            probe.bind(new InetSocketAddress(port));
+            return probe.getLocalPort();
+        }
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        while (isRunning) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                LOG.info("🔗 Nova conexão recebida: {}", clientSocket.getInetAddress());
+
+                ChatHandler clientHandler = chatHandlerFactory.create(clientSocket);
+                threadPool.execute(clientHandler);
+
+            } catch (IOException e) {
+                if (isRunning) {
+                    LOG.error("Erro ao aceitar conexão", e);
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        isRunning = false;
+        closeSockets();
+        threadPool.shutdown();
+    }
+
+    private void closeSockets() {
+        for (ServerSocket serverSocket : serverSockets) {
+            try {
+                if (!serverSocket.isClosed()) {
+                    serverSocket.close();
+                }
+            } catch (IOException e) {
+                LOG.error("Erro ao parar servidor", e);
+            }
+        }
+    }
+
+    /**
+     * Porta em que o servidor escuta (útil quando iniciado na porta 0), ou -1 antes de iniciar.
+     */
+    public int getLocalPort() {
+        return serverSockets.isEmpty() ? -1 : serverSockets.get(0).getLocalPort();
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * Espera os sockets de escuta serem abertos. Retorna false se não abriram no prazo ou
+     * se a abertura falhou.
+     */
+    public boolean awaitListening(long timeout, TimeUnit unit) throws InterruptedException {
+        return listening.await(timeout, unit) && isRunning;
+    }
+}
@@ -0,0 +1,174 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.server.admission.AdmissionController;
+import br.com.study.socketchat.server.admission.LoginPacer;
+import br.com.study.socketchat.server.capture.TrafficCapture;
+import br.com.study.socketchat.server.channel.ChannelManager;
+import br.com.study.socketchat.server.channel.service.ChannelService;
+import br.com.study.socketchat.server.directory.DirectoryIndex;
+import br.com.study.socketchat.server.directory.service.DirectoryService;
+import br.com.study.socketchat.server.flow.CreditController;
+import br.com.study.socketchat.server.group.GroupManager;
+import br.com.study.socketchat.server.group.GroupSequencer;
+import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.jfr.ChatFlightRecorder;
+import br.com.study.socketchat.server.memory.SessionMemoryMonitor;
+import br.com.study.socketchat.server.outbound.OutboundStats;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import br.com.study.socketchat.server.replication.ReplicationManager;
+import br.com.study.socketchat.server.schedule.MessageScheduler;
+import br.com.study.socketchat.server.schedule.service.ScheduleService;
+import br.com.study.socketchat.server.service.ChatService;
+import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.session.UserIdRegistry;
+import br.com.study.socketchat.server.trace.LatencyTracer;
+import br.com.study.socketchat.server.storage.OfflineMessageStorage;
+import br.com.study.socketchat.server.storage.impl.OfflineMessageStorageImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo embutido do servidor: monta os mesmos serviços do contexto Spring
+ * diretamente pelos construtores, sem varredura de componentes nem reflexão,
+ * para inicializar rápido (ex.: escalar horizontalmente durante um pico).
+ * Os handlers de cada conexão também são criados com {@code new} pelo {@link ChatHandlerFactory}.
+ */
+public class EmbeddedChatServer {
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddedChatServer.class);
+
+    private final SessionManager sessionManager;
+    private final GroupService groupService;
+    private final OfflineMessageStorageImpl offlineMessageStorage;
+    private final ChatService chatService;
+    private final MessageScheduler messageScheduler;
+    private final StatePersistenceService statePersistenceService;
+    private final ReplicationManager replicationManager;
+    private final TrafficCapture trafficCapture;
+    private final ChatFlightRecorder flightRecorder;
+    private final SessionMemoryMonitor sessionMemoryMonitor;
+    private final CreditController creditController;
+    private final ChatServer chatServer;
+    private final long createdNanos;
+    private volatile long startupNanos = -1;
+
+    public EmbeddedChatServer(int port) {
+        this.createdNanos = System.nanoTime();
+        StateJournal stateJournal = new StateJournal();
+        UserIdRegistry userIdRegistry = new UserIdRegistry();
+        DirectoryIndex directoryIndex = new DirectoryIndex();
+        GroupManager groupManager = new GroupManager(userIdRegistry, stateJournal, directoryIndex);
+        this.sessionManager = new SessionManager(userIdRegistry, stateJournal, directoryIndex);
+        GroupSequencer groupSequencer = new GroupSequencer();
+        this.groupService = new GroupService(groupManager, groupSequencer);
+        this.offlineMessageStorage = new OfflineMessageStorageImpl(stateJournal);
+        LatencyTracer latencyTracer = new LatencyTracer();
+        this.chatService = new ChatService(sessionManager, groupService, offlineMessageStorage, latencyTracer,
+                groupSequencer);
+        ChannelManager channelManager = new ChannelManager(userIdRegistry, stateJournal);
+        ChannelService channelService = new ChannelService(channelManager, sessionManager, userIdRegistry, chatService);
+        this.messageScheduler = new MessageScheduler(stateJournal, chatService);
+        this.statePersistenceService = new StatePersistenceService(sessionManager, groupManager, offlineMessageStorage,
+                channelManager, messageScheduler, stateJournal);
+        this.replicationManager = new ReplicationManager(statePersistenceService, stateJournal);
+
+        this.trafficCapture = new TrafficCapture();
+        this.flightRecorder = new ChatFlightRecorder();
+        OutboundStats outboundStats = new OutboundStats();
+        this.sessionMemoryMonitor = new SessionMemoryMonitor(outboundStats);
+        DirectoryService directoryService = new DirectoryService(directoryIndex, sessionManager);
+        AdmissionController admissionController = new AdmissionController();
+        LoginPacer loginPacer = new LoginPacer();
+        this.creditController = new CreditController(outboundStats);
+        ChatHandlerFactory chatHandlerFactory = new ChatHandlerFactory(sessionManager, chatService, groupService,
+                channelService, admissionController, loginPacer, outboundStats, trafficCapture,
+                latencyTracer, creditController, directoryService,
+                new ScheduleService(messageScheduler, sessionManager, groupService), sessionMemoryMonitor);
+        this.chatServer = new ChatServer(port, chatHandlerFactory);
+
+        // Papel do @PostConstruct no contexto Spring: publica os MXBeans só com tudo montado
+        directoryIndex.registerMBean();
+        groupSequencer.registerMBean();
+        offlineMessageStorage.registerMBean();
+        latencyTracer.registerMBean();
+        messageScheduler.registerMBean();
+        replicationManager.registerMBean();
+        trafficCapture.registerMBean();
+        flightRecorder.registerMBean();
+        outboundStats.registerMBean();
+        sessionMemoryMonitor.registerMBean();
+        admissionController.registerMBean();
+        loginPacer.registerMBean();
+        creditController.registerMBean();
+    }
+
+    /**
+     * Restaura o estado persistido (ou, em standby, acompanha o primário até a promoção) e
+     * aceita conexões. Bloqueia a thread atual.
+     */
+    public void start() throws IOException {
+        replicationManager.start();
+        chatServer.start(() -> {
+            startupNanos = System.nanoTime() - createdNanos;
+            LOG.info("Servidor embutido pronto em {} ms (montagem, restauração do estado e abertura da porta)",
+                    TimeUnit.NANOSECONDS.toMillis(startupNanos));
+        });
+    }
+
+    /**
+     * Espera o servidor aceitar conexões. Retorna false se não ficou pronto no prazo.
+     */
+    public boolean awaitStarted(long timeout, TimeUnit unit) throws InterruptedException {
+        return chatServer.awaitListening(timeout, unit);
+    }
+
+    /**
+     * Tempo da construção até a porta aberta, com o estado já restaurado; -1 antes disso.
+     */
+    public long getStartupNanos() {
+        return startupNanos;
+    }
+
+    public int getLocalPort() {
+        return chatServer.getLocalPort();
+    }
+
+    public void stop() {
+        chatServer.stop();
+        replicationManager.shutdown();
+        trafficCapture.shutdown();
+        flightRecorder.shutdown();
+        sessionMemoryMonitor.shutdown();
+        creditController.shutdown();
+        messageScheduler.shutdown();
+        statePersistenceService.shutdown();
+        // Depois do snapshot final, que ainda lê as mensagens offline transbordadas
+        offlineMessageStorage.shutdown();
+        LOG.info("Servidor parado");
+    }
+
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    public GroupService getGroupService() {
+        return groupService;
+    }
+
+    public ChatService getChatService() {
+        return chatService;
+    }
+
+    public OfflineMessageStorage getOfflineMessageStorage() {
+        return offlineMessageStorage;
+    }
+
+    public static void main(String[] args) throws IOException {
+        EmbeddedChatServer server = new EmbeddedChatServer(ChatServer.configuredPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.study.socketchat.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registro dos MXBeans do servidor no MBeanServer da plataforma, sob o domínio
+ * {@code br.com.study.socketchat}. Chamado depois que o objeto está montado
+ * (pelo {@code @PostConstruct} no Spring ou pelo {@link EmbeddedChatServer}).
+ */
+public final class Jmx {
+    private static final Logger LOG = LoggerFactory.getLogger(Jmx.class);
+
+    private static final String DOMAIN = "br.com.study.socketchat";
+
+    private Jmx() {
+    }
+
+    /**
+     * Registra o MXBean com o nome {@code br.com.study.socketchat:type=<type>}. Se o nome já
+     * estiver registrado (ex.: mais de um servidor embutido na mesma JVM), mantém o primeiro.
+     */
+    public static void register(Object mbean, String type) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN, "type", type);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Não foi possível registrar o MBean {}", type, e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.MessageTrace;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.outbound.OutboundScheduler;
+import br.com.study.socketchat.server.trace.ArrivalStampingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Conexão multiplexada, para gateways e bots com muitas identidades: o cliente abre a conexão
+ * com MULTIPLEX e, depois de MULTIPLEX_ACCEPTED, cada frame nos dois sentidos é o número do
+ * stream ({@code int}) seguido da mensagem. Cada stream é uma sessão lógica com o seu
+ * {@link ChatHandler}: faz LOGIN, entra no SessionManager como um usuário comum e tem sua
+ * própria janela de retransmissão, créditos e limites de admissão. O socket, a thread de
+ * leitura e o escritor (com as faixas de prioridade) são da conexão.
+ * <p>
+ * O stream {@value #CONNECTION_STREAM} é da própria conexão: um DISCONNECT nele encerra todos
+ * os streams. Um DISCONNECT num stream encerra só a sessão dele; o número pode ser reaberto
+ * com outro LOGIN. As mensagens de todos os streams são processadas em ordem, nesta thread;
+ * por isso o LOGIN de um stream não espera a vez no
+ * {@link br.com.study.socketchat.server.admission.LoginPacer}: sem capacidade no momento,
+ * recebe LOGIN_FAILED na hora e o gateway tenta de novo.
+ */
+final class MultiplexedConnection {
+    static final String MAX_STREAMS_PROPERTY = "chat.multiplex.maxStreams";
+    static final int CONNECTION_STREAM = 0;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultiplexedConnection.class);
+    private static final int DEFAULT_MAX_STREAMS = 4096;
+    private static final long WRITER_DRAIN_MILLIS = 2_000;
+
+    private final Socket socket;
+    private final ObjectInputStream inputStream;
+    private final ArrivalStampingInputStream arrivalStream;
+    private final OutboundScheduler scheduler;
+    private final Supplier<ChatHandler> handlers;
+    private final int maxStreams;
+    private final Map<Integer, ChatHandler> streams = new ConcurrentHashMap<>();
+    // Sessões assumidas por outra conexão; encerradas por esta thread
+    private final Queue<ChatHandler> detached = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<ChatHandler> deferredAcknowledgements = new ArrayDeque<>();
+    private boolean open = true;
+
+    MultiplexedConnection(Socket socket, ObjectInputStream inputStream, ArrivalStampingInputStream arrivalStream,
+                          OutboundScheduler scheduler, Supplier<ChatHandler> handlers) {
+        this.socket = socket;
+        this.inputStream = inputStream;
+        this.arrivalStream = arrivalStream;
+        this.scheduler = scheduler;
+        this.handlers = handlers;
+        this.maxStreams = Integer.getInteger(MAX_STREAMS_PROPERTY, DEFAULT_MAX_STREAMS);
+    }
+
+    /**
+     * Atende a conexão até o cliente encerrá-la; ao sair, encerra todas as sessões.
+     * A resposta ao MULTIPLEX ainda vai sem número de stream.
+     */
+    void run() throws IOException {
+        if (maxStreams <= 0) {
+            scheduler.enqueue(new Message(MessageType.LOGIN_FAILED, "SERVER", null,
+                    "Multiplexed connections are disabled"), false);
+            return;
+        }
+        scheduler.enqueue(new Message(MessageType.MULTIPLEX_ACCEPTED, "SERVER", null, String.valueOf(maxStreams)), false);
+        socket.setSoTimeout(0);
+        LOG.info("Conexão multiplexada de {} (até {} streams)", socket.getRemoteSocketAddress(), maxStreams);
+        try {
+            while (open) {
+                int streamId;
+                Message message;
+                try {
+                    streamId = inputStream.readInt();
+                    message = (Message) inputStream.readObject();
+                } catch (SocketException e) {
+                    LOG.info("Conexão multiplexada desconectada: {} streams", streams.size());
+                    break;
+                } catch (EOFException e) {
+                    LOG.info("Conexão multiplexada encerrada pelo cliente: {} streams", streams.size());
+                    break;
+                } catch (ClassNotFoundException e) {
+                    LOG.error("Erro ao deserializar mensagem", e);
+                    continue;
+                }
+                long decoded = System.nanoTime();
+                long arrival = arrivalStream.takeArrival();
+                message.setTrace(new MessageTrace(arrival == 0 ? decoded : arrival, decoded));
+                route(streamId, message);
+                endDetached();
+                if (!inputPending()) {
+                    flushAcknowledgements();
+                }
+            }
+        } finally {
+            // Como numa conexão comum: o escritor termina a fila antes das sessões devolverem o resto
+            scheduler.shutdown();
+            scheduler.awaitTermination(WRITER_DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+            endDetached();
+            for (ChatHandler handler : new ArrayList<>(streams.values())) {
+                handler.endStream();
+            }
+            streams.clear();
+        }
+    }
+
+    private void route(int streamId, Message message) throws IOException {
+        ChatHandler handler = streams.get(streamId);
+        if (handler != null) {
+            handler.receive(message);
+            if (!handler.isConnected()) {
+                end(streamId, handler);
+            }
+            return;
+        }
+        MessageType type = message.getType();
+        if (streamId == CONNECTION_STREAM) {
+            if (type == MessageType.DISCONNECT) {
+                open = false;
+            }
+            return;
+        }
+        if (type != MessageType.LOGIN) {
+            // Resto de uma sessão já encerrada; ACK e DISCONNECT atrasados não precisam de resposta
+            if (type != MessageType.ACK && type != MessageType.DISCONNECT) {
+                reply(streamId, MessageType.STREAM_CLOSED, "Stream " + streamId + " has no session, send LOGIN first");
+            }
+            return;
+        }
+        if (streams.size() >= maxStreams) {
+            reply(streamId, MessageType.LOGIN_FAILED, "Too many sessions on this connection (limit " + maxStreams + ")");
+            return;
+        }
+        ChatHandler stream = handlers.get().attachStream(this, streamId, scheduler);
+        streams.put(streamId, stream);
+        if (!stream.openStream(message)) {
+            end(streamId, stream);
+        }
+    }
+
+    private void reply(int streamId, MessageType type, String content) {
+        scheduler.openStream(streamId).enqueue(new Message(type, "SERVER", null, content), false);
+    }
+
+    private void end(int streamId, ChatHandler handler) {
+        streams.remove(streamId, handler);
+        handler.endStream();
+    }
+
+    /**
+     * Sessão assumida por uma reconexão do mesmo usuário (chamado pela thread desse login):
+     * o stream fica livre na hora e a sessão é encerrada por esta thread, na próxima leitura.
+     */
+    void detach(int streamId, ChatHandler handler) {
+        if (streams.remove(streamId, handler)) {
+            detached.add(handler);
+        }
+    }
+
+    private void endDetached() {
+        ChatHandler handler;
+        while ((handler = detached.poll()) != null) {
+            handler.endStream();
+        }
+    }
+
+    /**
+     * Se já há bytes de outra mensagem para ler (de qualquer stream).
+     */
+    boolean inputPending() throws IOException {
+        return inputStream.available() > 0;
+    }
+
+    void deferAcknowledgement(ChatHandler handler) {
+        deferredAcknowledgements.addLast(handler);
+    }
+
+    private void flushAcknowledgements() {
+        ChatHandler handler;
+        while ((handler = deferredAcknowledgements.pollFirst()) != null) {
+            handler.flushAcknowledgement();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package br.com.study.socketchat.server;
 
 import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import br.com.study.socketchat.server.replication.ReplicationManager;
 import br.com.study.socketchat.server.service.ChatService;
 import br.com.study.socketchat.server.session.SessionManager;
 import jakarta.annotation.PreDestroy;
@@ -12,19 +14,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Servidor de chat distribuído que gerencia conexões de múltiplos clientes
  * Suporta mensagens privadas, grupos e envio de arquivos
+ * Para subir sem o contexto Spring, veja {@link EmbeddedChatServer}
  */
 @SpringBootApplication
 public class SocketServerChatApplication implements CommandLineRunner {
 
-    private static final int PORT = 12345;
     private static final String FILES_DIRECTORY = "server_files/";
 
     private static final Logger LOG = LoggerFactory.getLogger(SocketServerChatApplication.class);
@@ -32,20 +30,22 @@ public class SocketServerChatApplication implements CommandLineRunner {
     private final SessionManager sessionManager;
     private final ChatService chatService;
     private final GroupService groupService;
-    private final ChatHandlerFactory chatHandlerFactory;
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
-
-    private ServerSocket serverSocket;
-    private boolean isRunning = false;
+    private final StatePersistenceService statePersistenceService;
+    private final ReplicationManager replicationManager;
+    private final ChatServer chatServer;
 
     public SocketServerChatApplication(SessionManager sessionManager,
                                        ChatService chatService,
                                        GroupService groupService,
-                                       ChatHandlerFactory chatHandlerFactory) {
+                                       ChatHandlerFactory chatHandlerFactory,
+                                       StatePersistenceService statePersistenceService,
+                                       ReplicationManager replicationManager) {
         this.sessionManager = sessionManager;
         this.chatService = chatService;
         this.groupService = groupService;
-        this.chatHandlerFactory = chatHandlerFactory;
+        this.statePersistenceService = statePersistenceService;
+        this.replicationManager = replicationManager;
+        this.chatServer = new ChatServer(ChatServer.configuredPort(), chatHandlerFactory);
         createFilesDirectory();
     }
 
@@ -60,38 +60,18 @@ public class SocketServerChatApplication implements CommandLineRunner {
     }
 
     @Override
-    public void run(String... args) {
+    public void run(String... args) throws IOException {
         LOG.info("Dependências carregadas: SessionManager={}, GroupService={}, ChatService={}",
                 sessionManager.getClass().getSimpleName(),
                 groupService.getClass().getSimpleName(),
                 chatService.getClass().getSimpleName());
+        replicationManager.start();
         start();
     }
 
     public void start() {
-        try {
-            serverSocket = new ServerSocket(PORT);
-            isRunning = true;
-            LOG.info("Servidor iniciado na porta {}", PORT);
-            LOG.info("Diretório de arquivos: {}", FILES_DIRECTORY);
-
-            while (isRunning) {
-                try {
-                    Socket clientSocket = serverSocket.accept();
-                    LOG.info("🔗 Nova conexão recebida: {}", clientSocket.getInetAddress());
-
-                    ChatHandler clientHandler = chatHandlerFactory.create(clientSocket);
-                    threadPool.execute(clientHandler);
-
-                } catch (IOException e) {
-                    if (isRunning) {
-                        LOG.error("Erro ao aceitar conexão", e);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            LOG.error("Erro ao iniciar servidor", e);
-        }
+        LOG.info("Diretório de arquivos: {}", FILES_DIRECTORY);
+        chatServer.start();
     }
 
     @PreDestroy
@@ -100,16 +80,10 @@ public class SocketServerChatApplication implements CommandLineRunner {
     }
 
     public void stop() {
-        isRunning = false;
-        try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-            }
-            threadPool.shutdown();
-            LOG.info("Servidor parado");
-        } catch (IOException e) {
-            LOG.error("Erro ao parar servidor", e);
-        }
+        chatServer.stop();
+        replicationManager.shutdown();
+        statePersistenceService.shutdown();
+        LOG.info("Servidor parado");
     }
 
     public static void main(String[] args) {
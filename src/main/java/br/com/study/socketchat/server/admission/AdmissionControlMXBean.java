@@ -0,0 +1,34 @@
+package br.com.study.socketchat.server.admission;
+
+/**
+ * Interface JMX para consultar e reconfigurar o controle de admissão em tempo de execução
+ * (ex.: via jconsole, em {@code br.com.study.socketchat:type=AdmissionControl}).
+ */
+public interface AdmissionControlMXBean {
+
+    double getUserCapacity();
+
+    double getUserRefillPerSecond();
+
+    void setUserLimit(double capacity, double refillPerSecond);
+
+    void setTypeLimit(String messageType, double capacity, double refillPerSecond);
+
+    String getTypeLimits();
+
+    int getMaxInFlight();
+
+    long getMaxLatencyMillis();
+
+    void setOverloadThresholds(int maxInFlight, long maxLatencyMillis);
+
+    int getInFlight();
+
+    long getAverageLatencyMicros();
+
+    boolean isOverloaded();
+
+    long getRateLimitedCount();
+
+    long getShedCount();
+}
@@ -0,0 +1,234 @@
+package br.com.study.socketchat.server.admission;
+
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controle de admissão das mensagens recebidas pelos handlers.
+ * Cada usuário tem um token bucket geral e um por tipo de mensagem; além disso,
+ * quando o servidor está sobrecarregado as mensagens caras (fan-out de grupo e
+ * listagens) são rejeitadas antes de qualquer processamento.
+ * Os limites podem ser alterados em tempo de execução pelos métodos públicos ou via JMX.
+ */
+@Component
+public class AdmissionController implements AdmissionControlMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final RateLimit DEFAULT_USER_LIMIT = new RateLimit(50, 20);
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private static final long DEFAULT_MAX_LATENCY_MILLIS = 50;
+
+    /** Tipos cujo custo cresce com o número de membros ou usuários. */
+    private static final Set<MessageType> EXPENSIVE_TYPES = EnumSet.of(
+            MessageType.GROUP_MESSAGE,
+            MessageType.MULTI_PRIVATE_MESSAGE,
+            MessageType.FILE_GROUP,
+            MessageType.CHANNEL_POST,
+            MessageType.REQUEST_USERS_LIST,
+            MessageType.REQUEST_GROUPS_LIST,
+            MessageType.REQUEST_CHANNELS_LIST);
+
+    /** Tipos que nunca são limitados. */
+    private static final Set<MessageType> EXEMPT_TYPES = EnumSet.of(
+            MessageType.DISCONNECT,
+            MessageType.HEARTBEAT);
+
+    private final Map<String, UserBuckets> buckets = new ConcurrentHashMap<>();
+    private final Map<MessageType, RateLimit> typeLimits = new ConcurrentHashMap<>();
+    private final OverloadDetector overloadDetector;
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong shedCount = new AtomicLong();
+    private volatile RateLimit userLimit;
+
+    public AdmissionController() {
+        this.userLimit = DEFAULT_USER_LIMIT;
+        this.overloadDetector = new OverloadDetector(DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        typeLimits.put(MessageType.PRIVATE_MESSAGE, new RateLimit(30, 10));
+        typeLimits.put(MessageType.GROUP_MESSAGE, new RateLimit(20, 5));
+        typeLimits.put(MessageType.MULTI_PRIVATE_MESSAGE, new RateLimit(10, 2));
+        typeLimits.put(MessageType.FILE_MESSAGE, new RateLimit(5, 1));
+        typeLimits.put(MessageType.FILE_GROUP, new RateLimit(3, 0.5));
+        typeLimits.put(MessageType.REQUEST_USERS_LIST, new RateLimit(3, 0.5));
+        typeLimits.put(MessageType.REQUEST_GROUPS_LIST, new RateLimit(3, 0.5));
+        typeLimits.put(MessageType.CHANNEL_POST, new RateLimit(5, 1));
+        typeLimits.put(MessageType.REQUEST_CHANNELS_LIST, new RateLimit(3, 0.5));
+        typeLimits.put(MessageType.SEARCH_DIRECTORY, new RateLimit(10, 5));
+        typeLimits.put(MessageType.SCHEDULE_MESSAGE, new RateLimit(10, 2));
+        typeLimits.put(MessageType.CANCEL_SCHEDULED, new RateLimit(10, 2));
+        typeLimits.put(MessageType.REQUEST_SCHEDULED_LIST, new RateLimit(3, 0.5));
+    }
+
+    /**
+     * Decide se a mensagem do usuário pode ser processada agora.
+     */
+    public AdmissionDecision admit(String username, MessageType type) {
+        if (type == null || EXEMPT_TYPES.contains(type)) {
+            return AdmissionDecision.ACCEPTED;
+        }
+        if (EXPENSIVE_TYPES.contains(type) && overloadDetector.isOverloaded()) {
+            shedCount.incrementAndGet();
+            return AdmissionDecision.SHED;
+        }
+        UserBuckets userBuckets = buckets.get(username);
+        if (userBuckets == null) {
+            userBuckets = buckets.computeIfAbsent(username, key -> new UserBuckets(userLimit));
+        }
+        if (!userBuckets.tryAcquire(type, userLimit, typeLimits.get(type))) {
+            rateLimitedCount.incrementAndGet();
+            return AdmissionDecision.RATE_LIMITED;
+        }
+        return AdmissionDecision.ACCEPTED;
+    }
+
+    public long onDispatchStart() {
+        return overloadDetector.onDispatchStart();
+    }
+
+    public void onDispatchEnd(long startNanos) {
+        overloadDetector.onDispatchEnd(startNanos);
+    }
+
+    /**
+     * Descarta os buckets do usuário ao fim da sessão.
+     */
+    public void release(String username) {
+        if (username != null) {
+            buckets.remove(username);
+        }
+    }
+
+    public void updateUserLimit(RateLimit limit) {
+        this.userLimit = limit;
+        LOG.info("Limite por usuário alterado para {}", limit);
+    }
+
+    public void updateTypeLimit(MessageType type, RateLimit limit) {
+        if (limit == null) {
+            typeLimits.remove(type);
+        } else {
+            typeLimits.put(type, limit);
+        }
+        LOG.info("Limite de {} alterado para {}", type, limit);
+    }
+
+    public void updateOverloadThresholds(int maxInFlight, long maxLatency, TimeUnit unit) {
+        overloadDetector.reconfigure(maxInFlight, maxLatency, unit);
+        LOG.info("Limites de sobrecarga alterados: maxInFlight={}, maxLatency={} {}", maxInFlight, maxLatency, unit);
+    }
+
+    public OverloadDetector getOverloadDetector() {
+        return overloadDetector;
+    }
+
+    @Override
+    public double getUserCapacity() {
+        return userLimit.capacity();
+    }
+
+    @Override
+    public double getUserRefillPerSecond() {
+        return userLimit.refillPerSecond();
+    }
+
+    @Override
+    public void setUserLimit(double capacity, double refillPerSecond) {
+        updateUserLimit(new RateLimit(capacity, refillPerSecond));
+    }
+
+    @Override
+    public void setTypeLimit(String messageType, double capacity, double refillPerSecond) {
+        updateTypeLimit(MessageType.valueOf(messageType), new RateLimit(capacity, refillPerSecond));
+    }
+
+    @Override
+    public String getTypeLimits() {
+        return new EnumMap<>(typeLimits).toString();
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return overloadDetector.getMaxInFlight();
+    }
+
+    @Override
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(overloadDetector.getMaxLatencyNanos());
+    }
+
+    @Override
+    public void setOverloadThresholds(int maxInFlight, long maxLatencyMillis) {
+        updateOverloadThresholds(maxInFlight, maxLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int getInFlight() {
+        return overloadDetector.getInFlight();
+    }
+
+    @Override
+    public long getAverageLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(overloadDetector.getAverageLatencyNanos());
+    }
+
+    @Override
+    public boolean isOverloaded() {
+        return overloadDetector.isOverloaded();
+    }
+
+    @Override
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    @Override
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "AdmissionControl");
+    }
+
+    /**
+     * Buckets de um usuário: um geral e um por tipo de mensagem com limite próprio.
+     */
+    private static final class UserBuckets {
+        private final TokenBucket total;
+        private final Map<MessageType, TokenBucket> perType = new EnumMap<>(MessageType.class);
+
+        UserBuckets(RateLimit userLimit) {
+            this.total = new TokenBucket(userLimit);
+        }
+
+        synchronized boolean tryAcquire(MessageType type, RateLimit userLimit, RateLimit typeLimit) {
+            if (typeLimit != null) {
+                TokenBucket typeBucket = perType.get(type);
+                if (typeBucket == null) {
+                    typeBucket = new TokenBucket(typeLimit);
+                    perType.put(type, typeBucket);
+                }
+                if (typeBucket.availableTokens(typeLimit) < 1) {
+                    return false;
+                }
+                if (!total.tryAcquire(userLimit, 1)) {
+                    return false;
+                }
+                return typeBucket.tryAcquire(typeLimit, 1);
+            }
+            return total.tryAcquire(userLimit, 1);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package br.com.study.socketchat.server.admission;
+
+/**
+ * Resultado do controle de admissão de uma mensagem recebida.
+ */
+public enum AdmissionDecision {
+    ACCEPTED,
+    /** O usuário excedeu o limite próprio ou do tipo de mensagem. */
+    RATE_LIMITED,
+    /** O servidor está sobrecarregado e a mensagem é cara demais para ser processada agora. */
+    SHED
+}
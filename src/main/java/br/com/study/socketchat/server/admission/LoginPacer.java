@@ -0,0 +1,271 @@
+package br.com.study.socketchat.server.admission;
+
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ritmo dos logins, para que uma reconexão em massa (ex.: todos os clientes depois de um
+ * restart) não sobrecarregue o servidor. Cada login entra numa fila limitada e sai dela
+ * em ordem de chegada, no ritmo de um token bucket e só quando há vaga entre os logins
+ * em andamento. Com a fila cheia, ou depois de esperar demais, o login é recusado e o
+ * cliente tenta de novo com backoff. Os logins de streams multiplexados não entram na
+ * fila ({@link #tryEnter()}): sem capacidade no momento, são recusados na hora.
+ * <p>
+ * A fila offline e as publicações pendentes não são entregues dentro do login: a
+ * reposição é agendada num pool pequeno ({@link #scheduleReplay}), o que limita quantas
+ * filas ficam em memória ao mesmo tempo.
+ */
+@Component
+public class LoginPacer implements LoginPacingMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(LoginPacer.class);
+
+    private static final RateLimit DEFAULT_RATE = new RateLimit(200, 500);
+    private static final int DEFAULT_MAX_CONCURRENT = 64;
+    private static final int DEFAULT_MAX_PENDING = 10_000;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 10_000;
+    private static final int REPLAY_THREADS = 4;
+    private static final long IDLE_TOKEN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Lock justo: só o primeiro da fila disputa token e vaga, os demais esperam na ordem de chegada
+    private final ReentrantLock queue = new ReentrantLock(true);
+    private final Slots slots;
+    private final TokenBucket bucket;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final ThreadPoolExecutor replayExecutor;
+    private volatile RateLimit rate;
+    private volatile int maxConcurrent;
+    private volatile int maxPending;
+    private volatile long maxWaitMillis;
+
+    public LoginPacer() {
+        this.rate = DEFAULT_RATE;
+        this.bucket = new TokenBucket(DEFAULT_RATE);
+        this.maxConcurrent = DEFAULT_MAX_CONCURRENT;
+        this.slots = new Slots(DEFAULT_MAX_CONCURRENT);
+        this.maxPending = DEFAULT_MAX_PENDING;
+        this.maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+        this.replayExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(REPLAY_THREADS, replayThreads());
+    }
+
+    /**
+     * Espera a vez do login. Retorna false se a fila está cheia, o prazo de espera acabou
+     * ou a thread foi interrompida; se retornar true, o chamador deve chamar {@link #leave()}.
+     */
+    public boolean enter() {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        try {
+            if (!queue.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            try {
+                if (!awaitToken(deadline) || !slots.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    rejectedCount.incrementAndGet();
+                    return false;
+                }
+                admittedCount.incrementAndGet();
+                return true;
+            } finally {
+                queue.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount.incrementAndGet();
+            return false;
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Como {@link #enter()}, mas sem esperar: admite só se ninguém está na fila e há token e
+     * vaga agora. Para quem não pode bloquear, como a thread de leitura de uma conexão
+     * multiplexada, que atende todos os streams dela; se retornar true, o chamador deve
+     * chamar {@link #leave()}.
+     */
+    public boolean tryEnter() {
+        // Quem já espera na fila tem a vez; furar a fila aqui quebraria a ordem de chegada
+        if (pending.get() > 0 || !queue.tryLock()) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        try {
+            if (!slots.tryAcquire()) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (!bucket.tryAcquire(rate, 1)) {
+                slots.release();
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            admittedCount.incrementAndGet();
+            return true;
+        } finally {
+            queue.unlock();
+        }
+    }
+
+    /**
+     * Fim do login admitido por {@link #enter()} ou {@link #tryEnter()}: libera a vaga.
+     */
+    public void leave() {
+        slots.release();
+    }
+
+    /**
+     * Agenda a reposição da fila offline de um usuário recém-conectado.
+     */
+    public void scheduleReplay(String username, Runnable replay) {
+        replayExecutor.execute(() -> {
+            try {
+                replay.run();
+            } catch (RuntimeException e) {
+                LOG.error("Erro ao repor mensagens pendentes de {}", username, e);
+            }
+        });
+    }
+
+    public void updateRate(RateLimit limit) {
+        this.rate = limit;
+        LOG.info("Ritmo de logins alterado para {}", limit);
+    }
+
+    public void updateLimits(int maxConcurrent, int maxPending, long maxWaitMillis) {
+        if (maxConcurrent <= 0 || maxPending <= 0 || maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("Limites de login inválidos: concorrentes=" + maxConcurrent
+                    + ", fila=" + maxPending + ", espera=" + maxWaitMillis);
+        }
+        synchronized (slots) {
+            int delta = maxConcurrent - this.maxConcurrent;
+            if (delta > 0) {
+                slots.release(delta);
+            } else if (delta < 0) {
+                slots.reduce(-delta);
+            }
+            this.maxConcurrent = maxConcurrent;
+        }
+        this.maxPending = maxPending;
+        this.maxWaitMillis = maxWaitMillis;
+        LOG.info("Limites de login alterados: concorrentes={}, fila={}, espera={} ms", maxConcurrent, maxPending, maxWaitMillis);
+    }
+
+    private boolean awaitToken(long deadline) throws InterruptedException {
+        while (!bucket.tryAcquire(rate, 1)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            double perSecond = rate.refillPerSecond();
+            long interval = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : IDLE_TOKEN_WAIT_NANOS;
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, interval));
+        }
+        return true;
+    }
+
+    @Override
+    public double getLoginBurst() {
+        return rate.capacity();
+    }
+
+    @Override
+    public double getLoginsPerSecond() {
+        return rate.refillPerSecond();
+    }
+
+    @Override
+    public void setLoginRate(double burst, double loginsPerSecond) {
+        updateRate(new RateLimit(burst, loginsPerSecond));
+    }
+
+    @Override
+    public int getMaxConcurrentLogins() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public int getMaxPendingLogins() {
+        return maxPending;
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    @Override
+    public void setLimits(int maxConcurrentLogins, int maxPendingLogins, long maxWaitMillis) {
+        updateLimits(maxConcurrentLogins, maxPendingLogins, maxWaitMillis);
+    }
+
+    @Override
+    public int getPendingLogins() {
+        return pending.get();
+    }
+
+    @Override
+    public int getActiveLogins() {
+        return Math.max(0, maxConcurrent - slots.availablePermits());
+    }
+
+    @Override
+    public int getPendingReplays() {
+        return replayExecutor.getQueue().size();
+    }
+
+    @Override
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private static ThreadFactory replayThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "offline-replay-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "LoginPacing");
+    }
+
+    /**
+     * Vagas de login; reduzir o limite não interrompe quem já está em andamento.
+     */
+    private static final class Slots extends Semaphore {
+        Slots(int permits) {
+            super(permits);
+        }
+
+        void reduce(int permits) {
+            reducePermits(permits);
+        }
+    }
+}
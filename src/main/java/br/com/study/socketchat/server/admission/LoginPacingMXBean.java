@@ -0,0 +1,32 @@
+package br.com.study.socketchat.server.admission;
+
+/**
+ * Interface JMX para consultar e reconfigurar o ritmo dos logins
+ * (em {@code br.com.study.socketchat:type=LoginPacing}).
+ */
+public interface LoginPacingMXBean {
+
+    double getLoginBurst();
+
+    double getLoginsPerSecond();
+
+    void setLoginRate(double burst, double loginsPerSecond);
+
+    int getMaxConcurrentLogins();
+
+    int getMaxPendingLogins();
+
+    long getMaxWaitMillis();
+
+    void setLimits(int maxConcurrentLogins, int maxPendingLogins, long maxWaitMillis);
+
+    int getPendingLogins();
+
+    int getActiveLogins();
+
+    int getPendingReplays();
+
+    long getAdmittedCount();
+
+    long getRejectedCount();
+}
@@ -0,0 +1,96 @@
+package br.com.study.socketchat.server.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Detecta sobrecarga global do servidor a partir da quantidade de mensagens em
+ * processamento (profundidade da fila de despacho) e da latência média (EWMA)
+ * do processamento de cada mensagem.
+ * <p>
+ * A média decai com o tempo desde a última amostra (meia-vida de {@link #DECAY_HALF_LIFE_NANOS}):
+ * se o servidor para de despachar mensagens, a latência antiga deixa de contar e o
+ * descarte de mensagens caras termina sozinho, sem depender de tráfego barato.
+ */
+public class OverloadDetector {
+    private static final double EWMA_WEIGHT = 0.1;
+    static final long DECAY_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong ewmaLatencyNanos = new AtomicLong();
+    private final AtomicLong lastSampleNanos = new AtomicLong();
+    private final LongSupplier clock;
+
+    private volatile int maxInFlight;
+    private volatile long maxLatencyNanos;
+
+    public OverloadDetector(int maxInFlight, long maxLatency, TimeUnit unit) {
+        this(maxInFlight, maxLatency, unit, System::nanoTime);
+    }
+
+    OverloadDetector(int maxInFlight, long maxLatency, TimeUnit unit, LongSupplier clock) {
+        this.clock = clock;
+        this.lastSampleNanos.set(clock.getAsLong());
+        reconfigure(maxInFlight, maxLatency, unit);
+    }
+
+    public void reconfigure(int maxInFlight, long maxLatency, TimeUnit unit) {
+        if (maxInFlight <= 0 || maxLatency <= 0) {
+            throw new IllegalArgumentException("Limites de sobrecarga devem ser positivos");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxLatencyNanos = unit.toNanos(maxLatency);
+    }
+
+    public long onDispatchStart() {
+        inFlight.incrementAndGet();
+        return clock.getAsLong();
+    }
+
+    public void onDispatchEnd(long startNanos) {
+        inFlight.decrementAndGet();
+        long now = clock.getAsLong();
+        long latency = now - startNanos;
+        long elapsed = now - lastSampleNanos.get();
+        long current;
+        long updated;
+        do {
+            current = ewmaLatencyNanos.get();
+            long decayed = decay(current, elapsed);
+            updated = decayed == 0 ? latency : (long) (decayed + EWMA_WEIGHT * (latency - decayed));
+        } while (!ewmaLatencyNanos.compareAndSet(current, updated));
+        lastSampleNanos.set(now);
+    }
+
+    public boolean isOverloaded() {
+        return inFlight.get() > maxInFlight || getAverageLatencyNanos() > maxLatencyNanos;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Latência média já descontado o decaimento desde a última mensagem despachada.
+     */
+    public long getAverageLatencyNanos() {
+        return decay(ewmaLatencyNanos.get(), clock.getAsLong() - lastSampleNanos.get());
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    private static long decay(long latencyNanos, long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return latencyNanos;
+        }
+        return (long) (latencyNanos * Math.pow(0.5, (double) elapsedNanos / DECAY_HALF_LIFE_NANOS));
+    }
+}
@@ -0,0 +1,13 @@
+package br.com.study.socketchat.server.admission;
+
+/**
+ * Limite de um token bucket: capacidade (rajada máxima) e reposição por segundo.
+ */
+public record RateLimit(double capacity, double refillPerSecond) {
+
+    public RateLimit {
+        if (capacity <= 0 || refillPerSecond < 0) {
+            throw new IllegalArgumentException("Limite inválido: capacidade=" + capacity + ", reposição=" + refillPerSecond);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package br.com.study.socketchat.server.admission;
+
+/**
+ * Token bucket com reposição contínua.
+ * O limite é informado a cada consulta, então uma reconfiguração vale
+ * imediatamente para todos os buckets já criados.
+ */
+public class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(RateLimit initialLimit) {
+        this.tokens = initialLimit.capacity();
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire(RateLimit limit, double cost) {
+        refill(limit, System.nanoTime());
+        if (tokens >= cost) {
+            tokens -= cost;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized double availableTokens(RateLimit limit) {
+        refill(limit, System.nanoTime());
+        return tokens;
+    }
+
+    private void refill(RateLimit limit, long now) {
+        double elapsedSeconds = (now - lastRefillNanos) / NANOS_PER_SECOND;
+        tokens = Math.min(limit.capacity(), tokens + elapsedSeconds * limit.refillPerSecond());
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.study.socketchat.server.capture;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.persistence.BinaryCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato dos arquivos de captura de tráfego: cabeçalho (mágico, versão e instante de
+ * início em milissegundos de época) seguido de registros com tamanho prefixado. Cada
+ * registro traz o deslocamento de chegada, a sessão e a mensagem no formato do
+ * {@link BinaryCodec}, mais os destinatários e a sequência do cliente.
+ */
+public final class CaptureFile {
+    private static final int MAGIC = 0x53434150;
+    private static final int VERSION = 1;
+
+    private CaptureFile() {
+    }
+
+    /**
+     * Gravação sequencial; usada por uma única thread.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+
+        public Writer(Path file, long startEpochMillis) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startEpochMillis);
+        }
+
+        public void write(CaptureRecord captured) throws IOException {
+            record.reset();
+            recordOut.writeLong(captured.offsetNanos());
+            recordOut.writeInt(captured.session());
+            Message message = captured.message();
+            BinaryCodec.writeMessage(recordOut, message);
+            recordOut.writeLong(message.getSequence());
+            List<String> recipients = message.getRecipients();
+            recordOut.writeInt(recipients == null ? -1 : recipients.size());
+            if (recipients != null) {
+                for (String recipient : recipients) {
+                    BinaryCodec.writeString(recordOut, recipient);
+                }
+            }
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Leitura sequencial de um arquivo de captura.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startEpochMillis;
+        private byte[] buffer = new byte[256];
+
+        public Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Não é um arquivo de captura: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Versão de captura não suportada: " + version);
+            }
+            this.startEpochMillis = in.readLong();
+        }
+
+        public long getStartEpochMillis() {
+            return startEpochMillis;
+        }
+
+        /**
+         * Próximo registro, ou null no fim do arquivo (um registro truncado no fim, de uma
+         * captura interrompida, também encerra a leitura).
+         */
+        public CaptureRecord next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+            } catch (EOFException e) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.wrap(buffer, 0, length);
+            long offsetNanos = record.getLong();
+            int session = record.getInt();
+            Message message = BinaryCodec.readMessage(record);
+            message.setSequence(record.getLong());
+            int recipients = record.getInt();
+            if (recipients >= 0) {
+                List<String> names = new ArrayList<>(recipients);
+                for (int i = 0; i < recipients; i++) {
+                    names.add(BinaryCodec.readString(record));
+                }
+                message.setRecipients(names);
+            }
+            return new CaptureRecord(offsetNanos, session, message);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
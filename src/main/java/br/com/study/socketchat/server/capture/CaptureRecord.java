@@ -0,0 +1,10 @@
+package br.com.study.socketchat.server.capture;
+
+import br.com.study.socketchat.commons.Message;
+
+/**
+ * Uma mensagem recebida pelo servidor durante a captura: quando chegou (nanossegundos
+ * desde o início da captura), por qual conexão e o conteúdo como o cliente enviou.
+ */
+public record CaptureRecord(long offsetNanos, int session, Message message) {
+}
@@ -0,0 +1,185 @@
+package br.com.study.socketchat.server.capture;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captura opcional das mensagens recebidas pelos handlers, para reproduzir depois o
+ * tráfego real contra um servidor local (ver {@code br.com.study.socketchat.tools.TrafficReplay}).
+ * Liga com {@code -Dchat.capture.file=<arquivo>} ou via JMX. Desligada, custa aos handlers
+ * a leitura de um campo volátil; ligada, uma cópia rasa da mensagem numa fila limitada:
+ * a gravação em disco é feita por uma thread própria e, com a fila cheia, o registro é
+ * descartado (e contado) em vez de atrasar a conexão.
+ */
+@Component
+public class TrafficCapture implements TrafficCaptureMXBean {
+    public static final String FILE_PROPERTY = "chat.capture.file";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficCapture.class);
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final long POLL_MILLIS = 100;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicLong capturedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile Recording recording;
+
+    public TrafficCapture() {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null && !file.isBlank()) {
+            try {
+                startCapture(file);
+            } catch (IllegalArgumentException e) {
+                LOG.error("Captura de tráfego não iniciada: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Identificador da próxima conexão nos registros de captura.
+     */
+    public int openSession() {
+        return sessions.incrementAndGet();
+    }
+
+    /**
+     * Registra uma mensagem recebida pela conexão, se a captura estiver ligada.
+     */
+    public void record(int session, Message message) {
+        Recording current = recording;
+        if (current != null) {
+            current.offer(session, message);
+        }
+    }
+
+    @Override
+    public synchronized void startCapture(String file) {
+        if (recording != null) {
+            throw new IllegalArgumentException("Captura já em andamento em " + recording.file);
+        }
+        Path path = Paths.get(file);
+        try {
+            recording = new Recording(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Não foi possível abrir " + path + ": " + e.getMessage());
+        }
+        LOG.info("Captura de tráfego iniciada em {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public synchronized void stopCapture() {
+        Recording current = recording;
+        if (current == null) {
+            return;
+        }
+        recording = null;
+        current.stop();
+        LOG.info("Captura de tráfego encerrada: {} mensagens, {} descartadas", capturedCount.get(), droppedCount.get());
+    }
+
+    /**
+     * Grava o que ainda está na fila ao desligar o servidor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopCapture();
+    }
+
+    @Override
+    public boolean isCapturing() {
+        return recording != null;
+    }
+
+    @Override
+    public String getCaptureFile() {
+        Recording current = recording;
+        return current == null ? null : current.file.toString();
+    }
+
+    @Override
+    public long getCapturedCount() {
+        return capturedCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "TrafficCapture");
+    }
+
+    /**
+     * Uma captura em andamento: fila de registros e a thread que os grava.
+     */
+    private final class Recording {
+        private final Path file;
+        private final long startNanos = System.nanoTime();
+        private final BlockingQueue<CaptureRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final CaptureFile.Writer writer;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Recording(Path file) throws IOException {
+            this.file = file;
+            this.writer = new CaptureFile.Writer(file, System.currentTimeMillis());
+            this.thread = new Thread(this::run, "traffic-capture");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void offer(int session, Message message) {
+            // Cópia rasa: o processamento altera alguns campos (ex.: remetente de grupo) depois daqui
+            if (!queue.offer(new CaptureRecord(System.nanoTime() - startNanos, session, message.copy()))) {
+                droppedCount.incrementAndGet();
+            }
+        }
+
+        void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            try (CaptureFile.Writer out = writer) {
+                while (running || !queue.isEmpty()) {
+                    CaptureRecord captured = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (captured == null) {
+                        out.flush();
+                        continue;
+                    }
+                    out.write(captured);
+                    capturedCount.incrementAndGet();
+                }
+            } catch (IOException e) {
+                LOG.error("Erro ao gravar captura de tráfego em {}, captura interrompida", file, e);
+                // Sem o lock: stopCapture o segura enquanto espera esta thread
+                if (recording == this) {
+                    recording = null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
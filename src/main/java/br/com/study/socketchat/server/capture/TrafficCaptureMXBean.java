@@ -0,0 +1,20 @@
+package br.com.study.socketchat.server.capture;
+
+/**
+ * Interface JMX para ligar e desligar a captura de tráfego em tempo de execução
+ * (em {@code br.com.study.socketchat:type=TrafficCapture}).
+ */
+public interface TrafficCaptureMXBean {
+
+    void startCapture(String file);
+
+    void stopCapture();
+
+    boolean isCapturing();
+
+    String getCaptureFile();
+
+    long getCapturedCount();
+
+    long getDroppedCount();
+}
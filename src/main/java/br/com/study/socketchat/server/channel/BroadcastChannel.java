@@ -0,0 +1,141 @@
+package br.com.study.socketchat.server.channel;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Canal de avisos: só o dono publica, os inscritos apenas leem.
+ * Cada publicação entra uma única vez no {@link PostLog}. De cada inscrito o canal guarda
+ * só um cursor (a sequência da próxima publicação que ele ainda não recebeu), num vetor
+ * indexado pelo id denso do usuário; publicar não toca nos inscritos offline, que
+ * recuperam o que perderam a partir do cursor no próximo login.
+ */
+public class BroadcastChannel {
+    public static final int LOG_CAPACITY = 1024;
+
+    private final String name;
+    private final String owner;
+    private final LocalDateTime createdAt;
+    private final PostLog log = new PostLog(LOG_CAPACITY);
+    private final RoaringBitmap subscribers = new RoaringBitmap();
+    private long[] cursors = new long[0];
+
+    public BroadcastChannel(String name, String owner, LocalDateTime createdAt) {
+        this.name = name;
+        this.owner = owner;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Resultado de uma publicação: a sequência no log e os inscritos online que devem recebê-la
+     * agora (o cursor deles já foi avançado).
+     */
+    public record Publication(long sequence, RoaringBitmap targets) {
+    }
+
+    /**
+     * Publicações que um inscrito ainda não recebeu, a primeira com a sequência
+     * {@code firstSequence}; {@code missed} conta as que já saíram do log.
+     */
+    public record Backlog(List<Message> posts, long firstSequence, long missed) {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public synchronized void subscribe(int userId) {
+        subscribe(userId, log.head());
+    }
+
+    /**
+     * Inscreve o usuário a partir da sequência informada (o cursor restaurado de um snapshot).
+     */
+    public synchronized void subscribe(int userId, long cursor) {
+        if (!subscribers.add(userId)) {
+            throw new IllegalArgumentException("Usuário já está inscrito no canal");
+        }
+        if (userId >= cursors.length) {
+            cursors = Arrays.copyOf(cursors, Math.max(userId + 1, cursors.length * 2));
+        }
+        cursors[userId] = cursor;
+    }
+
+    public synchronized void unsubscribe(int userId) {
+        if (!subscribers.remove(userId)) {
+            throw new IllegalArgumentException("Usuário não está inscrito no canal");
+        }
+    }
+
+    public synchronized int subscriberCount() {
+        return subscribers.cardinality();
+    }
+
+    /**
+     * Acrescenta a publicação ao log. {@code onlineFilter} reduz os inscritos aos que estão
+     * online; só o cursor deles é avançado, o custo não depende dos inscritos offline.
+     */
+    public synchronized Publication publish(Message post, UnaryOperator<RoaringBitmap> onlineFilter) {
+        long sequence = log.append(post);
+        RoaringBitmap targets = onlineFilter.apply(subscribers);
+        targets.forEach(userId -> cursors[userId] = sequence + 1);
+        return new Publication(sequence, targets);
+    }
+
+    /**
+     * Entrega ao inscrito tudo que ele ainda não recebeu e move o cursor para o fim do log.
+     * Retorna null se o usuário não é inscrito.
+     */
+    public synchronized Backlog catchUp(int userId) {
+        if (!subscribers.contains(userId)) {
+            return null;
+        }
+        long cursor = cursors[userId];
+        long first = Math.max(cursor, log.firstSequence());
+        List<Message> posts = log.from(first);
+        cursors[userId] = log.head();
+        return new Backlog(posts, first, first - cursor);
+    }
+
+    /**
+     * Volta o cursor do inscrito para uma publicação que não chegou a ser entregue.
+     */
+    public synchronized void rewind(int userId, long sequence) {
+        if (subscribers.contains(userId) && cursors[userId] > sequence) {
+            cursors[userId] = sequence;
+        }
+    }
+
+    public synchronized long cursorOf(int userId) {
+        return cursors[userId];
+    }
+
+    public synchronized RoaringBitmap subscribers() {
+        return subscribers.copy();
+    }
+
+    public synchronized long firstSequence() {
+        return log.firstSequence();
+    }
+
+    public synchronized List<Message> posts() {
+        return log.from(0);
+    }
+
+    public synchronized void restorePosts(long firstSequence, List<Message> posts) {
+        log.restore(firstSequence, posts);
+    }
+}
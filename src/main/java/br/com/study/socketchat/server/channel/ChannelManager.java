@@ -0,0 +1,129 @@
+package br.com.study.socketchat.server.channel;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.session.UserIdRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Registro dos canais de avisos. Criação, inscrições e publicações passam pelo
+ * {@link StateJournal}; a posição dos cursores só é persistida nos snapshots.
+ */
+@Component
+public class ChannelManager {
+    private final Map<String, BroadcastChannel> channels = new ConcurrentHashMap<>();
+    private final UserIdRegistry userIdRegistry;
+    private final StateJournal stateJournal;
+
+    public ChannelManager(UserIdRegistry userIdRegistry, StateJournal stateJournal) {
+        this.userIdRegistry = userIdRegistry;
+        this.stateJournal = stateJournal;
+    }
+
+    public void createChannel(String name, String owner) {
+        createChannel(name, owner, LocalDateTime.now());
+    }
+
+    /**
+     * Cria o canal com o horário de criação informado (no replay, o registrado no log).
+     */
+    public void createChannel(String name, String owner, LocalDateTime createdAt) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Nome de canal inválido");
+        }
+        stateJournal.record(StateChange.channelCreated(name, owner, createdAt), () -> {
+            if (channels.putIfAbsent(name, new BroadcastChannel(name, owner, createdAt)) != null) {
+                throw new IllegalArgumentException("Canal já existe: " + name);
+            }
+        });
+    }
+
+    public void subscribe(String channelName, String username) {
+        BroadcastChannel channel = findChannelOrThrow(channelName);
+        int userId = userIdRegistry.idOf(username);
+        stateJournal.record(StateChange.channelSubscribed(channelName, username), () -> channel.subscribe(userId));
+    }
+
+    public void unsubscribe(String channelName, String username) {
+        BroadcastChannel channel = findChannelOrThrow(channelName);
+        int userId = userIdRegistry.idOf(username);
+        stateJournal.record(StateChange.channelUnsubscribed(channelName, username), () -> channel.unsubscribe(userId));
+    }
+
+    /**
+     * Registra a publicação no log do canal. Retorna os inscritos online que devem recebê-la.
+     */
+    public BroadcastChannel.Publication publish(String channelName, Message post,
+                                                UnaryOperator<RoaringBitmap> onlineFilter) {
+        BroadcastChannel channel = findChannelOrThrow(channelName);
+        BroadcastChannel.Publication[] publication = new BroadcastChannel.Publication[1];
+        stateJournal.record(StateChange.channelPosted(channelName, post),
+                () -> publication[0] = channel.publish(post, onlineFilter));
+        return publication[0];
+    }
+
+    /**
+     * Recria um canal a partir do snapshot, com as publicações ainda no log e o cursor de cada inscrito.
+     */
+    public void restoreChannel(String name, String owner, LocalDateTime createdAt, long firstSequence,
+                               List<Message> posts, Map<String, Long> cursors) {
+        BroadcastChannel channel = new BroadcastChannel(name, owner, createdAt);
+        channel.restorePosts(firstSequence, posts);
+        for (Map.Entry<String, Long> entry : cursors.entrySet()) {
+            channel.subscribe(userIdRegistry.idOf(entry.getKey()), entry.getValue());
+        }
+        if (channels.putIfAbsent(name, channel) != null) {
+            throw new IllegalArgumentException("Canal já existe: " + name);
+        }
+    }
+
+    public BroadcastChannel findChannelOrThrow(String channelName) {
+        BroadcastChannel channel = channels.get(channelName);
+        if (channel == null) {
+            throw new IllegalArgumentException("Canal não existe: " + channelName);
+        }
+        return channel;
+    }
+
+    public List<BroadcastChannel> findAll() {
+        return new ArrayList<>(channels.values());
+    }
+
+    /**
+     * Publicações pendentes do usuário em cada canal em que está inscrito; os cursores
+     * passam para o fim de cada log.
+     */
+    public Map<BroadcastChannel, BroadcastChannel.Backlog> catchUp(String username) {
+        Map<BroadcastChannel, BroadcastChannel.Backlog> pending = new LinkedHashMap<>();
+        int userId = userIdRegistry.findId(username);
+        if (userId < 0) {
+            return pending;
+        }
+        for (BroadcastChannel channel : channels.values()) {
+            BroadcastChannel.Backlog backlog = channel.catchUp(userId);
+            if (backlog != null && (!backlog.posts().isEmpty() || backlog.missed() > 0)) {
+                pending.put(channel, backlog);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Cursor de cada inscrito do canal, por nome de usuário (para o snapshot).
+     */
+    public Map<String, Long> cursorsOf(BroadcastChannel channel) {
+        Map<String, Long> cursors = new LinkedHashMap<>();
+        channel.subscribers().forEach(userId -> cursors.put(userIdRegistry.nameOf(userId), channel.cursorOf(userId)));
+        return cursors;
+    }
+}
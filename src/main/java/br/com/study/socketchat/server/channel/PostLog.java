@@ -0,0 +1,75 @@
+package br.com.study.socketchat.server.channel;
+
+import br.com.study.socketchat.commons.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log circular das publicações de um canal. Cada publicação recebe a próxima sequência
+ * (a partir de 0) e só as últimas {@code capacity} continuam disponíveis.
+ * Não é thread-safe: o acesso é protegido pelo {@link BroadcastChannel}.
+ */
+public class PostLog {
+    private final Message[] ring;
+    private final int mask;
+    private long head;
+    // Sequência inicial do log (maior que 0 quando recarregado de um snapshot)
+    private long start;
+
+    public PostLog(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacidade do log deve ser potência de dois: " + capacity);
+        }
+        this.ring = new Message[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Acrescenta a publicação, sobrescrevendo a mais antiga se o log estiver cheio.
+     * Retorna a sequência atribuída.
+     */
+    public long append(Message post) {
+        long sequence = head++;
+        ring[(int) (sequence & mask)] = post;
+        return sequence;
+    }
+
+    /**
+     * Sequência que a próxima publicação receberá.
+     */
+    public long head() {
+        return head;
+    }
+
+    /**
+     * Sequência da publicação mais antiga ainda disponível.
+     */
+    public long firstSequence() {
+        return Math.max(start, head - ring.length);
+    }
+
+    /**
+     * Publicações de {@code from} (limitado à mais antiga disponível) até a mais recente.
+     */
+    public List<Message> from(long from) {
+        long first = Math.max(from, firstSequence());
+        List<Message> posts = new ArrayList<>((int) Math.max(0, head - first));
+        for (long sequence = first; sequence < head; sequence++) {
+            posts.add(ring[(int) (sequence & mask)]);
+        }
+        return posts;
+    }
+
+    /**
+     * Recarrega o log a partir do estado persistido: {@code posts} são as publicações
+     * disponíveis, a primeira com a sequência {@code firstSequence}.
+     */
+    public void restore(long firstSequence, List<Message> posts) {
+        head = firstSequence;
+        start = firstSequence;
+        for (Message post : posts) {
+            append(post);
+        }
+    }
+}
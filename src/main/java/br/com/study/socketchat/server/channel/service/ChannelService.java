@@ -0,0 +1,119 @@
+package br.com.study.socketchat.server.channel.service;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.ChatHandler;
+import br.com.study.socketchat.server.channel.BroadcastChannel;
+import br.com.study.socketchat.server.channel.ChannelManager;
+import br.com.study.socketchat.server.service.ChatService;
+import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.session.UserIdRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regras dos canais de avisos: só o dono publica; a publicação é gravada uma vez no log
+ * do canal e empurrada apenas para os inscritos online. Os demais a recebem do log
+ * quando fazem login ({@link #deliverPendingPosts}).
+ */
+@Service
+public class ChannelService {
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelService.class);
+    private static final String SERVER_USER = "SERVER";
+
+    private final ChannelManager channelManager;
+    private final SessionManager sessionManager;
+    private final UserIdRegistry userIdRegistry;
+    private final ChatService chatService;
+
+    public ChannelService(ChannelManager channelManager, SessionManager sessionManager,
+                          UserIdRegistry userIdRegistry, ChatService chatService) {
+        this.channelManager = channelManager;
+        this.sessionManager = sessionManager;
+        this.userIdRegistry = userIdRegistry;
+        this.chatService = chatService;
+    }
+
+    public void createChannel(String channelName, String owner) {
+        channelManager.createChannel(channelName, owner);
+    }
+
+    public void subscribe(String username, String channelName) {
+        channelManager.subscribe(channelName, username);
+    }
+
+    public void unsubscribe(String username, String channelName) {
+        channelManager.unsubscribe(channelName, username);
+    }
+
+    public List<BroadcastChannel> findChannels() {
+        return channelManager.findAll();
+    }
+
+    /**
+     * Publica no canal ({@code to}). Retorna quantos inscritos receberam a publicação na hora.
+     */
+    public int post(Message message, ChatHandler sender) {
+        BroadcastChannel channel = channelManager.findChannelOrThrow(message.getTo());
+        if (!channel.getOwner().equals(message.getFrom())) {
+            throw new IllegalArgumentException("Apenas o dono do canal pode publicar em " + channel.getName());
+        }
+        Message post = new Message(MessageType.CHANNEL_POST, message.getFrom(), channel.getName(), null);
+        post.copyContentFrom(message);
+        post.setTimestamp(message.getTimestamp());
+        post.setMessageId(chatService.nextMessageId());
+        post.setTrace(message.getTrace());
+
+        BroadcastChannel.Publication publication =
+                channelManager.publish(channel.getName(), post, sessionManager::intersectOnline);
+        int[] delivered = new int[1];
+        publication.targets().forEach(userId -> {
+            ChatHandler handler = sessionManager.getHandler(userIdRegistry.nameOf(userId));
+            if (handler != null && handler.deliver(post, sender)) {
+                delivered[0]++;
+            } else {
+                // Caiu entre a publicação e a entrega: recebe do log no próximo login
+                channel.rewind(userId, publication.sequence());
+            }
+        });
+        // A publicação fica no log do canal; quem a recebe depois não entra nas medidas de latência
+        post.setTrace(null);
+        return delivered[0];
+    }
+
+    /**
+     * Entrega ao usuário recém-conectado as publicações que ele perdeu em cada canal.
+     * Chamado no login, antes de qualquer publicação nova chegar à conexão.
+     */
+    public void deliverPendingPosts(String username, ChatHandler handler) {
+        Map<BroadcastChannel, BroadcastChannel.Backlog> pending = channelManager.catchUp(username);
+        int userId = userIdRegistry.findId(username);
+        boolean closed = false;
+        for (Map.Entry<BroadcastChannel, BroadcastChannel.Backlog> entry : pending.entrySet()) {
+            BroadcastChannel channel = entry.getKey();
+            BroadcastChannel.Backlog backlog = entry.getValue();
+            if (closed) {
+                channel.rewind(userId, backlog.firstSequence());
+                continue;
+            }
+            if (backlog.missed() > 0) {
+                handler.sendGenericMessage(new Message(MessageType.SERVER_MESSAGE, SERVER_USER, username,
+                        backlog.missed() + " publicações antigas de #" + channel.getName() + " não estão mais disponíveis"));
+            }
+            LOG.info("Entregando {} publicações de #{} para {}", backlog.posts().size(), channel.getName(), username);
+            List<Message> posts = backlog.posts();
+            for (int i = 0; i < posts.size(); i++) {
+                if (!handler.deliver(posts.get(i))) {
+                    // Conexão encerrada durante o login: o cursor volta para o que não foi entregue
+                    channel.rewind(userId, backlog.firstSequence() + i);
+                    closed = true;
+                    break;
+                }
+            }
+        }
+    }
+}
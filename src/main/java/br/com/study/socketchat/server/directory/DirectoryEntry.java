@@ -0,0 +1,15 @@
+package br.com.study.socketchat.server.directory;
+
+/**
+ * Resultado de uma busca no diretório: um usuário (com o estado online) ou um grupo.
+ */
+public record DirectoryEntry(String name, boolean group, boolean online) {
+
+    public static DirectoryEntry user(String name, boolean online) {
+        return new DirectoryEntry(name, false, online);
+    }
+
+    public static DirectoryEntry group(String name) {
+        return new DirectoryEntry(name, true, false);
+    }
+}
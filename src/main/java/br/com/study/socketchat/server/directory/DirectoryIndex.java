@@ -0,0 +1,212 @@
+package br.com.study.socketchat.server.directory;
+
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Índice em memória dos nomes de usuários e grupos para a busca do diretório. É mantido
+ * incrementalmente (cadastro de usuário, criação e remoção de grupo), então uma consulta
+ * nunca percorre a lista completa: os candidatos saem da interseção de bitmaps de
+ * trigramas ({@link NameIndex}) e só eles são conferidos.
+ * <p>
+ * Usuários usam os ids do {@code UserIdRegistry}, os mesmos do bitmap de usuários online,
+ * então separar online de offline é uma interseção de bitmaps. Grupos recebem ids próprios.
+ */
+@Component
+public class DirectoryIndex implements DirectoryMXBean {
+    private final NameIndex users = new NameIndex();
+    private final NameIndex groups = new NameIndex();
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nextGroupId;
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder totalSearchNanos = new LongAdder();
+    private final AtomicLong maxSearchNanos = new AtomicLong();
+
+    public void addUser(int id, String name) {
+        lock.writeLock().lock();
+        try {
+            users.add(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addGroup(String name) {
+        lock.writeLock().lock();
+        try {
+            if (!groupIds.containsKey(name)) {
+                int id = nextGroupId++;
+                groupIds.put(name, id);
+                groups.add(id, name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeGroup(String name) {
+        lock.writeLock().lock();
+        try {
+            Integer id = groupIds.remove(name);
+            if (id != null) {
+                groups.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Até {@code limit} usuários cujo nome começa com ou contém a consulta, nesta ordem:
+     * online por prefixo, offline por prefixo, online por substring, offline por substring.
+     * {@code intersectOnline} recebe candidatos e devolve quais deles estão online.
+     */
+    public List<DirectoryEntry> searchUsers(String query, int limit, UnaryOperator<RoaringBitmap> intersectOnline) {
+        long start = System.nanoTime();
+        String key = NameIndex.normalize(query);
+        List<DirectoryEntry> result = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap prefix = users.prefixCandidates(key);
+            RoaringBitmap onlinePrefix = intersectOnline.apply(prefix);
+            Predicate<String> startsWith = name -> name.startsWith(key);
+            collectUsers(onlinePrefix, startsWith, true, limit, result);
+            if (result.size() < limit) {
+                collectUsers(prefix.andNot(onlinePrefix), startsWith, false, limit, result);
+            }
+            if (result.size() < limit && key.length() >= NameIndex.MIN_SUBSTRING) {
+                // Quem começa com a consulta já foi listado acima
+                Predicate<String> contains = name -> !name.startsWith(key) && name.contains(key);
+                RoaringBitmap substring = users.substringCandidates(key);
+                RoaringBitmap onlineSubstring = intersectOnline.apply(substring);
+                collectUsers(onlineSubstring, contains, true, limit, result);
+                if (result.size() < limit) {
+                    collectUsers(substring.andNot(onlineSubstring), contains, false, limit, result);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        recordSearch(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Até {@code limit} grupos, primeiro os que começam com a consulta, depois os que a contêm.
+     */
+    public List<DirectoryEntry> searchGroups(String query, int limit) {
+        long start = System.nanoTime();
+        String key = NameIndex.normalize(query);
+        List<DirectoryEntry> result = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            collectGroups(groups.prefixCandidates(key), name -> name.startsWith(key), limit, result);
+            if (result.size() < limit && key.length() >= NameIndex.MIN_SUBSTRING) {
+                collectGroups(groups.substringCandidates(key),
+                        name -> !name.startsWith(key) && name.contains(key), limit, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        recordSearch(System.nanoTime() - start);
+        return result;
+    }
+
+    private void collectUsers(RoaringBitmap candidates, Predicate<String> matches, boolean online,
+                              int limit, List<DirectoryEntry> result) {
+        candidates.forEachWhile(id -> {
+            if (matches.test(users.keyOf(id))) {
+                result.add(DirectoryEntry.user(users.nameOf(id), online));
+            }
+            return result.size() < limit;
+        });
+    }
+
+    private void collectGroups(RoaringBitmap candidates, Predicate<String> matches, int limit,
+                               List<DirectoryEntry> result) {
+        candidates.forEachWhile(id -> {
+            if (matches.test(groups.keyOf(id))) {
+                result.add(DirectoryEntry.group(groups.nameOf(id)));
+            }
+            return result.size() < limit;
+        });
+    }
+
+    private void recordSearch(long nanos) {
+        searchCount.increment();
+        totalSearchNanos.add(nanos);
+        maxSearchNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public int getIndexedUsers() {
+        lock.readLock().lock();
+        try {
+            return users.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getIndexedGroups() {
+        lock.readLock().lock();
+        try {
+            return groups.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getGramCount() {
+        lock.readLock().lock();
+        try {
+            return users.gramCount() + groups.gramCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    @Override
+    public double getAverageSearchMicros() {
+        long count = searchCount.sum();
+        return count == 0 ? 0 : totalSearchNanos.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public long getMaxSearchMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxSearchNanos.get());
+    }
+
+    @Override
+    public void resetStatistics() {
+        searchCount.reset();
+        totalSearchNanos.reset();
+        maxSearchNanos.set(0);
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "Directory");
+    }
+}
@@ -0,0 +1,21 @@
+package br.com.study.socketchat.server.directory;
+
+/**
+ * Interface JMX do índice do diretório (em {@code br.com.study.socketchat:type=Directory}).
+ */
+public interface DirectoryMXBean {
+
+    int getIndexedUsers();
+
+    int getIndexedGroups();
+
+    int getGramCount();
+
+    long getSearchCount();
+
+    double getAverageSearchMicros();
+
+    long getMaxSearchMicros();
+
+    void resetStatistics();
+}
@@ -0,0 +1,141 @@
+package br.com.study.socketchat.server.directory;
+
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice de trigramas sobre um conjunto de nomes identificados por inteiros densos. Cada
+ * nome (em minúsculas) contribui com seus trigramas, mais dois com marcadores de início,
+ * de modo que:
+ * <ul>
+ *     <li>prefixo de qualquer tamanho é a interseção dos trigramas da consulta com os marcadores;</li>
+ *     <li>substring de 3 ou mais caracteres é a interseção dos trigramas da consulta.</li>
+ * </ul>
+ * A interseção pode trazer falsos positivos (trigramas em posições diferentes), então quem
+ * consulta confirma cada candidato com {@link #keyOf}. Não é thread-safe.
+ */
+final class NameIndex {
+    static final int MIN_SUBSTRING = 3;
+    private static final int GRAM = 3;
+    private static final String START = "\u0002\u0002";
+
+    private final Map<String, RoaringBitmap> grams = new HashMap<>();
+    private String[] names = new String[64];
+    private String[] keys = new String[64];
+    private int size;
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(int id, String name) {
+        if (id < names.length && names[id] != null) {
+            return;
+        }
+        ensureCapacity(id);
+        String key = normalize(name);
+        names[id] = name;
+        keys[id] = key;
+        size++;
+        for (String gram : gramsOf(START + key)) {
+            grams.computeIfAbsent(gram, ignored -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    void remove(int id) {
+        if (id >= names.length || names[id] == null) {
+            return;
+        }
+        for (String gram : gramsOf(START + keys[id])) {
+            RoaringBitmap ids = grams.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+        names[id] = null;
+        keys[id] = null;
+        size--;
+    }
+
+    /**
+     * Candidatos cujo nome pode começar com {@code key} (já normalizada). Somente leitura.
+     */
+    RoaringBitmap prefixCandidates(String key) {
+        return intersect(gramsOf(START + key));
+    }
+
+    /**
+     * Candidatos cujo nome pode conter {@code key} (já normalizada, com pelo menos
+     * {@value #MIN_SUBSTRING} caracteres).
+     */
+    RoaringBitmap substringCandidates(String key) {
+        return intersect(gramsOf(key));
+    }
+
+    String nameOf(int id) {
+        return names[id];
+    }
+
+    String keyOf(int id) {
+        return keys[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int gramCount() {
+        return grams.size();
+    }
+
+    /**
+     * Interseção começando pelos trigramas mais raros, para os bitmaps intermediários
+     * ficarem pequenos logo no primeiro passo. Com um trigrama só, devolve o próprio bitmap
+     * do índice: o resultado é somente leitura.
+     */
+    private RoaringBitmap intersect(List<String> queryGrams) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(queryGrams.size());
+        for (String gram : queryGrams) {
+            RoaringBitmap ids = grams.get(gram);
+            if (ids == null) {
+                return new RoaringBitmap();
+            }
+            bitmaps.add(ids);
+        }
+        bitmaps.sort(Comparator.comparingInt(RoaringBitmap::cardinality));
+        RoaringBitmap result = bitmaps.get(0);
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result = result.and(bitmaps.get(i));
+        }
+        return result;
+    }
+
+    private static List<String> gramsOf(String text) {
+        List<String> result = new ArrayList<>(Math.max(1, text.length() - GRAM + 1));
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (!result.contains(gram)) {
+                result.add(gram);
+            }
+        }
+        return result;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= names.length) {
+            int capacity = Math.max(names.length * 2, id + 1);
+            names = Arrays.copyOf(names, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+}
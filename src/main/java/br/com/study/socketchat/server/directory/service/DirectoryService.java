@@ -0,0 +1,53 @@
+package br.com.study.socketchat.server.directory.service;
+
+import br.com.study.socketchat.server.directory.DirectoryEntry;
+import br.com.study.socketchat.server.directory.DirectoryIndex;
+import br.com.study.socketchat.server.session.SessionManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Busca no diretório de usuários e grupos. A consulta pode começar com {@code @} (só
+ * usuários) ou {@code #} (só grupos); sem marcador, vêm até {@value #MAX_RESULTS} de
+ * cada tipo, usuários antes dos grupos.
+ * O índice fica em {@link DirectoryIndex}, mantido por {@code SessionManager} e
+ * {@code GroupManager}; aqui só entra o estado online, para a ordenação.
+ */
+@Service
+public class DirectoryService {
+    public static final int MAX_RESULTS = 20;
+    private static final int MAX_QUERY_LENGTH = 64;
+
+    private final DirectoryIndex directoryIndex;
+    private final SessionManager sessionManager;
+
+    public DirectoryService(DirectoryIndex directoryIndex, SessionManager sessionManager) {
+        this.directoryIndex = directoryIndex;
+        this.sessionManager = sessionManager;
+    }
+
+    public List<DirectoryEntry> search(String query) {
+        String term = query == null ? "" : query.strip();
+        boolean users = !term.startsWith("#");
+        boolean groups = !term.startsWith("@");
+        if (!users || !groups) {
+            term = term.substring(1).strip();
+        }
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("Informe o texto da busca");
+        }
+        if (term.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Busca maior que " + MAX_QUERY_LENGTH + " caracteres");
+        }
+        List<DirectoryEntry> result = new ArrayList<>();
+        if (users) {
+            result.addAll(directoryIndex.searchUsers(term, MAX_RESULTS, sessionManager::intersectOnline));
+        }
+        if (groups) {
+            result.addAll(directoryIndex.searchGroups(term, MAX_RESULTS));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,244 @@
+package br.com.study.socketchat.server.flow;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.outbound.OutboundStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Controle de fluxo por créditos do cliente para o servidor. Cada sessão só pode enviar
+ * até o limite concedido pelo servidor (mensagem {@code CREDIT}); o tamanho de cada nova
+ * janela cai linearmente com a pressão a jusante, medida por dois sinais:
+ * <ul>
+ *     <li>bytes enfileirados para escrita em todas as conexões;</li>
+ *     <li>fila do destinatário mais lento das mensagens da própria sessão.</li>
+ * </ul>
+ * Acima do limite superior de qualquer um deles a janela é zero: o cliente para ao gastar
+ * o que já tinha, e a sessão é reavaliada a cada {@value #RECHECK_MILLIS} ms até a fila
+ * baixar. Quem envia demais desacelera aos poucos, em vez de crescer a memória do servidor;
+ * o que chega acima do limite concedido é rejeitado sem ser processado.
+ */
+@Component
+public class CreditController implements FlowControlMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(CreditController.class);
+
+    private static final int DEFAULT_BASE_WINDOW = 128;
+    private static final long DEFAULT_RECIPIENT_LOW = 256L * 1024;
+    private static final long DEFAULT_RECIPIENT_HIGH = 4L * 1024 * 1024;
+    private static final long DEFAULT_GLOBAL_LOW = 64L * 1024 * 1024;
+    private static final long DEFAULT_GLOBAL_HIGH = 256L * 1024 * 1024;
+    private static final long RECHECK_MILLIS = 20;
+
+    private final OutboundStats outboundStats;
+    private final Map<String, SessionCredits> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rechecks;
+    private final AtomicInteger stalledSessions = new AtomicInteger();
+    private final LongAdder totalStallNanos = new LongAdder();
+    private final LongAdder grantCount = new LongAdder();
+    private final LongAdder violationCount = new LongAdder();
+    private volatile int baseWindow = DEFAULT_BASE_WINDOW;
+    private volatile long recipientLow = DEFAULT_RECIPIENT_LOW;
+    private volatile long recipientHigh = DEFAULT_RECIPIENT_HIGH;
+    private volatile long globalLow = DEFAULT_GLOBAL_LOW;
+    private volatile long globalHigh = DEFAULT_GLOBAL_HIGH;
+
+    public CreditController(OutboundStats outboundStats) {
+        this.outboundStats = outboundStats;
+        this.rechecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flow-credit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Créditos de uma conexão recém-autenticada, a partir da última sequência processada;
+     * a primeira janela é concedida aqui. {@code sender} enfileira o CREDIT na conexão.
+     */
+    public SessionCredits open(String username, long processed, Consumer<Message> sender) {
+        SessionCredits credits = new SessionCredits(this, username, processed, sender);
+        SessionCredits previous = sessions.put(username, credits);
+        if (previous != null) {
+            previous.close();
+        }
+        credits.replenish(processed);
+        return credits;
+    }
+
+    public void close(SessionCredits credits) {
+        sessions.remove(credits.getUsername(), credits);
+        credits.close();
+    }
+
+    public void recordViolation(String username, long sequence) {
+        violationCount.increment();
+        LOG.debug("{} enviou a sequência {} acima dos créditos concedidos, rejeitada", username, sequence);
+    }
+
+    /**
+     * Próxima janela da sessão, em mensagens: a janela base reduzida pelo pior dos dois sinais.
+     */
+    long window(SessionCredits credits) {
+        double global = headroom(outboundStats.getQueuedBytes(), globalLow, globalHigh);
+        double recipient = headroom(credits.recipientBacklog(), recipientLow, recipientHigh);
+        return (long) Math.floor(baseWindow * Math.min(global, recipient));
+    }
+
+    long recipientLowWatermark() {
+        return recipientLow;
+    }
+
+    void scheduleRecheck(SessionCredits credits) {
+        try {
+            rechecks.schedule(credits::recheck, RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Servidor parando: a sessão fica sem créditos até a conexão cair
+            LOG.debug("Reavaliação de créditos de {} ignorada: controle encerrado", credits.getUsername());
+        }
+    }
+
+    void onGrant() {
+        grantCount.increment();
+    }
+
+    void onStall() {
+        stalledSessions.incrementAndGet();
+    }
+
+    void onStallEnd(long stalledNanos) {
+        stalledSessions.decrementAndGet();
+        totalStallNanos.add(stalledNanos);
+    }
+
+    private static double headroom(long queued, long low, long high) {
+        if (queued <= low) {
+            return 1;
+        }
+        if (queued >= high) {
+            return 0;
+        }
+        return (double) (high - queued) / (high - low);
+    }
+
+    private static void checkWatermarks(long low, long high) {
+        if (low < 0 || high <= low) {
+            throw new IllegalArgumentException("Limites inválidos: inferior=" + low + ", superior=" + high);
+        }
+    }
+
+    @Override
+    public int getBaseWindow() {
+        return baseWindow;
+    }
+
+    @Override
+    public void setBaseWindow(int messages) {
+        if (messages <= 0) {
+            throw new IllegalArgumentException("Janela inválida: " + messages);
+        }
+        this.baseWindow = messages;
+        LOG.info("Janela base de créditos alterada para {}", messages);
+    }
+
+    @Override
+    public long getRecipientLowWatermarkBytes() {
+        return recipientLow;
+    }
+
+    @Override
+    public long getRecipientHighWatermarkBytes() {
+        return recipientHigh;
+    }
+
+    @Override
+    public void setRecipientWatermarks(long lowBytes, long highBytes) {
+        checkWatermarks(lowBytes, highBytes);
+        this.recipientLow = lowBytes;
+        this.recipientHigh = highBytes;
+        LOG.info("Limites de fila por destinatário alterados: {} / {} bytes", lowBytes, highBytes);
+    }
+
+    @Override
+    public long getGlobalLowWatermarkBytes() {
+        return globalLow;
+    }
+
+    @Override
+    public long getGlobalHighWatermarkBytes() {
+        return globalHigh;
+    }
+
+    @Override
+    public void setGlobalWatermarks(long lowBytes, long highBytes) {
+        checkWatermarks(lowBytes, highBytes);
+        this.globalLow = lowBytes;
+        this.globalHigh = highBytes;
+        LOG.info("Limites de fila global alterados: {} / {} bytes", lowBytes, highBytes);
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return outboundStats.getQueuedBytes();
+    }
+
+    @Override
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public int getStalledSessions() {
+        return stalledSessions.get();
+    }
+
+    @Override
+    public long getTotalStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalStallNanos.sum());
+    }
+
+    @Override
+    public long getGrantCount() {
+        return grantCount.sum();
+    }
+
+    @Override
+    public long getViolationCount() {
+        return violationCount.sum();
+    }
+
+    @Override
+    public long getSessionCredits(String username) {
+        SessionCredits credits = sessions.get(username);
+        return credits == null ? -1 : credits.available();
+    }
+
+    @Override
+    public long getSessionStallMillis(String username) {
+        SessionCredits credits = sessions.get(username);
+        return credits == null ? -1 : TimeUnit.NANOSECONDS.toMillis(credits.stalledNanos());
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "FlowControl");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rechecks.shutdownNow();
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.study.socketchat.server.flow;
+
+/**
+ * Interface JMX do controle de fluxo por créditos (em {@code br.com.study.socketchat:type=FlowControl}).
+ */
+public interface FlowControlMXBean {
+
+    int getBaseWindow();
+
+    void setBaseWindow(int messages);
+
+    long getRecipientLowWatermarkBytes();
+
+    long getRecipientHighWatermarkBytes();
+
+    void setRecipientWatermarks(long lowBytes, long highBytes);
+
+    long getGlobalLowWatermarkBytes();
+
+    long getGlobalHighWatermarkBytes();
+
+    void setGlobalWatermarks(long lowBytes, long highBytes);
+
+    long getQueuedBytes();
+
+    int getSessions();
+
+    int getStalledSessions();
+
+    long getTotalStallMillis();
+
+    long getGrantCount();
+
+    long getViolationCount();
+
+    long getSessionCredits(String username);
+
+    long getSessionStallMillis(String username);
+}
@@ -0,0 +1,156 @@
+package br.com.study.socketchat.server.flow;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.outbound.OutboundQueue;
+
+import java.util.function.Consumer;
+
+/**
+ * Créditos de envio de uma conexão. O limite concedido é cumulativo (maior sequência que o
+ * cliente pode enviar) e nunca diminui; com pressão, a janela seguinte é que fica menor,
+ * até zero, quando o cliente para ao esgotar o que já tinha e o limite só avança na
+ * reavaliação periódica.
+ */
+public final class SessionCredits {
+    private static final String SERVER_USER = "SERVER";
+
+    private final CreditController controller;
+    private final String username;
+    private final Consumer<Message> sender;
+    private long processed;
+    private long granted;
+    private long stalledSince;
+    private long stalledNanos;
+    private boolean recheckScheduled;
+    private boolean closed;
+    // Destinatário com a maior fila entre os que receberam mensagens desta sessão
+    private volatile OutboundQueue slowestRecipient;
+
+    SessionCredits(CreditController controller, String username, long processed, Consumer<Message> sender) {
+        this.controller = controller;
+        this.username = username;
+        this.processed = processed;
+        this.granted = processed;
+        this.sender = sender;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Registra a fila de um destinatário que acabou de receber uma mensagem desta sessão.
+     * Chamado por quem faz o fan-out, em qualquer thread.
+     */
+    public void observeRecipient(OutboundQueue recipient) {
+        long backlog = recipient.queuedBytes();
+        if (backlog <= controller.recipientLowWatermark()) {
+            return;
+        }
+        OutboundQueue slowest = slowestRecipient;
+        if (slowest == null || slowest == recipient || backlog > slowest.queuedBytes()) {
+            slowestRecipient = recipient;
+        }
+    }
+
+    /**
+     * Fila atual do destinatário mais lento; esquecido quando volta abaixo do limite inferior.
+     */
+    long recipientBacklog() {
+        OutboundQueue slowest = slowestRecipient;
+        if (slowest == null) {
+            return 0;
+        }
+        long backlog = slowest.queuedBytes();
+        if (backlog <= controller.recipientLowWatermark()) {
+            slowestRecipient = null;
+        }
+        return backlog;
+    }
+
+    /**
+     * O cliente enviou uma sequência acima do limite concedido (cliente antigo ou com defeito);
+     * a mensagem é rejeitada sem ser processada.
+     */
+    public synchronized boolean exceeds(long sequence) {
+        return sequence > granted;
+    }
+
+    /**
+     * Mensagens até {@code sequence} processadas: concede a próxima janela, se houver, ou
+     * agenda a reavaliação se o cliente ficou sem créditos.
+     */
+    public synchronized void replenish(long sequence) {
+        if (closed) {
+            return;
+        }
+        processed = Math.max(processed, sequence);
+        long window = controller.window(this);
+        long limit = processed + window;
+        // Concede em blocos para não responder cada ACK com um CREDIT
+        if (limit > granted && (limit - granted >= Math.max(1, window / 4) || processed >= granted)) {
+            grant(limit);
+        } else if (processed >= granted) {
+            stall();
+        }
+    }
+
+    /**
+     * Reavaliação periódica de uma sessão sem créditos.
+     */
+    synchronized void recheck() {
+        recheckScheduled = false;
+        if (closed || processed < granted) {
+            return;
+        }
+        long window = controller.window(this);
+        if (window > 0) {
+            grant(processed + window);
+        } else {
+            stall();
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        endStall(System.nanoTime());
+    }
+
+    synchronized long available() {
+        return Math.max(0, granted - processed);
+    }
+
+    synchronized long stalledNanos() {
+        return stalledSince == 0 ? stalledNanos : stalledNanos + (System.nanoTime() - stalledSince);
+    }
+
+    private void grant(long limit) {
+        granted = limit;
+        endStall(System.nanoTime());
+        Message credit = new Message(MessageType.CREDIT, SERVER_USER, username, null);
+        credit.setSequence(limit);
+        sender.accept(credit);
+        controller.onGrant();
+    }
+
+    private void stall() {
+        if (stalledSince == 0) {
+            stalledSince = System.nanoTime();
+            controller.onStall();
+        }
+        if (!recheckScheduled) {
+            recheckScheduled = true;
+            controller.scheduleRecheck(this);
+        }
+    }
+
+    private void endStall(long now) {
+        if (stalledSince != 0) {
+            long stalled = now - stalledSince;
+            stalledNanos += stalled;
+            stalledSince = 0;
+            controller.onStallEnd(stalled);
+        }
+    }
+}
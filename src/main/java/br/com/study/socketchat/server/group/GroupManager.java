@@ -1,26 +1,68 @@
 package br.com.study.socketchat.server.group;
 
 import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.server.directory.DirectoryIndex;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.session.UserIdRegistry;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class GroupManager {
+    /**
+     * Acima deste número de membros o grupo passa a usar bitmap; abaixo da metade volta ao conjunto.
+     */
+    public static final int BITMAP_THRESHOLD = 1024;
+
     private Map<String, Group> groups;
+    private final UserIdRegistry userIdRegistry;
+    private final StateJournal stateJournal;
+    private final DirectoryIndex directoryIndex;
 
-    public GroupManager() {
-        groups = new HashMap<>();
+    public GroupManager(UserIdRegistry userIdRegistry, StateJournal stateJournal, DirectoryIndex directoryIndex) {
+        this.userIdRegistry = userIdRegistry;
+        this.stateJournal = stateJournal;
+        this.directoryIndex = directoryIndex;
+        groups = new ConcurrentHashMap<>();
     }
 
     public void addGroup(Group group) {
-        if (groups.containsKey(group.getName())) {
+        stateJournal.record(StateChange.groupCreated(group.getName(), group.getCreator(), group.getCreatedAt()), () -> {
+            if (groups.containsKey(group.getName())) {
+                throw new IllegalArgumentException("Group already exists");
+            }
+            groups.put(group.getName(), group);
+            directoryIndex.addGroup(group.getName());
+        });
+    }
+
+    /**
+     * Recria um grupo a partir do estado persistido, já com todos os membros.
+     */
+    public void restoreGroup(String name, String creator, LocalDateTime createdAt, Collection<String> members) {
+        if (groups.containsKey(name)) {
             throw new IllegalArgumentException("Group already exists");
         }
-        groups.put(group.getName(), group);
+        Group group = new Group(name, creator);
+        group.setCreatedAt(createdAt);
+        if (members.size() > BITMAP_THRESHOLD) {
+            group.convertToBitmap(userIdRegistry);
+        }
+        group.addMembers(members);
+        if (!members.contains(creator)) {
+            group.removeMember(creator);
+        }
+        if (!group.isGroupEmpty()) {
+            groups.put(name, group);
+            directoryIndex.addGroup(name);
+        }
     }
 
     public List<Group> findAll() {
@@ -28,24 +70,42 @@ public class GroupManager {
     }
 
     public void addMemberToGroup(String groupName, String member) {
-        Group group = findGroupOrThrow(groupName);
-        group.addMember(member);
+        // Busca e conversão dentro da alteração: um grupo removido no meio tempo falha aqui e no replay,
+        // e a troca de representação não corre com outras entradas e saídas do log
+        stateJournal.record(StateChange.memberJoined(groupName, member), () -> {
+            Group group = findGroupOrThrow(groupName);
+            group.addMember(member);
+            if (!group.isBitmapBacked() && group.memberCount() > BITMAP_THRESHOLD) {
+                group.convertToBitmap(userIdRegistry);
+            }
+        });
     }
 
     public void removeMemberFromGroup(String groupName, String member) {
-        Group group = findGroupOrThrow(groupName);
-        group.removeMember(member);
-        if (group.isGroupEmpty()) {
-            System.out.println("Group is empty, so it will be removed");
-            groups.remove(groupName);
-        }
+        // A remoção do grupo vazio faz parte da alteração: nada entra no log entre as duas
+        stateJournal.record(StateChange.memberLeft(groupName, member), () -> {
+            Group current = findGroupOrThrow(groupName);
+            current.removeMember(member);
+            if (current.isGroupEmpty()) {
+                System.out.println("Group is empty, so it will be removed");
+                groups.remove(groupName);
+                directoryIndex.removeGroup(groupName);
+            } else if (current.isBitmapBacked() && current.memberCount() < BITMAP_THRESHOLD / 2) {
+                current.convertToHashSet();
+            }
+        });
+    }
+
+    public boolean hasGroup(String groupName) {
+        return groups.containsKey(groupName);
     }
 
     public Group findGroupOrThrow(String groupName) {
-        if (!groups.containsKey(groupName)) {
+        Group group = groups.get(groupName);
+        if (group == null) {
             throw new IllegalArgumentException("Group doesn't exist");
         }
-        return groups.get(groupName);
+        return group;
     }
 
     public Group findGroupWithUser(String groupName, String userName) {
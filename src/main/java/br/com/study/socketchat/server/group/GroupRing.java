@@ -0,0 +1,118 @@
+package br.com.study.socketchat.server.group;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer de um grupo: vários produtores (as threads dos handlers) reservam uma
+ * posição com um incremento atômico, que é também a sequência do grupo, e publicam a
+ * tarefa no slot. Um único consumidor executa os slots em ordem de sequência; um slot
+ * reservado mas ainda não publicado segura os seguintes até ser preenchido.
+ * <p>
+ * Com o anel cheio, o produtor espera o consumidor liberar espaço.
+ */
+final class GroupRing {
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String groupName;
+    private final int mask;
+    private final AtomicReferenceArray<Runnable> slots;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Só o consumidor escreve; os produtores leem para saber se há espaço
+    private volatile long consumed;
+
+    GroupRing(String groupName, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacidade do anel deve ser potência de 2: " + capacity);
+        }
+        this.groupName = groupName;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    String groupName() {
+        return groupName;
+    }
+
+    /**
+     * Reserva a próxima sequência do grupo e publica a tarefa nela; {@code onFull} é
+     * chamado antes de esperar, se o anel estiver cheio. Retorna a sequência reservada.
+     */
+    long publish(Runnable task, Runnable onFull) {
+        long sequence = claimed.getAndIncrement();
+        if (sequence - consumed > mask) {
+            onFull.run();
+            while (sequence - consumed > mask) {
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            }
+        }
+        slots.set(index(sequence), task);
+        return sequence;
+    }
+
+    /**
+     * Marca o anel como em consumo; só quem conseguir deve chamar {@link #drain}.
+     */
+    boolean tryStartDrain() {
+        return hasPublished() && draining.compareAndSet(false, true);
+    }
+
+    /**
+     * Executa até {@code limit} tarefas em ordem. Retorna true se ainda há tarefa publicada
+     * e o consumo continua reservado para o chamador (que deve reagendar).
+     */
+    boolean drain(int limit, TaskFailureHandler onFailure) {
+        while (true) {
+            int executed = 0;
+            Runnable task;
+            while (executed < limit && (task = slots.get(index(consumed))) != null) {
+                long sequence = consumed;
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    onFailure.failed(this, sequence, e);
+                }
+                slots.set(index(sequence), null);
+                consumed = sequence + 1;
+                executed++;
+            }
+            if (executed == limit && hasPublished()) {
+                return true;
+            }
+            draining.set(false);
+            // O produtor publica antes de tentar reservar o consumo: um dos dois vê o outro
+            if (!hasPublished() || !draining.compareAndSet(false, true)) {
+                return false;
+            }
+        }
+    }
+
+    long claimedCount() {
+        return claimed.get();
+    }
+
+    long consumedCount() {
+        return consumed;
+    }
+
+    int backlog() {
+        return (int) Math.max(0, claimed.get() - consumed);
+    }
+
+    private boolean hasPublished() {
+        return slots.get(index(consumed)) != null;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    @FunctionalInterface
+    interface TaskFailureHandler {
+        void failed(GroupRing ring, long sequence, RuntimeException error);
+    }
+}
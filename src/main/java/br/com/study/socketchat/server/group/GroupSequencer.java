@@ -0,0 +1,125 @@
+package br.com.study.socketchat.server.group;
+
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordem total das mensagens de cada grupo. Quem publica num grupo reserva uma sequência
+ * no anel do grupo ({@link GroupRing}) e volta para a própria conexão; o fan-out é
+ * executado por um único consumidor por grupo, na ordem das sequências, então todos os
+ * membros recebem as mensagens do grupo na mesma ordem. Não há lock global: grupos
+ * diferentes são consumidos em paralelo pelo pool, e cada anel só é disputado pelos
+ * produtores do próprio grupo.
+ */
+@Component
+public class GroupSequencer implements GroupSequencerMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(GroupSequencer.class);
+    private static final int RING_CAPACITY = 1024;
+    // Tarefas por vez antes de devolver a thread ao pool, para um grupo movimentado não monopolizá-la
+    private static final int DRAIN_BATCH = 256;
+
+    private final ConcurrentMap<String, GroupRing> rings = new ConcurrentHashMap<>();
+    private final ExecutorService consumers;
+    private final AtomicLong sequencedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong fullRingWaits = new AtomicLong();
+
+    public GroupSequencer() {
+        this.consumers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), consumerThreads());
+    }
+
+    /**
+     * Coloca o fan-out de uma mensagem na ordem do grupo e retorna a sequência atribuída.
+     * Bloqueia só se o anel do grupo estiver cheio.
+     */
+    public long submit(String groupName, Runnable fanOut) {
+        GroupRing ring = rings.computeIfAbsent(groupName, name -> new GroupRing(name, RING_CAPACITY));
+        long sequence = ring.publish(fanOut, fullRingWaits::incrementAndGet);
+        if (ring.tryStartDrain()) {
+            consumers.execute(() -> drain(ring));
+        }
+        return sequence;
+    }
+
+    /**
+     * Descarta o anel de um grupo removido. Tarefas já publicadas nele ainda são entregues.
+     */
+    public void retire(String groupName) {
+        rings.remove(groupName);
+    }
+
+    private void drain(GroupRing ring) {
+        long before = ring.consumedCount();
+        boolean more = ring.drain(DRAIN_BATCH, this::taskFailed);
+        sequencedCount.addAndGet(ring.consumedCount() - before);
+        if (more) {
+            consumers.execute(() -> drain(ring));
+        }
+    }
+
+    private void taskFailed(GroupRing ring, long sequence, RuntimeException error) {
+        failedCount.incrementAndGet();
+        LOG.error("Erro no fan-out da mensagem {} do grupo {}", sequence, ring.groupName(), error);
+    }
+
+    @Override
+    public int getRingCapacity() {
+        return RING_CAPACITY;
+    }
+
+    @Override
+    public int getActiveGroups() {
+        return rings.size();
+    }
+
+    @Override
+    public long getSequencedCount() {
+        return sequencedCount.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public long getFullRingWaits() {
+        return fullRingWaits.get();
+    }
+
+    @Override
+    public int getLargestBacklog() {
+        return rings.values().stream().mapToInt(GroupRing::backlog).max().orElse(0);
+    }
+
+    @Override
+    public long getGroupSequence(String groupName) {
+        GroupRing ring = rings.get(groupName);
+        return ring == null ? 0 : ring.claimedCount();
+    }
+
+    private static ThreadFactory consumerThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "group-sequencer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "GroupSequencer");
+    }
+}
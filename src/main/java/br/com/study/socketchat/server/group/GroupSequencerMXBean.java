@@ -0,0 +1,21 @@
+package br.com.study.socketchat.server.group;
+
+/**
+ * Interface JMX do sequenciador de grupos (em {@code br.com.study.socketchat:type=GroupSequencer}).
+ */
+public interface GroupSequencerMXBean {
+
+    int getRingCapacity();
+
+    int getActiveGroups();
+
+    long getSequencedCount();
+
+    long getFailedCount();
+
+    long getFullRingWaits();
+
+    int getLargestBacklog();
+
+    long getGroupSequence(String groupName);
+}
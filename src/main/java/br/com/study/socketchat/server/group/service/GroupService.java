@@ -2,6 +2,7 @@ package br.com.study.socketchat.server.group.service;
 
 import br.com.study.socketchat.commons.Group;
 import br.com.study.socketchat.server.group.GroupManager;
+import br.com.study.socketchat.server.group.GroupSequencer;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -9,9 +10,11 @@ import java.util.List;
 @Service
 public class GroupService {
     private final GroupManager groupManager;
+    private final GroupSequencer groupSequencer;
 
-    public GroupService(GroupManager groupManager) {
+    public GroupService(GroupManager groupManager, GroupSequencer groupSequencer) {
         this.groupManager = groupManager;
+        this.groupSequencer = groupSequencer;
     }
 
     public void createGroup(Group group) {
@@ -28,6 +31,9 @@ public class GroupService {
 
     public void leaveGroup(String username, String groupName) {
         groupManager.removeMemberFromGroup(groupName, username);
+        if (!groupManager.hasGroup(groupName)) {
+            groupSequencer.retire(groupName);
+        }
     }
 
     public Group findGroupWithUser(String groupName, String userName) {
@@ -0,0 +1,164 @@
+package br.com.study.socketchat.server.jfr;
+
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gravação contínua do JDK Flight Recorder com os eventos do chat ({@link MessageDispatchEvent},
+ * {@link GroupFanOutEvent}, {@link MessageDeliveryEvent}, {@link OfflineStorageEvent}).
+ * Liga com {@code -Dchat.jfr.dir=<diretório>} ou via JMX. Usa a configuração {@code default}
+ * da JVM mais o perfil {@value #PROFILE_RESOURCE}, que só registra os eventos do chat acima
+ * de um limite de duração. A gravação mantém os últimos {@value #MAX_AGE_MINUTES} minutos
+ * em disco e é gravada no diretório ao parar (ou a qualquer momento com {@link #dumpRecording}).
+ */
+@Component
+public class ChatFlightRecorder implements FlightRecorderMXBean {
+    public static final String DIRECTORY_PROPERTY = "chat.jfr.dir";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChatFlightRecorder.class);
+    private static final String PROFILE_RESOURCE = "/jfr/socketchat.jfc";
+    private static final String RECORDING_NAME = "socketchat";
+    private static final long MAX_AGE_MINUTES = 60;
+    private static final long MAX_SIZE_MEGABYTES = 256;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private Recording recording;
+    private Path recordingFile;
+
+    public ChatFlightRecorder() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory != null && !directory.isBlank()) {
+            try {
+                startRecording(directory);
+            } catch (IllegalArgumentException e) {
+                LOG.error("Gravação JFR não iniciada: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void startRecording(String directory) {
+        if (recording != null) {
+            throw new IllegalArgumentException("Gravação JFR já em andamento, destino " + recordingFile);
+        }
+        Path file = Paths.get(directory).resolve(RECORDING_NAME + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        Recording started = new Recording(loadSettings());
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            started.setName(RECORDING_NAME);
+            started.setToDisk(true);
+            started.setMaxAge(Duration.ofMinutes(MAX_AGE_MINUTES));
+            started.setMaxSize(MAX_SIZE_MEGABYTES * 1024 * 1024);
+            started.setDestination(file);
+            started.setDumpOnExit(true);
+            started.start();
+        } catch (IOException | RuntimeException e) {
+            started.close();
+            throw new IllegalArgumentException("Não foi possível gravar em " + file + ": " + e.getMessage());
+        }
+        recording = started;
+        recordingFile = file;
+        LOG.info("Gravação JFR contínua iniciada, destino {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public synchronized void stopRecording() {
+        if (recording == null) {
+            return;
+        }
+        // Com destino definido, parar já grava o arquivo
+        recording.stop();
+        recording.close();
+        recording = null;
+        LOG.info("Gravação JFR encerrada em {}", recordingFile.toAbsolutePath());
+    }
+
+    @Override
+    public synchronized String dumpRecording(String file) {
+        if (recording == null) {
+            throw new IllegalArgumentException("Nenhuma gravação JFR em andamento");
+        }
+        Path path = Paths.get(file);
+        try {
+            recording.dump(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Não foi possível gravar " + path + ": " + e.getMessage());
+        }
+        LOG.info("Gravação JFR copiada para {}", path.toAbsolutePath());
+        return path.toAbsolutePath().toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRecording();
+    }
+
+    /**
+     * Configuração {@code default} da JVM com os ajustes do perfil do chat por cima.
+     */
+    private static Map<String, String> loadSettings() {
+        Map<String, String> settings = new HashMap<>();
+        try {
+            settings.putAll(Configuration.getConfiguration("default").getSettings());
+        } catch (IOException | ParseException e) {
+            LOG.warn("Configuração JFR padrão indisponível; gravando só os eventos do chat", e);
+        }
+        try (InputStream in = ChatFlightRecorder.class.getResourceAsStream(PROFILE_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Perfil JFR não encontrado: " + PROFILE_RESOURCE);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                settings.putAll(Configuration.create(reader).getSettings());
+            }
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Perfil JFR inválido: " + e.getMessage());
+        }
+        return settings;
+    }
+
+    @Override
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    @Override
+    public synchronized String getRecordingFile() {
+        return recording == null ? null : recordingFile.toAbsolutePath().toString();
+    }
+
+    @Override
+    public long getMaxAgeMinutes() {
+        return MAX_AGE_MINUTES;
+    }
+
+    @Override
+    public long getMaxSizeMegabytes() {
+        return MAX_SIZE_MEGABYTES;
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "FlightRecorder");
+    }
+}
@@ -0,0 +1,24 @@
+package br.com.study.socketchat.server.jfr;
+
+/**
+ * Interface JMX da gravação contínua do JFR (em {@code br.com.study.socketchat:type=FlightRecorder}).
+ */
+public interface FlightRecorderMXBean {
+
+    void startRecording(String directory);
+
+    void stopRecording();
+
+    /**
+     * Grava o conteúdo atual da gravação (até a idade máxima) no arquivo informado.
+     */
+    String dumpRecording(String file);
+
+    boolean isRecording();
+
+    String getRecordingFile();
+
+    long getMaxAgeMinutes();
+
+    long getMaxSizeMegabytes();
+}
@@ -0,0 +1,51 @@
+package br.com.study.socketchat.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Fan-out de uma mensagem de grupo no sequenciador: a duração é a da entrega a todos os
+ * membros (online e fila offline); {@code sequencerDelay} é a espera na fila do grupo.
+ */
+@Name("br.com.study.socketchat.GroupFanOut")
+@Label("Group Fan-out")
+@Category({"Socket Chat", "Fan-out"})
+@Description("Entrega de uma mensagem a todos os membros de um grupo")
+@StackTrace(false)
+public final class GroupFanOutEvent extends Event {
+
+    @Label("Group")
+    private String group;
+
+    @Label("Group Size")
+    private int groupSize;
+
+    @Label("Stored Offline")
+    @Description("Membros que receberam a mensagem na fila offline")
+    private int storedOffline;
+
+    @Label("Bitmap Backed")
+    private boolean bitmapBacked;
+
+    @Label("Sequencer Delay")
+    @Description("Tempo entre a publicação no grupo e o início do fan-out")
+    @Timespan(Timespan.NANOSECONDS)
+    private long sequencerDelay;
+
+    public void finish(String group, int groupSize, int storedOffline, boolean bitmapBacked, long sequencerDelay) {
+        end();
+        if (shouldCommit()) {
+            this.group = group;
+            this.groupSize = groupSize;
+            this.storedOffline = storedOffline;
+            this.bitmapBacked = bitmapBacked;
+            this.sequencerDelay = sequencerDelay;
+            commit();
+        }
+    }
+}
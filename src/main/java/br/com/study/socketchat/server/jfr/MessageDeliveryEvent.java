@@ -0,0 +1,61 @@
+package br.com.study.socketchat.server.jfr;
+
+import br.com.study.socketchat.commons.enums.MessageType;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Entrega de uma mensagem a um usuário, com o destino que ela teve.
+ */
+@Name("br.com.study.socketchat.MessageDelivery")
+@Label("Message Delivery")
+@Category({"Socket Chat", "Delivery"})
+@Description("Entrega de uma mensagem privada a um usuário")
+@StackTrace(false)
+public final class MessageDeliveryEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(MessageDeliveryEvent.class);
+
+    public enum Outcome {
+        // Enfileirada na conexão do destinatário
+        ONLINE,
+        // Destinatário offline: fila offline
+        STORED_OFFLINE,
+        // Conexão do destinatário sendo encerrada: fila offline
+        CONNECTION_CLOSING,
+        UNREGISTERED,
+        // Marcado como online, mas sem sessão
+        NO_SESSION
+    }
+
+    @Label("Receiver")
+    private String receiver;
+
+    @Label("Message Type")
+    private String messageType;
+
+    @Label("Outcome")
+    private String outcome;
+
+    /**
+     * Se alguma gravação habilita o evento. Sem gravação, a entrega não cria o evento: é o caminho
+     * de toda mensagem privada e não deve somar alocações a ele.
+     */
+    public static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    public void finish(String receiver, MessageType type, Outcome outcome) {
+        end();
+        if (shouldCommit()) {
+            this.receiver = receiver;
+            this.messageType = type == null ? null : type.name();
+            this.outcome = outcome.name();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.study.socketchat.server.jfr;
+
+import br.com.study.socketchat.commons.enums.MessageType;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Processamento de uma mensagem recebida, do despacho em {@code ChatHandler} até a resposta
+ * ou a entrega aos destinatários (o fan-out de grupo é registrado à parte, por ser assíncrono).
+ */
+@Name("br.com.study.socketchat.MessageDispatch")
+@Label("Message Dispatch")
+@Category({"Socket Chat", "Handler"})
+@Description("Processamento de uma mensagem recebida por uma conexão")
+@StackTrace(false)
+public final class MessageDispatchEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(MessageDispatchEvent.class);
+
+    @Label("Message Type")
+    private String messageType;
+
+    @Label("User")
+    private String user;
+
+    @Label("Sequence")
+    private long sequence;
+
+    /**
+     * Se alguma gravação habilita o evento. Sem gravação, o despacho não cria o evento: é o caminho
+     * de toda mensagem privada e não deve somar alocações a ele.
+     */
+    public static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    public void finish(MessageType type, String user, long sequence) {
+        end();
+        if (shouldCommit()) {
+            this.messageType = type == null ? null : type.name();
+            this.user = user;
+            this.sequence = sequence;
+            commit();
+        }
+    }
+}
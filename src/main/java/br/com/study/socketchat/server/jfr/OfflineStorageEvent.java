@@ -0,0 +1,60 @@
+package br.com.study.socketchat.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Operação nas filas offline, incluindo a gravação no log de estado e, na retirada, a
+ * leitura dos conteúdos transbordados para disco.
+ */
+@Name("br.com.study.socketchat.OfflineStorage")
+@Label("Offline Storage")
+@Category({"Socket Chat", "Offline Storage"})
+@Description("Armazenamento, retirada ou devolução de mensagens nas filas offline")
+@StackTrace(false)
+public final class OfflineStorageEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(OfflineStorageEvent.class);
+
+    public enum Operation {
+        STORE,
+        STORE_SHARED,
+        RETRIEVE,
+        REQUEUE
+    }
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("User")
+    @Description("Usuário da fila; na gravação compartilhada, o primeiro destinatário")
+    private String user;
+
+    @Label("Recipients")
+    private int recipients;
+
+    @Label("Messages")
+    private int messages;
+
+    /**
+     * Se alguma gravação habilita o evento. Sem gravação, as filas offline não criam o evento.
+     */
+    public static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    public void finish(Operation operation, String user, int recipients, int messages) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation.name();
+            this.user = user;
+            this.recipients = recipients;
+            this.messages = messages;
+            commit();
+        }
+    }
+}
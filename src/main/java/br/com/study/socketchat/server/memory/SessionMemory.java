@@ -0,0 +1,94 @@
+package br.com.study.socketchat.server.memory;
+
+import br.com.study.socketchat.server.outbound.OutboundQueue;
+import br.com.study.socketchat.server.outbound.OutboundScheduler;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
+
+/**
+ * Memória de uma sessão, registrada no {@link SessionMemoryMonitor} do login ao encerramento.
+ * A fila de saída (com o arquivo em transferência) e a janela de retransmissão são da sessão;
+ * os buffers e a tabela de handles do stream de objetos são da conexão e, numa conexão
+ * multiplexada, compartilhados pelos streams (não contam no orçamento de cada um).
+ */
+public final class SessionMemory {
+    // BufferedOutputStream (8 KB) e os buffers de bloco dos streams de objetos (1 KB cada)
+    static final long CONNECTION_BUFFER_BYTES = 10 * 1024;
+
+    private final String username;
+    private final int streamId;
+    private final OutboundQueue outbound;
+    private final OutboundScheduler connection;
+    private final RetransmitBuffer window;
+    private final Runnable evict;
+    private volatile boolean evicted;
+
+    SessionMemory(String username, int streamId, OutboundQueue outbound, OutboundScheduler connection,
+                  RetransmitBuffer window, Runnable evict) {
+        this.username = username;
+        this.streamId = streamId;
+        this.outbound = outbound;
+        this.connection = connection;
+        this.window = window;
+        this.evict = evict;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Stream da sessão numa conexão multiplexada, ou 0 numa conexão comum.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public long queuedBytes() {
+        return outbound.sessionQueuedBytes();
+    }
+
+    public long inFlightBytes() {
+        return outbound.inFlightBytes();
+    }
+
+    public long windowBytes() {
+        return window.bytes();
+    }
+
+    public long handleTableBytes() {
+        return connection.handleTableBytes();
+    }
+
+    public long bufferBytes() {
+        return CONNECTION_BUFFER_BYTES;
+    }
+
+    public boolean isShared() {
+        return streamId != 0;
+    }
+
+    /**
+     * O que conta no orçamento da sessão: fila e janela e, numa conexão só dela, os buffers
+     * e a tabela de handles.
+     */
+    public long ownedBytes() {
+        long owned = queuedBytes() + windowBytes();
+        return isShared() ? owned : owned + handleTableBytes() + bufferBytes();
+    }
+
+    OutboundScheduler connection() {
+        return connection;
+    }
+
+    /**
+     * Encerra a sessão uma única vez; retorna false se ela já tinha sido encerrada.
+     */
+    boolean evict() {
+        if (evicted) {
+            return false;
+        }
+        evicted = true;
+        evict.run();
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package br.com.study.socketchat.server.memory;
+
+import java.util.List;
+
+/**
+ * Interface JMX da memória por sessão (em {@code br.com.study.socketchat:type=SessionMemory}).
+ */
+public interface SessionMemoryMXBean {
+
+    /**
+     * Acima deste total (fila, janela e, numa conexão própria, buffers e tabela de handles)
+     * a sessão é encerrada e o que ela retinha volta para a fila offline. 0 só contabiliza.
+     */
+    long getSessionBudgetBytes();
+
+    void setSessionBudgetBytes(long bytes);
+
+    /**
+     * Estimativa da tabela de handles do stream de saída a partir da qual ele é reiniciado.
+     */
+    long getHandleTableLimitBytes();
+
+    void setHandleTableLimitBytes(long bytes);
+
+    int getSessions();
+
+    /**
+     * Memória de todas as sessões, com os buffers e a tabela de handles de cada conexão uma vez.
+     */
+    long getTotalBytes();
+
+    long getStreamResets();
+
+    long getEvictions();
+
+    /**
+     * As sessões que mais usam memória, da maior para a menor, com a composição do total.
+     */
+    List<String> getTopSessions();
+
+    long getSessionBytes(String username);
+}
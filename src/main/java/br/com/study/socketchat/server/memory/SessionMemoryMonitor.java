@@ -0,0 +1,197 @@
+package br.com.study.socketchat.server.memory;
+
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.outbound.OutboundQueue;
+import br.com.study.socketchat.server.outbound.OutboundScheduler;
+import br.com.study.socketchat.server.outbound.OutboundStats;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contabilidade de memória por sessão: fila de saída, arquivo em transferência, janela de
+ * retransmissão, buffers da conexão e tabela de handles do stream de objetos. A tabela de
+ * handles é limitada pelo próprio escritor, que reinicia o stream a partir de
+ * {@code -Dchat.memory.handleTableLimit} bytes (padrão {@value #DEFAULT_HANDLE_TABLE_LIMIT}).
+ * A cada {@value #SWEEP_MILLIS} ms as sessões acima do orçamento ({@code -Dchat.memory.sessionBudget},
+ * padrão {@value #DEFAULT_SESSION_BUDGET} bytes; 0 só contabiliza) são encerradas: o que
+ * retinham volta para a fila offline, que tem retenção e transbordo para disco.
+ */
+@Component
+public class SessionMemoryMonitor implements SessionMemoryMXBean {
+    public static final String SESSION_BUDGET_PROPERTY = "chat.memory.sessionBudget";
+    public static final String HANDLE_TABLE_LIMIT_PROPERTY = "chat.memory.handleTableLimit";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionMemoryMonitor.class);
+    private static final long DEFAULT_SESSION_BUDGET = 16L * 1024 * 1024;
+    private static final long DEFAULT_HANDLE_TABLE_LIMIT = 512L * 1024;
+    private static final long SWEEP_MILLIS = 1000;
+    private static final int TOP_SESSIONS = 10;
+
+    private final OutboundStats outboundStats;
+    private final Set<SessionMemory> sessions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder evictions = new LongAdder();
+    private volatile long sessionBudget = Long.getLong(SESSION_BUDGET_PROPERTY, DEFAULT_SESSION_BUDGET);
+    private volatile long handleTableLimit = Long.getLong(HANDLE_TABLE_LIMIT_PROPERTY, DEFAULT_HANDLE_TABLE_LIMIT);
+
+    public SessionMemoryMonitor(OutboundStats outboundStats) {
+        this.outboundStats = outboundStats;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-memory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Passa a contabilizar uma sessão autenticada. {@code evict} a encerra se passar do orçamento.
+     */
+    public SessionMemory open(String username, int streamId, OutboundQueue outbound, OutboundScheduler connection,
+                              RetransmitBuffer window, Runnable evict) {
+        SessionMemory memory = new SessionMemory(username, streamId, outbound, connection, window, evict);
+        sessions.add(memory);
+        return memory;
+    }
+
+    public void close(SessionMemory memory) {
+        sessions.remove(memory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private void sweep() {
+        long budget = sessionBudget;
+        if (budget <= 0) {
+            return;
+        }
+        try {
+            for (SessionMemory memory : sessions) {
+                long owned = memory.ownedBytes();
+                if (owned > budget && memory.evict()) {
+                    evictions.increment();
+                    LOG.warn("Sessão de {} passou do orçamento de memória ({} KB de {} KB): encerrada",
+                            label(memory), owned / 1024, budget / 1024);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Erro ao verificar a memória das sessões", e);
+        }
+    }
+
+    private static String label(SessionMemory memory) {
+        return memory.isShared() ? memory.getUsername() + " [stream " + memory.getStreamId() + "]" : memory.getUsername();
+    }
+
+    private static String describe(SessionMemory memory) {
+        String shared = memory.isShared() ? " da conexão" : "";
+        return String.format("%s: %d KB (fila %d KB, arquivo %d KB, janela %d KB, handles%s %d KB, buffers%s %d KB)",
+                label(memory), memory.ownedBytes() / 1024, memory.queuedBytes() / 1024, memory.inFlightBytes() / 1024,
+                memory.windowBytes() / 1024, shared, memory.handleTableBytes() / 1024, shared,
+                memory.bufferBytes() / 1024);
+    }
+
+    @Override
+    public long getSessionBudgetBytes() {
+        return sessionBudget;
+    }
+
+    @Override
+    public void setSessionBudgetBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Orçamento inválido: " + bytes);
+        }
+        this.sessionBudget = bytes;
+        LOG.info("Orçamento de memória por sessão alterado para {} bytes", bytes);
+    }
+
+    @Override
+    public long getHandleTableLimitBytes() {
+        return handleTableLimit;
+    }
+
+    @Override
+    public void setHandleTableLimitBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Limite inválido: " + bytes);
+        }
+        this.handleTableLimit = bytes;
+        LOG.info("Limite da tabela de handles alterado para {} bytes", bytes);
+    }
+
+    @Override
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public long getTotalBytes() {
+        long total = 0;
+        Map<OutboundScheduler, Boolean> connections = new IdentityHashMap<>();
+        for (SessionMemory memory : sessions) {
+            total += memory.queuedBytes() + memory.windowBytes();
+            if (connections.put(memory.connection(), Boolean.TRUE) == null) {
+                total += memory.handleTableBytes() + memory.bufferBytes();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getStreamResets() {
+        return outboundStats.getStreamResets();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public List<String> getTopSessions() {
+        List<Map.Entry<SessionMemory, Long>> measured = new ArrayList<>(sessions.size());
+        for (SessionMemory memory : sessions) {
+            measured.add(Map.entry(memory, memory.ownedBytes()));
+        }
+        measured.sort(Map.Entry.<SessionMemory, Long>comparingByValue(Comparator.reverseOrder()));
+        List<String> top = new ArrayList<>(TOP_SESSIONS);
+        for (Map.Entry<SessionMemory, Long> entry : measured.subList(0, Math.min(TOP_SESSIONS, measured.size()))) {
+            top.add(describe(entry.getKey()));
+        }
+        return top;
+    }
+
+    @Override
+    public long getSessionBytes(String username) {
+        for (SessionMemory memory : sessions) {
+            if (memory.getUsername().equals(username)) {
+                return memory.ownedBytes();
+            }
+        }
+        throw new IllegalArgumentException("Sessão não encontrada: " + username);
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "SessionMemory");
+    }
+}
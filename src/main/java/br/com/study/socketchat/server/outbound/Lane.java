@@ -0,0 +1,35 @@
+package br.com.study.socketchat.server.outbound;
+
+import br.com.study.socketchat.commons.enums.MessageType;
+
+/**
+ * Faixas de prioridade do tráfego de saída de uma conexão, da mais para a menos urgente.
+ */
+public enum Lane {
+    // Respostas de login, confirmações, erros e resultados de comandos
+    CONTROL,
+    // Mensagens de texto e listagens
+    INTERACTIVE,
+    // Arquivos, enviados em fatias intercaladas com as demais faixas
+    BULK;
+
+    public static Lane of(MessageType type) {
+        switch (type) {
+            case PRIVATE_MESSAGE:
+            case GROUP_MESSAGE:
+            case USERS_LIST:
+            case GROUPS_LIST:
+            case CHANNEL_POST:
+            case CHANNELS_LIST:
+            case DIRECTORY_RESULTS:
+            case SCHEDULED_LIST:
+                return INTERACTIVE;
+            case FILE_MESSAGE:
+            case FILE_GROUP:
+            case FILE_CHUNK:
+                return BULK;
+            default:
+                return CONTROL;
+        }
+    }
+}
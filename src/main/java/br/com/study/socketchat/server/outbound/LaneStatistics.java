@@ -0,0 +1,40 @@
+package br.com.study.socketchat.server.outbound;
+
+/**
+ * Atraso de fila de uma faixa: tempo entre o enfileiramento de um frame e o início da sua escrita.
+ */
+public class LaneStatistics {
+    private final String lane;
+    private final long frames;
+    private final long averageDelayMicros;
+    private final long maxDelayMicros;
+
+    public LaneStatistics(String lane, long frames, long averageDelayMicros, long maxDelayMicros) {
+        this.lane = lane;
+        this.frames = frames;
+        this.averageDelayMicros = averageDelayMicros;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getAverageDelayMicros() {
+        return averageDelayMicros;
+    }
+
+    public long getMaxDelayMicros() {
+        return maxDelayMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d frames, atraso médio %d µs, máximo %d µs",
+                lane, frames, averageDelayMicros, maxDelayMicros);
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.study.socketchat.server.outbound;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fila de saída de uma sessão: a conexão inteira ({@link OutboundScheduler}) ou um stream de
+ * uma conexão multiplexada ({@link OutboundScheduler#openStream(int)}).
+ */
+public interface OutboundQueue {
+
+    /**
+     * Janela de retransmissão da sessão, onde as mensagens confiáveis entram ao serem escritas.
+     */
+    void setRetransmitBuffer(RetransmitBuffer retransmitBuffer);
+
+    /**
+     * Enfileira a mensagem na faixa do seu tipo. Retorna false se a fila já foi encerrada.
+     */
+    boolean enqueue(Message message, boolean reliable);
+
+    /**
+     * Mensagens confiáveis desta sessão na fila, que ainda vão entrar na janela de retransmissão.
+     */
+    int pendingReliable();
+
+    /**
+     * Bytes estimados do que está na fila da conexão e ainda não foi escrito.
+     */
+    long queuedBytes();
+
+    /**
+     * Parte de {@link #queuedBytes()} que é desta sessão (num stream, só a dele).
+     */
+    long sessionQueuedBytes();
+
+    /**
+     * Bytes do arquivo desta sessão que está sendo escrito em fatias (incluídos na fila).
+     */
+    long inFlightBytes();
+
+    /**
+     * Para de aceitar mensagens.
+     */
+    void shutdown();
+
+    boolean awaitTermination(long timeout, TimeUnit unit);
+
+    /**
+     * Remove as mensagens confiáveis que não chegaram a ser escritas, na ordem em que foram
+     * enfileiradas. Só deve ser chamado depois de {@link #awaitTermination(long, TimeUnit)}.
+     */
+    List<Message> drainReliable();
+}
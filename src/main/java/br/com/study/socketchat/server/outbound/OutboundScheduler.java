@@ -0,0 +1,603 @@
+package br.com.study.socketchat.server.outbound;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
+import br.com.study.socketchat.server.trace.LatencyTracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Escritor de uma conexão: única thread que escreve no stream, escolhendo sempre a faixa
+ * mais urgente com algo pendente. Arquivos são escritos em fatias de até
+ * {@value #BULK_SLICE_BYTES} bytes do conteúdo, repassados sem decodificar; entre uma fatia e outra as faixas de controle e
+ * interativa são atendidas, então uma resposta curta nunca espera o arquivo inteiro.
+ * <p>
+ * Mensagens confiáveis recebem a sequência da sessão no momento em que terminam de ser
+ * escritas (num arquivo, na última fatia), de modo que o cliente as vê sempre em ordem
+ * crescente de sequência, mesmo com as faixas intercaladas.
+ * <p>
+ * Numa conexão multiplexada, cada sessão lógica usa um {@link #openStream(int) stream}: as
+ * faixas e o escritor são os da conexão, mas cada frame leva o número do stream antes da
+ * mensagem e entra na janela de retransmissão da sessão dona.
+ * <p>
+ * O {@link ObjectOutputStream} guarda referência a todo objeto já escrito (tabela de handles)
+ * até um {@code reset()}. O escritor estima quanto a tabela retém e reinicia o stream ao passar
+ * do limite configurado, depois de cada arquivo e, com a fila vazia, a partir de
+ * {@value #IDLE_RESET_BYTES} bytes; o custo é reenviar as descrições de classe uma vez.
+ */
+public class OutboundScheduler implements OutboundQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboundScheduler.class);
+    private static final int BULK_SLICE_BYTES = 16 * 1024;
+    // Estimativa do custo de um frame além do conteúdo (cabeçalho, objeto, entrada na fila)
+    private static final long FRAME_OVERHEAD_BYTES = 128;
+    private static final long IDLE_RESET_BYTES = 32 * 1024;
+
+    private final ObjectOutputStream outputStream;
+    private final OutboundStats stats;
+    private final LatencyTracer tracer;
+    private final LongSupplier handleTableLimit;
+    private final Runnable onFailure;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // Sinalizada quando um stream fica sem mensagens confiáveis pendentes ou o escritor termina
+    private final Condition streamDrained = lock.newCondition();
+    private final ArrayDeque<Frame>[] lanes;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private long nextOrder;
+    // Confiáveis da conexão (fora dos streams) ainda não escritas; muda sob o lock
+    private volatile int pendingReliable;
+    private boolean closed;
+    private boolean writerDone;
+    // Volátil só para a leitura da contabilidade de memória; muda sob o lock
+    private volatile Frame transfer;
+    // Bytes dos frames ainda não escritos por completo; só muda sob o lock
+    private volatile long queuedBytes;
+    // Estimativa do que a tabela de handles retém desde o último reset; só o escritor altera
+    private volatile long handleTableBytes;
+
+    private volatile RetransmitBuffer retransmitBuffer;
+
+    @SuppressWarnings("unchecked")
+    public OutboundScheduler(ObjectOutputStream outputStream, OutboundStats stats, LatencyTracer tracer,
+                             LongSupplier handleTableLimit, Runnable onFailure) {
+        this.outputStream = outputStream;
+        this.stats = stats;
+        this.tracer = tracer;
+        this.handleTableLimit = handleTableLimit;
+        this.onFailure = onFailure;
+        this.lanes = new ArrayDeque[Lane.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    public void start(String name) {
+        Thread writer = new Thread(this::writeLoop, "chat-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Fila de um stream desta conexão (conexão multiplexada). Os frames do stream levam
+     * {@code streamId} à frente da mensagem; a janela de retransmissão é a do stream.
+     */
+    public OutboundQueue openStream(int streamId) {
+        return new Stream(streamId);
+    }
+
+    @Override
+    public void setRetransmitBuffer(RetransmitBuffer retransmitBuffer) {
+        this.retransmitBuffer = retransmitBuffer;
+    }
+
+    @Override
+    public boolean enqueue(Message message, boolean reliable) {
+        return enqueue(null, message, reliable);
+    }
+
+    private boolean enqueue(Stream stream, Message message, boolean reliable) {
+        Lane lane = Lane.of(message.getType());
+        // Fora do lock: pode codificar o conteúdo (a forma codificada fica para a escrita)
+        long bytes = FRAME_OVERHEAD_BYTES + message.payloadSize();
+        lock.lock();
+        try {
+            if (closed || (stream != null && stream.closed)) {
+                return false;
+            }
+            long now = System.nanoTime();
+            tracer.onEnqueue(message, now);
+            Frame frame = new Frame(stream, message, lane, reliable, nextOrder++, now, bytes);
+            if (!writerDone) {
+                account(frame);
+            }
+            if (reliable) {
+                if (stream != null) {
+                    stream.pending++;
+                } else {
+                    pendingReliable++;
+                }
+            }
+            lanes[lane.ordinal()].addLast(frame);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int pendingReliable() {
+        return pendingReliable;
+    }
+
+    /**
+     * Bytes estimados do que está na fila desta conexão e ainda não foi escrito.
+     */
+    @Override
+    public long queuedBytes() {
+        return queuedBytes;
+    }
+
+    @Override
+    public long sessionQueuedBytes() {
+        return queuedBytes;
+    }
+
+    @Override
+    public long inFlightBytes() {
+        return inFlightBytes(null);
+    }
+
+    private long inFlightBytes(Stream stream) {
+        Frame current = transfer;
+        return current != null && current.stream == stream && current.accounted ? current.bytes : 0;
+    }
+
+    /**
+     * Estimativa do que a tabela de handles do stream de objetos retém agora.
+     */
+    public long handleTableBytes() {
+        return handleTableBytes;
+    }
+
+    /**
+     * Para de aceitar mensagens; o escritor termina depois de escrever o que já está na fila.
+     */
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        try {
+            return terminated.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Remove as mensagens confiáveis que não chegaram a ser escritas por completo, na ordem
+     * em que foram enfileiradas. Só deve ser chamado depois que o escritor terminou.
+     */
+    @Override
+    public List<Message> drainReliable() {
+        lock.lock();
+        try {
+            List<Frame> pending = new ArrayList<>();
+            if (transfer != null) {
+                pending.add(transfer);
+                transfer = null;
+            }
+            for (ArrayDeque<Frame> lane : lanes) {
+                pending.addAll(lane);
+                lane.clear();
+            }
+            pending.forEach(this::release);
+            pendingReliable = 0;
+            return reliableInOrder(pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<Message> reliableInOrder(List<Frame> frames) {
+        frames.sort(Comparator.comparingLong(frame -> frame.order));
+        List<Message> messages = new ArrayList<>(frames.size());
+        for (Frame frame : frames) {
+            if (frame.reliable) {
+                messages.add(frame.message);
+            }
+        }
+        return messages;
+    }
+
+    private void writeLoop() {
+        try {
+            Frame frame;
+            while ((frame = next()) != null) {
+                if (frame.offset == 0) {
+                    stats.recordDelay(frame.lane, System.nanoTime() - frame.enqueuedNanos);
+                }
+                if (frame.lane == Lane.BULK) {
+                    if (writeSlice(frame)) {
+                        written(frame);
+                    }
+                } else {
+                    write(frame);
+                    written(frame);
+                    if (!hasUrgent()) {
+                        outputStream.flush();
+                    }
+                }
+                if (handleTableBytes >= handleTableLimit.getAsLong()) {
+                    resetStream();
+                }
+            }
+            outputStream.flush();
+        } catch (IOException e) {
+            LOG.debug("Escritor encerrado por erro de escrita: {}", e.getMessage());
+            onFailure.run();
+        } finally {
+            releaseRemaining();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Próximo frame por prioridade; antes de esperar por trabalho, descarrega o stream.
+     * Retorna null quando o escritor foi encerrado e não há mais nada a escrever.
+     */
+    private Frame next() throws IOException {
+        Frame frame = poll();
+        if (frame != null) {
+            return frame;
+        }
+        if (handleTableBytes >= IDLE_RESET_BYTES) {
+            resetStream();
+        }
+        outputStream.flush();
+        lock.lock();
+        try {
+            while ((frame = pollLocked()) == null) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Frame poll() {
+        lock.lock();
+        try {
+            return pollLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Frame pollLocked() {
+        Frame frame = lanes[Lane.CONTROL.ordinal()].pollFirst();
+        if (frame == null) {
+            frame = lanes[Lane.INTERACTIVE.ordinal()].pollFirst();
+        }
+        if (frame != null) {
+            release(frame);
+            return frame;
+        }
+        // O arquivo em transferência conta como enfileirado até a última fatia
+        if (transfer == null) {
+            transfer = lanes[Lane.BULK.ordinal()].pollFirst();
+        }
+        return transfer;
+    }
+
+    /**
+     * Frame escrito por completo: sai das pendências do stream dono.
+     */
+    private void written(Frame frame) {
+        if (!frame.reliable) {
+            return;
+        }
+        Stream stream = frame.stream;
+        lock.lock();
+        try {
+            if (stream == null) {
+                pendingReliable--;
+            } else if (--stream.pending == 0) {
+                streamDrained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void account(Frame frame) {
+        frame.accounted = true;
+        queuedBytes += frame.bytes;
+        if (frame.stream != null) {
+            frame.stream.queuedBytes += frame.bytes;
+        }
+        stats.adjustQueuedBytes(frame.bytes);
+    }
+
+    private void release(Frame frame) {
+        if (frame.accounted) {
+            frame.accounted = false;
+            queuedBytes -= frame.bytes;
+            if (frame.stream != null) {
+                frame.stream.queuedBytes -= frame.bytes;
+            }
+            stats.adjustQueuedBytes(-frame.bytes);
+        }
+    }
+
+    /**
+     * Com o escritor encerrado, o que sobrou na fila não conta mais como memória a escoar
+     * (fica só até {@link #drainReliable()} ou até o handler ser descartado).
+     */
+    private void releaseRemaining() {
+        lock.lock();
+        try {
+            writerDone = true;
+            streamDrained.signalAll();
+            if (transfer != null) {
+                release(transfer);
+            }
+            for (ArrayDeque<Frame> lane : lanes) {
+                lane.forEach(this::release);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasUrgent() {
+        lock.lock();
+        try {
+            return !lanes[Lane.CONTROL.ordinal()].isEmpty() || !lanes[Lane.INTERACTIVE.ordinal()].isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        Message message = frame.message;
+        if (frame.reliable) {
+            windowOf(frame).append(message);
+        }
+        writeObject(frame, message);
+        tracer.onWrite(message);
+    }
+
+    /**
+     * Escreve a próxima fatia do arquivo. As fatias intermediárias viajam como FILE_CHUNK;
+     * a última leva o tipo, os metadados e a sequência da mensagem original.
+     * Retorna true quando a última fatia foi escrita.
+     */
+    private boolean writeSlice(Frame frame) throws IOException {
+        Message message = frame.message;
+        int length = message.contentSize();
+        stats.recordBulkSlice();
+        if (length - frame.offset > BULK_SLICE_BYTES) {
+            Message chunk = new Message(MessageType.FILE_CHUNK, message.getFrom(), message.getTo(), null);
+            frame.offset += chunk.copyContentRange(message, frame.offset, BULK_SLICE_BYTES);
+            writeObject(frame, chunk);
+            return false;
+        }
+        // Última fatia: a partir daqui a mensagem é responsabilidade da janela de retransmissão
+        lock.lock();
+        try {
+            if (transfer != frame) {
+                // Retirado pelo encerramento do stream dono entre uma fatia e outra
+                return false;
+            }
+            transfer = null;
+            release(frame);
+        } finally {
+            lock.unlock();
+        }
+        if (frame.offset == 0) {
+            write(frame);
+        } else {
+            if (frame.reliable) {
+                windowOf(frame).append(message);
+            }
+            Message last = message.copy();
+            last.copyContentRange(message, frame.offset, length - frame.offset);
+            writeObject(frame, last);
+            tracer.onWrite(message);
+        }
+        // Não manter arquivos vivos pela tabela de handles
+        resetStream();
+        return true;
+    }
+
+    private void resetStream() throws IOException {
+        outputStream.reset();
+        handleTableBytes = 0;
+        stats.recordStreamReset();
+    }
+
+    private RetransmitBuffer windowOf(Frame frame) {
+        return frame.stream != null ? frame.stream.retransmitBuffer : retransmitBuffer;
+    }
+
+    private void writeObject(Frame frame, Message message) throws IOException {
+        if (frame.stream != null) {
+            outputStream.writeInt(frame.stream.id);
+        }
+        outputStream.writeObject(message);
+        handleTableBytes += FRAME_OVERHEAD_BYTES + message.payloadSize();
+    }
+
+    /**
+     * Um stream da conexão multiplexada. Ao ser encerrado, as mensagens confiáveis ainda na
+     * fila saem dela na hora (para a sessão devolvê-las) e as demais continuam e são escritas;
+     * assim o encerramento de um stream só espera o frame que o escritor já está escrevendo.
+     */
+    private final class Stream implements OutboundQueue {
+        private final int id;
+        private volatile RetransmitBuffer retransmitBuffer;
+        // Muda sob o lock do escritor
+        private volatile long queuedBytes;
+        // Sob o lock do escritor
+        private boolean closed;
+        // Volátil só para a leitura de quem entrega à sessão
+        private volatile int pending;
+        private final List<Frame> unsent = new ArrayList<>();
+
+        Stream(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void setRetransmitBuffer(RetransmitBuffer retransmitBuffer) {
+            this.retransmitBuffer = retransmitBuffer;
+        }
+
+        @Override
+        public boolean enqueue(Message message, boolean reliable) {
+            return OutboundScheduler.this.enqueue(this, message, reliable);
+        }
+
+        @Override
+        public int pendingReliable() {
+            return pending;
+        }
+
+        /**
+         * O gargalo é o socket compartilhado: vale a fila da conexão inteira.
+         */
+        @Override
+        public long queuedBytes() {
+            return OutboundScheduler.this.queuedBytes;
+        }
+
+        @Override
+        public long sessionQueuedBytes() {
+            return queuedBytes;
+        }
+
+        @Override
+        public long inFlightBytes() {
+            return OutboundScheduler.this.inFlightBytes(this);
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (transfer != null && transfer.stream == this) {
+                    take(transfer);
+                    transfer = null;
+                }
+                for (ArrayDeque<Frame> lane : lanes) {
+                    Iterator<Frame> frames = lane.iterator();
+                    while (frames.hasNext()) {
+                        Frame frame = frames.next();
+                        if (frame.stream == this && frame.reliable) {
+                            frames.remove();
+                            take(frame);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void take(Frame frame) {
+            release(frame);
+            if (frame.reliable) {
+                pending--;
+                unsent.add(frame);
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            long remaining = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (pending > 0 && !writerDone) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = streamDrained.awaitNanos(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Message> drainReliable() {
+            lock.lock();
+            try {
+                List<Frame> frames = new ArrayList<>(unsent);
+                unsent.clear();
+                return reliableInOrder(frames);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Frame {
+        private final Stream stream;
+        private final Message message;
+        private final Lane lane;
+        private final boolean reliable;
+        private final long order;
+        private final long enqueuedNanos;
+        private final long bytes;
+        private boolean accounted;
+        private int offset;
+
+        Frame(Stream stream, Message message, Lane lane, boolean reliable, long order, long enqueuedNanos, long bytes) {
+            this.stream = stream;
+            this.message = message;
+            this.lane = lane;
+            this.reliable = reliable;
+            this.order = order;
+            this.enqueuedNanos = enqueuedNanos;
+            this.bytes = bytes;
+        }
+    }
+}
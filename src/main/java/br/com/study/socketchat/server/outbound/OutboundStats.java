@@ -0,0 +1,122 @@
+package br.com.study.socketchat.server.outbound;
+
+import br.com.study.socketchat.server.Jmx;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estatísticas de atraso de fila das faixas de saída, somadas entre todas as conexões.
+ */
+@Component
+public class OutboundStats implements OutboundStatsMXBean {
+    private final LaneCounters[] counters = new LaneCounters[Lane.values().length];
+    private final LongAdder bulkSlices = new LongAdder();
+    private final LongAdder streamResets = new LongAdder();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    public OutboundStats() {
+        for (Lane lane : Lane.values()) {
+            counters[lane.ordinal()] = new LaneCounters();
+        }
+    }
+
+    public void recordDelay(Lane lane, long delayNanos) {
+        counters[lane.ordinal()].record(delayNanos);
+    }
+
+    public void recordBulkSlice() {
+        bulkSlices.increment();
+    }
+
+    public void recordStreamReset() {
+        streamResets.increment();
+    }
+
+    /**
+     * Variação dos bytes enfileirados em todas as conexões (estimativa usada no controle de fluxo).
+     */
+    public void adjustQueuedBytes(long delta) {
+        queuedBytes.addAndGet(delta);
+    }
+
+    public LaneStatistics statistics(Lane lane) {
+        return counters[lane.ordinal()].toStatistics(lane);
+    }
+
+    @Override
+    public LaneStatistics getControl() {
+        return statistics(Lane.CONTROL);
+    }
+
+    @Override
+    public LaneStatistics getInteractive() {
+        return statistics(Lane.INTERACTIVE);
+    }
+
+    @Override
+    public LaneStatistics getBulk() {
+        return statistics(Lane.BULK);
+    }
+
+    @Override
+    public long getBulkSlices() {
+        return bulkSlices.sum();
+    }
+
+    @Override
+    public long getStreamResets() {
+        return streamResets.sum();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        for (LaneCounters laneCounters : counters) {
+            laneCounters.reset();
+        }
+        bulkSlices.reset();
+        streamResets.reset();
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "OutboundLanes");
+    }
+
+    private static final class LaneCounters {
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder totalDelayNanos = new LongAdder();
+        private final AtomicLong maxDelayNanos = new AtomicLong();
+
+        void record(long delayNanos) {
+            frames.increment();
+            totalDelayNanos.add(delayNanos);
+            long max = maxDelayNanos.get();
+            while (delayNanos > max && !maxDelayNanos.compareAndSet(max, delayNanos)) {
+                max = maxDelayNanos.get();
+            }
+        }
+
+        LaneStatistics toStatistics(Lane lane) {
+            long count = frames.sum();
+            long average = count == 0 ? 0 : totalDelayNanos.sum() / count;
+            return new LaneStatistics(lane.name(), count,
+                    TimeUnit.NANOSECONDS.toMicros(average),
+                    TimeUnit.NANOSECONDS.toMicros(maxDelayNanos.get()));
+        }
+
+        void reset() {
+            frames.reset();
+            totalDelayNanos.reset();
+            maxDelayNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.study.socketchat.server.outbound;
+
+/**
+ * Interface JMX com o atraso de fila de cada faixa de saída
+ * (em {@code br.com.study.socketchat:type=OutboundLanes}).
+ */
+public interface OutboundStatsMXBean {
+
+    LaneStatistics getControl();
+
+    LaneStatistics getInteractive();
+
+    LaneStatistics getBulk();
+
+    long getBulkSlices();
+
+    /**
+     * Resets dos streams de saída (tabela de handles liberada).
+     */
+    long getStreamResets();
+
+    long getQueuedBytes();
+
+    void resetStatistics();
+}
@@ -0,0 +1,141 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.EncodedText;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificação binária compacta usada nos snapshots, no write-ahead log e na replicação.
+ * A escrita usa {@link DataOutput}; a leitura usa {@link ByteBuffer} para
+ * funcionar direto sobre arquivos mapeados em memória.
+ */
+public final class BinaryCodec {
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private BinaryCodec() {
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    public static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NULL_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    public static LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        if (seconds == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC);
+    }
+
+    public static void writeMessage(DataOutput out, Message message) throws IOException {
+        writeString(out, message.getType() == null ? null : message.getType().name());
+        writeString(out, message.getFrom());
+        writeString(out, message.getTo());
+        // Mesmo formato de writeString, sem decodificar o que chegou da rede
+        EncodedText.write(out, message.getEncodedContent());
+        EncodedText.write(out, message.getEncodedFileName());
+        writeTime(out, message.getTimestamp());
+    }
+
+    public static Message readMessage(ByteBuffer in) {
+        Message message = new Message();
+        String type = readString(in);
+        message.setType(type == null ? null : MessageType.valueOf(type));
+        message.setFrom(readString(in));
+        message.setTo(readString(in));
+        message.setEncodedContent(EncodedText.read(in));
+        message.setEncodedFileName(EncodedText.read(in));
+        message.setTimestamp(readTime(in));
+        return message;
+    }
+
+    public static void writeChange(DataOutput out, StateChange change) throws IOException {
+        out.writeByte(change.type().ordinal());
+        writeString(out, change.username());
+        writeString(out, change.groupName());
+        out.writeBoolean(change.message() != null);
+        if (change.message() != null) {
+            writeMessage(out, change.message());
+        }
+        if (change.type() == StateChange.Type.OFFLINE_STORED_SHARED) {
+            out.writeInt(change.recipients().size());
+            for (String recipient : change.recipients()) {
+                writeString(out, recipient);
+            }
+        }
+        if (isSchedule(change.type())) {
+            out.writeLong(change.scheduleId());
+        }
+        // Por último: registros gravados antes de o horário existir terminam antes dele
+        if (change.time() != null) {
+            writeTime(out, change.time());
+        }
+    }
+
+    public static StateChange readChange(ByteBuffer in) {
+        StateChange.Type type = StateChange.Type.values()[in.get()];
+        String username = readString(in);
+        String groupName = readString(in);
+        boolean hasMessage = in.get() != 0;
+        Message message = hasMessage ? readMessage(in) : null;
+        List<String> recipients = null;
+        if (type == StateChange.Type.OFFLINE_STORED_SHARED) {
+            int count = in.getInt();
+            recipients = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                recipients.add(readString(in));
+            }
+        }
+        long scheduleId = isSchedule(type) ? in.getLong() : 0;
+        LocalDateTime time = in.hasRemaining() ? readTime(in) : null;
+        return new StateChange(type, username, groupName, message, recipients, scheduleId, time);
+    }
+
+    private static boolean isSchedule(StateChange.Type type) {
+        return type == StateChange.Type.MESSAGE_SCHEDULED
+                || type == StateChange.Type.SCHEDULE_CANCELLED
+                || type == StateChange.Type.SCHEDULE_FIRED;
+    }
+}
@@ -0,0 +1,308 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binário do snapshot de estado ({@code snapshot-<n>.bin}).
+ * O número {@code n} é o primeiro segmento do write-ahead log que ainda precisa
+ * ser aplicado sobre o snapshot. A leitura mapeia o arquivo em memória e
+ * entrega cada entrada ao {@link Visitor} sem montar estruturas intermediárias.
+ * O mesmo formato inicia uma réplica, enviado pela rede em vez de gravado em arquivo.
+ */
+public final class SnapshotFile {
+    private static final int MAGIC = 0x43484154;      // "CHAT"
+    private static final int END_MAGIC = 0x454E4421;  // "END!"
+    private static final int VERSION = 4;
+    // Versão 3: sem a seção de mensagens agendadas
+    private static final int VERSION_WITHOUT_SCHEDULES = 3;
+    // Versão 2: cada fila offline com cópias completas das mensagens
+    private static final int VERSION_UNSHARED_OFFLINE = 2;
+    // Versão 1: além disso, sem a seção de canais
+    private static final int VERSION_WITHOUT_CHANNELS = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private SnapshotFile() {
+    }
+
+    public record UserEntry(String username, LocalDateTime lastSeen) {
+    }
+
+    public record GroupEntry(String name, String creator, LocalDateTime createdAt, List<String> members) {
+    }
+
+    /**
+     * Canal de avisos: publicações ainda no log (a primeira com {@code firstSequence})
+     * e o cursor de cada inscrito.
+     */
+    public record ChannelEntry(String name, String owner, LocalDateTime createdAt, long firstSequence,
+                               List<Message> posts, Map<String, Long> cursors) {
+    }
+
+    /**
+     * Mensagem agendada ainda pendente; o timestamp da mensagem é o horário de entrega (UTC).
+     */
+    public record ScheduledEntry(long id, Message message) {
+    }
+
+    public record Contents(long segment,
+                           List<UserEntry> users,
+                           List<GroupEntry> groups,
+                           Map<String, List<Message>> offlineMessages,
+                           List<ChannelEntry> channels,
+                           List<ScheduledEntry> scheduledMessages) {
+    }
+
+    public interface Visitor {
+        void onUser(UserEntry user);
+
+        void onGroup(GroupEntry group);
+
+        void onOfflineMessage(String username, Message message);
+
+        void onChannel(ChannelEntry channel);
+
+        void onScheduledMessage(ScheduledEntry scheduled);
+    }
+
+    public static Path snapshotPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * Número do segmento de um arquivo de snapshot, ou -1 se o nome não for de um snapshot.
+     */
+    public static long segmentOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public static void write(Path target, Contents contents) throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(target.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            write(out, contents);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Grava o snapshot num stream qualquer; o flush fica com quem chama.
+     */
+    public static void write(DataOutputStream out, Contents contents) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(contents.segment());
+
+        out.writeInt(contents.users().size());
+        for (UserEntry user : contents.users()) {
+            BinaryCodec.writeString(out, user.username());
+            BinaryCodec.writeTime(out, user.lastSeen());
+        }
+
+        out.writeInt(contents.groups().size());
+        for (GroupEntry group : contents.groups()) {
+            BinaryCodec.writeString(out, group.name());
+            BinaryCodec.writeString(out, group.creator());
+            BinaryCodec.writeTime(out, group.createdAt());
+            out.writeInt(group.members().size());
+            for (String member : group.members()) {
+                BinaryCodec.writeString(out, member);
+            }
+        }
+
+        writeOfflineMessages(out, contents.offlineMessages());
+
+        out.writeInt(contents.channels().size());
+        for (ChannelEntry channel : contents.channels()) {
+            BinaryCodec.writeString(out, channel.name());
+            BinaryCodec.writeString(out, channel.owner());
+            BinaryCodec.writeTime(out, channel.createdAt());
+            out.writeLong(channel.firstSequence());
+            out.writeInt(channel.posts().size());
+            for (Message post : channel.posts()) {
+                BinaryCodec.writeMessage(out, post);
+            }
+            out.writeInt(channel.cursors().size());
+            for (Map.Entry<String, Long> cursor : channel.cursors().entrySet()) {
+                BinaryCodec.writeString(out, cursor.getKey());
+                out.writeLong(cursor.getValue());
+            }
+        }
+
+        out.writeInt(contents.scheduledMessages().size());
+        for (ScheduledEntry scheduled : contents.scheduledMessages()) {
+            out.writeLong(scheduled.id());
+            BinaryCodec.writeMessage(out, scheduled.message());
+        }
+
+        out.writeInt(END_MAGIC);
+    }
+
+    /**
+     * Lê o snapshot entregando as entradas ao visitor. Retorna o segmento do snapshot.
+     */
+    public static long read(Path file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot grande demais para ser mapeado: " + file);
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(in, visitor, file.toString());
+        }
+    }
+
+    /**
+     * Lê um snapshot já em memória (ex.: recebido de outro servidor). Retorna o número que o acompanha.
+     */
+    public static long read(ByteBuffer in, Visitor visitor) throws IOException {
+        return read(in, visitor, "réplica");
+    }
+
+    private static long read(ByteBuffer in, Visitor visitor, String source) throws IOException {
+        if (in.remaining() < Integer.BYTES * 3 || in.getInt(in.limit() - Integer.BYTES) != END_MAGIC) {
+            throw new IOException("Snapshot incompleto: " + source);
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Formato de snapshot desconhecido: " + source);
+        }
+        int version = in.getInt();
+        if (version < VERSION_WITHOUT_CHANNELS || version > VERSION) {
+            throw new IOException("Versão de snapshot desconhecida (" + version + "): " + source);
+        }
+        long segment = in.getLong();
+
+        int users = in.getInt();
+        for (int i = 0; i < users; i++) {
+            visitor.onUser(new UserEntry(BinaryCodec.readString(in), BinaryCodec.readTime(in)));
+        }
+
+        int groups = in.getInt();
+        for (int i = 0; i < groups; i++) {
+            String name = BinaryCodec.readString(in);
+            String creator = BinaryCodec.readString(in);
+            LocalDateTime createdAt = BinaryCodec.readTime(in);
+            int memberCount = in.getInt();
+            List<String> members = new ArrayList<>(memberCount);
+            for (int j = 0; j < memberCount; j++) {
+                members.add(BinaryCodec.readString(in));
+            }
+            visitor.onGroup(new GroupEntry(name, creator, createdAt, members));
+        }
+
+        if (version > VERSION_UNSHARED_OFFLINE) {
+            readOfflineMessages(in, visitor);
+        } else {
+            readUnsharedOfflineMessages(in, visitor);
+        }
+
+        int channels = version == VERSION_WITHOUT_CHANNELS ? 0 : in.getInt();
+        for (int i = 0; i < channels; i++) {
+            String name = BinaryCodec.readString(in);
+            String owner = BinaryCodec.readString(in);
+            LocalDateTime createdAt = BinaryCodec.readTime(in);
+            long firstSequence = in.getLong();
+            int postCount = in.getInt();
+            List<Message> posts = new ArrayList<>(postCount);
+            for (int j = 0; j < postCount; j++) {
+                posts.add(BinaryCodec.readMessage(in));
+            }
+            int subscriberCount = in.getInt();
+            Map<String, Long> cursors = new LinkedHashMap<>(subscriberCount * 2);
+            for (int j = 0; j < subscriberCount; j++) {
+                cursors.put(BinaryCodec.readString(in), in.getLong());
+            }
+            visitor.onChannel(new ChannelEntry(name, owner, createdAt, firstSequence, posts, cursors));
+        }
+
+        int scheduled = version <= VERSION_WITHOUT_SCHEDULES ? 0 : in.getInt();
+        for (int i = 0; i < scheduled; i++) {
+            long id = in.getLong();
+            visitor.onScheduledMessage(new ScheduledEntry(id, BinaryCodec.readMessage(in)));
+        }
+        return segment;
+    }
+
+    /**
+     * Filas offline: primeiro cada mensagem distinta (por identidade) uma única vez, depois
+     * as filas como índices nessa tabela. Um arquivo enviado a um grupo quase todo offline
+     * ocupa o snapshot uma vez, não uma vez por membro.
+     */
+    private static void writeOfflineMessages(DataOutputStream out, Map<String, List<Message>> offlineMessages)
+            throws IOException {
+        Map<Message, Integer> indexes = new IdentityHashMap<>();
+        List<Message> payloads = new ArrayList<>();
+        for (List<Message> queue : offlineMessages.values()) {
+            for (Message message : queue) {
+                if (indexes.putIfAbsent(message, payloads.size()) == null) {
+                    payloads.add(message);
+                }
+            }
+        }
+        out.writeInt(payloads.size());
+        for (Message message : payloads) {
+            BinaryCodec.writeMessage(out, message);
+        }
+        out.writeInt(offlineMessages.size());
+        for (Map.Entry<String, List<Message>> entry : offlineMessages.entrySet()) {
+            BinaryCodec.writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (Message message : entry.getValue()) {
+                out.writeInt(indexes.get(message));
+            }
+        }
+    }
+
+    /**
+     * Entrega a mesma instância a todas as filas que referenciam a mensagem.
+     */
+    private static void readOfflineMessages(ByteBuffer in, Visitor visitor) {
+        Message[] payloads = new Message[in.getInt()];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = BinaryCodec.readMessage(in);
+        }
+        int offlineUsers = in.getInt();
+        for (int i = 0; i < offlineUsers; i++) {
+            String username = BinaryCodec.readString(in);
+            int count = in.getInt();
+            for (int j = 0; j < count; j++) {
+                visitor.onOfflineMessage(username, payloads[in.getInt()]);
+            }
+        }
+    }
+
+    private static void readUnsharedOfflineMessages(ByteBuffer in, Visitor visitor) {
+        int offlineUsers = in.getInt();
+        for (int i = 0; i < offlineUsers; i++) {
+            String username = BinaryCodec.readString(in);
+            int count = in.getInt();
+            for (int j = 0; j < count; j++) {
+                visitor.onOfflineMessage(username, BinaryCodec.readMessage(in));
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Message;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Alteração do estado do servidor que precisa sobreviver a um restart
+ * (registro de usuário, grupos, membros, fila offline, canais de avisos e mensagens agendadas).
+ * Nas alterações de canal, {@code groupName} é o nome do canal.
+ * {@code recipients} só é usado quando uma mesma mensagem vai para a fila offline de vários usuários,
+ * e {@code scheduleId} só nas alterações de mensagens agendadas. {@code time} é o horário de criação
+ * nos registros de usuário, grupo e canal, para o replay não trocá-lo pelo horário do restart.
+ */
+public record StateChange(Type type, String username, String groupName, Message message, List<String> recipients,
+                          long scheduleId, LocalDateTime time) {
+
+    public enum Type {
+        USER_REGISTERED,
+        GROUP_CREATED,
+        MEMBER_JOINED,
+        MEMBER_LEFT,
+        OFFLINE_STORED,
+        OFFLINE_DRAINED,
+        OFFLINE_REQUEUED,
+        OFFLINE_STORED_SHARED,
+        CHANNEL_CREATED,
+        CHANNEL_SUBSCRIBED,
+        CHANNEL_UNSUBSCRIBED,
+        CHANNEL_POSTED,
+        MESSAGE_SCHEDULED,
+        SCHEDULE_CANCELLED,
+        SCHEDULE_FIRED
+    }
+
+    public StateChange(Type type, String username, String groupName, Message message, List<String> recipients,
+                       long scheduleId) {
+        this(type, username, groupName, message, recipients, scheduleId, null);
+    }
+
+    public StateChange(Type type, String username, String groupName, Message message, List<String> recipients) {
+        this(type, username, groupName, message, recipients, 0);
+    }
+
+    public StateChange(Type type, String username, String groupName, Message message) {
+        this(type, username, groupName, message, null);
+    }
+
+    public static StateChange userRegistered(String username, LocalDateTime registeredAt) {
+        return new StateChange(Type.USER_REGISTERED, username, null, null, null, 0, registeredAt);
+    }
+
+    public static StateChange groupCreated(String groupName, String creator, LocalDateTime createdAt) {
+        return new StateChange(Type.GROUP_CREATED, creator, groupName, null, null, 0, createdAt);
+    }
+
+    public static StateChange memberJoined(String groupName, String username) {
+        return new StateChange(Type.MEMBER_JOINED, username, groupName, null);
+    }
+
+    public static StateChange memberLeft(String groupName, String username) {
+        return new StateChange(Type.MEMBER_LEFT, username, groupName, null);
+    }
+
+    public static StateChange offlineStored(String username, Message message) {
+        return new StateChange(Type.OFFLINE_STORED, username, null, message);
+    }
+
+    public static StateChange offlineDrained(String username) {
+        return new StateChange(Type.OFFLINE_DRAINED, username, null, null);
+    }
+
+    /**
+     * Mensagem entregue mas não confirmada, devolvida ao início da fila offline.
+     */
+    public static StateChange offlineRequeued(String username, Message message) {
+        return new StateChange(Type.OFFLINE_REQUEUED, username, null, message);
+    }
+
+    /**
+     * Uma única cópia da mensagem armazenada para vários usuários offline.
+     */
+    public static StateChange offlineStoredShared(List<String> recipients, Message message) {
+        return new StateChange(Type.OFFLINE_STORED_SHARED, null, null, message, recipients);
+    }
+
+    public static StateChange channelCreated(String channelName, String owner, LocalDateTime createdAt) {
+        return new StateChange(Type.CHANNEL_CREATED, owner, channelName, null, null, 0, createdAt);
+    }
+
+    public static StateChange channelSubscribed(String channelName, String username) {
+        return new StateChange(Type.CHANNEL_SUBSCRIBED, username, channelName, null);
+    }
+
+    public static StateChange channelUnsubscribed(String channelName, String username) {
+        return new StateChange(Type.CHANNEL_UNSUBSCRIBED, username, channelName, null);
+    }
+
+    public static StateChange channelPosted(String channelName, Message post) {
+        return new StateChange(Type.CHANNEL_POSTED, post.getFrom(), channelName, post);
+    }
+
+    /**
+     * Mensagem agendada pelo dono; o timestamp da mensagem é o horário de entrega (UTC).
+     */
+    public static StateChange messageScheduled(long scheduleId, Message message) {
+        return new StateChange(Type.MESSAGE_SCHEDULED, message.getFrom(), null, message, null, scheduleId);
+    }
+
+    public static StateChange scheduleCancelled(long scheduleId, String owner) {
+        return new StateChange(Type.SCHEDULE_CANCELLED, owner, null, null, null, scheduleId);
+    }
+
+    /**
+     * O agendamento venceu e a mensagem seguiu para a entrega normal.
+     */
+    public static StateChange scheduleFired(long scheduleId, String owner) {
+        return new StateChange(Type.SCHEDULE_FIRED, owner, null, null, null, scheduleId);
+    }
+}
@@ -0,0 +1,15 @@
+package br.com.study.socketchat.server.persistence;
+
+/**
+ * Recebe as alterações de estado na mesma ordem em que foram aplicadas.
+ */
+public interface StateChangeListener {
+    void onChange(StateChange change);
+
+    /**
+     * Fim de um lote de alterações: o que foi recebido em {@link #onChange} deve ser concluído
+     * (ex.: enviado ao sistema operacional) antes de retornar.
+     */
+    default void flush() {
+    }
+}
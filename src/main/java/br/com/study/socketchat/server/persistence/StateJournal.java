@@ -0,0 +1,131 @@
+package br.com.study.socketchat.server.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Ponto único por onde passam as alterações de estado persistente.
+ * Cada alteração é aplicada e enfileirada para os listeners sem outra no meio, para que a ordem
+ * do log (e da replicação) seja a ordem em que as alterações foram aplicadas: um STORED
+ * publicado depois do DRAINED que já o levou reapareceria no replay. Só a aplicação e o
+ * enfileiramento são exclusivos; a gravação no log e a replicação acontecem fora desse lock,
+ * em lotes (group commit): quem publica leva junto as alterações que chegaram enquanto o lote
+ * anterior era gravado, e cada listener faz um único {@link StateChangeListener#flush()} por lote.
+ * As alterações usam o lock de leitura até serem publicadas; a captura de um snapshot usa o de
+ * escrita, garantindo que ela fique alinhada com o log.
+ */
+@Component
+public class StateJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(StateJournal.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock order = new ReentrantLock();
+    private final ReentrantLock publishing = new ReentrantLock();
+    private final Queue<StateChange> pending = new ConcurrentLinkedQueue<>();
+    private final List<StateChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private long appended;
+    private long published;
+
+    /**
+     * Executa a alteração e, se ela não lançar exceção, publica o evento aos listeners.
+     * Retorna depois que o evento (e os anteriores) foi entregue a todos eles.
+     */
+    public void record(StateChange change, Runnable mutation) {
+        lock.readLock().lock();
+        try {
+            long sequence;
+            order.lock();
+            try {
+                mutation.run();
+                pending.add(change);
+                sequence = ++appended;
+            } finally {
+                order.unlock();
+            }
+            publish(sequence);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entrega em ordem tudo que está na fila, a menos que outra thread já tenha entregado
+     * a alteração {@code sequence} enquanto esta esperava a vez.
+     */
+    private void publish(long sequence) {
+        publishing.lock();
+        try {
+            if (published >= sequence) {
+                return;
+            }
+            StateChange change;
+            while ((change = pending.poll()) != null) {
+                for (StateChangeListener listener : listeners) {
+                    notify(listener, change);
+                }
+                published++;
+            }
+            for (StateChangeListener listener : listeners) {
+                try {
+                    listener.flush();
+                } catch (RuntimeException e) {
+                    LOG.error("Erro ao concluir lote de alterações em {}", listener, e);
+                }
+            }
+        } finally {
+            publishing.unlock();
+        }
+    }
+
+    private static void notify(StateChangeListener listener, StateChange change) {
+        try {
+            listener.onChange(change);
+        } catch (RuntimeException e) {
+            // A alteração já foi aplicada: quem a fez não deve falhar por causa de um listener
+            LOG.error("Erro ao publicar alteração {} em {}", change.type(), listener, e);
+        }
+    }
+
+    /**
+     * Executa uma alteração que não vai para o log por ser derivada do que já está nele
+     * (ex.: expiração por tempo de vida, refeita no replay). Como as demais, não coincide
+     * com a captura de um snapshot.
+     */
+    public void apply(Runnable mutation) {
+        lock.readLock().lock();
+        try {
+            mutation.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Executa a ação sem nenhuma alteração concorrente em andamento.
+     */
+    public <T> T exclusive(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addListener(StateChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StateChangeListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,381 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.User;
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import br.com.study.socketchat.server.channel.BroadcastChannel;
+import br.com.study.socketchat.server.channel.ChannelManager;
+import br.com.study.socketchat.server.group.GroupManager;
+import br.com.study.socketchat.server.schedule.MessageScheduler;
+import br.com.study.socketchat.server.schedule.ScheduledMessage;
+import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.storage.OfflineMessageStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Persistência do estado do servidor para restart a quente.
+ * Snapshots periódicos e consistentes (usuários registrados, grupos, filas offline, canais
+ * e mensagens agendadas)
+ * mais um write-ahead log com as alterações desde o último snapshot.
+ * Na inicialização o snapshot mais recente é mapeado em memória e o log é reaplicado.
+ * Um servidor em standby ({@code br.com.study.socketchat.server.replication}) monta o mesmo
+ * estado a partir do snapshot e das alterações recebidos do primário e só passa a gravar
+ * em disco ao ser promovido. O diretório pode ser trocado com {@code -Dchat.state.dir}.
+ */
+@Component
+public class StatePersistenceService {
+    private static final Logger LOG = LoggerFactory.getLogger(StatePersistenceService.class);
+    public static final String DIRECTORY_PROPERTY = "chat.state.dir";
+    private static final String STATE_DIRECTORY = "server_state/";
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+
+    private final SessionManager sessionManager;
+    private final GroupManager groupManager;
+    private final OfflineMessageStorage offlineMessageStorage;
+    private final ChannelManager channelManager;
+    private final MessageScheduler messageScheduler;
+    private final StateJournal stateJournal;
+    private final Path directory;
+
+    private ScheduledExecutorService scheduler;
+    private WriteAheadLog writeAheadLog;
+
+    public StatePersistenceService(SessionManager sessionManager,
+                                   GroupManager groupManager,
+                                   OfflineMessageStorage offlineMessageStorage,
+                                   ChannelManager channelManager,
+                                   MessageScheduler messageScheduler,
+                                   StateJournal stateJournal) {
+        this.sessionManager = sessionManager;
+        this.groupManager = groupManager;
+        this.offlineMessageStorage = offlineMessageStorage;
+        this.channelManager = channelManager;
+        this.messageScheduler = messageScheduler;
+        this.stateJournal = stateJournal;
+        this.directory = configuredDirectory();
+    }
+
+    /**
+     * Diretório de estado configurado com {@code -Dchat.state.dir}; quem grava outros arquivos
+     * do servidor (ex.: transbordo das filas offline) usa subdiretórios dele.
+     */
+    public static Path configuredDirectory() {
+        return Paths.get(System.getProperty(DIRECTORY_PROPERTY, STATE_DIRECTORY));
+    }
+
+    /**
+     * Restaura o estado salvo e passa a registrar as alterações. Deve ser chamado
+     * antes de aceitar conexões.
+     */
+    public synchronized void restore() throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+
+        long firstSegment = loadLatestSnapshot();
+        long lastSegment = firstSegment - 1;
+        long replayed = 0;
+        for (Path segment : listFiles(WriteAheadLog::segmentOf)) {
+            long number = WriteAheadLog.segmentOf(segment);
+            if (number >= firstSegment) {
+                replayed += WriteAheadLog.replay(segment, this::apply);
+            }
+            lastSegment = Math.max(lastSegment, number);
+        }
+
+        startLogging(lastSegment + 1);
+
+        LOG.info("Estado restaurado em {} ms: {} usuários, {} grupos, {} canais, {} mensagens agendadas, "
+                        + "{} alterações reaplicadas do log",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                sessionManager.findUsers().size(), groupManager.findAll().size(), channelManager.findAll().size(),
+                messageScheduler.getPendingCount(), replayed);
+        // Só com o estado completo (e o log ativo) as mensagens vencidas podem sair
+        messageScheduler.start();
+    }
+
+    /**
+     * Carrega no estado em memória, ainda vazio, o snapshot recebido do primário.
+     * Retorna o número que o acompanha (na replicação, a sequência da última alteração incluída).
+     */
+    public long loadReplica(ByteBuffer snapshot) throws IOException {
+        return SnapshotFile.read(snapshot, restoreVisitor());
+    }
+
+    /**
+     * Aplica uma alteração recebida do primário, como no replay do log.
+     */
+    public void applyReplicated(StateChange change) {
+        apply(change);
+    }
+
+    /**
+     * Torna o estado em memória (de uma réplica) o estado deste servidor: grava um snapshot
+     * dele, descartando o que houver no diretório, e passa a registrar as alterações como
+     * depois de um {@link #restore()}.
+     */
+    public synchronized void promote() throws IOException {
+        Files.createDirectories(directory);
+        long lastSegment = -1;
+        for (Path file : listFiles(SnapshotFile::segmentOf)) {
+            lastSegment = Math.max(lastSegment, SnapshotFile.segmentOf(file));
+        }
+        for (Path file : listFiles(WriteAheadLog::segmentOf)) {
+            lastSegment = Math.max(lastSegment, WriteAheadLog.segmentOf(file));
+        }
+        startLogging(lastSegment + 1);
+        snapshot();
+        LOG.info("Estado da réplica assumido: {} usuários, {} grupos, {} canais, {} mensagens agendadas",
+                sessionManager.findUsers().size(), groupManager.findAll().size(), channelManager.findAll().size(),
+                messageScheduler.getPendingCount());
+        messageScheduler.start();
+    }
+
+    /**
+     * Copia o estado em memória. Só é consistente sem alterações concorrentes, ou seja,
+     * dentro de {@link StateJournal#exclusive}.
+     */
+    public SnapshotFile.Contents copyState(long segment) {
+        List<SnapshotFile.UserEntry> users = new ArrayList<>();
+        for (User user : sessionManager.findUsers()) {
+            users.add(new SnapshotFile.UserEntry(user.getUsername(), user.getLastSeen()));
+        }
+        List<SnapshotFile.GroupEntry> groups = new ArrayList<>();
+        for (Group group : groupManager.findAll()) {
+            groups.add(new SnapshotFile.GroupEntry(group.getName(), group.getCreator(), group.getCreatedAt(),
+                    new ArrayList<>(group.getMembers())));
+        }
+        List<SnapshotFile.ChannelEntry> channels = new ArrayList<>();
+        for (BroadcastChannel channel : channelManager.findAll()) {
+            channels.add(new SnapshotFile.ChannelEntry(channel.getName(), channel.getOwner(), channel.getCreatedAt(),
+                    channel.firstSequence(), channel.posts(), channelManager.cursorsOf(channel)));
+        }
+        List<SnapshotFile.ScheduledEntry> scheduled = new ArrayList<>();
+        for (ScheduledMessage entry : messageScheduler.snapshotPending()) {
+            scheduled.add(new SnapshotFile.ScheduledEntry(entry.getId(), entry.getMessage()));
+        }
+        return new SnapshotFile.Contents(segment, users, groups, offlineMessageStorage.snapshotMessages(), channels,
+                scheduled);
+    }
+
+    private void startLogging(long segment) throws IOException {
+        writeAheadLog = new WriteAheadLog(directory, segment);
+        stateJournal.addListener(writeAheadLog);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "state-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::snapshotSafely,
+                SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Grava um snapshot consistente e descarta snapshots e segmentos de log anteriores.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        SnapshotFile.Contents contents = stateJournal.exclusive(this::capture);
+
+        Path target = SnapshotFile.snapshotPath(directory, contents.segment());
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        SnapshotFile.write(temporary, contents);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        deleteOlderThan(contents.segment());
+        LOG.info("Snapshot {} gravado em {} ms", target.getFileName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Para os snapshots periódicos, grava um snapshot final e fecha o log.
+     */
+    public synchronized void shutdown() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        snapshotSafely();
+        stateJournal.removeListener(writeAheadLog);
+        try {
+            writeAheadLog.close();
+        } catch (IOException e) {
+            LOG.error("Erro ao fechar o write-ahead log", e);
+        }
+        writeAheadLog = null;
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            LOG.error("Erro ao gravar snapshot de estado", e);
+        }
+    }
+
+    /**
+     * Executado sem alterações concorrentes: copia o estado e rotaciona o log no mesmo ponto.
+     */
+    private SnapshotFile.Contents capture() {
+        try {
+            return copyState(writeAheadLog.rotate());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Carrega o snapshot mais recente. Retorna o primeiro segmento de log a reaplicar.
+     * Snapshots e segmentos anteriores são apagados após cada snapshot, então não há
+     * alternativa consistente a um snapshot ilegível: nesse caso a inicialização falha.
+     */
+    private long loadLatestSnapshot() throws IOException {
+        List<Path> snapshots = listFiles(SnapshotFile::segmentOf);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        Path snapshot = snapshots.get(snapshots.size() - 1);
+        long segment = SnapshotFile.read(snapshot, restoreVisitor());
+        LOG.info("Snapshot {} carregado", snapshot.getFileName());
+        return segment;
+    }
+
+    private SnapshotFile.Visitor restoreVisitor() {
+        return new SnapshotFile.Visitor() {
+            @Override
+            public void onUser(SnapshotFile.UserEntry user) {
+                sessionManager.restoreUser(user.username(), user.lastSeen());
+            }
+
+            @Override
+            public void onGroup(SnapshotFile.GroupEntry group) {
+                groupManager.restoreGroup(group.name(), group.creator(), group.createdAt(), group.members());
+            }
+
+            @Override
+            public void onOfflineMessage(String username, Message message) {
+                offlineMessageStorage.storeMessage(username, message);
+            }
+
+            @Override
+            public void onChannel(SnapshotFile.ChannelEntry channel) {
+                channelManager.restoreChannel(channel.name(), channel.owner(), channel.createdAt(),
+                        channel.firstSequence(), channel.posts(), channel.cursors());
+            }
+
+            @Override
+            public void onScheduledMessage(SnapshotFile.ScheduledEntry scheduled) {
+                messageScheduler.restore(scheduled.id(), scheduled.message());
+            }
+        };
+    }
+
+    private void apply(StateChange change) {
+        try {
+            switch (change.type()) {
+                case USER_REGISTERED:
+                    if (!sessionManager.isUserNameRegistered(change.username())) {
+                        sessionManager.restoreUser(change.username(), timeOf(change));
+                    }
+                    break;
+                case GROUP_CREATED:
+                    groupManager.restoreGroup(change.groupName(), change.username(), timeOf(change),
+                            List.of(change.username()));
+                    break;
+                case MEMBER_JOINED:
+                    groupManager.addMemberToGroup(change.groupName(), change.username());
+                    break;
+                case MEMBER_LEFT:
+                    groupManager.removeMemberFromGroup(change.groupName(), change.username());
+                    break;
+                case OFFLINE_STORED:
+                    offlineMessageStorage.storeMessage(change.username(), change.message());
+                    break;
+                case OFFLINE_DRAINED:
+                    offlineMessageStorage.retrieveMessages(change.username());
+                    break;
+                case OFFLINE_STORED_SHARED:
+                    offlineMessageStorage.storeSharedMessage(change.recipients(), change.message());
+                    break;
+                case OFFLINE_REQUEUED:
+                    offlineMessageStorage.requeueMessages(change.username(), List.of(change.message()));
+                    break;
+                case CHANNEL_CREATED:
+                    channelManager.createChannel(change.groupName(), change.username(), timeOf(change));
+                    break;
+                case CHANNEL_SUBSCRIBED:
+                    channelManager.subscribe(change.groupName(), change.username());
+                    break;
+                case CHANNEL_UNSUBSCRIBED:
+                    channelManager.unsubscribe(change.groupName(), change.username());
+                    break;
+                case CHANNEL_POSTED:
+                    // Ninguém está online durante o replay: a publicação só volta ao log
+                    channelManager.publish(change.groupName(), change.message(), subscribers -> new RoaringBitmap());
+                    break;
+                case MESSAGE_SCHEDULED:
+                    messageScheduler.restore(change.scheduleId(), change.message());
+                    break;
+                case SCHEDULE_CANCELLED:
+                case SCHEDULE_FIRED:
+                    messageScheduler.forget(change.scheduleId());
+                    break;
+                default:
+                    LOG.warn("Alteração de estado não reconhecida: {}", change.type());
+            }
+        } catch (IllegalArgumentException iae) {
+            // O log pode repetir alterações já refletidas no snapshot
+            LOG.debug("Alteração {} ignorada no replay: {}", change.type(), iae.getMessage());
+        }
+    }
+
+    /**
+     * Horário registrado na alteração; logs gravados antes de ele existir usam o atual.
+     */
+    private static LocalDateTime timeOf(StateChange change) {
+        return change.time() != null ? change.time() : LocalDateTime.now();
+    }
+
+    private List<Path> listFiles(ToLongFunction<Path> segmentOf) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> segmentOf.applyAsLong(file) >= 0)
+                    .sorted((a, b) -> Long.compare(segmentOf.applyAsLong(a), segmentOf.applyAsLong(b)))
+                    .toList();
+        }
+    }
+
+    private void deleteOlderThan(long segment) throws IOException {
+        for (Path file : listFiles(SnapshotFile::segmentOf)) {
+            if (SnapshotFile.segmentOf(file) < segment) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : listFiles(WriteAheadLog::segmentOf)) {
+            if (WriteAheadLog.segmentOf(file) < segment) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
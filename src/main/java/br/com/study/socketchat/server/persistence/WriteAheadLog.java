@@ -0,0 +1,170 @@
+package br.com.study.socketchat.server.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log das alterações de estado, dividido em segmentos numerados
+ * ({@code wal-<n>.log}). Cada registro tem tamanho e CRC32; na leitura, um
+ * registro incompleto ou corrompido no fim do segmento encerra o replay.
+ * Os registros de um lote do {@link StateJournal} são enviados juntos ao sistema
+ * operacional no {@link #flush()} (sobrevivem à queda do processo); o fsync é feito
+ * na rotação e no fechamento.
+ */
+public class WriteAheadLog implements StateChangeListener, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final RecordBuffer buffer = new RecordBuffer();
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long segment;
+
+    public WriteAheadLog(Path directory, long segment) throws IOException {
+        this.directory = directory;
+        open(segment);
+    }
+
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * Número do segmento de um arquivo de log, ou -1 se o nome não for de um segmento.
+     */
+    public static long segmentOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public synchronized void onChange(StateChange change) {
+        try {
+            buffer.reset();
+            BinaryCodec.writeChange(bufferOut, change);
+            bufferOut.flush();
+            crc.reset();
+            crc.update(buffer.array(), 0, buffer.size());
+            out.writeInt(buffer.size());
+            out.writeInt((int) crc.getValue());
+            out.write(buffer.array(), 0, buffer.size());
+        } catch (IOException e) {
+            LOG.error("Erro ao gravar alteração {} no write-ahead log", change.type(), e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            LOG.error("Erro ao gravar lote no write-ahead log", e);
+        }
+    }
+
+    /**
+     * Fecha o segmento atual e passa a gravar no seguinte. Retorna o número do novo segmento.
+     */
+    public synchronized long rotate() throws IOException {
+        closeCurrent();
+        open(segment + 1);
+        return segment;
+    }
+
+    public synchronized long currentSegment() {
+        return segment;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeCurrent();
+    }
+
+    /**
+     * Lê os registros válidos de um segmento mapeado em memória. Retorna quantos foram aplicados.
+     */
+    public static long replay(Path file, Consumer<StateChange> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segmento do write-ahead log grande demais: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 checksum = new CRC32();
+            long applied = 0;
+            while (mapped.remaining() >= HEADER_BYTES) {
+                int length = mapped.getInt();
+                int expectedCrc = mapped.getInt();
+                if (length < 0 || length > mapped.remaining()) {
+                    LOG.warn("Registro incompleto no fim de {}, replay interrompido", file.getFileName());
+                    break;
+                }
+                ByteBuffer record = mapped.slice(mapped.position(), length);
+                checksum.reset();
+                checksum.update(record.duplicate());
+                if ((int) checksum.getValue() != expectedCrc) {
+                    LOG.warn("Registro corrompido em {}, replay interrompido", file.getFileName());
+                    break;
+                }
+                consumer.accept(BinaryCodec.readChange(record));
+                mapped.position(mapped.position() + length);
+                applied++;
+            }
+            return applied;
+        }
+    }
+
+    private void open(long newSegment) throws IOException {
+        this.segment = newSegment;
+        this.fileOut = new FileOutputStream(segmentPath(directory, newSegment).toFile(), true);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+    }
+
+    private void closeCurrent() throws IOException {
+        if (out != null) {
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Buffer reaproveitado entre registros, com acesso ao array interno para o CRC.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.study.socketchat.server.replication;
+
+import br.com.study.socketchat.server.persistence.BinaryCodec;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Alterações de estado numeradas e já codificadas, num anel com as últimas {@value #CAPACITY}.
+ * Quem altera o estado só codifica e guarda a alteração (sem rede); cada réplica é servida por
+ * uma thread que lê do anel a partir da sua posição. Uma réplica que reconecta retoma de onde
+ * parou enquanto essa posição ainda estiver no anel; uma réplica lenta demais perde a conexão
+ * em vez de atrasar o servidor.
+ */
+final class ReplicationLog implements StateChangeListener {
+    static final int CAPACITY = 1 << 16;
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationLog.class);
+    private static final int MASK = CAPACITY - 1;
+
+    private final Entry[] ring = new Entry[CAPACITY];
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    private long lastSequence;
+
+    record Entry(long sequence, long timeMillis, byte[] payload) {
+    }
+
+    @Override
+    public synchronized void onChange(StateChange change) {
+        buffer.reset();
+        try {
+            BinaryCodec.writeChange(bufferOut, change);
+            bufferOut.flush();
+        } catch (IOException e) {
+            LOG.error("Erro ao codificar alteração {} para replicação", change.type(), e);
+            return;
+        }
+        long sequence = ++lastSequence;
+        ring[(int) (sequence & MASK)] = new Entry(sequence, System.currentTimeMillis(), buffer.toByteArray());
+        notifyAll();
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Se as alterações depois de {@code sequence} ainda podem ser lidas.
+     */
+    synchronized boolean canResumeAfter(long sequence) {
+        return sequence >= 0 && sequence <= lastSequence && sequence >= lastSequence - CAPACITY;
+    }
+
+    /**
+     * A alteração {@code sequence}, ou null se ela já saiu do anel ou ainda não existe.
+     */
+    synchronized Entry find(long sequence) {
+        if (sequence <= 0 || sequence > lastSequence || sequence <= lastSequence - CAPACITY) {
+            return null;
+        }
+        return ring[(int) (sequence & MASK)];
+    }
+
+    /**
+     * Espera até {@code timeoutMillis} pela alteração {@code sequence}; null se ela não chegou.
+     *
+     * @throws IllegalStateException se ela já foi sobrescrita no anel
+     */
+    synchronized Entry await(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (sequence > lastSequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        if (sequence <= lastSequence - CAPACITY) {
+            throw new IllegalStateException("Alteração " + sequence + " já saiu do log de replicação");
+        }
+        return ring[(int) (sequence & MASK)];
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.study.socketchat.server.replication;
+
+/**
+ * Interface JMX da replicação (em {@code br.com.study.socketchat:type=Replication}).
+ */
+public interface ReplicationMXBean {
+
+    /**
+     * STANDALONE, PRIMARY ou STANDBY.
+     */
+    String getRole();
+
+    /**
+     * No primário, a última alteração registrada; na réplica, a última aplicada.
+     */
+    long getLastSequence();
+
+    int getConnectedStandbys();
+
+    boolean isConnectedToPrimary();
+
+    /**
+     * No primário, alterações não confirmadas pela réplica mais atrasada; na réplica, quantas
+     * o primário já anunciou e ainda não foram aplicadas.
+     */
+    long getLagChanges();
+
+    /**
+     * No primário, idade da alteração mais antiga não confirmada; na réplica, tempo entre o
+     * registro no primário e a aplicação da última alteração.
+     */
+    long getLagMillis();
+
+    long getSnapshotsSent();
+
+    /**
+     * Promove a réplica sem esperar o tempo de failover.
+     */
+    void promote();
+}
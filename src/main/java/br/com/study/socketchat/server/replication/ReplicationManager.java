@@ -0,0 +1,194 @@
+package br.com.study.socketchat.server.replication;
+
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replicação do estado para um servidor em standby (hot standby), ligada por propriedades:
+ * <ul>
+ *     <li>{@code -Dchat.replication.port=<porta>}: este servidor aceita réplicas nessa porta e
+ *     envia a elas as alterações de estado (as mesmas do write-ahead log), em ordem.</li>
+ *     <li>{@code -Dchat.replication.primary=<host:porta>}: este servidor sobe como réplica desse
+ *     primário, mantém o estado em memória sem aceitar clientes e assume quando o primário fica
+ *     {@code chat.replication.failoverSeconds} (padrão {@value #DEFAULT_FAILOVER_SECONDS}) sem
+ *     responder, ou quando promovido via JMX.</li>
+ * </ul>
+ * As duas podem ser usadas juntas: a réplica promovida passa a aceitar a próxima réplica.
+ * Sem nenhuma, {@link #start()} só restaura o estado do disco.
+ */
+@Component
+public class ReplicationManager implements ReplicationMXBean {
+    public static final String PORT_PROPERTY = "chat.replication.port";
+    public static final String PRIMARY_PROPERTY = "chat.replication.primary";
+    public static final String FAILOVER_PROPERTY = "chat.replication.failoverSeconds";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationManager.class);
+    private static final int DEFAULT_FAILOVER_SECONDS = 5;
+
+    private final StatePersistenceService statePersistenceService;
+    private final StateJournal stateJournal;
+    private volatile ReplicationStandby standby;
+    private volatile ReplicationPrimary primary;
+    private volatile ReplicationLog log;
+
+    public ReplicationManager(StatePersistenceService statePersistenceService, StateJournal stateJournal) {
+        this.statePersistenceService = statePersistenceService;
+        this.stateJournal = stateJournal;
+    }
+
+    /**
+     * Prepara o estado do servidor: numa réplica, acompanha o primário até ser promovida
+     * (bloqueia a thread atual até lá); nos demais casos, restaura do disco. Depois, se houver
+     * porta de replicação, passa a aceitar réplicas. Deve ser chamado antes de aceitar conexões.
+     */
+    public void start() throws IOException {
+        String primaryAddress = System.getProperty(PRIMARY_PROPERTY);
+        if (primaryAddress != null && !primaryAddress.isBlank()) {
+            followPrimary(parseAddress(primaryAddress.strip()));
+        } else {
+            statePersistenceService.restore();
+        }
+
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port != null) {
+            ReplicationLog replicationLog = new ReplicationLog();
+            stateJournal.addListener(replicationLog);
+            long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+            ReplicationPrimary newPrimary = new ReplicationPrimary(port, epoch, replicationLog, stateJournal,
+                    statePersistenceService);
+            newPrimary.start();
+            log = replicationLog;
+            primary = newPrimary;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ReplicationStandby currentStandby = standby;
+        if (currentStandby != null) {
+            currentStandby.stop();
+        }
+        ReplicationPrimary currentPrimary = primary;
+        if (currentPrimary != null) {
+            currentPrimary.shutdown();
+            stateJournal.removeListener(log);
+            primary = null;
+        }
+    }
+
+    private void followPrimary(InetSocketAddress address) throws IOException {
+        long failoverSeconds = Long.getLong(FAILOVER_PROPERTY, DEFAULT_FAILOVER_SECONDS);
+        ReplicationStandby newStandby = new ReplicationStandby(address, TimeUnit.SECONDS.toMillis(failoverSeconds),
+                statePersistenceService);
+        standby = newStandby;
+        LOG.info("Servidor em standby do primário {} (failover em {} s)", address, failoverSeconds);
+        boolean promoted;
+        try {
+            promoted = newStandby.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Standby interrompido antes da promoção");
+        }
+        if (!promoted) {
+            throw new IOException("Standby encerrado antes da promoção");
+        }
+        standby = null;
+        statePersistenceService.promote();
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0 || separator == address.length() - 1) {
+            throw new IllegalArgumentException("Endereço do primário inválido (esperado host:porta): " + address);
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, separator),
+                    Integer.parseInt(address.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Porta do primário inválida: " + address);
+        }
+    }
+
+    @Override
+    public String getRole() {
+        if (standby != null) {
+            return "STANDBY";
+        }
+        return primary != null ? "PRIMARY" : "STANDALONE";
+    }
+
+    @Override
+    public long getLastSequence() {
+        ReplicationStandby currentStandby = standby;
+        if (currentStandby != null) {
+            return currentStandby.appliedSequence();
+        }
+        ReplicationLog currentLog = log;
+        return currentLog == null ? 0 : currentLog.lastSequence();
+    }
+
+    @Override
+    public int getConnectedStandbys() {
+        ReplicationPrimary currentPrimary = primary;
+        return currentPrimary == null ? 0 : currentPrimary.connectedStandbys();
+    }
+
+    @Override
+    public boolean isConnectedToPrimary() {
+        ReplicationStandby currentStandby = standby;
+        return currentStandby != null && currentStandby.isConnected();
+    }
+
+    @Override
+    public long getLagChanges() {
+        ReplicationStandby currentStandby = standby;
+        if (currentStandby != null) {
+            return currentStandby.lagChanges();
+        }
+        ReplicationPrimary currentPrimary = primary;
+        return currentPrimary == null ? 0 : currentPrimary.lagChanges();
+    }
+
+    @Override
+    public long getLagMillis() {
+        ReplicationStandby currentStandby = standby;
+        if (currentStandby != null) {
+            return currentStandby.applyLagMillis();
+        }
+        ReplicationPrimary currentPrimary = primary;
+        return currentPrimary == null ? 0 : currentPrimary.lagMillis();
+    }
+
+    @Override
+    public long getSnapshotsSent() {
+        ReplicationPrimary currentPrimary = primary;
+        return currentPrimary == null ? 0 : currentPrimary.snapshotsSent();
+    }
+
+    @Override
+    public void promote() {
+        ReplicationStandby currentStandby = standby;
+        if (currentStandby == null) {
+            throw new IllegalArgumentException("Este servidor não é uma réplica");
+        }
+        LOG.warn("Promoção da réplica solicitada via JMX");
+        currentStandby.promote();
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "Replication");
+    }
+}
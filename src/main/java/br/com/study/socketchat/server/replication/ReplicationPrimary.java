@@ -0,0 +1,269 @@
+package br.com.study.socketchat.server.replication;
+
+import br.com.study.socketchat.server.persistence.SnapshotFile;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lado primário da replicação: aceita réplicas na porta de replicação e envia a cada uma o
+ * estado inicial (snapshot tirado sem alterações concorrentes, junto com a posição no
+ * {@link ReplicationLog}) e depois as alterações, em ordem. Cada réplica tem uma thread de
+ * envio e uma que lê as confirmações, usadas para medir o atraso.
+ */
+final class ReplicationPrimary {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationPrimary.class);
+
+    private final int port;
+    private final long epoch;
+    private final ReplicationLog log;
+    private final StateJournal stateJournal;
+    private final StatePersistenceService statePersistenceService;
+    private final List<StandbyLink> links = new CopyOnWriteArrayList<>();
+    private final AtomicInteger linkIds = new AtomicInteger();
+    private final AtomicLong snapshotsSent = new AtomicLong();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    ReplicationPrimary(int port, long epoch, ReplicationLog log, StateJournal stateJournal,
+                       StatePersistenceService statePersistenceService) {
+        this.port = port;
+        this.epoch = epoch;
+        this.log = log;
+        this.stateJournal = stateJournal;
+        this.statePersistenceService = statePersistenceService;
+    }
+
+    void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("Replicação: aguardando réplicas na porta {}", serverSocket.getLocalPort());
+    }
+
+    void shutdown() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("Erro ao fechar a porta de replicação", e);
+        }
+        for (StandbyLink link : links) {
+            link.close();
+        }
+    }
+
+    int connectedStandbys() {
+        return links.size();
+    }
+
+    long snapshotsSent() {
+        return snapshotsSent.get();
+    }
+
+    /**
+     * Alterações ainda não confirmadas pela réplica mais atrasada.
+     */
+    long lagChanges() {
+        long last = log.lastSequence();
+        long lag = 0;
+        for (StandbyLink link : links) {
+            lag = Math.max(lag, last - link.acknowledged);
+        }
+        return lag;
+    }
+
+    /**
+     * Há quanto tempo a alteração mais antiga não confirmada por alguma réplica foi registrada.
+     */
+    long lagMillis() {
+        long now = System.currentTimeMillis();
+        long lag = 0;
+        for (StandbyLink link : links) {
+            ReplicationLog.Entry oldest = log.find(link.acknowledged + 1);
+            if (oldest != null) {
+                lag = Math.max(lag, now - oldest.timeMillis());
+            }
+        }
+        return lag;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                StandbyLink link = new StandbyLink(socket, linkIds.incrementAndGet());
+                Thread sender = new Thread(link::run, "replication-sender-" + link.id);
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error("Erro ao aceitar réplica", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Conexão com uma réplica.
+     */
+    private final class StandbyLink {
+        private final Socket socket;
+        private final int id;
+        private volatile long acknowledged;
+
+        StandbyLink(Socket socket, int id) {
+            this.socket = socket;
+            this.id = id;
+        }
+
+        void run() {
+            String remote = String.valueOf(socket.getRemoteSocketAddress());
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                long next = handshake(in, out, remote);
+                if (next < 0) {
+                    return;
+                }
+                links.add(this);
+                Thread reader = new Thread(() -> readAcknowledgements(in), "replication-acks-" + id);
+                reader.setDaemon(true);
+                reader.start();
+                stream(out, next);
+            } catch (IOException | IllegalStateException e) {
+                if (running) {
+                    LOG.warn("Réplica {} desconectada: {}", remote, e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                links.remove(this);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("Erro ao fechar conexão de réplica", e);
+            }
+        }
+
+        /**
+         * Retorna a primeira sequência a enviar, ou -1 se a réplica foi recusada.
+         */
+        private long handshake(DataInputStream in, DataOutputStream out, String remote) throws IOException {
+            int magic = in.readInt();
+            int version = in.readInt();
+            long standbyEpoch = in.readLong();
+            long applied = in.readLong();
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeLong(epoch);
+
+            if (magic != ReplicationProtocol.MAGIC || version != ReplicationProtocol.VERSION) {
+                return reject(out, remote, "protocolo de replicação incompatível");
+            }
+            if (applied < 0) {
+                byte[] snapshot = captureSnapshot();
+                out.writeByte(ReplicationProtocol.SNAPSHOT);
+                out.writeInt(snapshot.length);
+                out.write(snapshot);
+                out.flush();
+                snapshotsSent.incrementAndGet();
+                long base = acknowledged;
+                LOG.info("Réplica {} iniciada com snapshot de {} KB (até a alteração {})",
+                        remote, snapshot.length / 1024, base);
+                return base + 1;
+            }
+            if (standbyEpoch == epoch && log.canResumeAfter(applied)) {
+                out.writeByte(ReplicationProtocol.RESUME);
+                out.flush();
+                acknowledged = applied;
+                LOG.info("Réplica {} retomada após a alteração {}", remote, applied);
+                return applied + 1;
+            }
+            return reject(out, remote, standbyEpoch == epoch
+                    ? "réplica atrasada demais para retomar"
+                    : "réplica com estado de outro primário");
+        }
+
+        private long reject(DataOutputStream out, String remote, String reason) throws IOException {
+            out.writeByte(ReplicationProtocol.REJECT);
+            out.writeUTF(reason);
+            out.flush();
+            LOG.warn("Réplica {} recusada: {}", remote, reason);
+            return -1;
+        }
+
+        /**
+         * Snapshot do estado e posição no log no mesmo ponto: as alterações seguintes são
+         * exatamente as de sequência maior.
+         */
+        private byte[] captureSnapshot() throws IOException {
+            SnapshotFile.Contents contents = stateJournal.exclusive(
+                    () -> statePersistenceService.copyState(log.lastSequence()));
+            acknowledged = contents.segment();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            SnapshotFile.write(out, contents);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void stream(DataOutputStream out, long next) throws IOException, InterruptedException {
+            while (running) {
+                ReplicationLog.Entry entry = log.await(next, ReplicationProtocol.HEARTBEAT_MILLIS);
+                if (entry == null) {
+                    out.writeByte(ReplicationProtocol.HEARTBEAT);
+                    out.writeLong(log.lastSequence());
+                    out.writeLong(System.currentTimeMillis());
+                    out.flush();
+                    continue;
+                }
+                out.writeByte(ReplicationProtocol.CHANGE);
+                out.writeLong(entry.sequence());
+                out.writeLong(entry.timeMillis());
+                out.writeInt(entry.payload().length);
+                out.write(entry.payload());
+                next++;
+                // Em rajadas, várias alterações seguem no mesmo pacote
+                if (next > log.lastSequence()) {
+                    out.flush();
+                }
+            }
+        }
+
+        private void readAcknowledgements(DataInputStream in) {
+            try {
+                while (true) {
+                    acknowledged = in.readLong();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package br.com.study.socketchat.server.replication;
+
+/**
+ * Formato da conexão de replicação (streams {@code Data*}, big-endian).
+ * <ul>
+ *     <li>Réplica → primário, ao conectar: {@code MAGIC, VERSION, época, última sequência aplicada}
+ *     (época 0 e sequência -1 quando a réplica ainda está vazia).</li>
+ *     <li>Primário → réplica: {@code MAGIC, época, modo}; no modo {@link #SNAPSHOT}, o tamanho e os
+ *     bytes de um snapshot (ver {@code SnapshotFile}); no {@link #REJECT}, o motivo.</li>
+ *     <li>Em seguida, o primário envia quadros {@link #CHANGE} ({@code sequência, horário, tamanho,
+ *     alteração codificada}) e, sem alterações, {@link #HEARTBEAT} ({@code última sequência, horário}).</li>
+ *     <li>A réplica confirma com a última sequência aplicada.</li>
+ * </ul>
+ * A época identifica uma execução do primário: as sequências só continuam valendo dentro dela.
+ */
+final class ReplicationProtocol {
+    static final int MAGIC = 0x5245504C; // "REPL"
+    static final int VERSION = 1;
+
+    static final byte SNAPSHOT = 0;
+    static final byte RESUME = 1;
+    static final byte REJECT = 2;
+
+    static final byte CHANGE = 1;
+    static final byte HEARTBEAT = 2;
+
+    static final long HEARTBEAT_MILLIS = 1000;
+    // Sem nada do primário por esse tempo, a conexão é dada como perdida
+    static final int READ_TIMEOUT_MILLIS = (int) (HEARTBEAT_MILLIS * 3);
+
+    private ReplicationProtocol() {
+    }
+}
@@ -0,0 +1,213 @@
+package br.com.study.socketchat.server.replication;
+
+import br.com.study.socketchat.server.persistence.BinaryCodec;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Lado réplica: conecta ao primário, carrega o snapshot recebido e aplica as alterações em
+ * memória, na ordem, confirmando o que já aplicou. Se a conexão cai, tenta retomar de onde
+ * parou; sem contato com o primário por mais que o tempo de failover, encerra o acompanhamento
+ * para o servidor ser promovido. Uma réplica que nunca recebeu o estado não é promovida sozinha.
+ */
+final class ReplicationStandby {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationStandby.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long RETRY_MILLIS = 500;
+    // Confirma ao esvaziar o que chegou ou, numa rajada longa, a cada tantas alterações
+    private static final int ACKNOWLEDGE_EVERY = 1024;
+
+    private final InetSocketAddress primary;
+    private final long failoverMillis;
+    private final StatePersistenceService statePersistenceService;
+
+    private volatile long epoch;
+    private volatile long appliedSequence = -1;
+    private volatile long primarySequence = -1;
+    private volatile long applyLagMillis;
+    private volatile long lastContactMillis;
+    private volatile boolean connected;
+    private volatile boolean rejected;
+    private volatile boolean promoteRequested;
+    private volatile boolean stopped;
+    private volatile Socket socket;
+
+    ReplicationStandby(InetSocketAddress primary, long failoverMillis, StatePersistenceService statePersistenceService) {
+        this.primary = primary;
+        this.failoverMillis = failoverMillis;
+        this.statePersistenceService = statePersistenceService;
+    }
+
+    /**
+     * Acompanha o primário até a promoção. Retorna false se foi encerrado antes dela.
+     */
+    boolean run() throws InterruptedException {
+        lastContactMillis = System.currentTimeMillis();
+        while (!promoteRequested && !stopped) {
+            if (!rejected) {
+                try {
+                    follow();
+                } catch (IOException e) {
+                    if (connected) {
+                        LOG.warn("Conexão com o primário {} perdida: {}", primary, e.getMessage());
+                    } else {
+                        LOG.debug("Sem conexão com o primário {}: {}", primary, e.getMessage());
+                    }
+                } finally {
+                    connected = false;
+                    socket = null;
+                }
+            }
+            long silence = System.currentTimeMillis() - lastContactMillis;
+            if (!rejected && appliedSequence >= 0 && silence >= failoverMillis) {
+                LOG.warn("Primário sem resposta há {} ms: réplica será promovida", silence);
+                break;
+            }
+            if (!promoteRequested && !stopped) {
+                Thread.sleep(RETRY_MILLIS);
+            }
+        }
+        if (stopped) {
+            return false;
+        }
+        LOG.info("Réplica promovida na alteração {} do primário", appliedSequence);
+        return true;
+    }
+
+    /**
+     * Promoção manual (ex.: primário parado para manutenção).
+     */
+    void promote() {
+        promoteRequested = true;
+        closeSocket();
+    }
+
+    void stop() {
+        stopped = true;
+        closeSocket();
+    }
+
+    long appliedSequence() {
+        return appliedSequence;
+    }
+
+    long lagChanges() {
+        return primarySequence < 0 ? 0 : Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * Tempo entre o registro no primário e a aplicação aqui, na última alteração aplicada
+     * (os dois relógios precisam estar sincronizados).
+     */
+    long applyLagMillis() {
+        return applyLagMillis;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    boolean isRejected() {
+        return rejected;
+    }
+
+    private void follow() throws IOException {
+        try (Socket connection = new Socket()) {
+            socket = connection;
+            if (promoteRequested || stopped) {
+                return;
+            }
+            connection.connect(primary, CONNECT_TIMEOUT_MILLIS);
+            connection.setTcpNoDelay(true);
+            connection.setSoTimeout(ReplicationProtocol.READ_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeInt(ReplicationProtocol.VERSION);
+            out.writeLong(epoch);
+            out.writeLong(appliedSequence);
+            out.flush();
+
+            if (in.readInt() != ReplicationProtocol.MAGIC) {
+                throw new IOException("resposta inválida do primário");
+            }
+            long primaryEpoch = in.readLong();
+            byte mode = in.readByte();
+            if (mode == ReplicationProtocol.REJECT) {
+                rejected = true;
+                LOG.error("Primário recusou a réplica ({}); reinicie este servidor sem estado para ressincronizar",
+                        in.readUTF());
+                return;
+            }
+            if (mode == ReplicationProtocol.SNAPSHOT) {
+                byte[] snapshot = new byte[in.readInt()];
+                in.readFully(snapshot);
+                long start = System.nanoTime();
+                appliedSequence = statePersistenceService.loadReplica(ByteBuffer.wrap(snapshot));
+                epoch = primaryEpoch;
+                LOG.info("Réplica carregada do primário {} em {} ms: snapshot de {} KB até a alteração {}",
+                        primary, (System.nanoTime() - start) / 1_000_000, snapshot.length / 1024, appliedSequence);
+            } else {
+                LOG.info("Replicação retomada após a alteração {}", appliedSequence);
+            }
+            lastContactMillis = System.currentTimeMillis();
+            connected = true;
+            apply(in, out);
+        }
+    }
+
+    private void apply(DataInputStream in, DataOutputStream out) throws IOException {
+        int unacknowledged = 0;
+        while (!promoteRequested && !stopped) {
+            byte kind = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            if (kind == ReplicationProtocol.CHANGE) {
+                long sequence = in.readLong();
+                long timeMillis = in.readLong();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                if (sequence != appliedSequence + 1) {
+                    throw new IOException("alteração " + sequence + " fora de ordem (aplicada: " + appliedSequence + ")");
+                }
+                statePersistenceService.applyReplicated(BinaryCodec.readChange(ByteBuffer.wrap(payload)));
+                appliedSequence = sequence;
+                primarySequence = Math.max(primarySequence, sequence);
+                applyLagMillis = System.currentTimeMillis() - timeMillis;
+                unacknowledged++;
+            } else if (kind == ReplicationProtocol.HEARTBEAT) {
+                primarySequence = in.readLong();
+                in.readLong();
+                unacknowledged++;
+            } else {
+                throw new IOException("quadro de replicação desconhecido: " + kind);
+            }
+            if (unacknowledged >= ACKNOWLEDGE_EVERY || (unacknowledged > 0 && in.available() == 0)) {
+                out.writeLong(appliedSequence);
+                out.flush();
+                unacknowledged = 0;
+            }
+        }
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOG.debug("Erro ao fechar conexão com o primário", e);
+            }
+        }
+    }
+}
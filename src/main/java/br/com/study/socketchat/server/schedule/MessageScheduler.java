@@ -0,0 +1,310 @@
+package br.com.study.socketchat.server.schedule;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.service.ChatService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mensagens agendadas pendentes, numa {@link TimingWheel} com ticks de {@value #TICK_MILLIS} ms.
+ * Agendar, cancelar e enviar passam pelo {@link StateJournal}, então os pendentes entram
+ * nos snapshots e no log e sobrevivem a um restart; os que venceram com o servidor parado
+ * saem no primeiro tick após {@link #start()}.
+ * <p>
+ * A cada tick, uma thread própria retira da roda tudo o que venceu e envia o lote pelo
+ * {@link ChatService}, pelos mesmos caminhos das mensagens enviadas na hora (entrega
+ * privada ou fan-out de grupo, com fila offline para quem não está conectado).
+ */
+@Component
+public class MessageScheduler implements MessageSchedulerMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(MessageScheduler.class);
+    static final long TICK_MILLIS = 100;
+    private static final int DEFAULT_MAX_PENDING_PER_USER = 1_000;
+
+    private final StateJournal stateJournal;
+    private final ChatService chatService;
+    // Protege a roda e os índices abaixo
+    private final Object lock = new Object();
+    private final TimingWheel wheel;
+    private final Map<Long, ScheduledMessage> pending = new HashMap<>();
+    private final Map<String, Map<Long, ScheduledMessage>> pendingByOwner = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder firedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+    private final AtomicInteger largestBatchSize = new AtomicInteger();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile int maxPendingPerUser = DEFAULT_MAX_PENDING_PER_USER;
+    private Thread worker;
+    private volatile boolean running;
+
+    public MessageScheduler(StateJournal stateJournal, ChatService chatService) {
+        this.stateJournal = stateJournal;
+        this.chatService = chatService;
+        this.wheel = new TimingWheel(System.currentTimeMillis() / TICK_MILLIS);
+    }
+
+    /**
+     * Agenda a mensagem ({@code PRIVATE_MESSAGE} ou {@code GROUP_MESSAGE}, já validada) para
+     * o horário do seu timestamp, em UTC.
+     */
+    public ScheduledMessage schedule(Message message) {
+        ScheduledMessage entry = new ScheduledMessage(ids.incrementAndGet(), message.getFrom(),
+                toMillis(message.getTimestamp()), message);
+        stateJournal.record(StateChange.messageScheduled(entry.getId(), message), () -> {
+            synchronized (lock) {
+                Map<Long, ScheduledMessage> owned = pendingByOwner.get(entry.getOwner());
+                if (owned != null && owned.size() >= maxPendingPerUser) {
+                    throw new IllegalArgumentException("Limite de " + maxPendingPerUser + " mensagens agendadas atingido");
+                }
+                insert(entry);
+            }
+        });
+        scheduledCount.increment();
+        return entry;
+    }
+
+    /**
+     * Cancela um agendamento do próprio usuário que ainda não foi enviado.
+     */
+    public void cancel(String owner, long id) {
+        stateJournal.record(StateChange.scheduleCancelled(id, owner), () -> {
+            synchronized (lock) {
+                ScheduledMessage entry = pending.get(id);
+                if (entry == null || !entry.getOwner().equals(owner)) {
+                    throw new IllegalArgumentException("Nenhuma mensagem agendada pendente com id " + id);
+                }
+                remove(entry);
+            }
+        });
+        cancelledCount.increment();
+    }
+
+    /**
+     * Agendamentos pendentes do usuário, do mais próximo ao mais distante.
+     */
+    public List<ScheduledMessage> findPending(String owner) {
+        List<ScheduledMessage> result;
+        synchronized (lock) {
+            Map<Long, ScheduledMessage> owned = pendingByOwner.get(owner);
+            result = owned == null ? new ArrayList<>() : new ArrayList<>(owned.values());
+        }
+        result.sort(Comparator.comparingLong(ScheduledMessage::getDeliverAtMillis)
+                .thenComparingLong(ScheduledMessage::getId));
+        return result;
+    }
+
+    /**
+     * Cópia dos pendentes para o snapshot de estado.
+     */
+    public List<ScheduledMessage> snapshotPending() {
+        synchronized (lock) {
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    /**
+     * Recria um agendamento a partir do estado persistido (snapshot ou log), sem registrá-lo de novo.
+     */
+    public void restore(long id, Message message) {
+        ScheduledMessage entry = new ScheduledMessage(id, message.getFrom(), toMillis(message.getTimestamp()), message);
+        synchronized (lock) {
+            ScheduledMessage previous = pending.get(id);
+            if (previous != null) {
+                remove(previous);
+            }
+            insert(entry);
+        }
+        ids.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Descarta um agendamento cancelado ou enviado, no replay do log.
+     */
+    public void forget(long id) {
+        synchronized (lock) {
+            ScheduledMessage entry = pending.get(id);
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+        ids.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Passa a enviar as mensagens vencidas. Chamado depois de restaurado o estado, para que
+     * nenhuma seja enviada antes de usuários e grupos existirem.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "message-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+        LOG.info("Agendador de mensagens iniciado com {} pendentes", getPendingCount());
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private void run() {
+        List<ScheduledMessage> due = new ArrayList<>();
+        while (running) {
+            long now = System.currentTimeMillis();
+            synchronized (lock) {
+                // O tick T guarda prazos em ((T-1) * TICK, T * TICK]: todos vencidos ao chegar em T
+                wheel.advanceTo(now / TICK_MILLIS, due);
+                for (ScheduledMessage entry : due) {
+                    unindex(entry);
+                }
+            }
+            if (!due.isEmpty()) {
+                fire(due, now);
+                due.clear();
+            }
+            long sleep = (now / TICK_MILLIS + 1) * TICK_MILLIS - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void fire(List<ScheduledMessage> batch, long now) {
+        lastBatchSize.set(batch.size());
+        largestBatchSize.accumulateAndGet(batch.size(), Math::max);
+        for (ScheduledMessage entry : batch) {
+            maxLagMillis.accumulateAndGet(now - entry.getDeliverAtMillis(), Math::max);
+            try {
+                stateJournal.record(StateChange.scheduleFired(entry.getId(), entry.getOwner()), () -> {
+                });
+                Message message = entry.getMessage().copy();
+                message.setTimestamp(LocalDateTime.now());
+                chatService.deliverScheduled(message);
+                firedCount.increment();
+            } catch (RuntimeException e) {
+                failedCount.increment();
+                LOG.info("Mensagem agendada {} de {} não enviada: {}", entry.getId(), entry.getOwner(), e.getMessage());
+            }
+        }
+    }
+
+    private void insert(ScheduledMessage entry) {
+        pending.put(entry.getId(), entry);
+        pendingByOwner.computeIfAbsent(entry.getOwner(), owner -> new LinkedHashMap<>()).put(entry.getId(), entry);
+        // Arredonda para cima: a mensagem nunca sai antes do horário
+        wheel.add(entry, Math.floorDiv(entry.getDeliverAtMillis() + TICK_MILLIS - 1, TICK_MILLIS));
+    }
+
+    private void remove(ScheduledMessage entry) {
+        wheel.cancel(entry);
+        unindex(entry);
+    }
+
+    private void unindex(ScheduledMessage entry) {
+        pending.remove(entry.getId());
+        Map<Long, ScheduledMessage> owned = pendingByOwner.get(entry.getOwner());
+        if (owned != null) {
+            owned.remove(entry.getId());
+            if (owned.isEmpty()) {
+                pendingByOwner.remove(entry.getOwner());
+            }
+        }
+    }
+
+    static long toMillis(LocalDateTime utc) {
+        return utc.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    @Override
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    @Override
+    public long getFiredCount() {
+        return firedCount.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public int getLastBatchSize() {
+        return lastBatchSize.get();
+    }
+
+    @Override
+    public int getLargestBatchSize() {
+        return largestBatchSize.get();
+    }
+
+    @Override
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    @Override
+    public int getMaxPendingPerUser() {
+        return maxPendingPerUser;
+    }
+
+    @Override
+    public void setMaxPendingPerUser(int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("Limite inválido: " + maxPending);
+        }
+        this.maxPendingPerUser = maxPending;
+        LOG.info("Limite de mensagens agendadas por usuário alterado para {}", maxPending);
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "MessageScheduler");
+    }
+}
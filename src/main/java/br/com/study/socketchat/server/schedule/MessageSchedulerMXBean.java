@@ -0,0 +1,30 @@
+package br.com.study.socketchat.server.schedule;
+
+/**
+ * Interface JMX das mensagens agendadas (em {@code br.com.study.socketchat:type=MessageScheduler}).
+ */
+public interface MessageSchedulerMXBean {
+
+    int getPendingCount();
+
+    long getScheduledCount();
+
+    long getCancelledCount();
+
+    long getFiredCount();
+
+    long getFailedCount();
+
+    int getLastBatchSize();
+
+    int getLargestBatchSize();
+
+    /**
+     * Maior atraso observado entre o horário agendado e o envio.
+     */
+    long getMaxLagMillis();
+
+    int getMaxPendingPerUser();
+
+    void setMaxPendingPerUser(int maxPending);
+}
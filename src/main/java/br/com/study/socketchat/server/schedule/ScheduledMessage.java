@@ -0,0 +1,48 @@
+package br.com.study.socketchat.server.schedule;
+
+import br.com.study.socketchat.commons.Message;
+
+/**
+ * Mensagem agendada: o que será enviado ({@code PRIVATE_MESSAGE} ou {@code GROUP_MESSAGE},
+ * em nome do dono), para quando (milissegundos de época) e o id usado para cancelar.
+ * Também é o nó da lista da posição da {@link TimingWheel} em que está, para inserir e
+ * remover sem busca.
+ */
+public final class ScheduledMessage {
+    private final long id;
+    private final String owner;
+    private final long deliverAtMillis;
+    private final Message message;
+
+    // Encadeamento na posição da roda; bucket nulo quando fora dela
+    long tick;
+    TimingWheel.Bucket bucket;
+    ScheduledMessage previous;
+    ScheduledMessage next;
+
+    ScheduledMessage(long id, String owner, long deliverAtMillis, Message message) {
+        this.id = id;
+        this.owner = owner;
+        this.deliverAtMillis = deliverAtMillis;
+        this.message = message;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getDeliverAtMillis() {
+        return deliverAtMillis;
+    }
+
+    /**
+     * A mensagem a enviar; não deve ser alterada (é a mesma gravada no log).
+     */
+    public Message getMessage() {
+        return message;
+    }
+}
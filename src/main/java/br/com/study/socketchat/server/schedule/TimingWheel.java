@@ -0,0 +1,171 @@
+package br.com.study.socketchat.server.schedule;
+
+import java.util.List;
+
+/**
+ * Timer wheel hierárquica: {@value #LEVELS} níveis de {@value #SLOTS} posições, cada nível
+ * com posições {@value #SLOTS} vezes mais largas que o anterior. Um agendamento entra no
+ * nível em que o prazo cabe e desce de nível (cascata) quando a roda de baixo dá a volta,
+ * até chegar ao nível 0, cuja posição do tick atual tem exatamente o que vence agora.
+ * <p>
+ * Inserir e cancelar custam O(1) (cada posição é uma lista duplamente encadeada pelos
+ * próprios {@link ScheduledMessage}); cada tick percorre só a posição atual do nível 0 e,
+ * a cada {@value #SLOTS} ticks, redistribui uma posição do nível de cima. Com 6 níveis de
+ * 64 posições, o alcance é de 64^6 ticks. Não é thread-safe.
+ */
+final class TimingWheel {
+    static final int LEVELS = 6;
+    private static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+    // Vencidos ao entrar (prazo no tick atual ou antes): saem no próximo avanço
+    private final Bucket overdue = new Bucket();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startTick) {
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+        this.currentTick = startTick;
+    }
+
+    void add(ScheduledMessage entry, long tick) {
+        entry.tick = tick;
+        place(entry);
+        size++;
+    }
+
+    /**
+     * Remove da roda. Retorna false se o agendamento não estava nela.
+     */
+    boolean cancel(ScheduledMessage entry) {
+        if (entry.bucket == null) {
+            return false;
+        }
+        entry.bucket.unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Avança até {@code tick} (inclusive), juntando em {@code due} tudo o que venceu.
+     */
+    void advanceTo(long tick, List<ScheduledMessage> due) {
+        drain(overdue, due);
+        while (currentTick < tick) {
+            currentTick++;
+            cascade();
+            drain(levels[0][(int) (currentTick & SLOT_MASK)], due);
+            drain(overdue, due);
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(ScheduledMessage entry) {
+        long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            overdue.append(entry);
+            return;
+        }
+        // Prazos além do alcance ficam no último nível e são reposicionados a cada volta dele
+        delta = Math.min(delta, MAX_DELTA);
+        int level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+        int slot = (int) ((entry.tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        levels[level][slot].append(entry);
+    }
+
+    /**
+     * Quando os níveis de baixo completam uma volta, a posição correspondente de cada nível
+     * de cima tem prazos que agora cabem em níveis mais baixos; do mais alto para o mais baixo.
+     */
+    private void cascade() {
+        int highest = 0;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+                break;
+            }
+            highest = level;
+        }
+        for (int level = highest; level >= 1; level--) {
+            Bucket bucket = levels[level][(int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK)];
+            ScheduledMessage entry = bucket.head;
+            bucket.clear();
+            while (entry != null) {
+                ScheduledMessage next = entry.next;
+                entry.previous = null;
+                entry.next = null;
+                entry.bucket = null;
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void drain(Bucket bucket, List<ScheduledMessage> due) {
+        ScheduledMessage entry = bucket.head;
+        bucket.clear();
+        while (entry != null) {
+            ScheduledMessage next = entry.next;
+            entry.previous = null;
+            entry.next = null;
+            entry.bucket = null;
+            due.add(entry);
+            size--;
+            entry = next;
+        }
+    }
+
+    /**
+     * Lista duplamente encadeada de uma posição.
+     */
+    static final class Bucket {
+        private ScheduledMessage head;
+        private ScheduledMessage tail;
+
+        void append(ScheduledMessage entry) {
+            entry.bucket = this;
+            entry.previous = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        void unlink(ScheduledMessage entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.previous = null;
+            entry.next = null;
+            entry.bucket = null;
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package br.com.study.socketchat.server.schedule.service;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.schedule.MessageScheduler;
+import br.com.study.socketchat.server.schedule.ScheduledMessage;
+import br.com.study.socketchat.server.session.SessionManager;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Regras das mensagens agendadas. O pedido ({@code SCHEDULE_MESSAGE}) traz o destino em
+ * {@code to} ({@code #grupo} para grupos), o texto e, no timestamp, o horário de entrega em
+ * UTC. O destino é validado agora (usuário registrado, ou grupo do qual o remetente é
+ * membro) e de novo no envio, pelos caminhos normais do {@code ChatService}.
+ */
+@Service
+public class ScheduleService {
+    private static final Duration MAX_DELAY = Duration.ofDays(366);
+
+    private final MessageScheduler messageScheduler;
+    private final SessionManager sessionManager;
+    private final GroupService groupService;
+
+    public ScheduleService(MessageScheduler messageScheduler, SessionManager sessionManager, GroupService groupService) {
+        this.messageScheduler = messageScheduler;
+        this.sessionManager = sessionManager;
+        this.groupService = groupService;
+    }
+
+    public ScheduledMessage schedule(Message request) {
+        String target = request.getTo();
+        if (target == null || target.isBlank() || target.equals("#")) {
+            throw new IllegalArgumentException("Destino não informado");
+        }
+        if (request.contentSize() == 0) {
+            throw new IllegalArgumentException("Mensagem vazia");
+        }
+        LocalDateTime deliverAt = request.getTimestamp();
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        if (deliverAt == null || !deliverAt.isAfter(now)) {
+            throw new IllegalArgumentException("O horário de envio deve estar no futuro");
+        }
+        if (deliverAt.isAfter(now.plus(MAX_DELAY))) {
+            throw new IllegalArgumentException("Agendamento além de " + MAX_DELAY.toDays() + " dias");
+        }
+
+        MessageType type;
+        String to;
+        if (target.startsWith("#")) {
+            to = target.substring(1);
+            groupService.findGroupWithUser(to, request.getFrom());
+            type = MessageType.GROUP_MESSAGE;
+        } else {
+            to = target;
+            if (!sessionManager.isUserNameRegistered(to)) {
+                throw new IllegalArgumentException("Usuário não registrado: " + to);
+            }
+            type = MessageType.PRIVATE_MESSAGE;
+        }
+        Message message = new Message(type, request.getFrom(), to, null);
+        message.copyContentFrom(request);
+        message.setTimestamp(deliverAt);
+        return messageScheduler.schedule(message);
+    }
+
+    public void cancel(String owner, String id) {
+        try {
+            messageScheduler.cancel(owner, Long.parseLong(id == null ? "" : id.strip()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Id de agendamento inválido: " + id);
+        }
+    }
+
+    public List<ScheduledMessage> findPending(String owner) {
+        return messageScheduler.findPending(owner);
+    }
+}
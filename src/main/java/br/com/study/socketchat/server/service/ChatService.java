@@ -2,16 +2,27 @@ package br.com.study.socketchat.server.service;
 
 import br.com.study.socketchat.commons.Group;
 import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import br.com.study.socketchat.commons.bitmap.UserIdResolver;
 import br.com.study.socketchat.commons.enums.MessageType;
 import br.com.study.socketchat.server.ChatHandler;
+import br.com.study.socketchat.server.group.GroupSequencer;
 import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.jfr.GroupFanOutEvent;
+import br.com.study.socketchat.server.jfr.MessageDeliveryEvent;
+import br.com.study.socketchat.server.jfr.MessageDeliveryEvent.Outcome;
 import br.com.study.socketchat.server.storage.OfflineMessageStorage;
+import br.com.study.socketchat.server.session.RecipientResolution;
 import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.trace.LatencyTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Serviço responsável pela lógica de envio de mensagens.
@@ -21,76 +32,260 @@ import java.util.Set;
 public class ChatService {
     private static final Logger LOG = LoggerFactory.getLogger(ChatService.class);
     private static final String SERVER_USER = "SERVER";
+    private static final int MAX_RECIPIENTS = 256;
 
     private final SessionManager sessionManager;
     private final GroupService groupService;
     private final OfflineMessageStorage offlineMessageStore;
+    private final LatencyTracer latencyTracer;
+    private final GroupSequencer groupSequencer;
+    private final AtomicLong messageIds = new AtomicLong();
 
-    public ChatService(SessionManager sessionManager, GroupService groupService, OfflineMessageStorage offlineMessageStore) {
+    public ChatService(SessionManager sessionManager, GroupService groupService, OfflineMessageStorage offlineMessageStore,
+                       LatencyTracer latencyTracer, GroupSequencer groupSequencer) {
         this.sessionManager = sessionManager;
         this.groupService = groupService;
         this.offlineMessageStore = offlineMessageStore;
+        this.latencyTracer = latencyTracer;
+        this.groupSequencer = groupSequencer;
+    }
+
+    /**
+     * Próximo identificador de mensagem; o cliente usa o id para descartar reentregas.
+     */
+    public long nextMessageId() {
+        return messageIds.incrementAndGet();
     }
 
     /**
      * Envia mensagem privada.
      */
     public void sendPrivateMessage(Message message, ChatHandler sender) {
+        message.setMessageId(nextMessageId());
         deliverToUser(message.getTo(), message, sender);
     }
 
     /**
-     * Envia mensagem em grupo.
+     * Envia o mesmo texto para vários destinatários a partir de um único frame.
+     * Os destinatários são classificados de uma vez pelo {@link SessionManager}; os offline
+     * recebem uma única cópia compartilhada na fila, e o remetente recebe um só relatório.
+     */
+    public void sendMultiPrivateMessage(Message message, ChatHandler sender) {
+        List<String> recipients = message.getRecipients();
+        if (recipients == null || recipients.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum destinatário informado");
+        }
+        if (recipients.size() > MAX_RECIPIENTS) {
+            throw new IllegalArgumentException("Máximo de " + MAX_RECIPIENTS + " destinatários por mensagem");
+        }
+
+        // Cada destinatário vê uma mensagem privada comum
+        Message outgoing = new Message(MessageType.PRIVATE_MESSAGE, message.getFrom(), null, null);
+        outgoing.copyContentFrom(message);
+        outgoing.setTimestamp(message.getTimestamp());
+        outgoing.setMessageId(nextMessageId());
+        outgoing.setTrace(message.getTrace());
+
+        RecipientResolution resolution = sessionManager.resolveRecipients(recipients);
+        List<String> offline = new ArrayList<>(resolution.offline());
+        int delivered = 0;
+        for (Map.Entry<String, ChatHandler> entry : resolution.online().entrySet()) {
+            if (entry.getValue().deliver(outgoing, sender)) {
+                delivered++;
+            } else {
+                offline.add(entry.getKey());
+            }
+        }
+        storeSharedOffline(offline, outgoing);
+
+        sender.sendGenericMessage(buildDeliveryReport(message, delivered, offline.size(), resolution.unknown()));
+    }
+
+    private Message buildDeliveryReport(Message original, int delivered, int stored, List<String> unknown) {
+        StringBuilder report = new StringBuilder()
+                .append("Mensagem para ").append(delivered + stored + unknown.size()).append(" destinatários: ")
+                .append(delivered).append(" entregues, ")
+                .append(stored).append(" armazenadas offline");
+        if (!unknown.isEmpty()) {
+            report.append(", ").append(unknown.size()).append(" falharam (usuários não registrados: ")
+                    .append(String.join(", ", unknown)).append(")");
+        }
+        Message reply = new Message(MessageType.MULTI_DELIVERY_REPORT, SERVER_USER, original.getFrom(), report.toString());
+        reply.setRecipients(unknown);
+        return reply;
+    }
+
+    /**
+     * Envia uma mensagem agendada que venceu, pelos mesmos caminhos das enviadas na hora.
+     * O remetente pode estar offline: nesse caso os avisos de erro não têm para onde ir.
+     */
+    public void deliverScheduled(Message message) {
+        ChatHandler sender = sessionManager.getHandler(message.getFrom());
+        if (message.getType() == MessageType.GROUP_MESSAGE) {
+            sendGroupMessage(message, sender);
+        } else {
+            sendPrivateMessage(message, sender);
+        }
+    }
+
+    /**
+     * Envia mensagem em grupo. A validação é feita aqui; o fan-out entra na sequência do
+     * grupo ({@link GroupSequencer}), para que todos os membros vejam a mesma ordem mesmo
+     * com vários membros publicando ao mesmo tempo.
      */
     public void sendGroupMessage(Message message, ChatHandler sender) {
         String groupName = message.getTo();
         Group group = groupService.findGroupWithUser(groupName, message.getFrom());
 
         if (group == null) {
-            sender.sendGenericMessage(buildErrorMessage(message, "Grupo não existe: " + groupName));
+            reply(sender, buildErrorMessage(message, "Grupo não existe: " + groupName));
             return;
         }
 
-        Set<String> members = group.getMembers();
-        if (!members.contains(message.getFrom())) {
-            sender.sendGenericMessage(buildErrorMessage(message, "Você não é membro do grupo: " + groupName));
+        if (!group.hasMember(message.getFrom())) {
+            reply(sender, buildErrorMessage(message, "Você não é membro do grupo: " + groupName));
             return;
         }
 
+        message.setMessageId(nextMessageId());
         String messageSender = message.getFrom();
         // Identifica que a mensagem vem de um grupo
-        message.setFrom(message.getFrom() + "@" + group.getName());
+        message.setFrom(group.qualifiedSender(messageSender));
+
+        long submitted = System.nanoTime();
+        groupSequencer.submit(group.getName(), () -> fanOutGroup(group, messageSender, message, sender, submitted));
+    }
+
+    private void fanOutGroup(Group group, String messageSender, Message message, ChatHandler sender, long submitted) {
+        GroupFanOutEvent event = new GroupFanOutEvent();
+        event.begin();
+        long sequencerDelay = System.nanoTime() - submitted;
+        // Uma única leitura dos membros: uma conversão no meio do fan-out não muda a representação usada
+        Group.Membership members = group.membership();
+        boolean bitmapBacked = members.isBitmapBacked();
+        List<String> offline = bitmapBacked
+                ? fanOutBitmapGroup(members, messageSender, message, sender)
+                : fanOutMembers(members, messageSender, message, sender);
+        storeSharedOffline(offline, message);
+        event.finish(group.getName(), members.size(), offline.size(), bitmapBacked, sequencerDelay);
+    }
 
-        for (String member : members) {
+    /**
+     * Entrega aos membros online; retorna quem deve receber pela fila offline.
+     */
+    private List<String> fanOutMembers(Group.Membership members, String messageSender, Message message,
+                                       ChatHandler sender) {
+        List<String> offline = new ArrayList<>();
+        members.forEach(member -> {
             if (!member.equals(messageSender)) {
-                deliverToUser(member, message, sender);
+                ChatHandler receiverHandler = sessionManager.getHandler(member);
+                if (receiverHandler == null || !receiverHandler.deliver(message, sender)) {
+                    offline.add(member);
+                }
             }
-        }
+        });
+        return offline;
+    }
+
+    /**
+     * Fan-out de grupos grandes: separa online e offline com operações de bitmap
+     * (online ∩ membros, membros \ online) e percorre cada parte em ordem de id.
+     */
+    private List<String> fanOutBitmapGroup(Group.Membership membership, String messageSender, Message message,
+                                           ChatHandler sender) {
+        RoaringBitmap members = membership.bitmap();
+        RoaringBitmap online = sessionManager.intersectOnline(members);
+        RoaringBitmap offline = members.andNot(online);
+        UserIdResolver resolver = membership.resolver();
+        List<String> receivers = new ArrayList<>(offline.cardinality());
+
+        online.forEach(id -> {
+            String member = resolver.nameOf(id);
+            if (member.equals(messageSender)) {
+                return;
+            }
+            ChatHandler receiverHandler = sessionManager.getHandler(member);
+            if (receiverHandler == null || !receiverHandler.deliver(message, sender)) {
+                receivers.add(member);
+            }
+        });
+        offline.forEach(id -> receivers.add(resolver.nameOf(id)));
+        return receivers;
     }
 
     /**
      * Lida com a entrega da mensagem para um usuário (privado ou grupo).
      */
     private void deliverToUser(String receiver, Message message, ChatHandler sender) {
+        if (!MessageDeliveryEvent.enabled()) {
+            tryDeliver(receiver, message, sender);
+            return;
+        }
+        MessageDeliveryEvent event = new MessageDeliveryEvent();
+        event.begin();
+        Outcome outcome = tryDeliver(receiver, message, sender);
+        event.finish(receiver, message.getType(), outcome);
+    }
+
+    private Outcome tryDeliver(String receiver, Message message, ChatHandler sender) {
         // Valida se usuário existe
         if (!sessionManager.isUserNameRegistered(receiver)) {
-            sender.sendGenericMessage(buildErrorMessage(message, "Usuário não registrado: " + receiver));
-            return;
+            reply(sender, buildErrorMessage(message, "Usuário não registrado: " + receiver));
+            return Outcome.UNREGISTERED;
         }
 
         // Se offline, guarda para entrega futura
         if (!sessionManager.isUserOnline(receiver)) {
-            LOG.info("Usuário {} está offline. Armazenando mensagem offline.", receiver);
-            offlineMessageStore.storeMessage(receiver, message);
-            return;
+            LOG.debug("Usuário {} está offline. Armazenando mensagem offline.", receiver);
+            storeOffline(receiver, message);
+            return Outcome.STORED_OFFLINE;
         }
 
         // Tenta enviar
         ChatHandler receiverHandler = sessionManager.getHandler(receiver);
-        if (receiverHandler != null) {
-            receiverHandler.sendGenericMessage(message);
-        } else {
-            sender.sendGenericMessage(buildErrorMessage(message, "Erro ao entregar mensagem para " + receiver));
+        if (receiverHandler == null) {
+            reply(sender, buildErrorMessage(message, "Erro ao entregar mensagem para " + receiver));
+            return Outcome.NO_SESSION;
+        }
+        if (!receiverHandler.deliver(message, sender)) {
+            // Conexão sendo encerrada: a mensagem fica para a próxima sessão
+            storeOffline(receiver, message);
+            return Outcome.CONNECTION_CLOSING;
+        }
+        return Outcome.ONLINE;
+    }
+
+    /**
+     * Armazena para entrega futura. Se o usuário entrou entre a verificação e o
+     * armazenamento, a fila dele já foi lida no login: entrega agora.
+     */
+    private void storeOffline(String receiver, Message message) {
+        offlineMessageStore.storeMessage(receiver, message);
+        latencyTracer.onStore(message);
+        if (sessionManager.getHandler(receiver) != null) {
+            deliverOfflineMessages(receiver);
+        }
+    }
+
+    /**
+     * Armazena uma única cópia da mensagem para todos os destinatários offline (conteúdo
+     * compartilhado na fila de cada um e um só registro no log), com a mesma verificação
+     * de {@link #storeOffline} para quem entrou nesse meio-tempo.
+     */
+    private void storeSharedOffline(List<String> receivers, Message message) {
+        if (receivers.isEmpty()) {
+            return;
+        }
+        if (receivers.size() == 1) {
+            storeOffline(receivers.get(0), message);
+            return;
+        }
+        offlineMessageStore.storeSharedMessage(receivers, message);
+        latencyTracer.onStore(message);
+        for (String receiver : receivers) {
+            if (sessionManager.getHandler(receiver) != null) {
+                deliverOfflineMessages(receiver);
+            }
         }
     }
 
@@ -98,15 +293,53 @@ public class ChatService {
      * Reenvia mensagens armazenadas para usuário logado.
      */
     public void deliverOfflineMessages(String username) {
+        ChatHandler handler = sessionManager.getHandler(username);
+        if (handler != null && handler.isDeliveryDeferred()) {
+            // A reposição do login (ou a retomada após a janela cheia) entrega a fila inteira, em ordem
+            return;
+        }
         var messages = offlineMessageStore.retrieveMessages(username);
         if (messages.isEmpty()) return;
 
         LOG.info("Entregando {} mensagens offline para {}", messages.size(), username);
-        ChatHandler handler = sessionManager.getHandler(username);
+        // Entregas da fila offline não entram nas medidas de latência (ex.: não confirmadas, devolvidas à fila)
+        for (Message message : messages) {
+            message.setTrace(null);
+        }
+        handler = sessionManager.getHandler(username);
         if (handler != null) {
-            for (Message msg : messages) {
-                handler.sendGenericMessage(msg);
+            for (int i = 0; i < messages.size(); i++) {
+                if (!handler.deliver(messages.get(i))) {
+                    offlineMessageStore.requeueMessages(username, messages.subList(i, messages.size()));
+                    return;
+                }
             }
+        } else {
+            // O usuário caiu de novo durante a retirada: as mensagens voltam para a fila
+            offlineMessageStore.requeueMessages(username, messages);
+        }
+    }
+
+    /**
+     * Devolve à fila offline as mensagens entregues que o usuário não confirmou antes
+     * de a conexão cair. Se ele já reconectou, entrega em seguida.
+     */
+    public void requeueUnacknowledged(String username, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        LOG.info("Devolvendo {} mensagens não confirmadas à fila offline de {}", messages.size(), username);
+        offlineMessageStore.requeueMessages(username, messages);
+        if (sessionManager.getHandler(username) != null) {
+            deliverOfflineMessages(username);
+        }
+    }
+
+    private void reply(ChatHandler sender, Message reply) {
+        if (sender != null) {
+            sender.sendGenericMessage(reply);
+        } else {
+            LOG.debug("Remetente offline, aviso descartado: {}", reply.getContent());
         }
     }
 
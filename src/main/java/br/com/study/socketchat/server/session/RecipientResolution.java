@@ -0,0 +1,13 @@
+package br.com.study.socketchat.server.session;
+
+import br.com.study.socketchat.server.ChatHandler;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Destinatários de uma mensagem separados em uma única passada: online (com o handler
+ * da sessão), offline e não registrados. Nomes repetidos aparecem uma vez só.
+ */
+public record RecipientResolution(Map<String, ChatHandler> online, List<String> offline, List<String> unknown) {
+}
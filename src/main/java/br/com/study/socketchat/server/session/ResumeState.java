@@ -0,0 +1,37 @@
+package br.com.study.socketchat.server.session;
+
+/**
+ * Estado de uma sessão que sobrevive a reconexões do mesmo cliente.
+ * O cliente apresenta o token no LOGIN; se ele coincidir, a sessão é retomada
+ * a partir do último número de sequência já processado, e as mensagens entregues
+ * ao cliente e ainda não confirmadas são retransmitidas.
+ */
+public class ResumeState {
+    private final String token;
+    private volatile long lastInboundSequence;
+    private final RetransmitBuffer outbound = new RetransmitBuffer();
+
+    public ResumeState(String token) {
+        this.token = token;
+    }
+
+    public boolean matches(String candidate) {
+        return candidate != null && token.equals(candidate);
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getLastInboundSequence() {
+        return lastInboundSequence;
+    }
+
+    public void setLastInboundSequence(long lastInboundSequence) {
+        this.lastInboundSequence = lastInboundSequence;
+    }
+
+    public RetransmitBuffer getOutbound() {
+        return outbound;
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.study.socketchat.server.session;
+
+import br.com.study.socketchat.commons.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Janela de retransmissão de uma sessão: mensagens entregues ao cliente e ainda não
+ * confirmadas, em ordem de sequência. Buffer circular com capacidade potência de dois
+ * (dobra quando enche); a mensagem mais antiga tem sequência {@code nextSequence - size}.
+ * <p>
+ * A janela guarda no máximo {@link #getMaxPending()} mensagens (padrão {@value #DEFAULT_MAX_PENDING},
+ * ajustável com {@code -Dchat.retransmit.window}). Quem entrega à sessão consulta o limite
+ * antes de enfileirar (ver {@code ChatHandler.deliver}); para um cliente que não confirma,
+ * o excedente espera na fila offline em vez de fazer a janela crescer sem fim.
+ */
+public class RetransmitBuffer {
+    public static final String MAX_PENDING_PROPERTY = "chat.retransmit.window";
+    public static final int DEFAULT_MAX_PENDING = 4096;
+    private static final int INITIAL_CAPACITY = 64;
+    // Mesma estimativa do escritor para o custo de uma mensagem além do conteúdo
+    private static final long MESSAGE_OVERHEAD_BYTES = 128;
+
+    private final int maxPending;
+    private Message[] slots = new Message[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private long nextSequence = 1;
+    private long bytes;
+
+    public RetransmitBuffer() {
+        this(Integer.getInteger(MAX_PENDING_PROPERTY, DEFAULT_MAX_PENDING));
+    }
+
+    public RetransmitBuffer(int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("Tamanho da janela de retransmissão inválido: " + maxPending);
+        }
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Atribui a próxima sequência à mensagem e a guarda até ser confirmada.
+     *
+     * @throws IllegalStateException se a janela já tem {@link #getMaxPending()} mensagens
+     */
+    public synchronized long append(Message message) {
+        if (size == maxPending) {
+            throw new IllegalStateException("Janela de retransmissão cheia (" + maxPending + " mensagens)");
+        }
+        if (size == slots.length) {
+            grow();
+        }
+        long sequence = nextSequence++;
+        message.setSequence(sequence);
+        slots[(head + size) & (slots.length - 1)] = message;
+        size++;
+        bytes += MESSAGE_OVERHEAD_BYTES + message.payloadSize();
+        return sequence;
+    }
+
+    /**
+     * Confirmação cumulativa: descarta todas as mensagens com sequência até a informada.
+     * Retorna quantas foram descartadas.
+     */
+    public synchronized int acknowledge(long sequence) {
+        int released = 0;
+        while (size > 0 && nextSequence - size <= sequence) {
+            bytes -= MESSAGE_OVERHEAD_BYTES + slots[head].payloadSize();
+            slots[head] = null;
+            head = (head + 1) & (slots.length - 1);
+            size--;
+            released++;
+        }
+        return released;
+    }
+
+    /**
+     * Percorre as mensagens pendentes em ordem de sequência.
+     */
+    public synchronized void forEachPending(Consumer<Message> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(slots[(head + i) & (slots.length - 1)]);
+        }
+    }
+
+    /**
+     * Remove e retorna todas as mensagens pendentes, em ordem de sequência.
+     */
+    public synchronized List<Message> drain() {
+        List<Message> pending = new ArrayList<>(size);
+        forEachPending(pending::add);
+        acknowledge(nextSequence - 1);
+        return pending;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Bytes estimados das mensagens retidas à espera de confirmação.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private void grow() {
+        Message[] larger = new Message[slots.length << 1];
+        for (int i = 0; i < size; i++) {
+            larger[i] = slots[(head + i) & (slots.length - 1)];
+        }
+        slots = larger;
+        head = 0;
+    }
+}
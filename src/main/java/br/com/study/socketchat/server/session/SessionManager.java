@@ -1,15 +1,25 @@
 package br.com.study.socketchat.server.session;
 
 import br.com.study.socketchat.commons.User;
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
 import br.com.study.socketchat.server.ChatHandler;
+import br.com.study.socketchat.server.directory.DirectoryIndex;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class SessionManager {
@@ -18,10 +28,20 @@ public class SessionManager {
 
     private Map<String, ChatHandler> sessions;
     private Map<String, User> registeredUsers;
-
-    public SessionManager() {
-        sessions = new HashMap<>();
-        registeredUsers = new HashMap<>();
+    private final UserIdRegistry userIdRegistry;
+    private final RoaringBitmap onlineUsers;
+    private final StateJournal stateJournal;
+    private final Map<String, ResumeState> resumeStates;
+    private final DirectoryIndex directoryIndex;
+
+    public SessionManager(UserIdRegistry userIdRegistry, StateJournal stateJournal, DirectoryIndex directoryIndex) {
+        this.userIdRegistry = userIdRegistry;
+        this.stateJournal = stateJournal;
+        this.directoryIndex = directoryIndex;
+        sessions = new ConcurrentHashMap<>();
+        registeredUsers = new ConcurrentHashMap<>();
+        onlineUsers = new RoaringBitmap();
+        resumeStates = new ConcurrentHashMap<>();
     }
 
     public void registerUser(String userName, ChatHandler handler) {
@@ -30,11 +50,48 @@ public class SessionManager {
             throw new IllegalArgumentException("Usuário já está conectado: " + userName);
         }
         if (!isUserNameRegistered(userName)) {
-            addNewUser(userName);
+            User user = new User(userName);
+            stateJournal.record(StateChange.userRegistered(userName, user.getLastSeen()), () -> addNewUser(user));
         } else {
             updateUser(userName);
         }
         sessions.put(userName, handler);
+        markOnline(userName);
+    }
+
+    /**
+     * Retomada de sessão: o novo handler substitui o anterior do mesmo usuário
+     * (cuja conexão pode ainda não ter sido detectada como morta). Retorna o handler anterior.
+     */
+    public ChatHandler takeOverSession(String userName, ChatHandler handler) {
+        ChatHandler previous = sessions.put(userName, handler);
+        updateUser(userName);
+        markOnline(userName);
+        return previous;
+    }
+
+    /**
+     * Estado de retomada do usuário, se houver um cujo token coincida com o informado.
+     */
+    public ResumeState findResumeState(String userName, String token) {
+        ResumeState state = resumeStates.get(userName);
+        return state != null && state.matches(token) ? state : null;
+    }
+
+    /**
+     * Inicia um novo estado de retomada (novo token) para o usuário, descartando o anterior.
+     */
+    public ResumeState newResumeState(String userName) {
+        ResumeState state = new ResumeState(UUID.randomUUID().toString());
+        resumeStates.put(userName, state);
+        return state;
+    }
+
+    private void markOnline(String userName) {
+        int id = userIdRegistry.idOf(userName);
+        synchronized (onlineUsers) {
+            onlineUsers.add(id);
+        }
     }
 
 
@@ -42,22 +99,56 @@ public class SessionManager {
         registeredUsers.get(userName).setOnline(true);
     }
 
-    private void addNewUser(String userName) {
-        registeredUsers.put(userName, new User(userName));
+    private void addNewUser(User user) {
+        registeredUsers.put(user.getUsername(), user);
+        directoryIndex.addUser(userIdRegistry.idOf(user.getUsername()), user.getUsername());
     }
 
 
+    /**
+     * Recria um usuário registrado (offline) a partir do estado persistido.
+     */
+    public void restoreUser(String userName, LocalDateTime lastSeen) {
+        User user = new User(userName);
+        user.setOnline(false);
+        if (lastSeen != null) {
+            user.setLastSeen(lastSeen);
+        }
+        registeredUsers.put(userName, user);
+        directoryIndex.addUser(userIdRegistry.idOf(userName), userName);
+    }
+
     public boolean isUserNameRegistered(String userName) {
         return registeredUsers.containsKey(userName);
     }
 
     public void unregisterUser(String username) {
         sessions.remove(username);
-        registeredUsers.get(username).setOnline(false);
+        markOffline(username);
 
         LOG.info("Usuário deslogado com sucesso: {}", username);
     }
 
+    /**
+     * Remove a sessão apenas se ela ainda pertence ao handler informado; uma sessão
+     * já retomada por outra conexão do mesmo usuário é mantida. Retorna se a sessão foi removida.
+     */
+    public boolean unregisterUser(String username, ChatHandler handler) {
+        if (sessions.remove(username, handler)) {
+            markOffline(username);
+            LOG.info("Usuário deslogado com sucesso: {}", username);
+            return true;
+        }
+        return false;
+    }
+
+    private void markOffline(String username) {
+        registeredUsers.get(username).setOnline(false);
+        synchronized (onlineUsers) {
+            onlineUsers.remove(userIdRegistry.findId(username));
+        }
+    }
+
     public boolean isUserOnline(String isOnline) {
         return registeredUsers.get(isOnline).isOnline();
     }
@@ -66,6 +157,39 @@ public class SessionManager {
         return sessions.get(username);
     }
 
+    /**
+     * Interseção entre os usuários online e o bitmap informado (ex.: membros de um grupo).
+     */
+    public RoaringBitmap intersectOnline(RoaringBitmap users) {
+        synchronized (onlineUsers) {
+            return onlineUsers.and(users);
+        }
+    }
+
+    /**
+     * Classifica os destinatários em online, offline e não registrados.
+     */
+    public RecipientResolution resolveRecipients(Collection<String> userNames) {
+        Map<String, ChatHandler> online = new LinkedHashMap<>();
+        List<String> offline = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String userName : userNames) {
+            if (!seen.add(userName)) {
+                continue;
+            }
+            ChatHandler handler = sessions.get(userName);
+            if (handler != null) {
+                online.put(userName, handler);
+            } else if (registeredUsers.containsKey(userName)) {
+                offline.add(userName);
+            } else {
+                unknown.add(userName);
+            }
+        }
+        return new RecipientResolution(online, offline, unknown);
+    }
+
     public List<User> findUsers() {
         return new ArrayList<>(registeredUsers.values());
     }
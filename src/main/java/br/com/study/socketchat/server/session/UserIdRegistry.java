@@ -0,0 +1,68 @@
+package br.com.study.socketchat.server.session;
+
+import br.com.study.socketchat.commons.bitmap.UserIdResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de identificadores densos de usuário.
+ * Os identificadores são atribuídos em ordem de chegada e nunca reaproveitados,
+ * o que mantém os bitmaps de membros e de sessões online compactos.
+ */
+@Component
+public class UserIdRegistry implements UserIdResolver {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private int nextId;
+
+    public UserIdRegistry() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[INITIAL_CAPACITY];
+        this.nextId = 0;
+    }
+
+    @Override
+    public int idOf(String username) {
+        Integer id = ids.get(username);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(username);
+            if (id != null) {
+                return id;
+            }
+            int newId = nextId++;
+            if (newId == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[newId] = username;
+            ids.put(username, newId);
+            return newId;
+        }
+    }
+
+    @Override
+    public int findId(String username) {
+        Integer id = ids.get(username);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public String nameOf(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Identificador de usuário desconhecido: " + id);
+        }
+        return current[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
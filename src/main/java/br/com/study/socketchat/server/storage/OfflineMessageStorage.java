@@ -3,9 +3,43 @@ package br.com.study.socketchat.server.storage;
 import br.com.study.socketchat.commons.Message;
 
 import java.util.List;
+import java.util.Map;
 
 public interface OfflineMessageStorage {
     void storeMessage(String username, Message message);
+
+    /**
+     * Armazena a mesma mensagem (uma única cópia) na fila de vários usuários.
+     */
+    void storeSharedMessage(List<String> usernames, Message message);
     List<Message> retrieveMessages(String username);
     boolean hasMessages(String username);
+
+    /**
+     * Devolve ao início da fila mensagens entregues que o cliente não confirmou,
+     * mantendo a ordem original.
+     */
+    void requeueMessages(String username, List<Message> messages);
+
+    /**
+     * Cópia de todas as filas offline, usada nos snapshots de estado.
+     */
+    Map<String, List<Message>> snapshotMessages();
+
+    RetentionPolicy getRetentionPolicy();
+
+    /**
+     * Aplica a nova política a todas as filas, inclusive às mensagens já armazenadas.
+     */
+    void setRetentionPolicy(RetentionPolicy policy);
+
+    /**
+     * As {@code limit} maiores filas, em bytes estimados.
+     */
+    List<UserBacklog> largestBacklogs(int limit);
+
+    /**
+     * Fila do usuário, ou null se ele não tem mensagens offline.
+     */
+    UserBacklog backlogOf(String username);
 }
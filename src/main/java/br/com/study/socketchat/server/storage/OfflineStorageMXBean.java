@@ -0,0 +1,36 @@
+package br.com.study.socketchat.server.storage;
+
+import java.util.List;
+
+/**
+ * Interface JMX das filas offline (em {@code br.com.study.socketchat:type=OfflineStorage}):
+ * política de retenção ajustável, totais e as maiores filas por usuário.
+ */
+public interface OfflineStorageMXBean {
+
+    int getMaxMessagesPerUser();
+
+    long getMaxBytesPerUser();
+
+    long getTtlSeconds();
+
+    long getHeapBudgetBytes();
+
+    void setRetention(int maxMessagesPerUser, long maxBytesPerUser, long ttlSeconds, long heapBudgetBytes);
+
+    long getQueuedMessages();
+
+    long getHeapBytes();
+
+    long getSpilledBytes();
+
+    long getSpilledPayloads();
+
+    long getExpiredMessages();
+
+    long getDroppedMessages();
+
+    List<UserBacklog> getLargestBacklogs();
+
+    UserBacklog findBacklog(String username);
+}
@@ -0,0 +1,23 @@
+package br.com.study.socketchat.server.storage;
+
+import java.time.Duration;
+
+/**
+ * Política de retenção das filas offline: limites por usuário (quantidade e bytes; acima
+ * deles as mensagens mais antigas são descartadas), tempo de vida de cada mensagem e
+ * orçamento global de memória (acima dele as mensagens mais antigas vão para o disco).
+ */
+public record RetentionPolicy(int maxMessagesPerUser, long maxBytesPerUser, Duration ttl, long heapBudgetBytes) {
+
+    public RetentionPolicy {
+        if (maxMessagesPerUser <= 0 || maxBytesPerUser <= 0 || heapBudgetBytes < 0
+                || ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Política de retenção inválida: mensagens=" + maxMessagesPerUser
+                    + ", bytes=" + maxBytesPerUser + ", ttl=" + ttl + ", memória=" + heapBudgetBytes);
+        }
+    }
+
+    public static RetentionPolicy defaults() {
+        return new RetentionPolicy(10_000, 64L * 1024 * 1024, Duration.ofDays(7), 256L * 1024 * 1024);
+    }
+}
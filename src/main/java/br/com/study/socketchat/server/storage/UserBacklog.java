@@ -0,0 +1,40 @@
+package br.com.study.socketchat.server.storage;
+
+/**
+ * Fila offline de um usuário: quantidade, tamanho estimado e idade da mensagem mais antiga.
+ */
+public class UserBacklog {
+    private final String username;
+    private final int messages;
+    private final long bytes;
+    private final long oldestAgeSeconds;
+
+    public UserBacklog(String username, int messages, long bytes, long oldestAgeSeconds) {
+        this.username = username;
+        this.messages = messages;
+        this.bytes = bytes;
+        this.oldestAgeSeconds = oldestAgeSeconds;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getOldestAgeSeconds() {
+        return oldestAgeSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d mensagens, %d bytes, mais antiga há %d s",
+                username, messages, bytes, oldestAgeSeconds);
+    }
+}
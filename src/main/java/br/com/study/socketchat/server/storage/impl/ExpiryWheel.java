@@ -0,0 +1,103 @@
+package br.com.study.socketchat.server.storage.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Timer wheel da varredura de expiração: cada usuário com fila offline é agendado para o
+ * instante em que a mensagem mais antiga dele expira. Agendar custa O(1) e cada tick só
+ * percorre uma posição da roda; prazos além de uma volta simplesmente esperam as voltas
+ * seguintes na mesma posição.
+ */
+final class ExpiryWheel {
+    private static final Logger LOG = LoggerFactory.getLogger(ExpiryWheel.class);
+
+    private final long tickMillis;
+    private final List<Timeout>[] slots;
+    private final int mask;
+    private final Consumer<String> onExpire;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    ExpiryWheel(long tickMillis, int slotCount, Consumer<String> onExpire) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Número de posições deve ser potência de dois: " + slotCount);
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = slotCount - 1;
+        this.onExpire = onExpire;
+        this.worker = new Thread(this::run, "offline-expiry");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Agenda a chave para o instante informado (em milissegundos de época). Prazos já
+     * vencidos disparam no próximo tick.
+     */
+    void schedule(String key, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis, System.currentTimeMillis()) / tickMillis;
+        List<Timeout> slot = slots[(int) (tick & mask)];
+        synchronized (slot) {
+            slot.add(new Timeout(key, deadlineMillis));
+        }
+    }
+
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        // Próximo tick a processar; o tick T só é processado depois que termina, quando
+        // todos os prazos da posição dele já venceram
+        long tick = System.currentTimeMillis() / tickMillis;
+        List<String> due = new ArrayList<>();
+        while (running) {
+            long sleep = (tick + 1) * tickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            long now = System.currentTimeMillis();
+            // Processa todas as posições até o tick atual (o worker pode ter atrasado)
+            while ((tick + 1) * tickMillis <= now) {
+                List<Timeout> slot = slots[(int) (tick & mask)];
+                synchronized (slot) {
+                    for (Iterator<Timeout> it = slot.iterator(); it.hasNext(); ) {
+                        Timeout timeout = it.next();
+                        if (timeout.deadlineMillis <= now) {
+                            due.add(timeout.key);
+                            it.remove();
+                        }
+                    }
+                }
+                tick++;
+            }
+            for (String key : due) {
+                try {
+                    onExpire.accept(key);
+                } catch (RuntimeException e) {
+                    LOG.error("Erro na varredura de expiração de {}", key, e);
+                }
+            }
+            due.clear();
+        }
+    }
+
+    private record Timeout(String key, long deadlineMillis) {
+    }
+}
@@ -1,35 +1,558 @@
 package br.com.study.socketchat.server.storage.impl;
 
 import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.jfr.OfflineStorageEvent;
+import br.com.study.socketchat.server.jfr.OfflineStorageEvent.Operation;
+import br.com.study.socketchat.server.persistence.StateChange;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
 import br.com.study.socketchat.server.storage.OfflineMessageStorage;
+import br.com.study.socketchat.server.storage.OfflineStorageMXBean;
+import br.com.study.socketchat.server.storage.RetentionPolicy;
+import br.com.study.socketchat.server.storage.UserBacklog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Filas offline por usuário. A mesma mensagem armazenada para vários usuários (ex.: um
+ * arquivo para um grupo quase todo offline) é guardada uma vez e contada por referência:
+ * cada fila guarda só um {@link SharedPayload}, liberado quando o último usuário o retira.
+ * <p>
+ * A {@link RetentionPolicy} limita cada fila (acima do limite as mais antigas são
+ * descartadas), define o tempo de vida das mensagens (uma varredura agendada num
+ * {@link ExpiryWheel} remove as vencidas) e o orçamento de memória: acima dele os conteúdos
+ * mais antigos vão para segmentos em disco ({@link SpillStore}) e só voltam à memória
+ * quando o usuário os retira. Descartes e expirações não vão para o log: são refeitos
+ * no replay a partir das mesmas mensagens e da política em vigor.
+ */
 @Component
-public class OfflineMessageStorageImpl implements OfflineMessageStorage {
-    private final Map<String, List<Message>> offlineMessages;
+public class OfflineMessageStorageImpl implements OfflineMessageStorage, OfflineStorageMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineMessageStorageImpl.class);
+    private static final String SPILL_DIRECTORY = "offline-spill";
+    private static final long EXPIRY_TICK_MILLIS = 1_000;
+    private static final int EXPIRY_WHEEL_SLOTS = 512;
+    private static final int LARGEST_BACKLOGS = 10;
 
-    public OfflineMessageStorageImpl() {
-        this.offlineMessages = new HashMap<>();
+    private final Map<String, UserQueue> offlineMessages;
+    // Conteúdos ainda referenciados por alguma fila, pela identidade da mensagem armazenada
+    // (identityHashCode -> payloads); heapResident mantém os que estão em memória na ordem
+    // de chegada, para transbordar primeiro os mais antigos. Ambos protegidos por payloadLock
+    private final Map<Integer, List<SharedPayload>> payloads;
+    private final Set<SharedPayload> heapResident;
+    private final Object payloadLock = new Object();
+    private final StateJournal stateJournal;
+    private final ExpiryWheel expiryWheel;
+    // Dentro do diretório de estado: cada servidor (ex.: primário e standby) tem o seu
+    private final Path spillDirectory;
+    private final AtomicLong queuedMessages = new AtomicLong();
+    private final LongAdder expiredMessages = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private volatile RetentionPolicy policy;
+    private SpillStore spillStore;
+    private long heapBytes;
+    private long spilledBytes;
+    private long spilledPayloads;
+    private int livePayloads;
+
+    public OfflineMessageStorageImpl(StateJournal stateJournal) {
+        this.offlineMessages = new ConcurrentHashMap<>();
+        this.payloads = new HashMap<>();
+        this.heapResident = new LinkedHashSet<>();
+        this.stateJournal = stateJournal;
+        this.policy = RetentionPolicy.defaults();
+        this.spillDirectory = StatePersistenceService.configuredDirectory().resolve(SPILL_DIRECTORY);
+        this.expiryWheel = new ExpiryWheel(EXPIRY_TICK_MILLIS, EXPIRY_WHEEL_SLOTS, this::sweep);
+    }
+
+    /**
+     * Evento JFR da operação, ou null sem gravação habilitada (sem alocação por mensagem).
+     */
+    private static OfflineStorageEvent beginEvent() {
+        if (!OfflineStorageEvent.enabled()) {
+            return null;
+        }
+        OfflineStorageEvent event = new OfflineStorageEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void finishEvent(OfflineStorageEvent event, Operation operation, String user, int recipients,
+                                    int messages) {
+        if (event != null) {
+            event.finish(operation, user, recipients, messages);
+        }
     }
 
     @Override
     public void storeMessage(String username, Message message) {
-        offlineMessages
-                .computeIfAbsent(username, k -> new ArrayList<>())
-                .add(message);
+        OfflineStorageEvent event = beginEvent();
+        stateJournal.record(StateChange.offlineStored(username, message),
+                () -> append(username, acquire(message), false));
+        finishEvent(event, Operation.STORE, username, 1, 1);
+    }
+
+    @Override
+    public void storeSharedMessage(List<String> usernames, Message message) {
+        OfflineStorageEvent event = beginEvent();
+        stateJournal.record(StateChange.offlineStoredShared(usernames, message), () -> {
+            SharedPayload payload = acquire(message, usernames.size());
+            for (String username : usernames) {
+                append(username, payload, false);
+            }
+        });
+        finishEvent(event, Operation.STORE_SHARED, usernames.isEmpty() ? null : usernames.get(0), usernames.size(),
+                1);
     }
 
     @Override
     public List<Message> retrieveMessages(String username) {
-        List<Message> messages = offlineMessages.getOrDefault(username, Collections.emptyList());
-        offlineMessages.remove(username); // limpa após entregar
+        if (!offlineMessages.containsKey(username)) {
+            return Collections.emptyList();
+        }
+        OfflineStorageEvent event = beginEvent();
+        List<Message> messages = drainQueue(username);
+        finishEvent(event, Operation.RETRIEVE, username, 1, messages.size());
+        return messages;
+    }
+
+    private List<Message> drainQueue(String username) {
+        // Remoção atômica: uma mensagem armazenada durante a entrega fica para a próxima retirada
+        List<UserQueue> drained = new ArrayList<>(1);
+        stateJournal.record(StateChange.offlineDrained(username), () -> drained.add(offlineMessages.remove(username)));
+        UserQueue queue = drained.get(0);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        queuedMessages.addAndGet(-queue.entries.size());
+        long ttlMillis = policy.ttl().toMillis();
+        long now = System.currentTimeMillis();
+        List<Message> messages = new ArrayList<>(queue.entries.size());
+        for (SharedPayload payload : queue.entries) {
+            if (payload.isExpired(ttlMillis, now)) {
+                expiredMessages.increment();
+                continue;
+            }
+            Message message = load(payload);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        for (SharedPayload payload : queue.entries) {
+            release(payload);
+        }
         return messages;
     }
 
+    @Override
+    public void requeueMessages(String username, List<Message> messages) {
+        OfflineStorageEvent event = beginEvent();
+        // Do último para o primeiro: cada um entra no início, preservando a ordem (também no replay)
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Message message = messages.get(i);
+            stateJournal.record(StateChange.offlineRequeued(username, message),
+                    () -> append(username, acquire(message), true));
+        }
+        finishEvent(event, Operation.REQUEUE, username, 1, messages.size());
+    }
+
     @Override
     public boolean hasMessages(String username) {
         return offlineMessages.containsKey(username);
     }
+
+    /**
+     * Cópia das filas. Mensagens compartilhadas aparecem como a mesma instância em todas
+     * as filas, o que permite ao snapshot gravá-las uma única vez; as que estão em disco
+     * são lidas de volta.
+     */
+    @Override
+    public Map<String, List<Message>> snapshotMessages() {
+        Map<SharedPayload, Message> loaded = new IdentityHashMap<>();
+        Map<String, List<Message>> copy = new HashMap<>();
+        offlineMessages.forEach((username, queue) -> {
+            List<Message> messages = new ArrayList<>(queue.entries.size());
+            for (SharedPayload payload : queue.entries) {
+                Message message = loaded.computeIfAbsent(payload, this::load);
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+            copy.put(username, messages);
+        });
+        return copy;
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return policy;
+    }
+
+    @Override
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        this.policy = policy;
+        LOG.info("Política de retenção offline alterada para {}", policy);
+        for (String username : offlineMessages.keySet()) {
+            stateJournal.apply(() -> offlineMessages.computeIfPresent(username, (key, queue) -> {
+                trim(key, queue);
+                return queue.entries.isEmpty() ? null : queue;
+            }));
+            sweep(username);
+        }
+        synchronized (payloadLock) {
+            spillOverBudget();
+        }
+    }
+
+    @Override
+    public List<UserBacklog> largestBacklogs(int limit) {
+        PriorityQueue<UserBacklog> largest = new PriorityQueue<>(Comparator.comparingLong(UserBacklog::getBytes));
+        for (String username : offlineMessages.keySet()) {
+            UserBacklog backlog = backlogOf(username);
+            if (backlog == null) {
+                continue;
+            }
+            largest.add(backlog);
+            if (largest.size() > limit) {
+                largest.poll();
+            }
+        }
+        List<UserBacklog> result = new ArrayList<>(largest);
+        result.sort(Comparator.comparingLong(UserBacklog::getBytes).reversed());
+        return result;
+    }
+
+    @Override
+    public UserBacklog backlogOf(String username) {
+        UserBacklog[] backlog = new UserBacklog[1];
+        long now = System.currentTimeMillis();
+        offlineMessages.computeIfPresent(username, (key, queue) -> {
+            long oldest = queue.entries.isEmpty() ? now : queue.entries.peekFirst().createdAtMillis;
+            backlog[0] = new UserBacklog(key, queue.entries.size(), queue.bytes, Math.max(0, (now - oldest) / 1000));
+            return queue;
+        });
+        return backlog[0];
+    }
+
+    @Override
+    public int getMaxMessagesPerUser() {
+        return policy.maxMessagesPerUser();
+    }
+
+    @Override
+    public long getMaxBytesPerUser() {
+        return policy.maxBytesPerUser();
+    }
+
+    @Override
+    public long getTtlSeconds() {
+        return policy.ttl().toSeconds();
+    }
+
+    @Override
+    public long getHeapBudgetBytes() {
+        return policy.heapBudgetBytes();
+    }
+
+    @Override
+    public void setRetention(int maxMessagesPerUser, long maxBytesPerUser, long ttlSeconds, long heapBudgetBytes) {
+        setRetentionPolicy(new RetentionPolicy(maxMessagesPerUser, maxBytesPerUser,
+                Duration.ofSeconds(ttlSeconds), heapBudgetBytes));
+    }
+
+    @Override
+    public long getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    @Override
+    public long getHeapBytes() {
+        synchronized (payloadLock) {
+            return heapBytes;
+        }
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        synchronized (payloadLock) {
+            return spilledBytes;
+        }
+    }
+
+    @Override
+    public long getSpilledPayloads() {
+        synchronized (payloadLock) {
+            return spilledPayloads;
+        }
+    }
+
+    @Override
+    public long getExpiredMessages() {
+        return expiredMessages.sum();
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    @Override
+    public List<UserBacklog> getLargestBacklogs() {
+        return largestBacklogs(LARGEST_BACKLOGS);
+    }
+
+    @Override
+    public UserBacklog findBacklog(String username) {
+        return backlogOf(username);
+    }
+
+    /**
+     * Quantidade de conteúdos distintos ainda referenciados pelas filas (em memória ou em disco).
+     */
+    public int payloadCount() {
+        synchronized (payloadLock) {
+            return livePayloads;
+        }
+    }
+
+    private void append(String username, SharedPayload payload, boolean atHead) {
+        offlineMessages.compute(username, (key, queued) -> {
+            UserQueue queue = queued != null ? queued : new UserQueue();
+            if (payload.isExpired(policy.ttl().toMillis(), System.currentTimeMillis())) {
+                // Já venceu (ex.: replay de uma mensagem antiga): nem entra na fila
+                expiredMessages.increment();
+                release(payload);
+                return queue.entries.isEmpty() ? null : queue;
+            }
+            if (atHead) {
+                queue.entries.addFirst(payload);
+            } else {
+                queue.entries.addLast(payload);
+            }
+            queue.bytes += payload.bytes;
+            queuedMessages.incrementAndGet();
+            trim(key, queue);
+            if (!queue.entries.isEmpty()) {
+                scheduleSweep(key, queue, payload.createdAtMillis + policy.ttl().toMillis());
+            }
+            return queue.entries.isEmpty() ? null : queue;
+        });
+    }
+
+    /**
+     * Descarta as mensagens mais antigas enquanto a fila passa dos limites da política.
+     */
+    private void trim(String username, UserQueue queue) {
+        RetentionPolicy current = policy;
+        int dropped = 0;
+        while (!queue.entries.isEmpty()
+                && (queue.entries.size() > current.maxMessagesPerUser() || queue.bytes > current.maxBytesPerUser())) {
+            SharedPayload oldest = queue.entries.pollFirst();
+            queue.bytes -= oldest.bytes;
+            release(oldest);
+            dropped++;
+        }
+        if (dropped > 0) {
+            queuedMessages.addAndGet(-dropped);
+            droppedMessages.add(dropped);
+            LOG.debug("Fila offline de {} acima do limite: {} mensagens antigas descartadas", username, dropped);
+        }
+    }
+
+    private void scheduleSweep(String username, UserQueue queue, long deadlineMillis) {
+        if (deadlineMillis < queue.nextSweepMillis) {
+            queue.nextSweepMillis = deadlineMillis;
+            expiryWheel.schedule(username, deadlineMillis);
+        }
+    }
+
+    /**
+     * Varredura de expiração de um usuário, disparada pelo {@link ExpiryWheel}: remove as
+     * mensagens vencidas e agenda a próxima varredura para a mais antiga que restou.
+     */
+    private void sweep(String username) {
+        stateJournal.apply(() -> offlineMessages.computeIfPresent(username, (key, queue) -> {
+            long ttlMillis = policy.ttl().toMillis();
+            long now = System.currentTimeMillis();
+            long nextDeadline = Long.MAX_VALUE;
+            int expired = 0;
+            for (Iterator<SharedPayload> it = queue.entries.iterator(); it.hasNext(); ) {
+                SharedPayload payload = it.next();
+                if (payload.isExpired(ttlMillis, now)) {
+                    it.remove();
+                    queue.bytes -= payload.bytes;
+                    release(payload);
+                    expired++;
+                } else {
+                    nextDeadline = Math.min(nextDeadline, payload.createdAtMillis + ttlMillis);
+                }
+            }
+            if (expired > 0) {
+                queuedMessages.addAndGet(-expired);
+                expiredMessages.add(expired);
+                LOG.debug("{} mensagens offline de {} expiraram", expired, key);
+            }
+            queue.nextSweepMillis = Long.MAX_VALUE;
+            if (queue.entries.isEmpty()) {
+                return null;
+            }
+            scheduleSweep(key, queue, nextDeadline);
+            return queue;
+        }));
+    }
+
+    private SharedPayload acquire(Message message) {
+        return acquire(message, 1);
+    }
+
+    /**
+     * Payload da mensagem com mais {@code references} referências; a mesma instância
+     * armazenada de novo (ex.: a mesma mensagem em várias filas de um snapshot) reaproveita
+     * o payload, mesmo que o conteúdo já esteja em disco.
+     */
+    private SharedPayload acquire(Message message, int references) {
+        synchronized (payloadLock) {
+            int identity = System.identityHashCode(message);
+            SharedPayload payload = null;
+            List<SharedPayload> candidates = payloads.get(identity);
+            if (candidates != null) {
+                for (SharedPayload candidate : candidates) {
+                    if (candidate.origin.get() == message) {
+                        payload = candidate;
+                        break;
+                    }
+                }
+            }
+            if (payload == null) {
+                payload = new SharedPayload(message);
+                payloads.computeIfAbsent(payload.identity, key -> new ArrayList<>(1)).add(payload);
+                heapResident.add(payload);
+                heapBytes += payload.bytes;
+                livePayloads++;
+            }
+            payload.references += references;
+            spillOverBudget();
+            return payload;
+        }
+    }
+
+    private void release(SharedPayload payload) {
+        synchronized (payloadLock) {
+            if (--payload.references > 0) {
+                return;
+            }
+            List<SharedPayload> candidates = payloads.get(payload.identity);
+            candidates.remove(payload);
+            if (candidates.isEmpty()) {
+                payloads.remove(payload.identity);
+            }
+            livePayloads--;
+            if (payload.message != null) {
+                heapResident.remove(payload);
+                heapBytes -= payload.bytes;
+            } else if (payload.location != null) {
+                spilledBytes -= payload.bytes;
+                spilledPayloads--;
+                try {
+                    spillStore.free(payload.location);
+                } catch (IOException e) {
+                    LOG.warn("Erro ao liberar segmento de transbordo: {}", e.getMessage());
+                }
+            }
+            payload.message = null;
+            payload.location = null;
+        }
+    }
+
+    /**
+     * Acima do orçamento de memória, grava em disco os conteúdos mais antigos.
+     * Chamado com {@code payloadLock}.
+     */
+    private void spillOverBudget() {
+        long budget = policy.heapBudgetBytes();
+        Iterator<SharedPayload> oldest = heapResident.iterator();
+        while (heapBytes > budget && oldest.hasNext()) {
+            SharedPayload payload = oldest.next();
+            try {
+                if (spillStore == null) {
+                    spillStore = new SpillStore(spillDirectory);
+                }
+                payload.location = spillStore.write(payload.message);
+            } catch (IOException e) {
+                LOG.warn("Não foi possível transbordar mensagens offline para o disco: {}", e.getMessage());
+                return;
+            }
+            oldest.remove();
+            payload.message = null;
+            heapBytes -= payload.bytes;
+            spilledBytes += payload.bytes;
+            spilledPayloads++;
+        }
+    }
+
+    /**
+     * Conteúdo do payload, lido do disco se foi transbordado. O chamador mantém uma
+     * referência, então o segmento não é apagado durante a leitura.
+     */
+    private Message load(SharedPayload payload) {
+        SpillLocation location;
+        SpillStore store;
+        synchronized (payloadLock) {
+            if (payload.message != null) {
+                return payload.message;
+            }
+            location = payload.location;
+            store = spillStore;
+        }
+        try {
+            return store.read(location);
+        } catch (IOException e) {
+            LOG.error("Erro ao ler mensagem offline transbordada {}", location, e);
+            return null;
+        }
+    }
+
+    /**
+     * Para a varredura de expiração e apaga o transbordo em disco. Chamado depois do snapshot
+     * final do {@link StatePersistenceService}, que ainda lê os conteúdos transbordados.
+     */
+    @PreDestroy
+    public void shutdown() {
+        expiryWheel.stop();
+        synchronized (payloadLock) {
+            if (spillStore == null) {
+                return;
+            }
+            try {
+                spillStore.close();
+            } catch (IOException e) {
+                LOG.warn("Erro ao apagar o transbordo de mensagens offline: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "OfflineStorage");
+    }
+
+    /**
+     * Fila de um usuário; alterada só dentro de {@code compute} no mapa de filas.
+     */
+    private static final class UserQueue {
+        private final ArrayDeque<SharedPayload> entries = new ArrayDeque<>();
+        private long bytes;
+        private long nextSweepMillis = Long.MAX_VALUE;
+    }
 }
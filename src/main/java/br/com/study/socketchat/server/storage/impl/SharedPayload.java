@@ -0,0 +1,57 @@
+package br.com.study.socketchat.server.storage.impl;
+
+import br.com.study.socketchat.commons.Message;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Conteúdo de uma mensagem offline guardado uma única vez. As filas dos usuários
+ * guardam só a referência; {@code references} conta quantas filas ainda a têm.
+ * O conteúdo fica em memória ({@code message}) ou, acima do orçamento, em disco
+ * ({@code location}). {@code origin} identifica a instância armazenada sem mantê-la viva
+ * depois que o conteúdo vai para o disco. Protegido pelo lock de conteúdos do
+ * {@link OfflineMessageStorageImpl}.
+ */
+final class SharedPayload {
+    // Estimativa do espaço ocupado em memória: cabeçalhos mais dois bytes por caractere
+    private static final int OVERHEAD_BYTES = 128;
+
+    final WeakReference<Message> origin;
+    final int identity;
+    final long bytes;
+    // Início do tempo de vida: o timestamp da mensagem, nunca no futuro
+    final long createdAtMillis;
+    Message message;
+    SpillLocation location;
+    int references;
+
+    SharedPayload(Message message) {
+        this.message = message;
+        this.origin = new WeakReference<>(message);
+        this.identity = System.identityHashCode(message);
+        this.bytes = estimateBytes(message);
+        this.createdAtMillis = createdAtMillis(message.getTimestamp());
+    }
+
+    boolean isExpired(long ttlMillis, long nowMillis) {
+        return createdAtMillis + ttlMillis <= nowMillis;
+    }
+
+    private static long estimateBytes(Message message) {
+        return OVERHEAD_BYTES + message.payloadSize() + 2L * (length(message.getFrom()) + length(message.getTo()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static long createdAtMillis(LocalDateTime timestamp) {
+        long now = System.currentTimeMillis();
+        if (timestamp == null) {
+            return now;
+        }
+        return Math.min(now, timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
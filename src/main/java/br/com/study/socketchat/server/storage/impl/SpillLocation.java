@@ -0,0 +1,7 @@
+package br.com.study.socketchat.server.storage.impl;
+
+/**
+ * Posição de uma mensagem transbordada para disco: segmento, deslocamento e tamanho.
+ */
+record SpillLocation(long segment, long offset, int length) {
+}
@@ -0,0 +1,132 @@
+package br.com.study.socketchat.server.storage.impl;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.server.persistence.BinaryCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Segmentos em disco para as mensagens offline que não cabem no orçamento de memória.
+ * As mensagens são gravadas em sequência no segmento atual, no formato do {@link BinaryCodec};
+ * um segmento é apagado quando a última mensagem dele é retirada. O conteúdo não é a
+ * fonte de verdade (o write-ahead log e os snapshots são): segmentos que sobraram de uma
+ * execução anterior são apagados na inicialização.
+ */
+final class SpillStore {
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private Segment current;
+    private long nextSegment;
+
+    SpillStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    synchronized SpillLocation write(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeMessage(new DataOutputStream(bytes), message);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+        if (current == null || current.size + buffer.remaining() > SEGMENT_BYTES) {
+            roll();
+        }
+        long offset = current.size;
+        while (buffer.hasRemaining()) {
+            current.size += current.channel.write(buffer, current.size);
+        }
+        current.live++;
+        return new SpillLocation(current.number, offset, bytes.size());
+    }
+
+    Message read(SpillLocation location) throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            channel = segments.get(location.segment()).channel;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        long position = location.offset();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Segmento de transbordo truncado: " + location);
+            }
+        }
+        buffer.flip();
+        return BinaryCodec.readMessage(buffer);
+    }
+
+    /**
+     * A mensagem saiu de todas as filas; o segmento é apagado quando não resta nenhuma.
+     */
+    synchronized void free(SpillLocation location) throws IOException {
+        Segment segment = segments.get(location.segment());
+        if (--segment.live == 0 && segment != current) {
+            segments.remove(segment.number);
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    /**
+     * Fecha e apaga todos os segmentos (o conteúdo já está no snapshot final).
+     */
+    synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+        segments.clear();
+        current = null;
+    }
+
+    private void roll() throws IOException {
+        Segment previous = current;
+        long number = nextSegment++;
+        Path path = directory.resolve(String.format("%s%010d%s", PREFIX, number, SUFFIX));
+        current = new Segment(number, path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segments.put(number, current);
+        if (previous != null && previous.live == 0) {
+            segments.remove(previous.number);
+            previous.channel.close();
+            Files.deleteIfExists(previous.path);
+        }
+    }
+
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private int live;
+
+        Segment(long number, Path path, FileChannel channel) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.study.socketchat.server.trace;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream de entrada que guarda quando chegaram os primeiros bytes da próxima mensagem:
+ * depois de {@link #takeArrival()}, a primeira leitura com dados é carimbada. Separa o
+ * tempo de espera pela rede do tempo de desserialização.
+ */
+public class ArrivalStampingInputStream extends FilterInputStream {
+    private long arrivalNanos;
+
+    public ArrivalStampingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            stamp();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            stamp();
+        }
+        return read;
+    }
+
+    /**
+     * Instante de chegada da mensagem que acabou de ser lida (0 se nenhum byte foi lido
+     * desde a anterior); prepara o carimbo da próxima.
+     */
+    public long takeArrival() {
+        long arrival = arrivalNanos;
+        arrivalNanos = 0;
+        return arrival;
+    }
+
+    private void stamp() {
+        if (arrivalNanos == 0) {
+            arrivalNanos = System.nanoTime();
+        }
+    }
+}
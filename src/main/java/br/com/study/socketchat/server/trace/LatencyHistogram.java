@@ -0,0 +1,92 @@
+package br.com.study.socketchat.server.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma log-linear de latências em nanossegundos, sem locks: cada potência de dois é
+ * dividida em {@value #SUB_BUCKETS} faixas, o que dá erro relativo de no máximo 12,5%
+ * nos percentis com um array fixo de contadores.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    StageStatistics toStatistics(TraceStage stage) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return new StageStatistics(stage.name(), total,
+                micros(percentile(snapshot, total, 0.50)),
+                micros(percentile(snapshot, total, 0.90)),
+                micros(percentile(snapshot, total, 0.99)),
+                micros(percentile(snapshot, total, 0.999)),
+                micros(max.get()));
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    private static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Maior valor que cabe na faixa do índice.
+     */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long base = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return base + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private long percentile(long[] snapshot, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000d;
+    }
+}
@@ -0,0 +1,32 @@
+package br.com.study.socketchat.server.trace;
+
+/**
+ * Interface JMX com a latência de cada trecho do caminho das mensagens e a configuração
+ * do despejo de traces (em {@code br.com.study.socketchat:type=LatencyTrace}).
+ */
+public interface LatencyTraceMXBean {
+
+    StageStatistics getDecode();
+
+    StageStatistics getAdmission();
+
+    StageStatistics getRouting();
+
+    StageStatistics getOfflineStore();
+
+    StageStatistics getOutbound();
+
+    StageStatistics getTotal();
+
+    long getSlowThresholdMillis();
+
+    void setSlowThresholdMillis(long slowThresholdMillis);
+
+    int getSampleEvery();
+
+    void setSampleEvery(int sampleEvery);
+
+    long getDumpedTraces();
+
+    void resetStatistics();
+}
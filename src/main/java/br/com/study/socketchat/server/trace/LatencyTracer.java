@@ -0,0 +1,197 @@
+package br.com.study.socketchat.server.trace;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.MessageTrace;
+import br.com.study.socketchat.commons.MessageTrace.Hop;
+import br.com.study.socketchat.server.Jmx;
+import br.com.study.socketchat.server.admission.RateLimit;
+import br.com.study.socketchat.server.admission.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latência por trecho do caminho das mensagens: os handlers carimbam cada salto
+ * ({@link MessageTrace}) e aqui os trechos viram histogramas ({@link TraceStage}).
+ * Os trechos de entrada são registrados uma vez por mensagem; os de saída, uma vez por
+ * destinatário, na primeira escrita (retransmissões e entregas da fila offline não contam).
+ * <p>
+ * Traces completos das entregas lentas (acima do limite) e, opcionalmente, de uma amostra
+ * de 1 a cada N entregas são despejados no logger {@value #TRACE_LOGGER}, que pode ser
+ * direcionado a um arquivo local; o despejo é limitado por um token bucket.
+ */
+@Component
+public class LatencyTracer implements LatencyTraceMXBean {
+    public static final String TRACE_LOGGER = "br.com.study.socketchat.trace";
+
+    private static final Logger LOG = LoggerFactory.getLogger(LatencyTracer.class);
+    private static final Logger TRACE_LOG = LoggerFactory.getLogger(TRACE_LOGGER);
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 250;
+    private static final RateLimit DUMP_LIMIT = new RateLimit(50, 20);
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[TraceStage.values().length];
+    private final TokenBucket dumpBucket = new TokenBucket(DUMP_LIMIT);
+    private final AtomicLong deliveries = new AtomicLong();
+    private final AtomicLong dumpedTraces = new AtomicLong();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MILLIS);
+    private volatile int sampleEvery;
+
+    public LatencyTracer() {
+        for (TraceStage stage : TraceStage.values()) {
+            histograms[stage.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Mensagem admitida: carimba o início do roteamento e registra os trechos de entrada.
+     */
+    public void onRoute(Message message) {
+        MessageTrace trace = message.getTrace();
+        if (trace == null) {
+            return;
+        }
+        trace.stamp(Hop.ROUTE, System.nanoTime());
+        record(trace, TraceStage.DECODE);
+        record(trace, TraceStage.ADMISSION);
+    }
+
+    /**
+     * Cópia enfileirada na faixa de saída de um destinatário.
+     */
+    public void onEnqueue(Message message, long nanos) {
+        MessageTrace trace = message.getTrace();
+        if (trace != null && !trace.has(Hop.ENQUEUE)) {
+            trace.stamp(Hop.ENQUEUE, nanos);
+        }
+    }
+
+    /**
+     * Mensagem escrita no socket do destinatário; fecha o trace da entrega.
+     */
+    public void onWrite(Message message) {
+        MessageTrace trace = message.getTrace();
+        if (trace == null || trace.has(Hop.WRITE) || !trace.has(Hop.ENQUEUE)) {
+            return;
+        }
+        trace.stamp(Hop.WRITE, System.nanoTime());
+        record(trace, TraceStage.ROUTING);
+        record(trace, TraceStage.OUTBOUND);
+        long total = record(trace, TraceStage.TOTAL);
+        long delivery = deliveries.incrementAndGet();
+        int every = sampleEvery;
+        if (total >= slowThresholdNanos || (every > 0 && delivery % every == 0)) {
+            dump(message, trace, total);
+        }
+    }
+
+    /**
+     * Mensagem gravada na fila offline. O trace termina aqui: a entrega futura não é medida.
+     */
+    public void onStore(Message message) {
+        MessageTrace trace = message.getTrace();
+        if (trace == null) {
+            return;
+        }
+        trace.stamp(Hop.STORE, System.nanoTime());
+        record(trace, TraceStage.OFFLINE_STORE);
+        message.setTrace(null);
+    }
+
+    public StageStatistics statistics(TraceStage stage) {
+        return histograms[stage.ordinal()].toStatistics(stage);
+    }
+
+    private long record(MessageTrace trace, TraceStage stage) {
+        long nanos = trace.between(stage.getFrom(), stage.getTo());
+        histograms[stage.ordinal()].record(nanos);
+        return nanos;
+    }
+
+    private void dump(Message message, MessageTrace trace, long totalNanos) {
+        if (!dumpBucket.tryAcquire(DUMP_LIMIT, 1)) {
+            return;
+        }
+        dumpedTraces.incrementAndGet();
+        TRACE_LOG.info("{} {}->{} id={} total={} ms: {}", message.getType(), message.getFrom(), message.getTo(),
+                message.getMessageId(), String.format("%.3f", totalNanos / 1e6), trace);
+    }
+
+    @Override
+    public StageStatistics getDecode() {
+        return statistics(TraceStage.DECODE);
+    }
+
+    @Override
+    public StageStatistics getAdmission() {
+        return statistics(TraceStage.ADMISSION);
+    }
+
+    @Override
+    public StageStatistics getRouting() {
+        return statistics(TraceStage.ROUTING);
+    }
+
+    @Override
+    public StageStatistics getOfflineStore() {
+        return statistics(TraceStage.OFFLINE_STORE);
+    }
+
+    @Override
+    public StageStatistics getOutbound() {
+        return statistics(TraceStage.OUTBOUND);
+    }
+
+    @Override
+    public StageStatistics getTotal() {
+        return statistics(TraceStage.TOTAL);
+    }
+
+    @Override
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        if (slowThresholdMillis <= 0) {
+            throw new IllegalArgumentException("Limite de entrega lenta inválido: " + slowThresholdMillis);
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        LOG.info("Limite de entrega lenta alterado para {} ms", slowThresholdMillis);
+    }
+
+    @Override
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    @Override
+    public void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 0) {
+            throw new IllegalArgumentException("Amostragem inválida: " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+        LOG.info("Amostragem de traces alterada para 1 a cada {} entregas", sampleEvery);
+    }
+
+    @Override
+    public long getDumpedTraces() {
+        return dumpedTraces.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        Jmx.register(this, "LatencyTrace");
+    }
+}
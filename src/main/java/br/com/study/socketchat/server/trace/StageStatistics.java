@@ -0,0 +1,59 @@
+package br.com.study.socketchat.server.trace;
+
+/**
+ * Percentis de latência de um trecho, em microssegundos.
+ */
+public class StageStatistics {
+    private final String stage;
+    private final long samples;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    public StageStatistics(String stage, long samples, double p50Micros, double p90Micros,
+                           double p99Micros, double p999Micros, double maxMicros) {
+        this.stage = stage;
+        this.samples = samples;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d amostras, p50 %.1f µs, p90 %.1f µs, p99 %.1f µs, p99.9 %.1f µs, máximo %.1f µs",
+                stage, samples, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
@@ -0,0 +1,37 @@
+package br.com.study.socketchat.server.trace;
+
+import br.com.study.socketchat.commons.MessageTrace.Hop;
+
+/**
+ * Trechos medidos entre dois saltos de uma mensagem pelo servidor.
+ */
+public enum TraceStage {
+    /** Do primeiro byte lido até a mensagem desserializada. */
+    DECODE(Hop.READ, Hop.DECODE),
+    /** Controle de admissão, até o início do roteamento. */
+    ADMISSION(Hop.DECODE, Hop.ROUTE),
+    /** Roteamento no serviço até a faixa de saída do destinatário. */
+    ROUTING(Hop.ROUTE, Hop.ENQUEUE),
+    /** Roteamento até a gravação na fila offline. */
+    OFFLINE_STORE(Hop.ROUTE, Hop.STORE),
+    /** Espera na faixa de saída e escrita no socket do destinatário. */
+    OUTBOUND(Hop.ENQUEUE, Hop.WRITE),
+    /** Da leitura no socket do remetente à escrita no do destinatário. */
+    TOTAL(Hop.READ, Hop.WRITE);
+
+    private final Hop from;
+    private final Hop to;
+
+    TraceStage(Hop from, Hop to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public Hop getFrom() {
+        return from;
+    }
+
+    public Hop getTo() {
+        return to;
+    }
+}
@@ -0,0 +1,500 @@
+package br.com.study.socketchat.tools;
+
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.EmbeddedChatServer;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * Teste de resistência: sobe o servidor embutido neste processo e mantém contra ele, por horas,
+ * clientes simulados com rotatividade (login, logout, entrada e saída de grupos, mensagens
+ * privadas e de grupo, arquivos e mensagens para quem está offline). A cada intervalo registra
+ * o heap depois de um GC, o número de threads, os descritores de arquivo abertos e o throughput
+ * (operações confirmadas por segundo). Cada trabalhador espera o ACK de uma operação antes da
+ * próxima, então um servidor que fica mais lento aparece como queda de throughput.
+ * <p>
+ * Ao final, compara o primeiro e o último terço das amostras depois do aquecimento: a mediana
+ * de cada terço para heap, threads e descritores (um pico isolado não conta, só crescimento
+ * sustentado) e a média para o throughput. Passar de qualquer limite encerra com código 1.
+ * <p>
+ * Uso: {@code SoakTest [--duration 1h] [--interval 30s] [--warmup 5m] [--clients 200]
+ * [--workers 8] [--think 10ms] [--port 12399] [--max-heap-growth 20] [--max-thread-growth 10]
+ * [--max-fd-growth 50] [--max-throughput-drop 20]}
+ */
+public class SoakTest {
+    private static final String USER_PREFIX = "soak-";
+    private static final String GROUP_PREFIX = "soak-group-";
+    private static final int MIN_SAMPLES = 6;
+    private static final long ACK_WAIT_MILLIS = 10_000;
+    private static final long SERVER_START_MILLIS = 30_000;
+    private static final int MIN_FILE_BYTES = 8 * 1024;
+    private static final int MAX_FILE_BYTES = 64 * 1024;
+    private static final String PAYLOAD = "x".repeat(MAX_FILE_BYTES);
+
+    private final int port;
+    private final long durationMillis;
+    private final long intervalMillis;
+    private final long warmupMillis;
+    private final int workers;
+    private final long thinkMillis;
+    private final Thresholds thresholds;
+    private final SoakClient[] clients;
+    private final String[] groups;
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failedLogins = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final List<Sample> samples = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public SoakTest(int port, long durationMillis, long intervalMillis, long warmupMillis, int clients, int workers,
+                    long thinkMillis, Thresholds thresholds) {
+        if (durationMillis <= warmupMillis) {
+            throw new IllegalArgumentException("A duração precisa ser maior que o aquecimento");
+        }
+        if (intervalMillis <= 0 || clients < 2 || workers < 1 || thinkMillis < 0) {
+            throw new IllegalArgumentException("Parâmetros inválidos: intervalo, clientes (mínimo 2) ou trabalhadores");
+        }
+        this.port = port;
+        this.durationMillis = durationMillis;
+        this.intervalMillis = intervalMillis;
+        this.warmupMillis = warmupMillis;
+        this.workers = workers;
+        this.thinkMillis = thinkMillis;
+        this.thresholds = thresholds;
+        this.clients = new SoakClient[clients];
+        for (int i = 0; i < clients; i++) {
+            this.clients[i] = new SoakClient(USER_PREFIX + i);
+        }
+        this.groups = new String[Math.max(4, clients / 20)];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = GROUP_PREFIX + i;
+        }
+    }
+
+    /**
+     * Executa o teste e imprime as amostras e o veredito. Retorna se passou.
+     */
+    public boolean run() throws IOException, InterruptedException {
+        Path stateDirectory = null;
+        if (System.getProperty(StatePersistenceService.DIRECTORY_PROPERTY) == null) {
+            // Estado descartável: o teste não herda nem deixa usuários e filas offline
+            stateDirectory = Files.createTempDirectory("soak-state");
+            System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, stateDirectory.toString());
+        }
+        EmbeddedChatServer server = new EmbeddedChatServer(port);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.out.println("Falha no servidor: " + e.getMessage());
+            }
+        }, "soak-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        awaitServer();
+
+        System.out.printf("Teste de resistência: %d clientes, %d trabalhadores, %d s (aquecimento %d s), amostra a cada %d s%n",
+                clients.length, workers, durationMillis / 1000, warmupMillis / 1000, intervalMillis / 1000);
+        System.out.println("  tempo(s)   heap(MB)  threads  descritores  online  operações/s");
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "soak-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            threads.add(worker);
+        }
+        try {
+            sample(System.currentTimeMillis());
+        } finally {
+            running = false;
+            for (Thread worker : threads) {
+                worker.join(ACK_WAIT_MILLIS);
+            }
+            for (SoakClient client : clients) {
+                client.logout();
+            }
+            server.stop();
+            if (stateDirectory != null) {
+                deleteQuietly(stateDirectory);
+            }
+        }
+        return evaluate();
+    }
+
+    /**
+     * Espera o servidor restaurar o estado e aceitar o primeiro login.
+     */
+    private void awaitServer() throws IOException {
+        long deadline = System.currentTimeMillis() + SERVER_START_MILLIS;
+        while (!clients[0].login()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Servidor não aceitou login na porta " + port);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private void work() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            SoakClient client = clients[random.nextInt(clients.length)];
+            if (!client.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (client.step(random)) {
+                    operations.increment();
+                }
+            } finally {
+                client.lock.unlock();
+            }
+            if (thinkMillis > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+            }
+        }
+    }
+
+    private void sample(long start) {
+        long end = start + durationMillis;
+        long lastOperations = 0;
+        long lastTime = start;
+        while (true) {
+            long next = Math.min(end, lastTime + intervalMillis);
+            long now;
+            while ((now = System.currentTimeMillis()) < next) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(next - now));
+            }
+            long total = operations.sum();
+            double throughput = (total - lastOperations) * 1000.0 / Math.max(1, now - lastTime);
+            lastOperations = total;
+            lastTime = now;
+            Sample sample = new Sample(now - start, heapAfterGc(), ManagementFactory.getThreadMXBean().getThreadCount(),
+                    openFileDescriptors(), online(), throughput);
+            samples.add(sample);
+            System.out.printf("%10d %10.1f %8d %12d %7d %12.1f%n", sample.elapsedMillis() / 1000,
+                    sample.heapBytes() / (1024.0 * 1024), sample.threads(), sample.fileDescriptors(), sample.online(),
+                    sample.throughput());
+            if (now >= end) {
+                return;
+            }
+        }
+    }
+
+    private static long heapAfterGc() {
+        // Dois ciclos: o primeiro pode só mover para a geração velha o que o segundo coleta
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long openFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean unix) {
+            return unix.getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+
+    private int online() {
+        int online = 0;
+        for (SoakClient client : clients) {
+            if (client.engine != null) {
+                online++;
+            }
+        }
+        return online;
+    }
+
+    private boolean evaluate() {
+        List<Sample> steady = samples.stream().filter(sample -> sample.elapsedMillis() > warmupMillis).toList();
+        System.out.println("==============================================================");
+        System.out.printf("Operações: %d (%d sem ACK em %d s, %d logins recusados, %d recusadas pelo servidor)%n",
+                operations.sum(), timeouts.sum(), ACK_WAIT_MILLIS / 1000, failedLogins.sum(), rejected.sum());
+        System.out.printf("Entregas recebidas pelos clientes: %d%n", deliveries.sum());
+        if (steady.size() < MIN_SAMPLES) {
+            System.out.printf("FALHA: só %d amostras depois do aquecimento (mínimo %d); aumente a duração ou reduza o intervalo%n",
+                    steady.size(), MIN_SAMPLES);
+            System.out.println("==============================================================");
+            return false;
+        }
+        int third = steady.size() / 3;
+        List<Sample> first = steady.subList(0, third);
+        List<Sample> last = steady.subList(steady.size() - third, steady.size());
+
+        boolean passed = true;
+        double firstHeap = median(first, Sample::heapBytes);
+        double lastHeap = median(last, Sample::heapBytes);
+        double heapGrowth = (lastHeap - firstHeap) * 100 / firstHeap;
+        passed &= verdict(heapGrowth <= thresholds.maxHeapGrowthPercent(),
+                String.format("heap depois do GC: %.1f MB -> %.1f MB (%+.1f%%, limite %.1f%%)", firstHeap / (1024 * 1024),
+                        lastHeap / (1024 * 1024), heapGrowth, thresholds.maxHeapGrowthPercent()));
+        double firstThreads = median(first, Sample::threads);
+        double lastThreads = median(last, Sample::threads);
+        passed &= verdict(lastThreads - firstThreads <= thresholds.maxThreadGrowth(),
+                String.format("threads: %.0f -> %.0f (%+.0f, limite %d)", firstThreads, lastThreads,
+                        lastThreads - firstThreads, thresholds.maxThreadGrowth()));
+        if (first.get(0).fileDescriptors() >= 0) {
+            double firstDescriptors = median(first, Sample::fileDescriptors);
+            double lastDescriptors = median(last, Sample::fileDescriptors);
+            passed &= verdict(lastDescriptors - firstDescriptors <= thresholds.maxFileDescriptorGrowth(),
+                    String.format("descritores: %.0f -> %.0f (%+.0f, limite %d)", firstDescriptors, lastDescriptors,
+                            lastDescriptors - firstDescriptors, thresholds.maxFileDescriptorGrowth()));
+        } else {
+            System.out.println("-     descritores: não disponíveis nesta plataforma");
+        }
+        double firstThroughput = mean(first, Sample::throughput);
+        double lastThroughput = mean(last, Sample::throughput);
+        double throughputDrop = firstThroughput == 0 ? 0 : (firstThroughput - lastThroughput) * 100 / firstThroughput;
+        passed &= verdict(throughputDrop <= thresholds.maxThroughputDropPercent(),
+                String.format("throughput: %.1f -> %.1f operações/s (queda de %.1f%%, limite %.1f%%)", firstThroughput,
+                        lastThroughput, throughputDrop, thresholds.maxThroughputDropPercent()));
+        System.out.println(passed ? "Resultado: PASSOU" : "Resultado: FALHOU");
+        System.out.println("==============================================================");
+        return passed;
+    }
+
+    private static boolean verdict(boolean ok, String description) {
+        System.out.println((ok ? "OK    " : "FALHA ") + description);
+        return ok;
+    }
+
+    private static double median(List<Sample> samples, ToDoubleFunction<Sample> metric) {
+        double[] values = samples.stream().mapToDouble(metric).sorted().toArray();
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    private static double mean(List<Sample> samples, ToDoubleFunction<Sample> metric) {
+        return samples.stream().mapToDouble(metric).average().orElse(0);
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.out.println("Não foi possível remover " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Aceita {@code 500ms}, {@code 30s}, {@code 10m} ou {@code 2h}.
+     */
+    static long parseDuration(String value) {
+        String text = value.strip().toLowerCase();
+        try {
+            if (text.endsWith("ms")) {
+                return Long.parseLong(text.substring(0, text.length() - 2));
+            }
+            long amount = Long.parseLong(text.substring(0, text.length() - 1));
+            return switch (text.charAt(text.length() - 1)) {
+                case 's' -> TimeUnit.SECONDS.toMillis(amount);
+                case 'm' -> TimeUnit.MINUTES.toMillis(amount);
+                case 'h' -> TimeUnit.HOURS.toMillis(amount);
+                default -> throw new IllegalArgumentException("Duração inválida: " + value);
+            };
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Duração inválida: " + value);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 12399;
+        long duration = TimeUnit.HOURS.toMillis(1);
+        long interval = TimeUnit.SECONDS.toMillis(30);
+        Long warmup = null;
+        int clients = 200;
+        int workers = 8;
+        long think = 10;
+        double maxHeapGrowth = 20;
+        int maxThreadGrowth = 10;
+        int maxFileDescriptorGrowth = 50;
+        double maxThroughputDrop = 20;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = parseDuration(args[++i]);
+                case "--interval" -> interval = parseDuration(args[++i]);
+                case "--warmup" -> warmup = parseDuration(args[++i]);
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--think" -> think = parseDuration(args[++i]);
+                case "--max-heap-growth" -> maxHeapGrowth = Double.parseDouble(args[++i]);
+                case "--max-thread-growth" -> maxThreadGrowth = Integer.parseInt(args[++i]);
+                case "--max-fd-growth" -> maxFileDescriptorGrowth = Integer.parseInt(args[++i]);
+                case "--max-throughput-drop" -> maxThroughputDrop = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+        // Sem aquecimento explícito: 5 minutos, ou um quarto de execuções curtas
+        long warmupMillis = warmup != null ? warmup : Math.min(TimeUnit.MINUTES.toMillis(5), duration / 4);
+        SoakTest test = new SoakTest(port, duration, interval, warmupMillis, clients, workers, think,
+                new Thresholds(maxHeapGrowth, maxThreadGrowth, maxFileDescriptorGrowth, maxThroughputDrop));
+        System.exit(test.run() ? 0 : 1);
+    }
+
+    /**
+     * Limites de crescimento entre o início e o fim da fase estável.
+     */
+    public record Thresholds(double maxHeapGrowthPercent, int maxThreadGrowth, int maxFileDescriptorGrowth,
+                             double maxThroughputDropPercent) {
+    }
+
+    private record Sample(long elapsedMillis, long heapBytes, int threads, long fileDescriptors, int online,
+                          double throughput) {
+    }
+
+    /**
+     * Um usuário simulado. Só um trabalhador o usa por vez; o listener roda na thread do engine.
+     */
+    private final class SoakClient implements ChatClientListener {
+        private final String username;
+        private final ReentrantLock lock = new ReentrantLock();
+        // Grupos em que o usuário deve estar; sobrevivem ao logout, como no servidor
+        private final Set<String> joined = ConcurrentHashMap.newKeySet();
+        // Último JOIN_GROUP enviado; a resposta chega antes do ACK que o trabalhador espera
+        private volatile String joining;
+        private volatile ChatClientEngine engine;
+
+        SoakClient(String username) {
+            this.username = username;
+        }
+
+        /**
+         * Executa uma operação aleatória. Retorna se ela foi concluída (login aceito ou ACK recebido).
+         */
+        boolean step(ThreadLocalRandom random) {
+            if (engine == null) {
+                return login();
+            }
+            int roll = random.nextInt(100);
+            try {
+                if (roll < 3) {
+                    logout();
+                    return true;
+                } else if (roll < 8) {
+                    String group = groups[random.nextInt(groups.length)];
+                    joined.add(group);
+                    joining = group;
+                    engine.send(new Message(MessageType.JOIN_GROUP, username, "SERVER", group));
+                } else if (roll < 12 && !joined.isEmpty()) {
+                    String group = anyJoined(random);
+                    joined.remove(group);
+                    engine.send(new Message(MessageType.LEAVE_GROUP, username, "SERVER", group));
+                } else if (roll < 20) {
+                    int size = random.nextInt(MIN_FILE_BYTES, MAX_FILE_BYTES + 1);
+                    engine.send(new Message(MessageType.FILE_MESSAGE, username, anyUser(random), PAYLOAD.substring(0, size)));
+                } else if (roll < 40 && !joined.isEmpty()) {
+                    engine.send(new Message(MessageType.GROUP_MESSAGE, username, anyJoined(random), "soak " + roll));
+                } else {
+                    // O destinatário pode estar offline: exercita as filas offline
+                    engine.send(new Message(MessageType.PRIVATE_MESSAGE, username, anyUser(random), "soak " + roll));
+                }
+            } catch (IOException e) {
+                logout();
+                return false;
+            }
+            return awaitAcknowledged();
+        }
+
+        private boolean login() {
+            ChatClientEngine candidate = new ChatClientEngine("localhost", port, username, this);
+            try {
+                if (candidate.connect().getType() == MessageType.LOGIN_SUCCESS) {
+                    engine = candidate;
+                    return true;
+                }
+                failedLogins.increment();
+            } catch (IOException e) {
+                candidate.close();
+            }
+            return false;
+        }
+
+        void logout() {
+            ChatClientEngine current = engine;
+            if (current != null) {
+                engine = null;
+                current.close();
+            }
+        }
+
+        private boolean awaitAcknowledged() {
+            long deadline = System.currentTimeMillis() + ACK_WAIT_MILLIS;
+            ChatClientEngine current = engine;
+            while (current != null && current.pendingCount() > 0) {
+                if (System.currentTimeMillis() > deadline) {
+                    timeouts.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return true;
+        }
+
+        private String anyUser(ThreadLocalRandom random) {
+            return clients[random.nextInt(clients.length)].username;
+        }
+
+        private String anyJoined(ThreadLocalRandom random) {
+            List<String> current = new ArrayList<>(joined);
+            return current.isEmpty() ? groups[0] : current.get(random.nextInt(current.size()));
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            switch (message.getType()) {
+                case ACK, CREDIT -> {
+                }
+                case GROUP_JOIN_FAILED -> {
+                    // Grupo removido ao esvaziar: quem tentou entrar o recria
+                    ChatClientEngine current = engine;
+                    String group = joining;
+                    if (current != null && group != null) {
+                        try {
+                            current.send(new Message(MessageType.CREATE_GROUP, username, "SERVER", group));
+                        } catch (IOException e) {
+                            joined.remove(group);
+                        }
+                    }
+                }
+                case ERROR_MESSAGE, GROUP_CREATE_FAILED, GROUP_LEAVE_FAILED -> rejected.increment();
+                default -> deliveries.increment();
+            }
+        }
+
+        @Override
+        public void onRejected(Message message, String reason) {
+            rejected.increment();
+        }
+
+        @Override
+        public void onConnectionLost(String reason) {
+        }
+
+        @Override
+        public void onReconnected(int attempts) {
+        }
+    }
+}
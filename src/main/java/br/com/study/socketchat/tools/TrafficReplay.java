@@ -0,0 +1,299 @@
+package br.com.study.socketchat.tools;
+
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.MessageClock;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.capture.CaptureFile;
+import br.com.study.socketchat.server.capture.CaptureRecord;
+import br.com.study.socketchat.server.capture.TrafficCapture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reproduz uma captura de tráfego ({@link TrafficCapture}) contra um servidor, para usar
+ * padrões reais de uso como benchmark repetível. Cada sessão capturada vira um
+ * {@link ChatClientEngine} que faz login e envia as mesmas mensagens, no ritmo original
+ * (opcionalmente acelerado) ou o mais rápido possível. A latência de cada mensagem é o
+ * tempo do envio até o ACK do servidor, que só confirma depois de processá-la.
+ * <p>
+ * Uso: {@code TrafficReplay <captura> [--host localhost] [--port 12345] [--fast | --speed <fator>]}
+ */
+public class TrafficReplay {
+    private static final long ACK_WAIT_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final boolean fast;
+    private final double speed;
+    private final Map<Integer, ReplaySession> sessions = new HashMap<>();
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final AtomicLong deliveries = new AtomicLong();
+    private long sent;
+    private long skipped;
+    private int failedLogins;
+
+    public TrafficReplay(String host, int port, boolean fast, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Fator de velocidade inválido: " + speed);
+        }
+        this.host = host;
+        this.port = port;
+        this.fast = fast;
+        this.speed = speed;
+    }
+
+    /**
+     * Reproduz o arquivo, espera os ACKs pendentes e imprime o relatório.
+     */
+    public void run(Path capture) throws IOException {
+        long start = System.nanoTime();
+        try (CaptureFile.Reader reader = new CaptureFile.Reader(capture)) {
+            CaptureRecord record;
+            long firstOffset = -1;
+            while ((record = reader.next()) != null) {
+                if (firstOffset < 0) {
+                    firstOffset = record.offsetNanos();
+                }
+                if (!fast) {
+                    awaitUntil(start + (long) ((record.offsetNanos() - firstOffset) / speed));
+                }
+                replay(record);
+            }
+        }
+        long sendEnd = System.nanoTime();
+        awaitAcknowledgements();
+        long end = System.nanoTime();
+        for (ReplaySession session : sessions.values()) {
+            session.close();
+        }
+        report(start, sendEnd, end);
+    }
+
+    private void replay(CaptureRecord record) {
+        Message captured = record.message();
+        MessageType type = captured.getType();
+        if (type == MessageType.ACK || type == MessageType.HEARTBEAT) {
+            // Confirmações e keep-alive são do engine, não do tráfego reproduzido
+            return;
+        }
+        ReplaySession session = sessions.get(record.session());
+        if (type == MessageType.LOGIN) {
+            if (session == null) {
+                open(record.session(), captured.getFrom());
+            }
+            return;
+        }
+        if (session == null) {
+            // Captura iniciada com a sessão já aberta: entra com o remetente da primeira mensagem
+            session = captured.getFrom() == null ? null : open(record.session(), captured.getFrom());
+        }
+        if (session == null || session.engine == null) {
+            skipped++;
+            return;
+        }
+        if (type == MessageType.DISCONNECT) {
+            session.close();
+            return;
+        }
+        if (session.send(captured)) {
+            sent++;
+        } else {
+            skipped++;
+        }
+    }
+
+    private ReplaySession open(int sessionId, String username) {
+        ReplaySession session = new ReplaySession(username);
+        sessions.put(sessionId, session);
+        if (!session.connect()) {
+            failedLogins++;
+        }
+        return session;
+    }
+
+    private void awaitAcknowledgements() {
+        long deadline = System.currentTimeMillis() + ACK_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (sessions.values().stream().allMatch(ReplaySession::isSettled)) {
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private void report(long start, long sendEnd, long end) {
+        long unacknowledged = sessions.values().stream().mapToLong(ReplaySession::pendingCount).sum();
+        double seconds = Math.max(1, end - start) / 1e9;
+        System.out.println("==============================================================");
+        System.out.printf("Sessões: %d (%d logins recusados)%n", sessions.size(), failedLogins);
+        System.out.printf("Mensagens enviadas: %d (%d ignoradas), sem ACK: %d%n", sent, skipped, unacknowledged);
+        System.out.printf("Entregas recebidas pelos clientes: %d%n", deliveries.get());
+        System.out.printf("Duração: %.2f s (envio %.2f s)%n", seconds, (sendEnd - start) / 1e9);
+        System.out.printf("Throughput: %.1f mensagens/s%n", (sent - unacknowledged) / seconds);
+        System.out.println("Latência até o ACK (ms): " + latencies.summary());
+        System.out.println("==============================================================");
+    }
+
+    private static void awaitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Uso: TrafficReplay <captura> [--host localhost] [--port 12345] [--fast | --speed <fator>]");
+            return;
+        }
+        String host = "localhost";
+        int port = 12345;
+        boolean fast = false;
+        double speed = 1;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--fast" -> fast = true;
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+        new TrafficReplay(host, port, fast, speed).run(Paths.get(args[0]));
+        System.exit(0);
+    }
+
+    /**
+     * Uma sessão capturada, reproduzida por um engine próprio. Os envios pendentes ficam
+     * em ordem de sequência até o ACK cumulativo do servidor.
+     */
+    private final class ReplaySession implements ChatClientListener {
+        private final String username;
+        private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+        private ChatClientEngine engine;
+        private long nextSequence;
+
+        ReplaySession(String username) {
+            this.username = username;
+        }
+
+        boolean connect() {
+            ChatClientEngine candidate = new ChatClientEngine(host, port, username, this);
+            try {
+                if (candidate.connect().getType() == MessageType.LOGIN_SUCCESS) {
+                    engine = candidate;
+                    return true;
+                }
+            } catch (IOException e) {
+                System.out.println("Falha ao conectar " + username + ": " + e.getMessage());
+            }
+            return false;
+        }
+
+        boolean send(Message captured) {
+            Message message = captured.copy();
+            message.setSequence(0);
+            message.setResumeToken(null);
+            message.setMessageId(0);
+            // Timestamp atual: o original faria a mensagem expirar nas filas offline
+            message.setTimestamp(MessageClock.now());
+            // Só esta thread envia: a sequência que o engine vai atribuir é a próxima
+            pending.add(new long[]{++nextSequence, System.nanoTime()});
+            try {
+                engine.send(message);
+                return true;
+            } catch (IOException e) {
+                pending.removeIf(entry -> entry[0] == nextSequence);
+                nextSequence--;
+                return false;
+            }
+        }
+
+        boolean isSettled() {
+            return engine == null || pending.isEmpty() || !engine.isRunning();
+        }
+
+        long pendingCount() {
+            return pending.size();
+        }
+
+        void close() {
+            if (engine != null) {
+                engine.close();
+                engine = null;
+            }
+        }
+
+        @Override
+        public void onAcknowledged(long sequence) {
+            long now = System.nanoTime();
+            synchronized (pending) {
+                long[] head;
+                while ((head = pending.peek()) != null && head[0] <= sequence) {
+                    pending.poll();
+                    latencies.record(now - head[1]);
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            if (message.getType() != MessageType.ACK) {
+                deliveries.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onConnectionLost(String reason) {
+        }
+
+        @Override
+        public void onReconnected(int attempts) {
+        }
+    }
+
+    /**
+     * Latências registradas, ordenadas só no relatório.
+     */
+    private static final class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized String summary() {
+            if (size == 0) {
+                return "sem amostras";
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            List<String> parts = new ArrayList<>();
+            for (double percentile : new double[]{50, 90, 99, 99.9}) {
+                int index = (int) Math.min(size - 1, Math.ceil(percentile / 100 * size) - 1);
+                parts.add(String.format("p%s=%.3f", percentile == 99.9 ? "99.9" : String.valueOf((int) percentile),
+                        sorted[Math.max(0, index)] / 1e6));
+            }
+            parts.add(String.format("max=%.3f", sorted[size - 1] / 1e6));
+            return String.join(" ", parts) + " (" + size + " amostras)";
+        }
+    }
+}
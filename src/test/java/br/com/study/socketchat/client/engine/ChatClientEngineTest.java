@@ -0,0 +1,179 @@
+package br.com.study.socketchat.client.engine;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Engine contra um servidor simulado que só fala o necessário do protocolo (login, créditos e ACK).
+ */
+class ChatClientEngineTest {
+    // Mais que a primeira janela de créditos de uma sessão nova
+    private static final int FIRST_SESSION_MESSAGES = 200;
+    private static final int ACKNOWLEDGED_BEFORE_RESTART = 150;
+    private static final int AFTER_RESTART_MESSAGES = 10;
+    private static final int FRESH_SESSION_WINDOW = 128;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void reconnectIntoAFreshSessionRenumbersTheOutboxWithinItsCredits() throws Exception {
+        ExecutorService fakeServer = Executors.newSingleThreadExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            serverSocket.setSoTimeout(TIMEOUT_MILLIS);
+            ChatClientEngine engine = new ChatClientEngine("localhost", serverSocket.getLocalPort(), "alice",
+                    new Listener(), new ReconnectPolicy(10, 50));
+
+            // Primeira sessão: créditos de sobra; confirma só parte e cai (ex.: servidor reiniciado)
+            Future<List<Long>> firstSession = fakeServer.submit(() -> {
+                try (FakeSession session = FakeSession.accept(serverSocket, "first", 0, 1_000)) {
+                    List<Long> sequences = session.readSequences(FIRST_SESSION_MESSAGES, new ArrayList<>());
+                    session.acknowledge(ACKNOWLEDGED_BEFORE_RESTART);
+                    return sequences;
+                }
+            });
+            assertEquals(MessageType.LOGIN_SUCCESS, engine.connect().getType());
+            for (int i = 0; i < FIRST_SESSION_MESSAGES; i++) {
+                engine.send(new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "m" + i));
+            }
+            assertEquals(range(1, FIRST_SESSION_MESSAGES), firstSession.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+            // Sessão nova: não conhece a numeração anterior e concede só a janela a partir de zero
+            List<String> contents = new ArrayList<>();
+            int resent = FIRST_SESSION_MESSAGES - ACKNOWLEDGED_BEFORE_RESTART;
+            Future<List<Long>> freshSession = fakeServer.submit(() -> {
+                try (FakeSession session = FakeSession.accept(serverSocket, "second", 0, FRESH_SESSION_WINDOW)) {
+                    List<Long> sequences = session.readSequences(resent + AFTER_RESTART_MESSAGES, contents);
+                    session.acknowledge(sequences.get(sequences.size() - 1));
+                    return sequences;
+                }
+            });
+            waitUntil(() -> engine.pendingCount() == resent);
+            for (int i = 0; i < AFTER_RESTART_MESSAGES; i++) {
+                engine.send(new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "n" + i));
+            }
+
+            assertEquals(range(1, resent + AFTER_RESTART_MESSAGES),
+                    freshSession.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            List<String> expected = new ArrayList<>();
+            for (int i = ACKNOWLEDGED_BEFORE_RESTART; i < FIRST_SESSION_MESSAGES; i++) {
+                expected.add("m" + i);
+            }
+            for (int i = 0; i < AFTER_RESTART_MESSAGES; i++) {
+                expected.add("n" + i);
+            }
+            assertEquals(expected, contents);
+            waitUntil(() -> engine.pendingCount() == 0);
+            assertEquals(0, engine.pendingCount());
+            engine.close();
+        } finally {
+            fakeServer.shutdownNow();
+        }
+    }
+
+    private static List<Long> range(long first, long last) {
+        List<Long> values = new ArrayList<>();
+        for (long value = first; value <= last; value++) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Uma conexão aceita pelo servidor simulado, já com o login respondido e a primeira janela concedida.
+     */
+    private static final class FakeSession implements AutoCloseable {
+        private final Socket socket;
+        private final ObjectOutputStream out;
+        private final ObjectInputStream in;
+
+        private FakeSession(Socket socket) throws Exception {
+            this.socket = socket;
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            in = new ObjectInputStream(socket.getInputStream());
+        }
+
+        static FakeSession accept(ServerSocket serverSocket, String token, long processed, long credits)
+                throws Exception {
+            FakeSession session = new FakeSession(serverSocket.accept());
+            Message login = (Message) session.in.readObject();
+            assertEquals(MessageType.LOGIN, login.getType());
+            Message success = new Message(MessageType.LOGIN_SUCCESS, "SERVER", login.getFrom(), "Login succeeded");
+            success.setSequence(processed);
+            success.setResumeToken(token);
+            session.write(success);
+            Message credit = new Message(MessageType.CREDIT, "SERVER", login.getFrom(), null);
+            credit.setSequence(processed + credits);
+            session.write(credit);
+            return session;
+        }
+
+        /**
+         * Lê {@code count} mensagens de conteúdo; sem créditos, o cliente para e a leitura expira.
+         */
+        List<Long> readSequences(int count, List<String> contents) throws Exception {
+            List<Long> sequences = new ArrayList<>();
+            while (sequences.size() < count) {
+                Message message = (Message) in.readObject();
+                if (message.getType() == MessageType.PRIVATE_MESSAGE) {
+                    sequences.add(message.getSequence());
+                    contents.add(message.getContent());
+                }
+            }
+            return sequences;
+        }
+
+        void acknowledge(long sequence) throws Exception {
+            Message ack = new Message(MessageType.ACK, "SERVER", "alice", null);
+            ack.setSequence(sequence);
+            write(ack);
+        }
+
+        private void write(Message message) throws Exception {
+            out.writeObject(message);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            socket.close();
+        }
+    }
+
+    private static class Listener implements ChatClientListener {
+        @Override
+        public void onMessage(Message message) {
+        }
+
+        @Override
+        public void onConnectionLost(String reason) {
+        }
+
+        @Override
+        public void onReconnected(int attempts) {
+        }
+    }
+}
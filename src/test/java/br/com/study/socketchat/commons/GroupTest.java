@@ -0,0 +1,133 @@
+package br.com.study.socketchat.commons;
+
+import br.com.study.socketchat.commons.bitmap.UserIdResolver;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupTest {
+
+    @Test
+    void bitmapGroupSurvivesSerializationWithMemberNames() throws Exception {
+        Group group = new Group("devs", "user0");
+        List<String> members = new ArrayList<>();
+        for (int i = 1; i < 2000; i++) {
+            members.add("user" + i);
+        }
+        group.addMembers(members);
+        group.convertToBitmap(new Resolver());
+
+        Group received = roundTrip(group);
+
+        assertFalse(received.isBitmapBacked());
+        assertEquals(2000, received.memberCount());
+        assertTrue(received.hasMember("user1999"));
+        assertEquals(new TreeSet<>(group.getMembers()), new TreeSet<>(received.getMembers()));
+        assertEquals(group.getCreatedAt(), received.getCreatedAt());
+    }
+
+    @Test
+    void deserializedGroupAcceptsNewMembers() throws Exception {
+        Group received = roundTrip(new Group("devs", "ana"));
+
+        received.addMember("bia");
+        received.removeMember("ana");
+
+        assertEquals(Set.of("bia"), received.getMembers());
+        assertEquals("bia@devs", received.qualifiedSender("bia"));
+    }
+
+    @Test
+    void bitmapGroupIteratesInIdOrder() {
+        Group group = new Group("devs", "user2");
+        group.addMembers(List.of("user0", "user1"));
+        group.convertToBitmap(new Resolver());
+
+        List<String> visited = new ArrayList<>();
+        group.forEachMember(visited::add);
+
+        assertEquals(List.of("user0", "user1", "user2"), visited);
+        group.removeMember("user1");
+        assertFalse(group.hasMember("user1"));
+        group.convertToHashSet();
+        assertEquals(Set.of("user0", "user2"), group.getMembers());
+    }
+
+    @Test
+    void membersNeverVanishWhileRepresentationChanges() throws Exception {
+        Group group = new Group("devs", "user0");
+        List<String> members = new ArrayList<>();
+        for (int i = 1; i < 64; i++) {
+            members.add("user" + i);
+        }
+        group.addMembers(members);
+        Resolver resolver = new Resolver();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                if (!group.hasMember("user0") || group.memberCount() != 64) {
+                    misses.incrementAndGet();
+                }
+                int[] visited = new int[1];
+                group.forEachMember(member -> visited[0]++);
+                if (visited[0] != 64) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 5000; i++) {
+            group.convertToBitmap(resolver);
+            group.convertToHashSet();
+        }
+        running.set(false);
+        reader.join();
+
+        assertEquals(0, misses.get(), "leitores não podem ver o grupo sem membros durante a conversão");
+    }
+
+    private static Group roundTrip(Group group) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(group);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Group) in.readObject();
+        }
+    }
+
+    /**
+     * Ids derivados do nome ({@code userN} → N), como se os usuários tivessem se cadastrado em ordem.
+     */
+    private static final class Resolver implements UserIdResolver {
+        @Override
+        public int idOf(String username) {
+            return Integer.parseInt(username.substring("user".length()));
+        }
+
+        @Override
+        public int findId(String username) {
+            return username.startsWith("user") ? idOf(username) : -1;
+        }
+
+        @Override
+        public String nameOf(int id) {
+            return "user" + id;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.study.socketchat.commons;
+
+import br.com.study.socketchat.commons.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageTest {
+
+    @Test
+    void smallFileSurvivesSerialization() throws Exception {
+        byte[] data = "conteúdo do arquivo".getBytes(StandardCharsets.UTF_8);
+        Message sent = new Message(MessageType.FILE_MESSAGE, "alice", "bob", data, "notas.txt");
+
+        Message received = roundTrip(sent);
+
+        assertEquals(MessageType.FILE_MESSAGE, received.getType());
+        assertEquals("notas.txt", received.getFileName());
+        assertArrayEquals(data, received.getFileData());
+    }
+
+    @Test
+    void relayedFileKeepsEncodedBytes() throws Exception {
+        byte[] data = new byte[4096];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Message received = roundTrip(new Message(MessageType.FILE_MESSAGE, "alice", "bob", data, "dados.bin"));
+
+        // O servidor repassa sem decodificar: o destinatário recebe os mesmos bytes
+        Message relayed = new Message(MessageType.FILE_MESSAGE, "alice", "bob", (String) null);
+        relayed.copyContentFrom(received);
+        relayed.setEncodedFileName(received.getEncodedFileName());
+
+        assertArrayEquals(data, roundTrip(relayed).getFileData());
+    }
+
+    @Test
+    void textContentSurvivesSerialization() throws Exception {
+        Message received = roundTrip(new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "olá"));
+
+        assertEquals("olá", received.getContent());
+        assertEquals(4, received.contentSize());
+    }
+
+    private static Message roundTrip(Message message) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Message) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package br.com.study.socketchat.commons.bitmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoaringBitmapTest {
+    private static final int ARRAY_LIMIT = 4096;
+
+    @Test
+    void arrayBecomesBitmapAboveTheLimitAndBackBelowIt() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < ARRAY_LIMIT; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals("array", bitmap.containerType(0));
+
+        bitmap.add(1);
+        assertEquals("bitmap", bitmap.containerType(0));
+        assertEquals(ARRAY_LIMIT + 1, bitmap.cardinality());
+
+        bitmap.remove(1);
+        assertEquals("array", bitmap.containerType(0));
+        assertEquals(ARRAY_LIMIT, bitmap.cardinality());
+        assertTrue(bitmap.contains(8190));
+        assertFalse(bitmap.contains(1));
+    }
+
+    @Test
+    void contiguousIdsBecomeRunsWhenOptimized() {
+        RoaringBitmap bitmap = range(0, 100_000);
+        assertEquals("bitmap", bitmap.containerType(0));
+        long before = bitmap.sizeInBytes();
+
+        bitmap.runOptimize();
+
+        assertEquals("run", bitmap.containerType(0));
+        assertEquals("run", bitmap.containerType(99_999));
+        assertEquals(100_000, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < before / 100, "Sequências ocupam " + bitmap.sizeInBytes() + " bytes");
+        assertTrue(bitmap.contains(65_535));
+        assertTrue(bitmap.contains(65_536));
+        assertFalse(bitmap.contains(100_000));
+    }
+
+    @Test
+    void scatteredValuesStayInArrayWhenOptimized() {
+        RoaringBitmap bitmap = RoaringBitmap.of(1, 5, 9, 200);
+
+        bitmap.runOptimize();
+
+        assertEquals("array", bitmap.containerType(0));
+    }
+
+    @Test
+    void runsMergeAndSplitOnUpdates() {
+        RoaringBitmap bitmap = range(0, 1000);
+        bitmap.add(2000);
+        bitmap.runOptimize();
+        assertEquals("run", bitmap.containerType(0));
+
+        // Lacuna 1000..1999 preenchida: as duas sequências se unem
+        for (int i = 1000; i < 2000; i++) {
+            assertTrue(bitmap.add(i));
+        }
+        assertFalse(bitmap.add(1500));
+        assertEquals("run", bitmap.containerType(0));
+        assertArrayEquals(range(0, 2001).toArray(), bitmap.toArray());
+
+        // Remoção no meio divide a sequência
+        assertTrue(bitmap.remove(500));
+        assertFalse(bitmap.remove(500));
+        assertFalse(bitmap.contains(500));
+        assertTrue(bitmap.contains(499));
+        assertTrue(bitmap.contains(501));
+        assertEquals(2000, bitmap.cardinality());
+        assertEquals("run", bitmap.containerType(0));
+    }
+
+    @Test
+    void runBecomesArrayWhenFragmented() {
+        RoaringBitmap bitmap = range(0, 200);
+        bitmap.runOptimize();
+        assertEquals("run", bitmap.containerType(0));
+
+        // Cada remoção de um valor par cria uma sequência; com mais de cardinalidade/2 sequências, array é menor
+        for (int i = 0; i < 200; i += 2) {
+            bitmap.remove(i);
+        }
+
+        assertEquals("array", bitmap.containerType(0));
+        assertEquals(100, bitmap.cardinality());
+        assertTrue(bitmap.contains(199));
+        assertFalse(bitmap.contains(198));
+    }
+
+    @Test
+    void runBecomesBitmapWhenFragmentedAboveTheArrayLimit() {
+        RoaringBitmap bitmap = range(0, 65_536);
+        bitmap.runOptimize();
+        assertEquals("run", bitmap.containerType(0));
+
+        for (int i = 0; i < 65_536; i += 4) {
+            bitmap.remove(i);
+        }
+
+        assertEquals("bitmap", bitmap.containerType(0));
+        assertEquals(65_536 - 16_384, bitmap.cardinality());
+    }
+
+    @Test
+    void emptiedContainerIsDropped() {
+        RoaringBitmap bitmap = RoaringBitmap.of(70_000, 70_001, 70_002);
+        bitmap.runOptimize();
+        assertEquals("run", bitmap.containerType(70_000));
+
+        bitmap.remove(70_001);
+        bitmap.remove(70_000);
+        bitmap.remove(70_002);
+
+        assertTrue(bitmap.isEmpty());
+        assertNull(bitmap.containerType(70_000));
+    }
+
+    @Test
+    void setOperationsMatchTreeSetAcrossContainerTypes() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Integer> left = new TreeSet<>();
+            TreeSet<Integer> right = new TreeSet<>();
+            RoaringBitmap leftBitmap = randomBitmap(random, left);
+            RoaringBitmap rightBitmap = randomBitmap(random, right);
+
+            TreeSet<Integer> and = new TreeSet<>(left);
+            and.retainAll(right);
+            TreeSet<Integer> or = new TreeSet<>(left);
+            or.addAll(right);
+            TreeSet<Integer> andNot = new TreeSet<>(left);
+            andNot.removeAll(right);
+
+            assertArrayEquals(toArray(and), leftBitmap.and(rightBitmap).toArray());
+            assertArrayEquals(toArray(or), leftBitmap.or(rightBitmap).toArray());
+            assertArrayEquals(toArray(andNot), leftBitmap.andNot(rightBitmap).toArray());
+            // Operandos intactos
+            assertArrayEquals(toArray(left), leftBitmap.toArray());
+            assertArrayEquals(toArray(right), rightBitmap.toArray());
+        }
+    }
+
+    @Test
+    void onlineMembersIntersection() {
+        RoaringBitmap members = range(0, 50_000);
+        members.runOptimize();
+        RoaringBitmap online = RoaringBitmap.of(3, 10, 49_999, 50_000, 80_000);
+
+        assertArrayEquals(new int[]{3, 10, 49_999}, members.and(online).toArray());
+        assertEquals(49_997, members.andNot(online).cardinality());
+        assertEquals(50_002, members.or(online).cardinality());
+    }
+
+    @Test
+    void iterationIsAscendingAcrossContainers() {
+        RoaringBitmap bitmap = RoaringBitmap.of(200_000, 5, 70_000, 3);
+        bitmap.add(131_072);
+        RoaringBitmap runs = range(65_530, 65_545);
+        runs.runOptimize();
+        RoaringBitmap all = bitmap.or(runs);
+        all.runOptimize();
+
+        List<Integer> visited = new ArrayList<>();
+        all.forEach(visited::add);
+
+        List<Integer> expected = new ArrayList<>(List.of(3, 5));
+        for (int i = 65_530; i < 65_545; i++) {
+            expected.add(i);
+        }
+        expected.addAll(List.of(70_000, 131_072, 200_000));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void forEachWhileStopsEarly() {
+        RoaringBitmap bitmap = range(0, 10_000);
+        bitmap.runOptimize();
+        List<Integer> visited = new ArrayList<>();
+
+        boolean completed = bitmap.forEachWhile(value -> {
+            visited.add(value);
+            return value < 4;
+        });
+
+        assertFalse(completed);
+        assertEquals(List.of(0, 1, 2, 3, 4), visited);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        RoaringBitmap original = range(0, 100);
+        original.runOptimize();
+        RoaringBitmap copy = original.copy();
+
+        copy.remove(50);
+        copy.add(500);
+
+        assertTrue(original.contains(50));
+        assertFalse(original.contains(500));
+        assertEquals(100, original.cardinality());
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.remove(-1));
+    }
+
+    private static RoaringBitmap range(int from, int to) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = from; i < to; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Partições com tipos variados: faixas contínuas (run), densas (bitmap) e esparsas (array).
+     */
+    private static RoaringBitmap randomBitmap(Random random, TreeSet<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int key = 0; key < 4; key++) {
+            int base = key << 16;
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    int start = random.nextInt(30_000);
+                    for (int i = start; i < start + random.nextInt(30_000); i++) {
+                        values.add(base + i);
+                    }
+                }
+                case 1 -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        values.add(base + random.nextInt(65_536));
+                    }
+                }
+                default -> {
+                    for (int i = 0; i < 100; i++) {
+                        values.add(base + random.nextInt(65_536));
+                    }
+                }
+            }
+        }
+        values.forEach(bitmap::add);
+        if (random.nextBoolean()) {
+            bitmap.runOptimize();
+        }
+        return bitmap;
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
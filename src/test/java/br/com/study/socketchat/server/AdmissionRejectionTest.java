@@ -0,0 +1,139 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionRejectionTest {
+    private static final int MESSAGES = 200;
+    private static final long TIMEOUT_MILLIS = 20_000;
+
+    private Path directory;
+    private EmbeddedChatServer server;
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        directory = Files.createTempDirectory("admission-test");
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new EmbeddedChatServer(port);
+        serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "admission-test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+        System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void everyRateLimitedMessageIsReportedToTheSender() throws Exception {
+        Set<String> delivered = ConcurrentHashMap.newKeySet();
+        Set<String> rejected = ConcurrentHashMap.newKeySet();
+        AtomicInteger errors = new AtomicInteger();
+        ChatClientEngine bob = connect("bob", new Listener() {
+            @Override
+            public void onMessage(Message message) {
+                if (message.getType() == MessageType.PRIVATE_MESSAGE) {
+                    delivered.add(message.getContent());
+                }
+            }
+        });
+        ChatClientEngine alice = connect("alice", new Listener() {
+            @Override
+            public void onMessage(Message message) {
+                if (message.getType() == MessageType.ERROR_MESSAGE) {
+                    errors.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onRejected(Message message, String reason) {
+                rejected.add(message.getContent());
+            }
+        });
+
+        for (int i = 0; i < MESSAGES; i++) {
+            alice.send(new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "m" + i));
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((alice.pendingCount() > 0 || delivered.size() + rejected.size() < MESSAGES)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, alice.pendingCount());
+        assertTrue(!rejected.isEmpty(), "Nenhuma mensagem excedeu o limite de envio");
+        assertEquals(MESSAGES, delivered.size() + rejected.size(),
+                delivered.size() + " entregues e " + rejected.size() + " rejeitadas");
+        for (String content : rejected) {
+            assertTrue(!delivered.contains(content), content + " rejeitada e entregue");
+        }
+        assertEquals(0, errors.get());
+        alice.close();
+        bob.close();
+    }
+
+    private ChatClientEngine connect(String username, Listener listener) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            ChatClientEngine engine = new ChatClientEngine("localhost", port, username, listener);
+            try {
+                assertEquals(MessageType.LOGIN_SUCCESS, engine.connect().getType());
+                return engine;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private abstract static class Listener implements ChatClientListener {
+        @Override
+        public void onMessage(Message message) {
+        }
+
+        @Override
+        public void onConnectionLost(String reason) {
+        }
+
+        @Override
+        public void onReconnected(int attempts) {
+        }
+    }
+}
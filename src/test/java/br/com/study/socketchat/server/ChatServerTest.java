@@ -0,0 +1,39 @@
+package br.com.study.socketchat.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatServerTest {
+    private static final int ACCEPTORS = 2;
+
+    @Test
+    void portHeldByAnotherProcessIsRefused() throws Exception {
+        try (ServerSocket other = new ServerSocket(0)) {
+            ChatServer server = new ChatServer(other.getLocalPort(), ACCEPTORS, null);
+
+            assertThrows(IllegalStateException.class, server::start);
+            assertTrue(!server.isRunning());
+        }
+    }
+
+    @Test
+    void secondServerOnTheSamePortFailsInsteadOfSharingIt() throws Exception {
+        ChatServer first = new ChatServer(0, ACCEPTORS, null);
+        Thread acceptors = new Thread(first::start, "chat-server-test");
+        acceptors.setDaemon(true);
+        acceptors.start();
+        assertTrue(first.awaitListening(5, TimeUnit.SECONDS), "Primeiro servidor não abriu a porta");
+        try {
+            ChatServer second = new ChatServer(first.getLocalPort(), ACCEPTORS, null);
+
+            assertThrows(IllegalStateException.class, second::start);
+        } finally {
+            first.stop();
+        }
+    }
+}
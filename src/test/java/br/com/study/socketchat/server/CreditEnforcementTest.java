@@ -0,0 +1,119 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cliente que ignora os créditos: o que chega acima do limite concedido é rejeitado sem ser entregue.
+ */
+class CreditEnforcementTest {
+    // Bem acima da primeira janela concedida no login
+    private static final long FLOOD_SEQUENCE = 10_000;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private Path directory;
+    private EmbeddedChatServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        directory = Files.createTempDirectory("credit-test");
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+        server = new EmbeddedChatServer(0);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "credit-test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        assertTrue(server.awaitStarted(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "Servidor não abriu a porta");
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+        System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void sequenceAboveTheGrantedCreditsIsRejectedWithoutDelivery() throws Exception {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        ChatClientEngine bob = new ChatClientEngine("localhost", server.getLocalPort(), "bob", new ChatClientListener() {
+            @Override
+            public void onMessage(Message message) {
+                if (message.getType() == MessageType.PRIVATE_MESSAGE) {
+                    delivered.add(message.getContent());
+                }
+            }
+
+            @Override
+            public void onConnectionLost(String reason) {
+            }
+
+            @Override
+            public void onReconnected(int attempts) {
+            }
+        });
+        assertEquals(MessageType.LOGIN_SUCCESS, bob.connect().getType());
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(new Message(MessageType.LOGIN, "alice", "SERVER", "alice"));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+            assertEquals(MessageType.LOGIN_SUCCESS, ((Message) in.readObject()).getType());
+
+            out.writeObject(sequenced("dentro dos créditos", 1));
+            out.writeObject(sequenced("acima dos créditos", FLOOD_SEQUENCE));
+            out.flush();
+
+            Message reply;
+            do {
+                reply = (Message) in.readObject();
+            } while (reply.getType() != MessageType.REJECTED);
+            assertEquals(FLOOD_SEQUENCE, reply.getSequence());
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (delivered.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // A rejeitada viria logo atrás da primeira, pela mesma conexão
+        Thread.sleep(200);
+        assertEquals(List.of("dentro dos créditos"), delivered);
+        bob.close();
+    }
+
+    private static Message sequenced(String content, long sequence) {
+        Message message = new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", content);
+        message.setSequence(sequence);
+        return message;
+    }
+}
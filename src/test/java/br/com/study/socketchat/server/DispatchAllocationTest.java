@@ -0,0 +1,102 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.MessageClock;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.admission.AdmissionController;
+import br.com.study.socketchat.server.admission.AdmissionDecision;
+import br.com.study.socketchat.server.jfr.MessageDeliveryEvent;
+import br.com.study.socketchat.server.jfr.MessageDispatchEvent;
+import br.com.study.socketchat.server.jfr.OfflineStorageEvent;
+import br.com.study.socketchat.server.trace.LatencyTracer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Alocações por mensagem, em regime, no que o {@code ChatHandler} faz em volta do roteamento
+ * de uma mensagem privada (admissão, rastreio, medição de carga e timestamp). Não cobre o
+ * caminho inteiro, que continua alocando por mensagem: o {@code Message} desserializado (o
+ * protocolo é serialização Java), o {@code MessageTrace}, o frame da fila de saída e a cópia
+ * entregue ao destinatário; a confirmação sai uma por lote.
+ */
+class DispatchAllocationTest {
+    private static final int WARMUP = 50_000;
+    private static final int MESSAGES = 100_000;
+    // Folga para o tick do MessageClock e medições do próprio ThreadMXBean
+    private static final long MAX_BYTES_PER_MESSAGE = 1;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void routingBookkeepingDoesNotAllocateInSteadyState() {
+        assertTrue(THREADS.isThreadAllocatedMemorySupported(), "JVM sem medição de alocação por thread");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        AdmissionController admissionController = new AdmissionController();
+        admissionController.setUserLimit(1e12, 1e12);
+        admissionController.setTypeLimit(MessageType.PRIVATE_MESSAGE.name(), 1e12, 1e12);
+        LatencyTracer latencyTracer = new LatencyTracer();
+        Message message = new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "oi");
+
+        dispatch(admissionController, latencyTracer, message, WARMUP);
+        long bytes = allocatedBytes(() -> dispatch(admissionController, latencyTracer, message, MESSAGES));
+
+        assertTrue(bytes / MESSAGES < MAX_BYTES_PER_MESSAGE,
+                "Contabilidade do roteamento alocou " + bytes + " bytes em " + MESSAGES + " mensagens");
+    }
+
+    @Test
+    void groupSenderIsQualifiedOncePerMember() {
+        Group group = new Group("devs", "alice");
+        for (int i = 0; i < WARMUP; i++) {
+            group.qualifiedSender("alice");
+        }
+
+        long bytes = allocatedBytes(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                group.qualifiedSender("alice");
+            }
+        });
+
+        assertEquals("alice@devs", group.qualifiedSender("alice"));
+        assertTrue(bytes / MESSAGES < MAX_BYTES_PER_MESSAGE,
+                "Remetente do grupo alocou " + bytes + " bytes em " + MESSAGES + " mensagens");
+    }
+
+    @Test
+    void flightRecorderEventsAreSkippedWithoutRecording() {
+        assertFalse(MessageDispatchEvent.enabled());
+        assertFalse(MessageDeliveryEvent.enabled());
+        assertFalse(OfflineStorageEvent.enabled());
+    }
+
+    /**
+     * O que o {@code ChatHandler} faz com cada mensagem em volta do roteamento (admissão, rastreio,
+     * medição de carga), mais o timestamp que toda mensagem criada no servidor recebe.
+     */
+    private static void dispatch(AdmissionController admissionController, LatencyTracer latencyTracer,
+                                 Message message, int count) {
+        for (int i = 0; i < count; i++) {
+            if (admissionController.admit("alice", message.getType()) != AdmissionDecision.ACCEPTED) {
+                throw new AssertionError("Mensagem rejeitada pela admissão");
+            }
+            latencyTracer.onRoute(message);
+            long start = admissionController.onDispatchStart();
+            message.setTimestamp(MessageClock.now());
+            admissionController.onDispatchEnd(start);
+        }
+    }
+
+    private static long allocatedBytes(Runnable work) {
+        long threadId = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(threadId);
+        work.run();
+        return THREADS.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedChatServerStartupTest {
+    private static final long STARTUP_BUDGET_MILLIS = 100;
+    private static final int GROUPS = 100;
+
+    private Path directory;
+
+    @BeforeEach
+    void configureState() throws Exception {
+        directory = Files.createTempDirectory("startup-test");
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+    }
+
+    @AfterEach
+    void removeState() throws Exception {
+        System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void restartWithStateIsReadyWithinBudget() throws Exception {
+        // Primeira instância: carrega as classes na JVM e deixa estado salvo para a próxima restaurar
+        EmbeddedChatServer first = start();
+        for (int i = 0; i < GROUPS; i++) {
+            first.getGroupService().createGroup(new Group("grupo" + i, "dono" + i));
+            first.getGroupService().joinGroup("membro" + i, "grupo" + i);
+        }
+        first.stop();
+
+        // Nova instância, como num scale-out: montagem, restauração e abertura da porta
+        EmbeddedChatServer second = start();
+        try {
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(second.getStartupNanos());
+            assertEquals(GROUPS, second.getGroupService().findGroups().size());
+            assertTrue(second.getLocalPort() > 0);
+            assertTrue(startupMillis < STARTUP_BUDGET_MILLIS,
+                    "servidor embutido levou " + startupMillis + " ms para ficar pronto");
+        } finally {
+            second.stop();
+        }
+    }
+
+    private static EmbeddedChatServer start() throws InterruptedException {
+        EmbeddedChatServer server = new EmbeddedChatServer(0);
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "startup-test-server");
+        thread.setDaemon(true);
+        thread.start();
+        assertTrue(server.awaitStarted(10, TimeUnit.SECONDS), "servidor não ficou pronto");
+        return server;
+    }
+}
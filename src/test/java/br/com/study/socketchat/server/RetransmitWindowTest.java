@@ -0,0 +1,176 @@
+package br.com.study.socketchat.server;
+
+import br.com.study.socketchat.client.engine.ChatClientEngine;
+import br.com.study.socketchat.client.engine.ChatClientListener;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import br.com.study.socketchat.server.session.RetransmitBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Um cliente que lê mas nunca confirma não pode fazer a janela de retransmissão crescer sem limite:
+ * com a janela cheia, o excedente espera na fila offline e é entregue, em ordem, quando as confirmações chegam.
+ */
+class RetransmitWindowTest {
+    private static final int WINDOW = 8;
+    private static final int MESSAGES = 24;
+    private static final long TIMEOUT_MILLIS = 20_000;
+    private static final int QUIET_MILLIS = 500;
+
+    private Path directory;
+    private EmbeddedChatServer server;
+    private int port;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        directory = Files.createTempDirectory("retransmit-window-test");
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+        System.setProperty(RetransmitBuffer.MAX_PENDING_PROPERTY, String.valueOf(WINDOW));
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new EmbeddedChatServer(port);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "retransmit-window-test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+        System.clearProperty(RetransmitBuffer.MAX_PENDING_PROPERTY);
+        System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void clientThatStopsAcknowledgingHoldsAtMostOneWindow() throws Exception {
+        try (Socket socket = connectRaw()) {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(new Message(MessageType.LOGIN, "bob", "SERVER", "bob"));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+            assertEquals(MessageType.LOGIN_SUCCESS, ((Message) in.readObject()).getType());
+            socket.setSoTimeout(QUIET_MILLIS);
+
+            ChatClientEngine alice = connect("alice");
+            try {
+                deliverWindowByWindow(alice, in, out);
+            } finally {
+                alice.close();
+            }
+        }
+    }
+
+    private static void deliverWindowByWindow(ChatClientEngine alice, ObjectInputStream in, ObjectOutputStream out)
+            throws Exception {
+        for (int i = 0; i < MESSAGES; i++) {
+            alice.send(new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", "m" + i));
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (alice.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, alice.pendingCount());
+
+        List<String> received = new ArrayList<>();
+        long lastSequence = readUntilQuiet(in, received);
+        // Uma mensagem sendo escrita pode contar duas vezes (fila e janela): no máximo a janela, nunca além
+        assertTrue(received.size() >= WINDOW - 1 && received.size() <= WINDOW,
+                received.size() + " entregas sem confirmação com janela de " + WINDOW);
+
+        // Cada confirmação libera a próxima janela, vinda da fila offline em ordem
+        while (received.size() < MESSAGES && System.currentTimeMillis() < deadline) {
+            Message ack = new Message(MessageType.ACK, "bob", "SERVER", null);
+            ack.setSequence(lastSequence);
+            out.writeObject(ack);
+            out.flush();
+            lastSequence = Math.max(lastSequence, readUntilQuiet(in, received));
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            expected.add("m" + i);
+        }
+        assertEquals(expected, received);
+    }
+
+    /**
+     * Lê até o servidor ficar em silêncio; retorna a maior sequência de conteúdo recebida.
+     */
+    private static long readUntilQuiet(ObjectInputStream in, List<String> received) throws Exception {
+        long lastSequence = 0;
+        try {
+            while (true) {
+                Message message = (Message) in.readObject();
+                if (message.getType() == MessageType.PRIVATE_MESSAGE) {
+                    received.add(message.getContent());
+                    lastSequence = message.getSequence();
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            return lastSequence;
+        }
+    }
+
+    private Socket connectRaw() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return new Socket("localhost", port);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private ChatClientEngine connect(String username) throws Exception {
+        ChatClientEngine engine = new ChatClientEngine("localhost", port, username, new Listener());
+        assertEquals(MessageType.LOGIN_SUCCESS, engine.connect().getType());
+        return engine;
+    }
+
+    private static class Listener implements ChatClientListener {
+        @Override
+        public void onMessage(Message message) {
+        }
+
+        @Override
+        public void onConnectionLost(String reason) {
+        }
+
+        @Override
+        public void onReconnected(int attempts) {
+        }
+    }
+}
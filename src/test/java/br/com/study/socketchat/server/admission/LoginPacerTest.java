@@ -0,0 +1,45 @@
+package br.com.study.socketchat.server.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginPacerTest {
+    private static final long MAX_WAIT_MILLIS = 5_000;
+
+    private final LoginPacer pacer = new LoginPacer();
+
+    @Test
+    void tryEnterRefusesAtOnceWhenThereIsNoToken() {
+        pacer.updateRate(new RateLimit(1, 0.001));
+        pacer.updateLimits(10, 10, MAX_WAIT_MILLIS);
+        assertTrue(pacer.tryEnter());
+        pacer.leave();
+
+        long start = System.nanoTime();
+        assertFalse(pacer.tryEnter(), "sem token o login do stream deve ser recusado");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < MAX_WAIT_MILLIS / 10, "tryEnter esperou " + elapsedMillis + " ms");
+        assertEquals(1, pacer.getRejectedCount());
+    }
+
+    @Test
+    void tryEnterRefusesWithoutAFreeSlotAndKeepsTheToken() {
+        pacer.updateRate(new RateLimit(2, 0.001));
+        pacer.updateLimits(1, 10, MAX_WAIT_MILLIS);
+        assertTrue(pacer.tryEnter());
+
+        assertFalse(pacer.tryEnter(), "sem vaga o login do stream deve ser recusado");
+
+        // A recusa por falta de vaga não consome o token que sobrou
+        pacer.leave();
+        assertTrue(pacer.tryEnter());
+        pacer.leave();
+        assertEquals(0, pacer.getActiveLogins());
+    }
+}
@@ -0,0 +1,60 @@
+package br.com.study.socketchat.server.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OverloadDetectorTest {
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final OverloadDetector detector = new OverloadDetector(100, 10, TimeUnit.MILLISECONDS, clock::get);
+
+    @Test
+    void slowDispatchesTriggerOverload() {
+        dispatch(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertTrue(detector.isOverloaded(), "latência média acima do limite deve indicar sobrecarga");
+    }
+
+    @Test
+    void overloadEndsOnceLoadIsGone() {
+        for (int i = 0; i < 20; i++) {
+            dispatch(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertTrue(detector.isOverloaded());
+
+        // Nenhuma mensagem despachada: só o tempo passa
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertFalse(detector.isOverloaded(), "sem carga a média deve decair e o descarte parar");
+    }
+
+    @Test
+    void sustainedSlownessKeepsOverload() {
+        for (int i = 0; i < 20; i++) {
+            dispatch(TimeUnit.MILLISECONDS.toNanos(50));
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        assertTrue(detector.isOverloaded(), "carga contínua não pode ser mascarada pelo decaimento");
+    }
+
+    @Test
+    void fastDispatchAfterIdleStartsFromFreshSample() {
+        dispatch(TimeUnit.MILLISECONDS.toNanos(50));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        dispatch(TimeUnit.MICROSECONDS.toNanos(100));
+
+        assertFalse(detector.isOverloaded());
+    }
+
+    private void dispatch(long latencyNanos) {
+        long start = detector.onDispatchStart();
+        clock.addAndGet(latencyNanos);
+        detector.onDispatchEnd(start);
+    }
+}
@@ -0,0 +1,132 @@
+package br.com.study.socketchat.server.directory;
+
+import br.com.study.socketchat.commons.bitmap.RoaringBitmap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryIndexTest {
+    private static final int LIMIT = 20;
+
+    private DirectoryIndex index;
+    private RoaringBitmap online;
+    private UnaryOperator<RoaringBitmap> intersectOnline;
+
+    @BeforeEach
+    void createIndex() {
+        index = new DirectoryIndex();
+        online = new RoaringBitmap();
+        intersectOnline = candidates -> candidates.and(online);
+    }
+
+    @Test
+    void shortPrefixesMatchFromTheStartOnly() {
+        addUsers("Alice", "alberto", "Bruna", "malu");
+
+        assertEquals(List.of("Alice", "alberto"), userNames("a"));
+        assertEquals(List.of("Alice", "alberto"), userNames("AL"));
+        assertEquals(List.of("Alice"), userNames("ali"));
+        // "lu" está dentro de "malu", mas substring exige 3 caracteres
+        assertEquals(List.of(), userNames("lu"));
+    }
+
+    @Test
+    void onlineUsersComeFirstThenSubstringMatches() {
+        addUsers("ana", "anabela", "mariana", "juliana", "anderson");
+        online.add(1);
+        online.add(3);
+
+        List<DirectoryEntry> found = index.searchUsers("ana", LIMIT, intersectOnline);
+
+        assertEquals(List.of(
+                DirectoryEntry.user("anabela", true),
+                DirectoryEntry.user("ana", false),
+                DirectoryEntry.user("juliana", true),
+                DirectoryEntry.user("mariana", false)), found);
+    }
+
+    @Test
+    void trigramsInOtherPositionsAreNotMatches() {
+        // Tem os trigramas "abc" e "bcd", mas não contém "abcd"
+        addUsers("abcxbcd", "xabcd");
+
+        assertEquals(List.of("xabcd"), userNames("abcd"));
+        assertEquals(List.of(), groupNames("abcd"));
+    }
+
+    @Test
+    void resultsStopAtTheLimit() {
+        for (int i = 0; i < 50; i++) {
+            index.addUser(i, "user" + i);
+        }
+
+        assertEquals(5, index.searchUsers("user", 5, intersectOnline).size());
+        assertEquals(5, index.searchUsers("ser", 5, intersectOnline).size());
+    }
+
+    @Test
+    void sameUserIdIsIndexedOnce() {
+        index.addUser(0, "ana");
+        index.addUser(0, "ana");
+
+        assertEquals(1, index.getIndexedUsers());
+        assertEquals(List.of("ana"), userNames("an"));
+    }
+
+    @Test
+    void removedGroupDisappearsWithoutAffectingOthers() {
+        index.addGroup("java-devs");
+        index.addGroup("javascript");
+        index.addGroup("java-devs");
+        int gramsWithBoth = index.getGramCount();
+        assertEquals(2, index.getIndexedGroups());
+
+        index.removeGroup("java-devs");
+
+        assertEquals(List.of("javascript"), groupNames("java"));
+        assertEquals(List.of(), groupNames("devs"));
+        assertEquals(1, index.getIndexedGroups());
+        assertTrue(index.getGramCount() < gramsWithBoth);
+
+        index.addGroup("java-devs");
+        assertEquals(List.of("javascript", "java-devs"), groupNames("jav"));
+        assertEquals(gramsWithBoth, index.getGramCount());
+    }
+
+    @Test
+    void removingAnUnknownGroupIsIgnored() {
+        index.addGroup("devs");
+
+        index.removeGroup("ops");
+
+        assertEquals(List.of("devs"), groupNames("dev"));
+    }
+
+    @Test
+    void groupPrefixesComeBeforeSubstrings() {
+        index.addGroup("backend-team");
+        index.addGroup("team-alpha");
+        index.addGroup("Teamwork");
+
+        assertEquals(List.of("team-alpha", "Teamwork", "backend-team"), groupNames("team"));
+    }
+
+    private void addUsers(String... names) {
+        for (int id = 0; id < names.length; id++) {
+            index.addUser(id, names[id]);
+        }
+    }
+
+    private List<String> userNames(String query) {
+        return index.searchUsers(query, LIMIT, intersectOnline).stream().map(DirectoryEntry::name).toList();
+    }
+
+    private List<String> groupNames(String query) {
+        return index.searchGroups(query, LIMIT).stream().map(DirectoryEntry::name).toList();
+    }
+}
@@ -0,0 +1,164 @@
+package br.com.study.socketchat.server.group;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupRingTest {
+    private static final GroupRing.TaskFailureHandler RETHROW = (ring, sequence, error) -> {
+        throw error;
+    };
+
+    @Test
+    void capacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new GroupRing("g", 6));
+    }
+
+    @Test
+    void tasksRunInSequenceOrderAcrossWrapArounds() {
+        GroupRing ring = new GroupRing("g", 4);
+        List<Integer> executed = new ArrayList<>();
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3; i++) {
+                int task = round * 3 + i;
+                assertEquals(task, ring.publish(() -> executed.add(task), () -> {
+                }));
+            }
+            assertTrue(ring.tryStartDrain());
+            assertFalse(ring.drain(16, RETHROW));
+        }
+
+        assertEquals(15, executed.size());
+        for (int i = 0; i < executed.size(); i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+        assertEquals(15, ring.consumedCount());
+        assertEquals(0, ring.backlog());
+    }
+
+    @Test
+    void drainStopsAtTheLimitAndKeepsTheReservation() {
+        GroupRing ring = new GroupRing("g", 8);
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            ring.publish(executed::incrementAndGet, () -> {
+            });
+        }
+
+        assertTrue(ring.tryStartDrain());
+        assertTrue(ring.drain(2, RETHROW));
+        assertEquals(2, executed.get());
+        // O consumo continua reservado para quem drenou
+        assertFalse(ring.tryStartDrain());
+
+        assertFalse(ring.drain(10, RETHROW));
+        assertEquals(5, executed.get());
+        assertFalse(ring.tryStartDrain());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheRing() {
+        GroupRing ring = new GroupRing("g", 4);
+        List<Long> failed = new ArrayList<>();
+        AtomicInteger executed = new AtomicInteger();
+        ring.publish(executed::incrementAndGet, () -> {
+        });
+        ring.publish(() -> {
+            throw new IllegalStateException("falha");
+        }, () -> {
+        });
+        ring.publish(executed::incrementAndGet, () -> {
+        });
+
+        assertTrue(ring.tryStartDrain());
+        ring.drain(10, (r, sequence, error) -> failed.add(sequence));
+
+        assertEquals(List.of(1L), failed);
+        assertEquals(2, executed.get());
+        assertEquals(3, ring.consumedCount());
+    }
+
+    @Test
+    void producerWaitsWhileTheRingIsFull() throws Exception {
+        GroupRing ring = new GroupRing("g", 4);
+        for (int i = 0; i < 4; i++) {
+            ring.publish(() -> {
+            }, () -> {
+            });
+        }
+        CountDownLatch full = new CountDownLatch(1);
+        CountDownLatch published = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            ring.publish(() -> {
+            }, full::countDown);
+            published.countDown();
+        });
+        producer.start();
+
+        assertTrue(full.await(5, TimeUnit.SECONDS));
+        assertFalse(published.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(5, ring.backlog());
+
+        assertTrue(ring.tryStartDrain());
+        ring.drain(1, RETHROW);
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        producer.join();
+        assertTrue(ring.drain(16, RETHROW) || ring.backlog() == 0);
+        assertEquals(5, ring.consumedCount());
+    }
+
+    @Test
+    void concurrentProducersKeepTheirOwnOrder() throws Exception {
+        GroupRing ring = new GroupRing("g", 64);
+        int producers = 4;
+        int perProducer = 5_000;
+        List<int[]> executed = new ArrayList<>();
+        // Um consumidor à parte, como o pool do sequenciador: com o anel cheio os produtores esperam
+        Thread consumer = new Thread(() -> {
+            boolean reserved = false;
+            while (executed.size() < producers * perProducer) {
+                if (reserved || ring.tryStartDrain()) {
+                    reserved = ring.drain(32, RETHROW);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    int index = i;
+                    ring.publish(() -> executed.add(new int[]{producer, index}), () -> {
+                    });
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(consumer.isAlive());
+        assertEquals(producers * perProducer, executed.size());
+        int[] next = new int[producers];
+        for (int[] task : executed) {
+            assertEquals(next[task[0]]++, task[1]);
+        }
+    }
+}
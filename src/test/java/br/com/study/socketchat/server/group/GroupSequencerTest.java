@@ -0,0 +1,133 @@
+package br.com.study.socketchat.server.group;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupSequencerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    void eachGroupRunsInTheOrderOfItsSequences() throws Exception {
+        GroupSequencer sequencer = new GroupSequencer();
+        String[] groups = {"a", "b", "c"};
+        int producers = 6;
+        int perProducer = 2_000;
+        Map<String, List<Long>> executed = new ConcurrentHashMap<>();
+        for (String group : groups) {
+            executed.put(group, Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    String group = groups[(producer + i) % groups.length];
+                    long[] sequence = {-1};
+                    CountDownLatch assigned = new CountDownLatch(1);
+                    sequence[0] = sequencer.submit(group, () -> {
+                        awaitQuietly(assigned);
+                        executed.get(group).add(sequence[0]);
+                        done.countDown();
+                    });
+                    assigned.countDown();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        long total = 0;
+        for (String group : groups) {
+            List<Long> sequences = executed.get(group);
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(i, sequences.get(i).longValue());
+            }
+            assertEquals(sequences.size(), sequencer.getGroupSequence(group));
+            total += sequences.size();
+        }
+        assertEquals(producers * perProducer, total);
+    }
+
+    @Test
+    void failedFanOutDoesNotBlockTheGroup() throws Exception {
+        GroupSequencer sequencer = new GroupSequencer();
+        long failedBefore = sequencer.getFailedCount();
+        CountDownLatch done = new CountDownLatch(1);
+
+        sequencer.submit("falhas", () -> {
+            throw new IllegalStateException("fan-out com erro (esperado no teste)");
+        });
+        sequencer.submit("falhas", done::countDown);
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(failedBefore + 1, sequencer.getFailedCount());
+    }
+
+    @Test
+    void producersWaitForSpaceWhenTheRingIsFull() throws Exception {
+        GroupSequencer sequencer = new GroupSequencer();
+        int tasks = sequencer.getRingCapacity() + 100;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(tasks);
+        long waitsBefore = sequencer.getFullRingWaits();
+
+        Thread producer = new Thread(() -> {
+            sequencer.submit("cheio", () -> {
+                awaitQuietly(release);
+                done.countDown();
+            });
+            for (int i = 1; i < tasks; i++) {
+                sequencer.submit("cheio", done::countDown);
+            }
+        });
+        producer.start();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (sequencer.getFullRingWaits() == waitsBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(sequencer.getFullRingWaits() > waitsBefore);
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(tasks, sequencer.getGroupSequence("cheio"));
+    }
+
+    @Test
+    void retiredGroupStartsANewSequence() throws Exception {
+        GroupSequencer sequencer = new GroupSequencer();
+        CountDownLatch done = new CountDownLatch(3);
+        sequencer.submit("temp", done::countDown);
+        sequencer.submit("temp", done::countDown);
+
+        sequencer.retire("temp");
+
+        assertEquals(0, sequencer.getGroupSequence("temp"));
+        assertEquals(0, sequencer.submit("temp", done::countDown));
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BinaryCodecTest {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_789);
+
+    @Test
+    void creationTimeSurvivesTheLog() throws IOException {
+        StateChange read = roundTrip(StateChange.groupCreated("devs", "ana", CREATED_AT));
+
+        assertEquals(StateChange.Type.GROUP_CREATED, read.type());
+        assertEquals("devs", read.groupName());
+        assertEquals("ana", read.username());
+        assertEquals(CREATED_AT, read.time());
+    }
+
+    @Test
+    void changesWithoutTimeStayCompatible() throws IOException {
+        StateChange read = roundTrip(StateChange.scheduleCancelled(42, "ana"));
+
+        assertEquals(42, read.scheduleId());
+        assertNull(read.time());
+    }
+
+    @Test
+    void recordWrittenBeforeTimesExistedStillReads() throws IOException {
+        byte[] current = encode(StateChange.userRegistered("ana", CREATED_AT));
+        // Registro antigo: o mesmo, sem o horário no final
+        byte[] legacy = Arrays.copyOf(current, current.length - Long.BYTES - Integer.BYTES);
+
+        StateChange read = BinaryCodec.readChange(ByteBuffer.wrap(legacy));
+
+        assertEquals(StateChange.Type.USER_REGISTERED, read.type());
+        assertEquals("ana", read.username());
+        assertNull(read.time());
+    }
+
+    @Test
+    void sharedOfflineMessageKeepsRecipients() throws IOException {
+        Message message = new Message(MessageType.GROUP_MESSAGE, "ana", "devs", "oi");
+        StateChange read = roundTrip(StateChange.offlineStoredShared(List.of("bia", "caio"), message));
+
+        assertEquals(List.of("bia", "caio"), read.recipients());
+        assertEquals("oi", read.message().getContent());
+    }
+
+    private static StateChange roundTrip(StateChange change) throws IOException {
+        return BinaryCodec.readChange(ByteBuffer.wrap(encode(change)));
+    }
+
+    private static byte[] encode(StateChange change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BinaryCodec.writeChange(out, change);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
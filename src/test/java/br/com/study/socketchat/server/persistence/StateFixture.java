@@ -0,0 +1,95 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.User;
+import br.com.study.socketchat.server.channel.BroadcastChannel;
+import br.com.study.socketchat.server.channel.ChannelManager;
+import br.com.study.socketchat.server.directory.DirectoryIndex;
+import br.com.study.socketchat.server.group.GroupManager;
+import br.com.study.socketchat.server.group.GroupSequencer;
+import br.com.study.socketchat.server.group.service.GroupService;
+import br.com.study.socketchat.server.schedule.MessageScheduler;
+import br.com.study.socketchat.server.service.ChatService;
+import br.com.study.socketchat.server.session.SessionManager;
+import br.com.study.socketchat.server.session.UserIdRegistry;
+import br.com.study.socketchat.server.storage.impl.OfflineMessageStorageImpl;
+import br.com.study.socketchat.server.trace.LatencyTracer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Estado persistente de um servidor, montado como no {@code EmbeddedChatServer}, sem rede.
+ */
+public final class StateFixture {
+    public final StateJournal stateJournal = new StateJournal();
+    public final SessionManager sessionManager;
+    public final GroupManager groupManager;
+    public final OfflineMessageStorageImpl offlineStorage;
+    public final ChannelManager channelManager;
+    public final MessageScheduler messageScheduler;
+    public final StatePersistenceService persistence;
+
+    public StateFixture(Path directory) {
+        UserIdRegistry userIdRegistry = new UserIdRegistry();
+        DirectoryIndex directoryIndex = new DirectoryIndex();
+        groupManager = new GroupManager(userIdRegistry, stateJournal, directoryIndex);
+        sessionManager = new SessionManager(userIdRegistry, stateJournal, directoryIndex);
+        GroupSequencer groupSequencer = new GroupSequencer();
+        offlineStorage = new OfflineMessageStorageImpl(stateJournal);
+        ChatService chatService = new ChatService(sessionManager, new GroupService(groupManager, groupSequencer),
+                offlineStorage, new LatencyTracer(), groupSequencer);
+        channelManager = new ChannelManager(userIdRegistry, stateJournal);
+        messageScheduler = new MessageScheduler(stateJournal, chatService);
+        String previous = System.getProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+        try {
+            persistence = new StatePersistenceService(sessionManager, groupManager, offlineStorage, channelManager,
+                    messageScheduler, stateJournal);
+        } finally {
+            if (previous == null) {
+                System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+            } else {
+                System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * Encerra as threads sem gravar snapshot, como numa queda do processo.
+     */
+    public void crash() {
+        messageScheduler.shutdown();
+    }
+
+    /**
+     * Estado comparável: usuários, grupos com membros, filas offline e canais.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> state = new TreeMap<>();
+        for (User user : sessionManager.findUsers()) {
+            state.put("user " + user.getUsername(), user.getLastSeen());
+        }
+        for (Group group : groupManager.findAll()) {
+            state.put("group " + group.getName(), group.getCreatedAt() + " " + new TreeSet<>(group.getMembers()));
+        }
+        for (Map.Entry<String, List<Message>> queue : offlineStorage.snapshotMessages().entrySet()) {
+            List<String> contents = new ArrayList<>();
+            for (Message message : queue.getValue()) {
+                contents.add(message.getContent());
+            }
+            if (!contents.isEmpty()) {
+                state.put("offline " + queue.getKey(), contents);
+            }
+        }
+        for (BroadcastChannel channel : channelManager.findAll()) {
+            state.put("channel " + channel.getName(), channel.getCreatedAt());
+        }
+        return state;
+    }
+}
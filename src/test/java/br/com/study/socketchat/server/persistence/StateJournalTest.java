@@ -0,0 +1,159 @@
+package br.com.study.socketchat.server.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateJournalTest {
+    private static final int THREADS = 8;
+    private static final int CHANGES_PER_THREAD = 5_000;
+
+    @Test
+    void concurrentChangesAreLoggedInTheOrderTheyWereApplied() throws InterruptedException {
+        StateJournal journal = new StateJournal();
+        List<StateChange> applied = Collections.synchronizedList(new ArrayList<>());
+        List<StateChange> logged = Collections.synchronizedList(new ArrayList<>());
+        journal.addListener(logged::add);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String username = "user" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < CHANGES_PER_THREAD; i++) {
+                    StateChange change = StateChange.offlineDrained(username);
+                    journal.record(change, () -> applied.add(change));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(THREADS * CHANGES_PER_THREAD, logged.size());
+        for (int i = 0; i < applied.size(); i++) {
+            if (applied.get(i) != logged.get(i)) {
+                throw new AssertionError("Alteração " + i + " registrada fora da ordem de aplicação");
+            }
+        }
+    }
+
+    @Test
+    void failedMutationIsNotLogged() {
+        StateJournal journal = new StateJournal();
+        List<StateChange> logged = new ArrayList<>();
+        journal.addListener(logged::add);
+
+        try {
+            journal.record(StateChange.memberJoined("g", "ana"), () -> {
+                throw new IllegalArgumentException("Group doesn't exist");
+            });
+        } catch (IllegalArgumentException expected) {
+            // a exceção segue para quem chamou
+        }
+        journal.record(StateChange.memberJoined("g", "bia"), () -> {
+        });
+
+        assertEquals(1, logged.size());
+        assertEquals("bia", logged.get(0).username());
+    }
+
+    @Test
+    void slowLogDoesNotBlockOtherMutations() throws InterruptedException {
+        StateJournal journal = new StateJournal();
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger flushes = new AtomicInteger();
+        journal.addListener(new StateChangeListener() {
+            @Override
+            public void onChange(StateChange change) {
+            }
+
+            @Override
+            public void flush() {
+                if (flushes.incrementAndGet() == 1) {
+                    flushing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+
+        Thread first = new Thread(() -> journal.record(StateChange.offlineDrained("ana"), () -> {
+        }));
+        first.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        // O primeiro lote ainda está sendo gravado; a próxima alteração é aplicada mesmo assim
+        CountDownLatch applied = new CountDownLatch(1);
+        Thread second = new Thread(() -> journal.record(StateChange.offlineDrained("bia"), applied::countDown));
+        second.start();
+        assertTrue(applied.await(5, TimeUnit.SECONDS), "gravação do log não pode segurar as alterações");
+
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(2, flushes.get());
+    }
+
+    @Test
+    void changesArrivingDuringAFlushShareTheNextOne() throws InterruptedException {
+        StateJournal journal = new StateJournal();
+        List<StateChange> logged = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger flushes = new AtomicInteger();
+        journal.addListener(new StateChangeListener() {
+            @Override
+            public void onChange(StateChange change) {
+                logged.add(change);
+            }
+
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String username = "user" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    journal.record(StateChange.offlineDrained(username), () -> {
+                    });
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(THREADS * 20, logged.size());
+        assertTrue(flushes.get() < THREADS * 20, "alterações concorrentes devem ser gravadas em lote");
+    }
+}
@@ -0,0 +1,130 @@
+package br.com.study.socketchat.server.persistence;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.User;
+import br.com.study.socketchat.commons.enums.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatePersistenceServiceTest {
+    private static final String[] USERS = {"ana", "bia", "caio", "duda", "eva", "fabio"};
+    private static final String[] GROUPS = {"g0", "g1", "g2"};
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("state-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void replayAfterCrashMatchesConcurrentLiveChanges() throws Exception {
+        StateFixture live = new StateFixture(directory);
+        live.persistence.restore();
+        for (String group : GROUPS) {
+            live.groupManager.addGroup(new Group(group, "owner"));
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> churn(live, worker, 2_000));
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<String, Object> expected = live.describe();
+        live.crash();
+
+        StateFixture restored = new StateFixture(directory);
+        restored.persistence.restore();
+        try {
+            assertEquals(expected, restored.describe());
+        } finally {
+            restored.crash();
+            restored.persistence.shutdown();
+        }
+    }
+
+    @Test
+    void replayKeepsCreationTimes() throws Exception {
+        LocalDateTime groupCreatedAt = LocalDateTime.of(2023, 5, 10, 8, 0);
+        LocalDateTime channelCreatedAt = LocalDateTime.of(2023, 6, 1, 9, 30);
+        StateFixture live = new StateFixture(directory);
+        live.persistence.restore();
+        Group group = new Group("devs", "ana");
+        group.setCreatedAt(groupCreatedAt);
+        live.groupManager.addGroup(group);
+        live.channelManager.createChannel("avisos", "ana", channelCreatedAt);
+        live.crash();
+
+        StateFixture restored = new StateFixture(directory);
+        restored.persistence.restore();
+        try {
+            assertEquals(groupCreatedAt, restored.groupManager.findGroupOrThrow("devs").getCreatedAt());
+            assertEquals(channelCreatedAt, restored.channelManager.findChannelOrThrow("avisos").getCreatedAt());
+        } finally {
+            restored.crash();
+            restored.persistence.shutdown();
+        }
+    }
+
+    @Test
+    void replayedRegistrationKeepsItsTime() {
+        LocalDateTime registeredAt = LocalDateTime.of(2022, 1, 2, 3, 4, 5);
+        StateFixture standby = new StateFixture(directory);
+
+        standby.persistence.applyReplicated(StateChange.userRegistered("ana", registeredAt));
+
+        User user = standby.sessionManager.findUsers().get(0);
+        assertEquals("ana", user.getUsername());
+        assertEquals(registeredAt, user.getLastSeen());
+    }
+
+    /**
+     * Entradas, saídas, mensagens offline e retiradas concorrentes; as que falham (grupo
+     * removido ao esvaziar) são parte do teste.
+     */
+    static void churn(StateFixture state, int worker, int operations) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < operations; i++) {
+            String user = USERS[random.nextInt(USERS.length)];
+            String group = GROUPS[random.nextInt(GROUPS.length)];
+            try {
+                switch (random.nextInt(5)) {
+                    case 0 -> state.groupManager.addMemberToGroup(group, user);
+                    case 1 -> state.groupManager.removeMemberFromGroup(group, user);
+                    case 2 -> state.offlineStorage.retrieveMessages(user);
+                    default -> state.offlineStorage.storeMessage(user,
+                            new Message(MessageType.PRIVATE_MESSAGE, "w" + worker, user, worker + "-" + i));
+                }
+            } catch (IllegalArgumentException ignored) {
+                // grupo já removido
+            }
+        }
+    }
+}
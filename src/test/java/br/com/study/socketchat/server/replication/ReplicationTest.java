@@ -0,0 +1,137 @@
+package br.com.study.socketchat.server.replication;
+
+import br.com.study.socketchat.commons.Group;
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.persistence.StateFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicationTest {
+    private static final String[] USERS = {"ana", "bia", "caio", "duda", "eva", "fabio"};
+    private static final String[] GROUPS = {"g0", "g1", "g2"};
+    private static final long CATCH_UP_MILLIS = 20_000;
+
+    private Path primaryDirectory;
+    private Path standbyDirectory;
+    private StateFixture primaryState;
+    private StateFixture standbyState;
+    private ReplicationLog log;
+    private ReplicationPrimary primary;
+    private ReplicationStandby standby;
+    private Thread standbyThread;
+
+    @BeforeEach
+    void startPrimary() throws IOException {
+        primaryDirectory = Files.createTempDirectory("replication-primary");
+        standbyDirectory = Files.createTempDirectory("replication-standby");
+        primaryState = new StateFixture(primaryDirectory);
+        primaryState.persistence.restore();
+        log = new ReplicationLog();
+        primaryState.stateJournal.addListener(log);
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        primary = new ReplicationPrimary(port, 7, log, primaryState.stateJournal, primaryState.persistence);
+        primary.start();
+
+        standbyState = new StateFixture(standbyDirectory);
+        standby = new ReplicationStandby(new InetSocketAddress("localhost", port), Long.MAX_VALUE,
+                standbyState.persistence);
+        standbyThread = new Thread(() -> {
+            try {
+                standby.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "replication-test-standby");
+        standbyThread.setDaemon(true);
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        standby.stop();
+        standbyThread.join(5_000);
+        primary.shutdown();
+        primaryState.crash();
+        standbyState.crash();
+        delete(primaryDirectory);
+        delete(standbyDirectory);
+    }
+
+    @Test
+    void standbyEndsInThePrimaryStateAfterConcurrentChanges() throws Exception {
+        for (String group : GROUPS) {
+            primaryState.groupManager.addGroup(new Group(group, "owner"));
+        }
+        primaryState.offlineStorage.storeMessage("ana", message("antes", "ana"));
+        standbyThread.start();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> churn(worker, 2_000));
+            thread.start();
+            workers.add(thread);
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+
+        awaitCatchUp();
+        assertEquals(primaryState.describe(), standbyState.describe());
+    }
+
+    private void churn(int worker, int operations) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < operations; i++) {
+            String user = USERS[random.nextInt(USERS.length)];
+            String group = GROUPS[random.nextInt(GROUPS.length)];
+            try {
+                switch (random.nextInt(5)) {
+                    case 0 -> primaryState.groupManager.addMemberToGroup(group, user);
+                    case 1 -> primaryState.groupManager.removeMemberFromGroup(group, user);
+                    case 2 -> primaryState.offlineStorage.retrieveMessages(user);
+                    default -> primaryState.offlineStorage.storeMessage(user, message(worker + "-" + i, user));
+                }
+            } catch (IllegalArgumentException ignored) {
+                // grupo já removido
+            }
+        }
+    }
+
+    private void awaitCatchUp() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CATCH_UP_MILLIS;
+        while (standby.appliedSequence() < log.lastSequence() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(standby.appliedSequence() == log.lastSequence(),
+                "Réplica parou em " + standby.appliedSequence() + " de " + log.lastSequence());
+    }
+
+    private static Message message(String content, String recipient) {
+        return new Message(MessageType.PRIVATE_MESSAGE, "sender", recipient, content);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package br.com.study.socketchat.server.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    // Tick atual desalinhado com as voltas de todos os níveis
+    private static final long START = 17_000_000_123L;
+
+    @Test
+    void entriesFireExactlyOnTheirTickAtEveryLevel() {
+        TimingWheel wheel = new TimingWheel(START);
+        long[] deltas = {1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 262_200};
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long delta : deltas) {
+            wheel.add(entry(delta), START + delta);
+        }
+
+        List<ScheduledMessage> due = new ArrayList<>();
+        for (long tick = START + 1; tick <= START + 262_200; tick++) {
+            wheel.advanceTo(tick, due);
+            for (ScheduledMessage entry : due) {
+                firedAt.put(entry.getId(), tick);
+            }
+            due.clear();
+        }
+
+        for (long delta : deltas) {
+            assertEquals(Long.valueOf(START + delta), firedAt.get(delta), "Prazo de " + delta + " ticks");
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadeAcrossLevelsFiresEveryEntryOnTime() {
+        Random random = new Random(7);
+        TimingWheel wheel = new TimingWheel(START);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 3_000; id++) {
+            // Prazos espalhados pelos níveis 0 a 3
+            long delta = switch (random.nextInt(4)) {
+                case 0 -> random.nextInt(64);
+                case 1 -> random.nextInt(4096);
+                case 2 -> random.nextInt(262_144);
+                default -> random.nextInt(1_000_000);
+            };
+            deadlines.put(id, START + delta);
+            wheel.add(new ScheduledMessage(id, "owner", 0, null), START + delta);
+        }
+
+        long previous = START;
+        List<ScheduledMessage> due = new ArrayList<>();
+        while (previous < START + 1_000_000) {
+            long next = previous + 1 + random.nextInt(5_000);
+            wheel.advanceTo(next, due);
+            for (ScheduledMessage entry : due) {
+                long deadline = deadlines.remove(entry.getId());
+                assertTrue(deadline <= next, "Disparou antes do prazo: " + deadline + " em " + next);
+                assertTrue(deadline > previous || deadline == START, "Atrasou um avanço: " + deadline);
+            }
+            due.clear();
+            previous = next;
+        }
+
+        assertTrue(deadlines.isEmpty(), deadlines.size() + " agendamentos não dispararam");
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overdueEntriesFireOnTheNextAdvance() {
+        TimingWheel wheel = new TimingWheel(START);
+        wheel.add(entry(1), START - 50);
+        wheel.add(entry(2), START);
+
+        List<ScheduledMessage> due = new ArrayList<>();
+        wheel.advanceTo(START, due);
+
+        assertEquals(List.of(1L, 2L), ids(due));
+        assertEquals(START, wheel.currentTick());
+    }
+
+    @Test
+    void cancelledEntriesNeverFire() {
+        TimingWheel wheel = new TimingWheel(START);
+        ScheduledMessage near = entry(1);
+        ScheduledMessage far = entry(2);
+        ScheduledMessage kept = entry(3);
+        wheel.add(near, START + 10);
+        wheel.add(far, START + 100_000);
+        wheel.add(kept, START + 10);
+
+        assertTrue(wheel.cancel(near));
+        assertFalse(wheel.cancel(near));
+        assertEquals(2, wheel.size());
+
+        List<ScheduledMessage> due = new ArrayList<>();
+        wheel.advanceTo(START + 50_000, due);
+        assertEquals(List.of(3L), ids(due));
+        // Depois de descer de nível na cascata, continua cancelável
+        assertTrue(wheel.cancel(far));
+        due.clear();
+        wheel.advanceTo(START + 200_000, due);
+
+        assertTrue(due.isEmpty());
+        assertEquals(0, wheel.size());
+        assertFalse(wheel.cancel(far));
+    }
+
+    @Test
+    void cancellingTheMiddleOfABucketKeepsTheRest() {
+        TimingWheel wheel = new TimingWheel(START);
+        List<ScheduledMessage> entries = new ArrayList<>();
+        for (long id = 0; id < 5; id++) {
+            ScheduledMessage entry = entry(id);
+            entries.add(entry);
+            wheel.add(entry, START + 5_000);
+        }
+
+        wheel.cancel(entries.get(2));
+        wheel.cancel(entries.get(0));
+        wheel.cancel(entries.get(4));
+
+        List<ScheduledMessage> due = new ArrayList<>();
+        wheel.advanceTo(START + 5_000, due);
+        assertEquals(List.of(1L, 3L), ids(due));
+    }
+
+    @Test
+    void firedEntryCannotBeCancelled() {
+        TimingWheel wheel = new TimingWheel(START);
+        ScheduledMessage entry = entry(1);
+        wheel.add(entry, START + 1);
+
+        List<ScheduledMessage> due = new ArrayList<>();
+        wheel.advanceTo(START + 1, due);
+
+        assertEquals(1, due.size());
+        assertFalse(wheel.cancel(entry));
+        assertEquals(0, wheel.size());
+    }
+
+    private static ScheduledMessage entry(long id) {
+        return new ScheduledMessage(id, "owner", 0, null);
+    }
+
+    private static List<Long> ids(List<ScheduledMessage> entries) {
+        return entries.stream().map(ScheduledMessage::getId).toList();
+    }
+}
@@ -0,0 +1,154 @@
+package br.com.study.socketchat.server.session;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetransmitBufferTest {
+
+    @Test
+    void appendAssignsConsecutiveSequences() {
+        RetransmitBuffer buffer = new RetransmitBuffer();
+
+        Message first = message("a");
+        assertEquals(1, buffer.append(first));
+        assertEquals(2, buffer.append(message("b")));
+
+        assertEquals(1, first.getSequence());
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    void cumulativeAcknowledgementReleasesUpToTheSequence() {
+        RetransmitBuffer buffer = filled(10);
+
+        assertEquals(4, buffer.acknowledge(4));
+        assertEquals(0, buffer.acknowledge(4));
+        assertEquals(0, buffer.acknowledge(2));
+
+        assertEquals(List.of(5L, 6L, 7L, 8L, 9L, 10L), pendingSequences(buffer));
+    }
+
+    @Test
+    void acknowledgementBeyondTheLastSequenceReleasesEverything() {
+        RetransmitBuffer buffer = filled(3);
+
+        assertEquals(3, buffer.acknowledge(100));
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.bytes());
+        assertEquals(4, buffer.append(message("d")));
+    }
+
+    @Test
+    void appendBeyondTheWindowIsRefusedUntilSomethingIsAcknowledged() {
+        RetransmitBuffer buffer = new RetransmitBuffer(8);
+        for (int i = 0; i < 8; i++) {
+            buffer.append(message("m" + i));
+        }
+
+        assertThrows(IllegalStateException.class, () -> buffer.append(message("extra")));
+        assertEquals(8, buffer.size());
+
+        buffer.acknowledge(2);
+        assertEquals(9, buffer.append(message("n")));
+        assertEquals(10, buffer.append(message("o")));
+        assertThrows(IllegalStateException.class, () -> buffer.append(message("extra")));
+    }
+
+    @Test
+    void windowMustHoldAtLeastOneMessage() {
+        assertThrows(IllegalArgumentException.class, () -> new RetransmitBuffer(0));
+    }
+
+    @Test
+    void slotsWrapAroundTheRing() {
+        RetransmitBuffer buffer = filled(60);
+        buffer.acknowledge(50);
+
+        // 10 pendentes no fim do array; os próximos 40 ocupam o início
+        for (int i = 0; i < 40; i++) {
+            buffer.append(message("w" + i));
+        }
+
+        assertEquals(50, buffer.size());
+        assertEquals(range(51, 100), pendingSequences(buffer));
+        assertEquals(45, buffer.acknowledge(95));
+        assertEquals(range(96, 100), pendingSequences(buffer));
+    }
+
+    @Test
+    void fullRingGrowsKeepingOrderWhenWrapped() {
+        RetransmitBuffer buffer = filled(40);
+        buffer.acknowledge(30);
+        // Cabeça no meio do array: o crescimento precisa desenrolar o anel
+        for (int i = 0; i < 200; i++) {
+            buffer.append(message("g" + i));
+        }
+
+        assertEquals(210, buffer.size());
+        assertEquals(range(31, 240), pendingSequences(buffer));
+        assertEquals(110, buffer.acknowledge(140));
+        assertEquals(range(141, 240), pendingSequences(buffer));
+    }
+
+    @Test
+    void bytesFollowRetainedMessages() {
+        RetransmitBuffer buffer = new RetransmitBuffer();
+        buffer.append(message("x".repeat(1000)));
+        long one = buffer.bytes();
+        buffer.append(message("y".repeat(1000)));
+
+        assertEquals(2 * one, buffer.bytes());
+        buffer.acknowledge(1);
+        assertEquals(one, buffer.bytes());
+        buffer.acknowledge(2);
+        assertEquals(0, buffer.bytes());
+    }
+
+    @Test
+    void drainReturnsPendingInOrderAndEmptiesTheBuffer() {
+        RetransmitBuffer buffer = filled(5);
+        buffer.acknowledge(2);
+
+        List<Message> drained = buffer.drain();
+
+        assertEquals(List.of("m3", "m4", "m5"), drained.stream().map(Message::getContent).toList());
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.bytes());
+        // A numeração continua de onde parou
+        assertEquals(6, buffer.append(message("m6")));
+    }
+
+    private static RetransmitBuffer filled(int count) {
+        RetransmitBuffer buffer = new RetransmitBuffer();
+        for (int i = 1; i <= count; i++) {
+            buffer.append(message("m" + i));
+        }
+        return buffer;
+    }
+
+    private static Message message(String content) {
+        return new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", content);
+    }
+
+    private static List<Long> pendingSequences(RetransmitBuffer buffer) {
+        List<Long> sequences = new ArrayList<>();
+        buffer.forEachPending(message -> sequences.add(message.getSequence()));
+        return sequences;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> values = new ArrayList<>();
+        for (long i = from; i <= to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
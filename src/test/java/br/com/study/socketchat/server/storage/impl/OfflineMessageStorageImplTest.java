@@ -0,0 +1,108 @@
+package br.com.study.socketchat.server.storage.impl;
+
+import br.com.study.socketchat.commons.Message;
+import br.com.study.socketchat.commons.enums.MessageType;
+import br.com.study.socketchat.server.persistence.StateJournal;
+import br.com.study.socketchat.server.persistence.StatePersistenceService;
+import br.com.study.socketchat.server.storage.RetentionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineMessageStorageImplTest {
+    // Sem orçamento de memória: todo conteúdo vai para o disco
+    private static final RetentionPolicy SPILL_EVERYTHING =
+            new RetentionPolicy(1_000, 64L * 1024 * 1024, Duration.ofDays(1), 0);
+
+    private final List<Path> directories = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        System.clearProperty(StatePersistenceService.DIRECTORY_PROPERTY);
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void serversWithDifferentStateDirectoriesDoNotShareSpilledMessages() throws Exception {
+        OfflineMessageStorageImpl primary = storageIn("spill-primary");
+        primary.storeMessage("bob", message("do primário"));
+
+        // Um segundo servidor na mesma máquina apaga os segmentos antigos do próprio diretório
+        OfflineMessageStorageImpl standby = storageIn("spill-standby");
+        standby.storeMessage("bob", message("do standby"));
+
+        assertTrue(hasSegments(directories.get(0)), "Transbordo fora do diretório de estado do primário");
+        assertEquals(List.of("do primário"), contents(primary.retrieveMessages("bob")));
+        assertEquals(List.of("do standby"), contents(standby.retrieveMessages("bob")));
+        primary.shutdown();
+        standby.shutdown();
+    }
+
+    @Test
+    void shutdownStopsTheExpiryThreadAndRemovesTheSpill() throws Exception {
+        long before = expiryThreads();
+        OfflineMessageStorageImpl storage = storageIn("spill-shutdown");
+        storage.storeMessage("bob", message("transbordada"));
+        assertEquals(before + 1, expiryThreads());
+
+        storage.shutdown();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (expiryThreads() > before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, expiryThreads());
+        assertTrue(!hasSegments(directories.get(0)), "Segmentos de transbordo continuam depois do shutdown");
+    }
+
+    private static long expiryThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("offline-expiry") && thread.isAlive())
+                .count();
+    }
+
+    private OfflineMessageStorageImpl storageIn(String prefix) throws Exception {
+        Path directory = Files.createTempDirectory(prefix);
+        directories.add(directory);
+        System.setProperty(StatePersistenceService.DIRECTORY_PROPERTY, directory.toString());
+        OfflineMessageStorageImpl storage = new OfflineMessageStorageImpl(new StateJournal());
+        storage.setRetentionPolicy(SPILL_EVERYTHING);
+        return storage;
+    }
+
+    private static boolean hasSegments(Path stateDirectory) throws Exception {
+        Path spill = stateDirectory.resolve("offline-spill");
+        if (!Files.isDirectory(spill)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(spill)) {
+            return files.anyMatch(file -> file.getFileName().toString().endsWith(".seg"));
+        }
+    }
+
+    private static Message message(String content) {
+        return new Message(MessageType.PRIVATE_MESSAGE, "alice", "bob", content);
+    }
+
+    private static List<String> contents(List<Message> messages) {
+        List<String> contents = new ArrayList<>();
+        for (Message message : messages) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+}